@@ -1,30 +1,39 @@
 package sample.interpreter;
 
 
-import sample.interpreter.lexer.Lexer;
+import sample.interpreter.ast.AstArena;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.cache.ProgramCache;
 import sample.interpreter.lexer.Token;
 import sample.interpreter.lexer.TreeNode;
-import sample.interpreter.parser.Parser;
+import sample.interpreter.semantic.Engine;
+import sample.interpreter.semantic.LoopProfile;
 import sample.interpreter.semantic.Semantic;
 import sample.interpreter.util.ParserUtil;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 /**
  * 已成功;
+ * 用法：Test [源文件] [tree|bytecode|closure|jvm|tiered] [回边阈值]，第二个参数选择执行引擎，默认遍历语法树；
+ * 第三个参数是分层执行时循环编译为闭包前按语法树执行的回边数
  * @author :  TobaisTao
  */
 public class Test {
 
-    public static void main(String[] args) throws IOException, IllegalAccessException {
+    public static void main(String[] args) throws IOException {
 
 
-        String sourceFile = "E:\\GitRepo\\JAVA\\cmm-interpreter-app\\testFile\\test2_一般变量赋值.cmm";
+        String sourceFile = args.length > 0 ? args[0]
+                : "E:\\GitRepo\\JAVA\\cmm-interpreter-app\\testFile\\test2_一般变量赋值.cmm";
+        Engine engine = args.length > 1 ? Engine.valueOf(args[1].toUpperCase()) : Engine.TREE;
+        int tierThreshold = args.length > 2 ? Integer.parseInt(args[2]) : LoopProfile.DEFAULT_THRESHOLD;
         Charset charset = Charset.forName("GBK");
         String cmmText = new String(Files.readAllBytes(Paths.get(sourceFile)),charset);
 
@@ -51,29 +60,52 @@ public class Test {
         //    System.out.println(output);
         //}
 
-        ArrayList<Token> tokens;
-        Lexer lexer = new Lexer();
-        lexer.scanAll(cmmText);
-        tokens = lexer.getTokens();
-        Parser parser = new Parser(tokens);
-        TreeNode node = parser.execute();
-        if (lexer.getErrorCount() != 0) {
+        // 缓存命中时直接读出语法树，不做词法和语法分析；有错误的程序不写入缓存
+        ProgramCache cache = ProgramCache.openDefault();
+        AstArena arena = cache.getOrCompile(cmmText, ProgramCache::compile);
+        System.err.println("编译缓存：命中 " + cache.getHits() + " 次，未命中 " + cache.getMisses()
+                + " 次");
+        if (arena == null) {
             //handleLexer();
-        }else if (parser.getErrorNum() != 0 || node == null) {
             //handleParser();
         } else {
-            Semantic semantic = new Semantic(node);
+            TreeNode node = TreeNodeBuilder.build(arena);
+            // 程序的输出和语义分析结果直接写到标准输出
+            Semantic semantic = new Semantic(node, System.out::print);
+            semantic.setEngine(engine);
+            semantic.setTierThreshold(tierThreshold);
+            // read 语句按行读取标准输入，读到末尾后再执行 read 语句时停止执行程序
+            Thread input = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        semantic.setUserInput(line);
+                    }
+                } catch (IOException e) {
+                    System.err.println("读取标准输入失败：" + e.getMessage());
+                }
+                semantic.endInput();
+            }, "stdin");
+            input.setDaemon(true);
+            input.start();
             semantic.start();
-            Scanner sc = new Scanner( System.in );
-            semantic.setUserInput(sc.toString());
-            String output ;
-            if (semantic.getErrorNum() > 0){
-                output = "共发生" + semantic.getErrorNum() + "个错误：\n" + semantic.getErrorInfo();
-                //resultContent.setText(output);
-            }else {
-                output = semantic.getOutput();
-                //resultContent.setText(output);
-                System.out.println(output);
+            try {
+                semantic.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            System.out.flush();
+            if (semantic.getErrorNum() > 0) {
+                System.err.println("共发生" + semantic.getErrorNum() + "个错误");
+            }
+            System.err.println("执行引擎：" + semantic.getExecutedEngine()
+                    + (semantic.getFallbackReason() == null ? "" : "，不能按 " + engine + " 执行：" + semantic.getFallbackReason()));
+            System.err.println("变量查找缓存：命中 " + semantic.getLookupHits() + " 次，未命中 "
+                    + semantic.getLookupMisses() + " 次");
+            if (semantic.getLoopProfile() != null) {
+                System.err.print("循环计数（阈值 " + semantic.getLoopProfile().getThreshold() + "）：\n"
+                        + semantic.getLoopProfile());
             }
 
         }
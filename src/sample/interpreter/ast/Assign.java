@@ -0,0 +1,33 @@
+package sample.interpreter.ast;
+
+/**
+ * 赋值语句
+ */
+public class Assign extends Node {
+
+    private final Variable target;
+    private final Node value;
+    /**
+     * 缺少分号的错误，没有错误时为 null
+     */
+    private final ErrorNode semicolonError;
+
+    public Assign(int row, Variable target, Node value, ErrorNode semicolonError) {
+        super(NodeKind.ASSIGN, row);
+        this.target = target;
+        this.value = value;
+        this.semicolonError = semicolonError;
+    }
+
+    public Variable getTarget() {
+        return target;
+    }
+
+    public Node getValue() {
+        return value;
+    }
+
+    public ErrorNode getSemicolonError() {
+        return semicolonError;
+    }
+}
@@ -0,0 +1,538 @@
+package sample.interpreter.ast;
+
+import sample.interpreter.lexer.ConstChars;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 保存在并行 int 数组中的语法树，一次编译一个
+ * 结点按先序编号，根结点为 0，孩子用第一个孩子和下一个兄弟的编号连接，形状与原来的 TreeNode 语法树相同。
+ * 由 TreeAdapter 或 Parser.execute(TreeSink) 调用 enter、exit 填充
+ */
+public class AstArena implements TreeSink {
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final int NONE = -1;
+    private static final int VARIABLE = NodeKind.VARIABLE.ordinal();
+
+    private int size;
+    private byte[] kinds;
+    private int[] firstChild;
+    private int[] nextSibling;
+    /**
+     * 标识符为符号编号，没有符号编号的标识符为 -2 - 常量表下标；
+     * 常量、错误和声明语句为常量表下标；空的语句序列为 1，其他为 -1
+     */
+    private int[] operands;
+    private int[] lines;
+
+    /**
+     * 常量表：常量的文本和数值、错误信息、声明的类型
+     */
+    private int constantCount;
+    private String[] texts = new String[16];
+    private double[] numbers = new double[16];
+    /**
+     * 按符号编号保存的标识符
+     */
+    private String[] names = new String[16];
+
+    /**
+     * 填充时正在进入的结点
+     */
+    private int[] stack = new int[64];
+    /**
+     * 填充时各层最后一个孩子
+     */
+    private int[] lastChild = new int[64];
+    private int depth;
+
+    public AstArena() {
+        this(256);
+    }
+
+    public AstArena(int capacity) {
+        kinds = new byte[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        operands = new int[capacity];
+        lines = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public NodeKind getKind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    /**
+     * 种类的序号，可以直接用于 switch 或查表
+     * @param node 结点编号
+     * @return NodeKind.ordinal()
+     */
+    public int getKindOrdinal(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * 第一个孩子
+     * @param node 结点编号
+     * @return 孩子编号，没有孩子时为 -1
+     */
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * 下一个兄弟
+     * @param node 结点编号
+     * @return 兄弟编号，没有时为 -1
+     */
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int getOperand(int node) {
+        return operands[node];
+    }
+
+    public int getLine(int node) {
+        return lines[node];
+    }
+
+    /**
+     * 常量、错误信息或声明类型的文本
+     * @param node 结点编号
+     * @return 文本
+     */
+    public String getText(int node) {
+        return texts[operands[node]];
+    }
+
+    /**
+     * 整数、实数常量的值，布尔常量 true 为 1
+     * @param node 结点编号
+     * @return 数值
+     */
+    public double getNumber(int node) {
+        return numbers[operands[node]];
+    }
+
+    /**
+     * 标识符结点的符号编号
+     * @param node 结点编号
+     * @return 符号编号，不是标识符或没有符号编号时为 -1
+     */
+    public int getSymbol(int node) {
+        return kinds[node] == VARIABLE && operands[node] >= 0 ? operands[node] : NONE;
+    }
+
+    /**
+     * 标识符结点的名字
+     * @param node 结点编号
+     * @return 标识符
+     */
+    public String getName(int node) {
+        int operand = operands[node];
+        return operand >= 0 ? names[operand] : texts[-2 - operand];
+    }
+
+    /**
+     * 结点在原来的语法树中的内容
+     * @param node 结点编号
+     * @return 内容
+     */
+    public String getContent(int node) {
+        NodeKind kind = getKind(node);
+        switch (kind) {
+            case PROGRAM:
+                return "PROGRAM";
+            case ERROR:
+                return ConstChars.ERROR + getText(node);
+            case VARIABLE:
+                return getName(node);
+            case INT_LITERAL:
+            case REAL_LITERAL:
+            case BOOL_LITERAL:
+            case STRING_LITERAL:
+            case DECLARE:
+                return getText(node);
+            case ASSIGN:
+            case INITIALIZER:
+                return ConstChars.ASSIGN;
+            case READ:
+                return ConstChars.READ;
+            case WRITE:
+                return ConstChars.WRITE;
+            case IF:
+                return ConstChars.IF;
+            case ELSE:
+                return ConstChars.ELSE;
+            case WHILE:
+                return ConstChars.WHILE;
+            case FOR:
+                return ConstChars.FOR;
+            case BLOCK:
+                return operands[node] == 1 ? "EmptyStm" : "Statements";
+            case CONDITION:
+                return "Condition";
+            case INIT:
+                return "Initialization";
+            case UPDATE:
+                return "Change";
+            default:
+                return kind.getOperator();
+        }
+    }
+
+    /**
+     * 生成与 ParserUtil.lastOrder 相同的文本
+     * @return 每个结点一行，每层缩进四个空格
+     */
+    public String lastOrder() {
+        StringBuilder builder = new StringBuilder();
+        TreeWriter.write(this, builder, TreeWriter.Format.TEXT);
+        return builder.toString();
+    }
+
+    /**
+     * 按原来的语法树的形状把结点交给 sink，例如用 TreeNodeBuilder 重建 TreeNode、用 TreeWriter 写出；
+     * 不用递归
+     * @param sink 接收结点
+     */
+    public void replay(TreeSink sink) {
+        if (size == 0) {
+            return;
+        }
+        int[] pending = new int[64];
+        int level = 0;
+        int node = 0;
+        while (true) {
+            sink.enter(getKind(node), nodeType(node), getContent(node), lines[node],
+                    getSymbol(node));
+            if (level == pending.length) {
+                pending = Arrays.copyOf(pending, level * 2);
+            }
+            pending[level] = nextSibling[node];
+            if (firstChild[node] != NONE) {
+                node = firstChild[node];
+                level++;
+                continue;
+            }
+            sink.exit();
+            while (level > 0 && pending[level] == NONE) {
+                level--;
+                sink.exit();
+            }
+            if (level == 0) {
+                break;
+            }
+            node = pending[level];
+        }
+    }
+
+    /**
+     * 结点在原来的语法树中的类型
+     * @param node 结点编号
+     * @return 类型
+     */
+    public String nodeType(int node) {
+        switch (getKind(node)) {
+            case PROGRAM:
+            case ERROR:
+                return "";
+            case VARIABLE:
+                return "标识符";
+            case INT_LITERAL:
+                return "整数";
+            case REAL_LITERAL:
+                return "实数";
+            case BOOL_LITERAL:
+                return "布尔值";
+            case STRING_LITERAL:
+                return "字符串";
+            case INITIALIZER:
+                return "分隔符";
+            case DECLARE:
+            case READ:
+            case WRITE:
+            case IF:
+            case ELSE:
+            case WHILE:
+            case FOR:
+                return "关键字";
+            case BLOCK:
+                return "statement";
+            case CONDITION:
+                return "condition";
+            case INIT:
+                return "initialization";
+            case UPDATE:
+                return "change";
+            default:
+                // 赋值和二元运算符
+                return "运算符";
+        }
+    }
+
+    /**
+     * 序列化后的字节数
+     * @return 字节数
+     */
+    public int serializedSize() {
+        int bytes = 12 + size * 17 + constantCount * 8;
+        for (int i = 0; i < constantCount; i++) {
+            bytes += 4 + utf8Length(texts[i]);
+        }
+        for (int i = 0; i < nameCount(); i++) {
+            bytes += 4 + utf8Length(names[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * 按结点数组、常量表、标识符表的顺序写入，所有数组原样保存，读取时不需要重新建立链接
+     * @param out 剩余空间不少于 serializedSize() 的缓冲区
+     */
+    public void writeTo(ByteBuffer out) {
+        int nameCount = nameCount();
+        out.putInt(size).putInt(constantCount).putInt(nameCount);
+        out.put(kinds, 0, size);
+        out.asIntBuffer().put(firstChild, 0, size);
+        out.position(out.position() + size * 4);
+        out.asIntBuffer().put(nextSibling, 0, size);
+        out.position(out.position() + size * 4);
+        out.asIntBuffer().put(operands, 0, size);
+        out.position(out.position() + size * 4);
+        out.asIntBuffer().put(lines, 0, size);
+        out.position(out.position() + size * 4);
+        out.asDoubleBuffer().put(numbers, 0, constantCount);
+        out.position(out.position() + constantCount * 8);
+        for (int i = 0; i < constantCount; i++) {
+            putString(out, texts[i]);
+        }
+        for (int i = 0; i < nameCount; i++) {
+            putString(out, names[i]);
+        }
+    }
+
+    /**
+     * 读取 writeTo 写入的语法树
+     * @param in 缓冲区，例如内存映射的缓存文件
+     * @return 语法树
+     * @throws IllegalArgumentException 数据不完整或不合法
+     */
+    public static AstArena readFrom(ByteBuffer in) {
+        try {
+            int size = in.getInt();
+            int constantCount = in.getInt();
+            int nameCount = in.getInt();
+            if (size < 0 || constantCount < 0 || nameCount < 0
+                    || (long) size * 17 + (long) constantCount * 8 > in.remaining()) {
+                throw new IllegalArgumentException("语法树的大小不正确");
+            }
+            AstArena arena = new AstArena(Math.max(size, 1));
+            arena.size = size;
+            in.get(arena.kinds, 0, size);
+            in.asIntBuffer().get(arena.firstChild, 0, size);
+            in.position(in.position() + size * 4);
+            in.asIntBuffer().get(arena.nextSibling, 0, size);
+            in.position(in.position() + size * 4);
+            in.asIntBuffer().get(arena.operands, 0, size);
+            in.position(in.position() + size * 4);
+            in.asIntBuffer().get(arena.lines, 0, size);
+            in.position(in.position() + size * 4);
+            arena.constantCount = constantCount;
+            arena.texts = new String[Math.max(constantCount, 1)];
+            arena.numbers = new double[Math.max(constantCount, 1)];
+            in.asDoubleBuffer().get(arena.numbers, 0, constantCount);
+            in.position(in.position() + constantCount * 8);
+            for (int i = 0; i < constantCount; i++) {
+                arena.texts[i] = getString(in);
+            }
+            arena.names = new String[Math.max(nameCount, 1)];
+            for (int i = 0; i < nameCount; i++) {
+                arena.names[i] = getString(in);
+            }
+            arena.check();
+            return arena;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("语法树数据不完整", e);
+        }
+    }
+
+    /**
+     * 检查读入的结点种类、链接和下标都在范围内，避免损坏的数据在遍历时出错
+     */
+    private void check() {
+        for (int node = 0; node < size; node++) {
+            if (kinds[node] < 0 || kinds[node] >= KINDS.length
+                    || !link(firstChild[node], node) || !link(nextSibling[node], node)) {
+                throw new IllegalArgumentException("第 " + node + " 个结点不正确");
+            }
+            int operand = operands[node];
+            switch (getKind(node)) {
+                case VARIABLE:
+                    if (operand >= names.length || operand == NONE
+                            || operand < NONE && -2 - operand >= constantCount) {
+                        throw new IllegalArgumentException("第 " + node + " 个结点的标识符不正确");
+                    }
+                    break;
+                case INT_LITERAL:
+                case REAL_LITERAL:
+                case BOOL_LITERAL:
+                case STRING_LITERAL:
+                case DECLARE:
+                case ERROR:
+                    if (operand < 0 || operand >= constantCount) {
+                        throw new IllegalArgumentException("第 " + node + " 个结点的常量不正确");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 先序编号中孩子和兄弟都在结点之后，保证遍历能够结束
+     */
+    private boolean link(int target, int node) {
+        return target == NONE || target > node && target < size;
+    }
+
+    /**
+     * 最大的符号编号加一
+     */
+    private int nameCount() {
+        int count = names.length;
+        while (count > 0 && names[count - 1] == null) {
+            count--;
+        }
+        return count;
+    }
+
+    private static int utf8Length(String text) {
+        return text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * 字符串按长度和 UTF-8 字节保存，null 的长度为 -1
+     */
+    private static void putString(ByteBuffer out, String text) {
+        if (text == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void enter(NodeKind kind, String nodeType, String content, int row, int symbol) {
+        if (size == kinds.length) {
+            grow();
+        }
+        int node = size++;
+        kinds[node] = (byte) kind.ordinal();
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        lines[node] = row;
+        operands[node] = operand(kind, content, symbol);
+        if (depth > 0) {
+            int parent = stack[depth - 1];
+            int last = lastChild[depth - 1];
+            if (last == NONE) {
+                firstChild[parent] = node;
+            } else {
+                nextSibling[last] = node;
+            }
+            lastChild[depth - 1] = node;
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            lastChild = Arrays.copyOf(lastChild, depth * 2);
+        }
+        stack[depth] = node;
+        lastChild[depth] = NONE;
+        depth++;
+    }
+
+    @Override
+    public void exit() {
+        depth--;
+    }
+
+    private int operand(NodeKind kind, String content, int symbol) {
+        switch (kind) {
+            case VARIABLE:
+                if (symbol < 0) {
+                    // 不是标识符的 token 出现在 for 的赋值语句开头时没有符号编号
+                    return -2 - constant(content, 0);
+                }
+                if (symbol >= names.length) {
+                    names = Arrays.copyOf(names, Math.max(names.length * 2, symbol + 1));
+                }
+                names[symbol] = content;
+                return symbol;
+            case INT_LITERAL:
+            case REAL_LITERAL:
+                double value;
+                try {
+                    value = Double.parseDouble(content);
+                } catch (NumberFormatException | NullPointerException e) {
+                    value = Double.NaN;
+                }
+                return constant(content, value);
+            case BOOL_LITERAL:
+                return constant(content, ConstChars.TRUE.equals(content) ? 1 : 0);
+            case STRING_LITERAL:
+            case DECLARE:
+                return constant(content, 0);
+            case ERROR:
+                return constant(content.substring(ConstChars.ERROR.length()), 0);
+            case BLOCK:
+                return "EmptyStm".equals(content) ? 1 : NONE;
+            default:
+                return NONE;
+        }
+    }
+
+    private int constant(String text, double number) {
+        if (constantCount == texts.length) {
+            texts = Arrays.copyOf(texts, constantCount * 2);
+            numbers = Arrays.copyOf(numbers, constantCount * 2);
+        }
+        texts[constantCount] = text;
+        numbers[constantCount] = number;
+        return constantCount++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, kinds.length * 2);
+        kinds = Arrays.copyOf(kinds, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        operands = Arrays.copyOf(operands, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+}
@@ -0,0 +1,24 @@
+package sample.interpreter.ast;
+
+/**
+ * 二元运算：加减乘除和比较
+ */
+public class Binary extends Node {
+
+    private final Node left;
+    private final Node right;
+
+    public Binary(NodeKind kind, int row, Node left, Node right) {
+        super(kind, row);
+        this.left = left;
+        this.right = right;
+    }
+
+    public Node getLeft() {
+        return left;
+    }
+
+    public Node getRight() {
+        return right;
+    }
+}
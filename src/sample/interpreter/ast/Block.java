@@ -0,0 +1,36 @@
+package sample.interpreter.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 语句序列：if、while、for 的循环体或分支，以及 else 分支
+ */
+public class Block extends Node {
+
+    private final ArrayList<Node> statements = new ArrayList<>();
+    /**
+     * 是否为空的大括号，原来的语法树中显示为 EmptyStm
+     */
+    private boolean empty;
+
+    public Block(int row) {
+        super(NodeKind.BLOCK, row);
+    }
+
+    public List<Node> getStatements() {
+        return statements;
+    }
+
+    public void add(Node statement) {
+        statements.add(statement);
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public void setEmpty(boolean empty) {
+        this.empty = empty;
+    }
+}
@@ -0,0 +1,387 @@
+package sample.interpreter.ast;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.semantic.RealArithmetic;
+
+import java.util.List;
+
+/**
+ * 常量折叠和死分支删除，在语法分析之后、语义分析之前对没有错误的紧凑语法树执行
+ * 只在结果与语义分析逐次计算完全相同的位置折叠：语义分析对常量和表达式的处理随所在位置不同，
+ * 例如赋值语句右边的算术表达式、字符串变量的初值都不能换成常量，否则报错或结果会改变。
+ * 永假的 if 分支、while 和 for 的循环体被清空，但语句本身保留，语义分析进出作用域时仍会整理符号表
+ */
+public class ConstantFolder {
+
+    /*
+     * 某个位置允许折叠成的常量种类
+     */
+    private static final int INT = 1;
+    private static final int REAL = 2;
+    private static final int BOOL = 4;
+    private static final int NUMBER = INT | REAL;
+
+    /**
+     * 折叠的表达式个数
+     */
+    private int foldedExpressions;
+    /**
+     * 删除的分支个数
+     */
+    private int deadBranches;
+    /**
+     * 删除的结点个数，按原来的语法树计
+     */
+    private int removedNodes;
+
+    public int getFoldedExpressions() {
+        return foldedExpressions;
+    }
+
+    public int getDeadBranches() {
+        return deadBranches;
+    }
+
+    public int getRemovedNodes() {
+        return removedNodes;
+    }
+
+    /**
+     * 优化整个程序，直接修改传入的语法树
+     * @param program 没有词法和语法错误的程序
+     * @return 同一个程序结点
+     */
+    public Program optimize(Program program) {
+        statements(program.getStatements());
+        return program;
+    }
+
+    @Override
+    public String toString() {
+        return "折叠常量表达式 " + foldedExpressions + " 个，删除死分支 " + deadBranches
+                + " 个，共删除 " + removedNodes + " 个结点";
+    }
+
+    private void statements(List<Node> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            statements.set(i, statement(statements.get(i)));
+        }
+    }
+
+    private Node statement(Node node) {
+        switch (node.getKind()) {
+            case ASSIGN:
+                return assign((Assign) node);
+            case DECLARE:
+                return declare((Declare) node);
+            case READ:
+                Node target = ((Read) node).getTarget();
+                if (target.getKind() == NodeKind.VARIABLE) {
+                    index((Variable) target);
+                }
+                return node;
+            case WRITE:
+                Write write = (Write) node;
+                Node value = fold(write.getValue(), NUMBER);
+                return value == write.getValue() ? node : new Write(write.getRow(), value);
+            case IF:
+                ifStatement((If) node);
+                return node;
+            case WHILE:
+                While whileNode = (While) node;
+                whileNode.setCondition(whileNode.getConditionRow(),
+                        fold(whileNode.getCondition(), NUMBER | BOOL));
+                if (isFalse(whileNode.getCondition())) {
+                    whileNode.setBody(removeBlock(whileNode.getBody()));
+                } else {
+                    statements(whileNode.getBody().getStatements());
+                }
+                return node;
+            case FOR:
+                For forNode = (For) node;
+                forNode.setInit(forNode.getInitRow(), statement(forNode.getInit()));
+                forNode.setCondition(forNode.getConditionRow(),
+                        fold(forNode.getCondition(), NUMBER | BOOL));
+                forNode.setUpdate(forNode.getUpdateRow(), statement(forNode.getUpdate()));
+                if (isFalse(forNode.getCondition())) {
+                    forNode.setBody(removeBlock(forNode.getBody()));
+                } else {
+                    statements(forNode.getBody().getStatements());
+                }
+                return node;
+            default:
+                return node;
+        }
+    }
+
+    private Node assign(Assign assign) {
+        index(assign.getTarget());
+        // 右边是算术表达式时目标为布尔变量会按表达式处理，只折叠比较
+        Node value = fold(assign.getValue(), BOOL);
+        return value == assign.getValue() ? assign
+                : new Assign(assign.getRow(), assign.getTarget(), value,
+                assign.getSemicolonError());
+    }
+
+    private Node declare(Declare declare) {
+        int allowed;
+        switch (declare.getType()) {
+            case ConstChars.INT:
+                allowed = INT;
+                break;
+            case ConstChars.REAL:
+                allowed = NUMBER;
+                break;
+            case ConstChars.BOOL:
+                allowed = BOOL;
+                break;
+            default:
+                allowed = 0;
+                break;
+        }
+        Declare result = new Declare(declare.getType(), declare.getRow());
+        result.setSemicolonError(declare.getSemicolonError());
+        boolean changed = false;
+        for (Declare.Declarator declarator : declare.getDeclarators()) {
+            Variable variable = declarator.getVariable();
+            Node initializer = declarator.getInitializer();
+            if (variable != null && variable.getIndex() != null) {
+                // 数组的大小；语义分析把数组后面的初值也当作数组大小
+                index(variable);
+                initializer = initializer == null ? null : fold(initializer, INT);
+            } else if (initializer != null) {
+                initializer = fold(initializer, allowed);
+            }
+            if (initializer != declarator.getInitializer()) {
+                changed = true;
+            }
+            result.add(new Declare.Declarator(variable, declarator.getError(), initializer,
+                    declarator.getAssignRow()));
+        }
+        return changed ? result : declare;
+    }
+
+    private void ifStatement(If ifNode) {
+        ifNode.setCondition(ifNode.getConditionRow(), fold(ifNode.getCondition(), NUMBER | BOOL));
+        Node condition = ifNode.getCondition();
+        if (condition.getKind() == NodeKind.BOOL_LITERAL && ((Literal) condition).boolValue()) {
+            // 永真：删除 else 分支
+            if (ifNode.getElseBlock() != null) {
+                deadBranches++;
+                removedNodes += count(ifNode.getElseBlock().getStatements()) + 1;
+                ifNode.setElseBlock(null);
+            }
+            statements(ifNode.getThenBlock().getStatements());
+        } else if (isFalse(condition)) {
+            ifNode.setThenBlock(removeBlock(ifNode.getThenBlock()));
+        } else {
+            statements(ifNode.getThenBlock().getStatements());
+        }
+        if (ifNode.getElseBlock() != null) {
+            statements(ifNode.getElseBlock().getStatements());
+        }
+    }
+
+    /**
+     * 清空永远不会执行的语句序列
+     * @param block 语句序列
+     * @return 行数相同的空语句序列
+     */
+    private Block removeBlock(Block block) {
+        if (block.getStatements().isEmpty()) {
+            return block;
+        }
+        deadBranches++;
+        removedNodes += count(block.getStatements());
+        return new Block(block.getRow());
+    }
+
+    /**
+     * 语义分析中永假的条件：false，以及不是比较的整数、实数常量
+     */
+    private static boolean isFalse(Node condition) {
+        if (condition.getKind() == NodeKind.BOOL_LITERAL) {
+            return !((Literal) condition).boolValue();
+        }
+        return isNumber(condition);
+    }
+
+    /**
+     * 标识符的下标只能折叠成整数
+     */
+    private void index(Variable variable) {
+        if (variable != null && variable.getIndex() != null) {
+            variable.setIndex(fold(variable.getIndex(), INT));
+        }
+    }
+
+    /**
+     * 折叠表达式
+     * @param node 表达式
+     * @param allowed 这个位置允许换成的常量种类
+     * @return 折叠后的结点，不能折叠时为原来的结点
+     */
+    private Node fold(Node node, int allowed) {
+        if (node.getKind() == NodeKind.VARIABLE) {
+            index((Variable) node);
+            return node;
+        }
+        if (!node.getKind().isBinary()) {
+            return node;
+        }
+        Binary binary = (Binary) node;
+        // 算术表达式和比较的运算对象都按整数、实数计算
+        Node left = fold(binary.getLeft(), NUMBER);
+        Node right = fold(binary.getRight(), NUMBER);
+        if (left != binary.getLeft() || right != binary.getRight()) {
+            binary = new Binary(binary.getKind(), binary.getRow(), left, right);
+        }
+        Literal result = binary.getKind().isComparison() ? compare(binary) : arithmetic(binary);
+        if (result == null || (allowed & type(result)) == 0) {
+            return binary;
+        }
+        foldedExpressions++;
+        removedNodes += 2;
+        return result;
+    }
+
+    private static int type(Literal literal) {
+        switch (literal.getKind()) {
+            case INT_LITERAL:
+                return INT;
+            case REAL_LITERAL:
+                return REAL;
+            default:
+                return BOOL;
+        }
+    }
+
+    private static boolean isNumber(Node node) {
+        return node.getKind() == NodeKind.INT_LITERAL || node.getKind() == NodeKind.REAL_LITERAL;
+    }
+
+    /**
+     * 与语义分析相同的算术：两边都是整数时按 int 计算，否则由 RealArithmetic 计算
+     * @return 常量，除数为零或常量不合法等运行时才能报告的情况返回 null
+     */
+    private static Literal arithmetic(Binary binary) {
+        Node left = binary.getLeft();
+        Node right = binary.getRight();
+        if (!isNumber(left) || !isNumber(right)) {
+            return null;
+        }
+        String leftText = ((Literal) left).getText();
+        String rightText = ((Literal) right).getText();
+        try {
+            if (left.getKind() == NodeKind.INT_LITERAL && right.getKind() == NodeKind.INT_LITERAL) {
+                int e1 = Integer.parseInt(leftText);
+                int e2 = Integer.parseInt(rightText);
+                int value;
+                switch (binary.getKind()) {
+                    case ADD:
+                        value = e1 + e2;
+                        break;
+                    case SUB:
+                        value = e1 - e2;
+                        break;
+                    case MUL:
+                        value = e1 * e2;
+                        break;
+                    default:
+                        if (e2 == 0) {
+                            return null;
+                        }
+                        value = e1 / e2;
+                        break;
+                }
+                return new Literal(NodeKind.INT_LITERAL, String.valueOf(value), binary.getRow());
+            }
+            double e1 = Double.parseDouble(leftText);
+            double e2 = Double.parseDouble(rightText);
+            int operator;
+            switch (binary.getKind()) {
+                case ADD:
+                    operator = RealArithmetic.ADD;
+                    break;
+                case SUB:
+                    operator = RealArithmetic.SUB;
+                    break;
+                case MUL:
+                    operator = RealArithmetic.MUL;
+                    break;
+                default:
+                    if (e2 == 0) {
+                        return null;
+                    }
+                    operator = RealArithmetic.DIV;
+                    break;
+            }
+            float value = RealArithmetic.operate(operator, e1, e2);
+            String text = String.valueOf(value);
+            // 科学计数法等文本不是合法的实数常量
+            if (Float.isInfinite(value) || Float.isNaN(value) || text.indexOf('E') >= 0) {
+                return null;
+            }
+            return new Literal(NodeKind.REAL_LITERAL, text, binary.getRow());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 与语义分析相同的比较：两边都按 double 比较
+     */
+    private static Literal compare(Binary binary) {
+        Node left = binary.getLeft();
+        Node right = binary.getRight();
+        if (!isNumber(left) || !isNumber(right)) {
+            return null;
+        }
+        double e1;
+        double e2;
+        try {
+            e1 = Double.parseDouble(((Literal) left).getText());
+            e2 = Double.parseDouble(((Literal) right).getText());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        boolean value;
+        switch (binary.getKind()) {
+            case GT:
+                value = e1 > e2;
+                break;
+            case LT:
+                value = e1 < e2;
+                break;
+            case EQ:
+                value = e1 == e2;
+                break;
+            default:
+                value = e1 != e2;
+                break;
+        }
+        return new Literal(NodeKind.BOOL_LITERAL, String.valueOf(value), binary.getRow());
+    }
+
+    /**
+     * 语句在原来的语法树中的结点个数
+     */
+    private static int count(List<Node> statements) {
+        int[] count = new int[1];
+        TreeSink counter = new TreeSink() {
+            @Override
+            public void enter(NodeKind kind, String nodeType, String content, int row,
+                              int symbol) {
+                count[0]++;
+            }
+
+            @Override
+            public void exit() {
+            }
+        };
+        for (Node statement : statements) {
+            TreeAdapter.walk(statement, counter);
+        }
+        return count[0];
+    }
+}
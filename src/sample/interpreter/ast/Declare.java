@@ -0,0 +1,90 @@
+package sample.interpreter.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 声明语句，一条语句可以声明多个变量
+ */
+public class Declare extends Node {
+
+    /**
+     * 一个被声明的变量
+     */
+    public static class Declarator {
+        /**
+         * 变量，标识符出错时为 null
+         */
+        private final Variable variable;
+        /**
+         * 标识符出错或标识符后出现不正确的 token，没有错误时为 null
+         */
+        private final ErrorNode error;
+        /**
+         * 初始值，没有时为 null
+         */
+        private final Node initializer;
+        /**
+         * 赋值符号所在行
+         */
+        private final int assignRow;
+
+        public Declarator(Variable variable, ErrorNode error, Node initializer, int assignRow) {
+            this.variable = variable;
+            this.error = error;
+            this.initializer = initializer;
+            this.assignRow = assignRow;
+        }
+
+        public Variable getVariable() {
+            return variable;
+        }
+
+        public ErrorNode getError() {
+            return error;
+        }
+
+        public Node getInitializer() {
+            return initializer;
+        }
+
+        public int getAssignRow() {
+            return assignRow;
+        }
+    }
+
+    /**
+     * 类型关键字：int、real、bool、string
+     */
+    private final String type;
+    private final ArrayList<Declarator> declarators = new ArrayList<>();
+    /**
+     * 缺少分号的错误，没有错误时为 null
+     */
+    private ErrorNode semicolonError;
+
+    public Declare(String type, int row) {
+        super(NodeKind.DECLARE, row);
+        this.type = type;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<Declarator> getDeclarators() {
+        return declarators;
+    }
+
+    public void add(Declarator declarator) {
+        declarators.add(declarator);
+    }
+
+    public ErrorNode getSemicolonError() {
+        return semicolonError;
+    }
+
+    public void setSemicolonError(ErrorNode semicolonError) {
+        this.semicolonError = semicolonError;
+    }
+}
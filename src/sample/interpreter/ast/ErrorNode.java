@@ -0,0 +1,21 @@
+package sample.interpreter.ast;
+
+/**
+ * 语法错误结点，占据出错的语句或表达式的位置
+ */
+public class ErrorNode extends Node {
+
+    /**
+     * 错误信息，不含 "error:" 前缀
+     */
+    private final String message;
+
+    public ErrorNode(String message) {
+        super(NodeKind.ERROR, 0);
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,100 @@
+package sample.interpreter.ast;
+
+/**
+ * for 循环语句
+ * 缺少括号等不影响继续分析的错误保存在对应位置的字段中，没有错误时为 null
+ */
+public class For extends Node {
+
+    private ErrorNode lparenError;
+    private int initRow;
+    /**
+     * 初始化赋值语句，出错时为错误结点
+     */
+    private Node init;
+    private int conditionRow;
+    private Node condition;
+    private int updateRow;
+    /**
+     * 每次循环后执行的赋值语句，出错时为错误结点
+     */
+    private Node update;
+    private ErrorNode rparenError;
+    private Block body;
+    private ErrorNode rbraceError;
+
+    public For(int row) {
+        super(NodeKind.FOR, row);
+    }
+
+    public ErrorNode getLparenError() {
+        return lparenError;
+    }
+
+    public void setLparenError(ErrorNode lparenError) {
+        this.lparenError = lparenError;
+    }
+
+    public int getInitRow() {
+        return initRow;
+    }
+
+    public Node getInit() {
+        return init;
+    }
+
+    public void setInit(int initRow, Node init) {
+        this.initRow = initRow;
+        this.init = init;
+    }
+
+    public int getConditionRow() {
+        return conditionRow;
+    }
+
+    public Node getCondition() {
+        return condition;
+    }
+
+    public void setCondition(int conditionRow, Node condition) {
+        this.conditionRow = conditionRow;
+        this.condition = condition;
+    }
+
+    public int getUpdateRow() {
+        return updateRow;
+    }
+
+    public Node getUpdate() {
+        return update;
+    }
+
+    public void setUpdate(int updateRow, Node update) {
+        this.updateRow = updateRow;
+        this.update = update;
+    }
+
+    public ErrorNode getRparenError() {
+        return rparenError;
+    }
+
+    public void setRparenError(ErrorNode rparenError) {
+        this.rparenError = rparenError;
+    }
+
+    public Block getBody() {
+        return body;
+    }
+
+    public void setBody(Block body) {
+        this.body = body;
+    }
+
+    public ErrorNode getRbraceError() {
+        return rbraceError;
+    }
+
+    public void setRbraceError(ErrorNode rbraceError) {
+        this.rbraceError = rbraceError;
+    }
+}
@@ -0,0 +1,88 @@
+package sample.interpreter.ast;
+
+/**
+ * if 条件语句
+ * 缺少括号等不影响继续分析的错误保存在对应位置的字段中，没有错误时为 null
+ */
+public class If extends Node {
+
+    private ErrorNode lparenError;
+    /**
+     * 条件开始处所在行
+     */
+    private int conditionRow;
+    private Node condition;
+    private ErrorNode rparenError;
+    private Block thenBlock;
+    private ErrorNode rbraceError;
+    /**
+     * else 分支，没有时为 null
+     */
+    private Block elseBlock;
+    private ErrorNode elseRbraceError;
+
+    public If(int row) {
+        super(NodeKind.IF, row);
+    }
+
+    public ErrorNode getLparenError() {
+        return lparenError;
+    }
+
+    public void setLparenError(ErrorNode lparenError) {
+        this.lparenError = lparenError;
+    }
+
+    public int getConditionRow() {
+        return conditionRow;
+    }
+
+    public Node getCondition() {
+        return condition;
+    }
+
+    public void setCondition(int conditionRow, Node condition) {
+        this.conditionRow = conditionRow;
+        this.condition = condition;
+    }
+
+    public ErrorNode getRparenError() {
+        return rparenError;
+    }
+
+    public void setRparenError(ErrorNode rparenError) {
+        this.rparenError = rparenError;
+    }
+
+    public Block getThenBlock() {
+        return thenBlock;
+    }
+
+    public void setThenBlock(Block thenBlock) {
+        this.thenBlock = thenBlock;
+    }
+
+    public ErrorNode getRbraceError() {
+        return rbraceError;
+    }
+
+    public void setRbraceError(ErrorNode rbraceError) {
+        this.rbraceError = rbraceError;
+    }
+
+    public Block getElseBlock() {
+        return elseBlock;
+    }
+
+    public void setElseBlock(Block elseBlock) {
+        this.elseBlock = elseBlock;
+    }
+
+    public ErrorNode getElseRbraceError() {
+        return elseRbraceError;
+    }
+
+    public void setElseRbraceError(ErrorNode elseRbraceError) {
+        this.elseRbraceError = elseRbraceError;
+    }
+}
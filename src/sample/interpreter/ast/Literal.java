@@ -0,0 +1,54 @@
+package sample.interpreter.ast;
+
+/**
+ * 整数、实数、布尔值或字符串常量，数值在语法分析时解析
+ */
+public class Literal extends Node {
+
+    /**
+     * 源程序中的文本
+     */
+    private final String text;
+    /**
+     * 整数、实数的值，布尔值 true 为 1，字符串为 0
+     */
+    private final double value;
+
+    public Literal(NodeKind kind, String text, int row) {
+        super(kind, row);
+        this.text = text;
+        this.value = decode(kind, text);
+    }
+
+    private static double decode(NodeKind kind, String text) {
+        switch (kind) {
+            case INT_LITERAL:
+            case REAL_LITERAL:
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            case BOOL_LITERAL:
+                return "true".equals(text) ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int intValue() {
+        return (int) value;
+    }
+
+    public double realValue() {
+        return value;
+    }
+
+    public boolean boolValue() {
+        return value != 0;
+    }
+}
@@ -0,0 +1,27 @@
+package sample.interpreter.ast;
+
+/**
+ * 紧凑语法树结点的基类
+ * 各种结点的孩子保存在固定的字段中，不依赖 Swing
+ */
+public abstract class Node {
+
+    private final NodeKind kind;
+    /**
+     * 所在行数，语法错误结点为 0
+     */
+    private final int row;
+
+    protected Node(NodeKind kind, int row) {
+        this.kind = kind;
+        this.row = row;
+    }
+
+    public NodeKind getKind() {
+        return kind;
+    }
+
+    public int getRow() {
+        return row;
+    }
+}
@@ -0,0 +1,91 @@
+package sample.interpreter.ast;
+
+import sample.interpreter.lexer.ConstChars;
+
+/**
+ * 语法树结点的种类
+ */
+public enum NodeKind {
+    PROGRAM,
+    /**
+     * 大括号中的语句序列
+     */
+    BLOCK,
+    /**
+     * 语法错误
+     */
+    ERROR,
+    DECLARE,
+    ASSIGN,
+    IF,
+    WHILE,
+    FOR,
+    READ,
+    WRITE,
+    VARIABLE,
+    INT_LITERAL,
+    REAL_LITERAL,
+    BOOL_LITERAL,
+    STRING_LITERAL,
+    /**
+     * 原来的语法树中 if、while、for 的 Condition 结点
+     */
+    CONDITION,
+    /**
+     * 原来的语法树中 for 的 Initialization 结点
+     */
+    INIT,
+    /**
+     * 原来的语法树中 for 的 Change 结点
+     */
+    UPDATE,
+    /**
+     * 原来的语法树中的 else 结点
+     */
+    ELSE,
+    /**
+     * 原来的语法树中声明语句里的赋值结点
+     */
+    INITIALIZER,
+    ADD(ConstChars.PLUS),
+    SUB(ConstChars.MINUS),
+    MUL(ConstChars.TIMES),
+    DIV(ConstChars.DIVIDE),
+    LT(ConstChars.LT),
+    GT(ConstChars.GT),
+    EQ(ConstChars.EQUAL),
+    NE(ConstChars.NEQUAL);
+
+    /**
+     * 二元运算符的符号，其他种类为 null
+     */
+    private final String operator;
+
+    NodeKind() {
+        this(null);
+    }
+
+    NodeKind(String operator) {
+        this.operator = operator;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    /**
+     * 是否为二元运算
+     * @return bool
+     */
+    public boolean isBinary() {
+        return operator != null;
+    }
+
+    /**
+     * 是否为比较运算
+     * @return bool
+     */
+    public boolean isComparison() {
+        return this == LT || this == GT || this == EQ || this == NE;
+    }
+}
@@ -0,0 +1,24 @@
+package sample.interpreter.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 整个程序，顶层语句的序列
+ */
+public class Program extends Node {
+
+    private final ArrayList<Node> statements = new ArrayList<>();
+
+    public Program() {
+        super(NodeKind.PROGRAM, 0);
+    }
+
+    public List<Node> getStatements() {
+        return statements;
+    }
+
+    public void add(Node statement) {
+        statements.add(statement);
+    }
+}
@@ -0,0 +1,21 @@
+package sample.interpreter.ast;
+
+/**
+ * read 语句
+ */
+public class Read extends Node {
+
+    /**
+     * 读入的变量，语句出错时为错误结点
+     */
+    private final Node target;
+
+    public Read(int row, Node target) {
+        super(NodeKind.READ, row);
+        this.target = target;
+    }
+
+    public Node getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,236 @@
+package sample.interpreter.ast;
+
+import sample.interpreter.lexer.ConstChars;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * 按原来的 TreeNode 语法树的形状遍历紧凑语法树
+ * 结点类型、内容、行数和孩子顺序都与原来的语法分析器生成的 TreeNode 相同
+ */
+public class TreeAdapter {
+
+    /**
+     * 栈中表示退出当前结点
+     */
+    private static final Object EXIT = new Object();
+
+    private TreeAdapter() {
+    }
+
+    /**
+     * 生成与 ParserUtil.lastOrder 相同的文本，不需要先转换为 TreeNode
+     * @param node 根结点
+     * @return 每个结点一行，每层缩进四个空格
+     */
+    public static String lastOrder(Node node) {
+        StringBuilder builder = new StringBuilder();
+        TreeWriter.write(node, builder);
+        return builder.toString();
+    }
+
+    /**
+     * 先序遍历，用显式的栈代替递归，嵌套再深也不会栈溢出
+     * @param node 根结点
+     * @param sink 接收结点
+     */
+    public static void walk(Node node, TreeSink sink) {
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Object item = stack.pop();
+            if (item == EXIT) {
+                sink.exit();
+            } else if (item instanceof Wrapper) {
+                Wrapper wrapper = (Wrapper) item;
+                sink.enter(wrapper.kind, wrapper.nodeType, wrapper.content, wrapper.row, -1);
+                stack.push(EXIT);
+                for (int i = wrapper.children.length - 1; i >= 0; i--) {
+                    optional(wrapper.children[i], stack);
+                }
+            } else {
+                visit((Node) item, sink, stack);
+            }
+        }
+    }
+
+    /**
+     * 交出结点本身，再把它的孩子按相反的顺序压栈
+     */
+    private static void visit(Node node, TreeSink sink, ArrayDeque<Object> stack) {
+        switch (node.getKind()) {
+            case PROGRAM:
+                sink.enter(NodeKind.PROGRAM, "", "PROGRAM", 0, -1);
+                stack.push(EXIT);
+                pushAll(((Program) node).getStatements(), stack);
+                break;
+            case ERROR:
+                leaf(sink, NodeKind.ERROR, "", ConstChars.ERROR + ((ErrorNode) node).getMessage(),
+                        0);
+                break;
+            case VARIABLE:
+                Variable variable = (Variable) node;
+                sink.enter(NodeKind.VARIABLE, "标识符", variable.getName(), variable.getRow(),
+                        variable.getSymbol());
+                stack.push(EXIT);
+                optional(variable.getIndex(), stack);
+                break;
+            case INT_LITERAL:
+                leaf(sink, NodeKind.INT_LITERAL, "整数", ((Literal) node).getText(),
+                        node.getRow());
+                break;
+            case REAL_LITERAL:
+                leaf(sink, NodeKind.REAL_LITERAL, "实数", ((Literal) node).getText(),
+                        node.getRow());
+                break;
+            case BOOL_LITERAL:
+                leaf(sink, NodeKind.BOOL_LITERAL, "布尔值", ((Literal) node).getText(),
+                        node.getRow());
+                break;
+            case STRING_LITERAL:
+                leaf(sink, NodeKind.STRING_LITERAL, "字符串", ((Literal) node).getText(),
+                        node.getRow());
+                break;
+            case ASSIGN:
+                Assign assign = (Assign) node;
+                sink.enter(NodeKind.ASSIGN, "运算符", ConstChars.ASSIGN, assign.getRow(), -1);
+                stack.push(EXIT);
+                optional(assign.getSemicolonError(), stack);
+                stack.push(assign.getValue());
+                stack.push(assign.getTarget());
+                break;
+            case DECLARE:
+                visitDeclare((Declare) node, sink, stack);
+                break;
+            case READ:
+                sink.enter(NodeKind.READ, "关键字", ConstChars.READ, node.getRow(), -1);
+                stack.push(EXIT);
+                stack.push(((Read) node).getTarget());
+                break;
+            case WRITE:
+                sink.enter(NodeKind.WRITE, "关键字", ConstChars.WRITE, node.getRow(), -1);
+                stack.push(EXIT);
+                stack.push(((Write) node).getValue());
+                break;
+            case IF:
+                visitIf((If) node, sink, stack);
+                break;
+            case WHILE:
+                While whileNode = (While) node;
+                sink.enter(NodeKind.WHILE, "关键字", ConstChars.WHILE, whileNode.getRow(), -1);
+                stack.push(EXIT);
+                optional(whileNode.getRbraceError(), stack);
+                stack.push(whileNode.getBody());
+                optional(whileNode.getRparenError(), stack);
+                stack.push(new Wrapper(NodeKind.CONDITION, "condition", "Condition",
+                        whileNode.getConditionRow(), whileNode.getCondition()));
+                optional(whileNode.getLparenError(), stack);
+                break;
+            case FOR:
+                For forNode = (For) node;
+                sink.enter(NodeKind.FOR, "关键字", ConstChars.FOR, forNode.getRow(), -1);
+                stack.push(EXIT);
+                optional(forNode.getRbraceError(), stack);
+                stack.push(forNode.getBody());
+                optional(forNode.getRparenError(), stack);
+                stack.push(new Wrapper(NodeKind.UPDATE, "change", "Change",
+                        forNode.getUpdateRow(), forNode.getUpdate()));
+                stack.push(new Wrapper(NodeKind.CONDITION, "condition", "Condition",
+                        forNode.getConditionRow(), forNode.getCondition()));
+                stack.push(new Wrapper(NodeKind.INIT, "initialization", "Initialization",
+                        forNode.getInitRow(), forNode.getInit()));
+                optional(forNode.getLparenError(), stack);
+                break;
+            case BLOCK:
+                Block block = (Block) node;
+                sink.enter(NodeKind.BLOCK, "statement",
+                        block.isEmpty() ? "EmptyStm" : "Statements", block.getRow(), -1);
+                stack.push(EXIT);
+                pushAll(block.getStatements(), stack);
+                break;
+            default:
+                Binary binary = (Binary) node;
+                sink.enter(binary.getKind(), "运算符", binary.getKind().getOperator(),
+                        binary.getRow(), -1);
+                stack.push(EXIT);
+                stack.push(binary.getRight());
+                stack.push(binary.getLeft());
+                break;
+        }
+    }
+
+    private static void visitDeclare(Declare declare, TreeSink sink, ArrayDeque<Object> stack) {
+        sink.enter(NodeKind.DECLARE, "关键字", declare.getType(), declare.getRow(), -1);
+        stack.push(EXIT);
+        optional(declare.getSemicolonError(), stack);
+        List<Declare.Declarator> declarators = declare.getDeclarators();
+        for (int i = declarators.size() - 1; i >= 0; i--) {
+            Declare.Declarator declarator = declarators.get(i);
+            if (declarator.getInitializer() != null) {
+                stack.push(new Wrapper(NodeKind.INITIALIZER, "分隔符", ConstChars.ASSIGN,
+                        declarator.getAssignRow(), declarator.getInitializer()));
+            }
+            optional(declarator.getError(), stack);
+            optional(declarator.getVariable(), stack);
+        }
+    }
+
+    private static void visitIf(If ifNode, TreeSink sink, ArrayDeque<Object> stack) {
+        sink.enter(NodeKind.IF, "关键字", ConstChars.IF, ifNode.getRow(), -1);
+        stack.push(EXIT);
+        Block elseBlock = ifNode.getElseBlock();
+        if (elseBlock != null) {
+            // else 结点直接包含分支中的语句
+            List<Node> statements = elseBlock.getStatements();
+            Node[] children = statements.toArray(new Node[statements.size() + 1]);
+            children[statements.size()] = ifNode.getElseRbraceError();
+            stack.push(new Wrapper(NodeKind.ELSE, "关键字", ConstChars.ELSE, elseBlock.getRow(),
+                    children));
+        }
+        optional(ifNode.getRbraceError(), stack);
+        stack.push(ifNode.getThenBlock());
+        optional(ifNode.getRparenError(), stack);
+        stack.push(new Wrapper(NodeKind.CONDITION, "condition", "Condition",
+                ifNode.getConditionRow(), ifNode.getCondition()));
+        optional(ifNode.getLparenError(), stack);
+    }
+
+    private static void leaf(TreeSink sink, NodeKind kind, String nodeType, String content,
+                             int row) {
+        sink.enter(kind, nodeType, content, row, -1);
+        sink.exit();
+    }
+
+    private static void pushAll(List<Node> nodes, ArrayDeque<Object> stack) {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            stack.push(nodes.get(i));
+        }
+    }
+
+    private static void optional(Node node, ArrayDeque<Object> stack) {
+        if (node != null) {
+            stack.push(node);
+        }
+    }
+
+    /**
+     * 紧凑语法树中没有对应结点的包装结点，例如 Condition、else
+     */
+    private static final class Wrapper {
+        private final NodeKind kind;
+        private final String nodeType;
+        private final String content;
+        private final int row;
+        private final Node[] children;
+
+        private Wrapper(NodeKind kind, String nodeType, String content, int row,
+                        Node... children) {
+            this.kind = kind;
+            this.nodeType = nodeType;
+            this.content = content;
+            this.row = row;
+            this.children = children;
+        }
+    }
+}
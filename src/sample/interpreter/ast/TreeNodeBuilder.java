@@ -0,0 +1,54 @@
+package sample.interpreter.ast;
+
+import sample.interpreter.lexer.TreeNode;
+
+import java.util.ArrayDeque;
+
+/**
+ * 把紧凑语法树转换为原来的 TreeNode 语法树，供界面和语义分析使用
+ */
+public class TreeNodeBuilder implements TreeSink {
+
+    private final ArrayDeque<TreeNode> stack = new ArrayDeque<>();
+    private TreeNode root;
+
+    /**
+     * 转换整棵树
+     * @param node 紧凑语法树的根结点
+     * @return TreeNode 语法树的根结点
+     */
+    public static TreeNode build(Node node) {
+        TreeNodeBuilder builder = new TreeNodeBuilder();
+        TreeAdapter.walk(node, builder);
+        return builder.root;
+    }
+
+    /**
+     * 由 AstArena 转换，例如从缓存中读出的语法树
+     * @param arena 语法树
+     * @return TreeNode 语法树的根结点
+     */
+    public static TreeNode build(AstArena arena) {
+        TreeNodeBuilder builder = new TreeNodeBuilder();
+        arena.replay(builder);
+        return builder.root;
+    }
+
+    @Override
+    public void enter(NodeKind kind, String nodeType, String content, int row, int symbol) {
+        TreeNode node = nodeType.isEmpty() ? new TreeNode(content)
+                : new TreeNode(nodeType, content, row);
+        node.setSymbol(symbol);
+        if (stack.isEmpty()) {
+            root = node;
+        } else {
+            stack.peek().add(node);
+        }
+        stack.push(node);
+    }
+
+    @Override
+    public void exit() {
+        stack.pop();
+    }
+}
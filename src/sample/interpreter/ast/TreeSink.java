@@ -0,0 +1,22 @@
+package sample.interpreter.ast;
+
+/**
+ * 按原来的 TreeNode 语法树的形状接收结点，由 TreeAdapter 先序调用
+ */
+public interface TreeSink {
+
+    /**
+     * 进入一个结点，之后依次进入它的孩子
+     * @param kind 结点种类，包括原来的语法树中 Condition 等包装结点
+     * @param nodeType 结点类型，与 TreeNode.getNodeType 相同
+     * @param content 结点内容，与 TreeNode.getContent 相同
+     * @param row 所在行数
+     * @param symbol 标识符结点的符号编号，其他结点为 -1
+     */
+    void enter(NodeKind kind, String nodeType, String content, int row, int symbol);
+
+    /**
+     * 离开最近进入的结点
+     */
+    void exit();
+}
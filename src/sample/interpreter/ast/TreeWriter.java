@@ -0,0 +1,218 @@
+package sample.interpreter.ast;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * 把 TreeAdapter.walk 或 AstArena.replay 交出的结点边遍历边写出，不在内存中拼出整棵树的文本
+ * 支持三种格式：与 ParserUtil.lastOrder 相同的缩进文本、JSON 和 Graphviz 的 DOT。
+ * 缩进从一段预先生成的空格中截取，文本和 JSON 只记录当前深度，DOT 另外记录各层父结点的编号；
+ * 写出出错时抛出 UncheckedIOException
+ */
+public class TreeWriter implements TreeSink {
+
+    public enum Format {
+        /**
+         * 每个结点一行，每层缩进四个空格
+         */
+        TEXT,
+        /**
+         * 每个结点一个对象，孩子放在 children 数组中
+         */
+        JSON,
+        /**
+         * Graphviz 有向图，每个结点一个方框
+         */
+        DOT
+    }
+
+    private static final String INDENT = "    ";
+    /**
+     * 缓存的缩进，更深的缩进分段写出
+     */
+    private static final String SPACES;
+
+    static {
+        char[] spaces = new char[INDENT.length() * 64];
+        Arrays.fill(spaces, ' ');
+        SPACES = new String(spaces);
+    }
+
+    private final Appendable out;
+    private final Format format;
+
+    private int depth = 0;
+    /**
+     * JSON：上一次调用是 enter，即当前结点还没有孩子
+     */
+    private boolean opened = false;
+    /**
+     * DOT：已经写出的结点个数，即下一个结点的编号
+     */
+    private int count = 0;
+    /**
+     * DOT：各层祖先结点的编号
+     */
+    private int[] parents = new int[64];
+
+    public TreeWriter(Appendable out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * 以缩进文本写出紧凑语法树
+     * @param node 根结点
+     * @param out 输出
+     */
+    public static void write(Node node, Appendable out) {
+        TreeAdapter.walk(node, new TreeWriter(out, Format.TEXT));
+    }
+
+    /**
+     * 以指定格式写出紧凑语法树
+     * @param node 根结点
+     * @param out 输出
+     * @param format 格式
+     */
+    public static void write(Node node, Appendable out, Format format) {
+        TreeAdapter.walk(node, new TreeWriter(out, format));
+    }
+
+    /**
+     * 以指定格式写出 AstArena
+     * @param arena 语法树
+     * @param out 输出
+     * @param format 格式
+     */
+    public static void write(AstArena arena, Appendable out, Format format) {
+        arena.replay(new TreeWriter(out, format));
+    }
+
+    @Override
+    public void enter(NodeKind kind, String nodeType, String content, int row, int symbol) {
+        try {
+            switch (format) {
+                case TEXT:
+                    indent(depth);
+                    out.append(content).append('\n');
+                    break;
+                case JSON:
+                    enterJson(nodeType, content, row, symbol);
+                    break;
+                default:
+                    enterDot(content);
+                    break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        depth++;
+    }
+
+    @Override
+    public void exit() {
+        depth--;
+        try {
+            if (format == Format.JSON) {
+                if (opened) {
+                    out.append('}');
+                } else {
+                    out.append('\n');
+                    indent(depth);
+                    out.append("]}");
+                }
+                opened = false;
+                if (depth == 0) {
+                    out.append('\n');
+                }
+            } else if (format == Format.DOT && depth == 0) {
+                out.append("}\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void enterJson(String nodeType, String content, int row, int symbol)
+            throws IOException {
+        if (opened) {
+            out.append(",\"children\":[\n");
+        } else if (depth > 0) {
+            out.append(",\n");
+        }
+        indent(depth);
+        out.append("{\"type\":");
+        string(nodeType);
+        out.append(",\"content\":");
+        string(content);
+        out.append(",\"row\":").append(Integer.toString(row));
+        if (symbol >= 0) {
+            out.append(",\"symbol\":").append(Integer.toString(symbol));
+        }
+        opened = true;
+    }
+
+    private void enterDot(String content) throws IOException {
+        int id = count++;
+        if (depth == 0) {
+            out.append("digraph AST {\n").append(INDENT).append("node [shape=box];\n");
+        }
+        out.append(INDENT).append('n').append(Integer.toString(id)).append(" [label=");
+        string(content);
+        out.append("];\n");
+        if (depth > 0) {
+            out.append(INDENT).append('n').append(Integer.toString(parents[depth - 1]))
+                    .append(" -> n").append(Integer.toString(id)).append(";\n");
+        }
+        if (depth == parents.length) {
+            parents = Arrays.copyOf(parents, depth * 2);
+        }
+        parents[depth] = id;
+    }
+
+    private void indent(int level) throws IOException {
+        int length = level * INDENT.length();
+        while (length > 0) {
+            int n = Math.min(length, SPACES.length());
+            out.append(SPACES, 0, n);
+            length -= n;
+        }
+    }
+
+    /**
+     * 写出加引号、转义后的字符串，JSON 和 DOT 的转义规则在这里相同
+     */
+    private void string(String text) throws IOException {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,39 @@
+package sample.interpreter.ast;
+
+/**
+ * 变量或数组元素
+ */
+public class Variable extends Node {
+
+    private final String name;
+    /**
+     * 符号编号
+     */
+    private final int symbol;
+    /**
+     * 数组下标表达式，不是数组元素时为 null
+     */
+    private Node index;
+
+    public Variable(String name, int symbol, int row) {
+        super(NodeKind.VARIABLE, row);
+        this.name = name;
+        this.symbol = symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public Node getIndex() {
+        return index;
+    }
+
+    public void setIndex(Node index) {
+        this.index = index;
+    }
+}
@@ -0,0 +1,67 @@
+package sample.interpreter.ast;
+
+/**
+ * while 循环语句
+ * 缺少括号等不影响继续分析的错误保存在对应位置的字段中，没有错误时为 null
+ */
+public class While extends Node {
+
+    private ErrorNode lparenError;
+    /**
+     * 条件开始处所在行
+     */
+    private int conditionRow;
+    private Node condition;
+    private ErrorNode rparenError;
+    private Block body;
+    private ErrorNode rbraceError;
+
+    public While(int row) {
+        super(NodeKind.WHILE, row);
+    }
+
+    public ErrorNode getLparenError() {
+        return lparenError;
+    }
+
+    public void setLparenError(ErrorNode lparenError) {
+        this.lparenError = lparenError;
+    }
+
+    public int getConditionRow() {
+        return conditionRow;
+    }
+
+    public Node getCondition() {
+        return condition;
+    }
+
+    public void setCondition(int conditionRow, Node condition) {
+        this.conditionRow = conditionRow;
+        this.condition = condition;
+    }
+
+    public ErrorNode getRparenError() {
+        return rparenError;
+    }
+
+    public void setRparenError(ErrorNode rparenError) {
+        this.rparenError = rparenError;
+    }
+
+    public Block getBody() {
+        return body;
+    }
+
+    public void setBody(Block body) {
+        this.body = body;
+    }
+
+    public ErrorNode getRbraceError() {
+        return rbraceError;
+    }
+
+    public void setRbraceError(ErrorNode rbraceError) {
+        this.rbraceError = rbraceError;
+    }
+}
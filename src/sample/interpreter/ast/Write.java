@@ -0,0 +1,21 @@
+package sample.interpreter.ast;
+
+/**
+ * write 语句
+ */
+public class Write extends Node {
+
+    /**
+     * 输出的表达式，语句出错时为错误结点
+     */
+    private final Node value;
+
+    public Write(int row, Node value) {
+        super(NodeKind.WRITE, row);
+        this.value = value;
+    }
+
+    public Node getValue() {
+        return value;
+    }
+}
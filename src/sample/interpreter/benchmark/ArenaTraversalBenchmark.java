@@ -0,0 +1,95 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.AstArena;
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.Parser;
+import sample.interpreter.util.ParserUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * 比较遍历 TreeNode 语法树与 AstArena 的耗时，程序为重复多次的数组排序程序
+ * 用法：ArenaTraversalBenchmark [cmm 文件] [重复次数]
+ */
+public class ArenaTraversalBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File file = new File(args.length > 0 ? args[0] : "testFile/test9_数组排序.cmm");
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        String program = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+        StringBuilder big = new StringBuilder(program.length() * copies);
+        for (int i = 0; i < copies; i++) {
+            big.append(program).append("\n");
+        }
+        TokenBuffer buffer = new Lexer().scanPacked(big.toString());
+
+        TreeNode root = new Parser(buffer).execute();
+        AstArena arena = new AstArena(buffer.size());
+        new Parser(buffer).execute(arena);
+
+        ParserUtil parserUtil = new ParserUtil();
+        parserUtil.lastOrder(root, 0);
+        boolean same = parserUtil.getStringBuilder().toString().equals(arena.lastOrder());
+        System.out.println(file.getName() + " 重复 " + copies + " 次：" + arena.size() + " 个结点，"
+                + (same ? "两棵树一致" : "两棵树不一致"));
+
+        long treeTime = Long.MAX_VALUE;
+        long arenaTime = Long.MAX_VALUE;
+        long scanTime = Long.MAX_VALUE;
+        long treeSum = 0;
+        long arenaSum = 0;
+        long scanSum = 0;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            treeSum = visit(root);
+            treeTime = Math.min(treeTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            arenaSum = visit(arena, 0);
+            arenaTime = Math.min(arenaTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            scanSum = scan(arena);
+            scanTime = Math.min(scanTime, System.nanoTime() - start);
+        }
+        System.out.println("TreeNode 递归遍历：       " + treeTime / 1000 + " us，校验和 " + treeSum);
+        System.out.println("AstArena 孩子兄弟遍历：   " + arenaTime / 1000 + " us，校验和 " + arenaSum
+                + "，加速比 " + String.format("%.2f", (double) treeTime / arenaTime));
+        System.out.println("AstArena 按先序编号扫描： " + scanTime / 1000 + " us，校验和 " + scanSum
+                + "，加速比 " + String.format("%.2f", (double) treeTime / scanTime));
+    }
+
+    /**
+     * 每个结点累加行数和符号编号
+     */
+    private static long visit(TreeNode node) {
+        long sum = node.getRowNum() + node.getSymbol();
+        int count = node.getChildCount();
+        for (int i = 0; i < count; i++) {
+            sum += visit(node.getChildAt(i));
+        }
+        return sum;
+    }
+
+    private static long visit(AstArena arena, int node) {
+        long sum = arena.getLine(node) + arena.getSymbol(node);
+        for (int child = arena.getFirstChild(node); child >= 0; child = arena.getNextSibling(child)) {
+            sum += visit(arena, child);
+        }
+        return sum;
+    }
+
+    /**
+     * 结点按先序编号，顺序扫描即为先序遍历
+     */
+    private static long scan(AstArena arena) {
+        long sum = 0;
+        for (int node = 0; node < arena.size(); node++) {
+            sum += arena.getLine(node) + arena.getSymbol(node);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,93 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.ParseService;
+import sample.interpreter.semantic.Semantic;
+
+import java.util.Random;
+
+/**
+ * 数组存放在一个基本类型数组中之后的耗时：
+ * 声明大数组的耗时，以及按符号表查找和按槽位访问变量时冒泡排序的耗时随数组长度的变化，
+ * 元素访问是 O(1) 时排序的耗时与长度的平方成正比
+ * 用法：ArrayStorageBenchmark [最大排序长度] [声明的数组大小]
+ */
+public class ArrayStorageBenchmark {
+
+    public static void main(String[] args) {
+        int maxLength = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int declared = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+        TreeNode declare = tree("real R[" + declared + "];\nR[" + (declared - 1) + "] = 1.5;\nwrite(R["
+                + (declared - 1) + "]);\n");
+        run(declare, true);
+        long start = System.nanoTime();
+        String output = run(declare, true);
+        long time = System.nanoTime() - start;
+        System.out.println("声明 real R[" + declared + "]：" + time / 1000000 + " ms，输出 "
+                + output.substring(0, output.indexOf('\n')));
+
+        for (int length = maxLength / 4; length <= maxLength; length *= 2) {
+            TreeNode sort = tree(bubbleSort(length));
+            for (boolean resolve : new boolean[] {false, true}) {
+                run(sort, resolve);
+                start = System.nanoTime();
+                output = run(sort, resolve);
+                time = System.nanoTime() - start;
+                System.out.println("冒泡排序 " + length + " 个元素，" + (resolve ? "按槽位：  " : "查符号表：")
+                        + time / 1000000 + " ms" + (sorted(output, length) ? "" : "，结果未排好序"));
+            }
+        }
+    }
+
+    private static TreeNode tree(String cmmText) {
+        return TreeNodeBuilder.build(ParseService.parse(cmmText).getProgram());
+    }
+
+    private static String run(TreeNode root, boolean resolve) {
+        StringBuilder output = new StringBuilder();
+        Semantic semantic = new Semantic(root, output::append);
+        semantic.setResolve(resolve);
+        semantic.run();
+        return output.toString();
+    }
+
+    /**
+     * 与 test9_数组排序.cmm 相同的冒泡排序，数组为随机整数
+     */
+    private static String bubbleSort(int n) {
+        StringBuilder builder = new StringBuilder("int R[" + (n + 1) + "];\n");
+        Random random = new Random(n);
+        for (int i = 0; i < n; i++) {
+            builder.append("R[").append(i).append("] = ").append(random.nextInt(100000)).append(";\n");
+        }
+        builder.append("int i,j,swap;\ni = ").append(n).append(";\n")
+                .append("while (i <> 1){\n")
+                .append("    swap = 0;\n    j = 0;\n")
+                .append("    while (j < i-1){\n")
+                .append("        if (R[j+1] < R[j]){\n")
+                .append("            swap = 1;\n")
+                .append("            R[").append(n).append("] = R[j];\n")
+                .append("            R[j] = R[j+1];\n")
+                .append("            R[j+1] = R[").append(n).append("];\n")
+                .append("        }\n")
+                .append("        j = j + 1;\n")
+                .append("    }\n")
+                .append("    i = i - 1;\n")
+                .append("    if (swap <> 1)\n        i = 1;\n")
+                .append("}\n")
+                .append("int k = 0;\nwhile (k < ").append(n).append("){\n    write(R[k]);\n    k = k + 1;\n}\n");
+        return builder.toString();
+    }
+
+    private static boolean sorted(String output, int n) {
+        String[] lines = output.split("\n");
+        for (int i = 1; i < n; i++) {
+            if (Integer.parseInt(lines[i - 1]) > Integer.parseInt(lines[i])) {
+                return false;
+            }
+        }
+        return lines.length > n;
+    }
+}
@@ -0,0 +1,81 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.Parser;
+import sample.interpreter.util.ParserUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 比较紧凑语法树与 TreeNode 语法树在大程序上的内存占用
+ * 用法：AstMemoryBenchmark [testFile 目录] [放大后的字符数]
+ */
+public class AstMemoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 4 * 1024 * 1024;
+        File[] files = dir.listFiles((d, name) -> name.startsWith("test") && name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        StringBuilder corpus = new StringBuilder();
+        for (File file : files) {
+            corpus.append(new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK")))
+                    .append("\n");
+        }
+        StringBuilder big = new StringBuilder();
+        while (big.length() < size) {
+            big.append(corpus);
+        }
+        TokenBuffer buffer = new Lexer().scanPacked(big.toString());
+
+        // 两棵树都由同一个缓冲区生成，只统计树本身
+        long base = usedMemory();
+        Program program = new Parser(buffer).parse();
+        long astBytes = usedMemory() - base;
+
+        base = usedMemory();
+        TreeNode root = TreeNodeBuilder.build(program);
+        long treeBytes = usedMemory() - base;
+
+        int nodes = countNodes(root);
+        ParserUtil parserUtil = new ParserUtil();
+        parserUtil.lastOrder(root, 0);
+        boolean same = parserUtil.getStringBuilder().toString().equals(TreeAdapter.lastOrder(program));
+
+        System.out.println("源程序 " + big.length() + " 字符，" + buffer.size() + " 个 Token，"
+                + nodes + " 个 TreeNode 结点，两棵树" + (same ? "一致" : "不一致"));
+        System.out.println("紧凑语法树：  " + astBytes / 1024 + " KB，平均每个结点 "
+                + astBytes / nodes + " 字节");
+        System.out.println("TreeNode 树：" + treeBytes / 1024 + " KB，平均每个结点 "
+                + treeBytes / nodes + " 字节");
+    }
+
+    private static int countNodes(TreeNode node) {
+        int count = 1;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count += countNodes(node.getChildAt(i));
+        }
+        return count;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
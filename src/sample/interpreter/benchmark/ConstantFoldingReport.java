@@ -0,0 +1,48 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.ConstantFolder;
+import sample.interpreter.ast.Program;
+import sample.interpreter.parser.ParseService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 对 testFile 目录中没有错误的程序做常量折叠和死分支删除，输出每个程序删除的结点个数
+ * 用法：ConstantFoldingReport [testFile 目录]
+ */
+public class ConstantFoldingReport {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        int folded = 0;
+        int deadBranches = 0;
+        int removed = 0;
+        for (File file : files) {
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            ParseService.Result result = ParseService.parse(cmmText);
+            if (result.getLexerErrorCount() != 0 || result.getParserErrorCount() != 0) {
+                System.out.println(file.getName() + "：有词法或语法错误，跳过");
+                continue;
+            }
+            Program program = result.getProgram();
+            ConstantFolder folder = new ConstantFolder();
+            folder.optimize(program);
+            System.out.println(file.getName() + "：" + folder);
+            folded += folder.getFoldedExpressions();
+            deadBranches += folder.getDeadBranches();
+            removed += folder.getRemovedNodes();
+        }
+        System.out.println("合计：折叠常量表达式 " + folded + " 个，删除死分支 " + deadBranches
+                + " 个，共删除 " + removed + " 个结点");
+    }
+}
@@ -0,0 +1,55 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.Token;
+import sample.interpreter.parser.Parser;
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.Diagnostics;
+
+import java.util.ArrayList;
+
+/**
+ * 错误很多的程序上词法、语法分析的耗时，错误数翻倍时耗时应大致翻倍
+ * 用法：DiagnosticsBenchmark [最大行数]
+ */
+public class DiagnosticsBenchmark {
+
+    public static void main(String[] args) {
+        int maxLines = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        for (int lines = maxLines / 16; lines <= maxLines; lines *= 2) {
+            // 每行一个词法错误和一个语法错误
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < lines; i++) {
+                builder.append("int 3a").append(i % 10).append(" = 1 # 2\n");
+            }
+            String cmmText = builder.toString();
+
+            long lexTime = Long.MAX_VALUE;
+            long parseTime = Long.MAX_VALUE;
+            Diagnostics diagnostics = null;
+            for (int round = 0; round < 3; round++) {
+                diagnostics = new Diagnostics();
+                Lexer lexer = new Lexer();
+                lexer.setDiagnostics(diagnostics);
+                long start = System.nanoTime();
+                lexer.scanAll(cmmText);
+                lexTime = Math.min(lexTime, System.nanoTime() - start);
+                ArrayList<Token> tokens = lexer.getTokens();
+                Parser parser = new Parser(tokens);
+                parser.setDiagnostics(diagnostics);
+                start = System.nanoTime();
+                parser.execute();
+                parseTime = Math.min(parseTime, System.nanoTime() - start);
+            }
+            long start = System.nanoTime();
+            int length = diagnostics.format(Phase.LEXER).length()
+                    + diagnostics.format(Phase.PARSER).length();
+            long formatTime = System.nanoTime() - start;
+            System.out.println(lines + " 行：词法错误 " + diagnostics.count(Phase.LEXER)
+                    + " 个，语法错误 " + diagnostics.count(Phase.PARSER) + " 个，保存 "
+                    + diagnostics.getDiagnostics().size() + " 条；词法 " + lexTime / 1000000
+                    + " ms，语法 " + parseTime / 1000000 + " ms，生成 " + length + " 字符错误信息 "
+                    + formatTime / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.ConstantFolder;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.ParseService;
+import sample.interpreter.semantic.Engine;
+import sample.interpreter.semantic.Semantic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * 各个执行引擎与遍历语法树执行的耗时比较，程序与 ValueModelBenchmark 相同地放大，
+ * 编译执行的耗时包括编译；输出与遍历语法树不同或者程序不能编译时给出提示。
+ * 虚拟机的主循环是一个很大的 switch，只运行过一部分指令时 JIT 会把其余分支编译为去优化，
+ * 闭包的调用点也会因为只见过一部分实现而被内联，所以先用所有程序轮流预热所有引擎，再逐个计时；
+ * JVM 引擎再次运行同一个程序时复用已经加载的类，计时的是它被 JIT 编译后的运行
+ * 用法：EngineBenchmark [testFile 目录] [倍数] [运行次数] [预热轮数]
+ */
+public class EngineBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int scale = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        String[][] programs = {
+                {"test6_WHILE.cmm", "int a = 4;", "int a = " + 4 * scale + ";"},
+                {"test7_IF-ELSE与WHILE.cmm", "int a = 4;", "int a = " + 4 * scale + ";"},
+                {"test8_FOR.cmm", "a = 6;", "a = " + 6 * scale * scale + ";"},
+                {"test9_数组排序.cmm", null, null}
+        };
+        TreeNode[] roots = new TreeNode[programs.length];
+        for (int i = 0; i < programs.length; i++) {
+            File file = new File(dir, programs[i][0]);
+            if (!file.isFile()) {
+                System.err.println("找不到文件：" + file.getAbsolutePath());
+                return;
+            }
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            if (programs[i][1] != null) {
+                cmmText = cmmText.replace(programs[i][1], programs[i][2]);
+            } else {
+                cmmText = ValueModelBenchmark.sort(cmmText, 6 * scale);
+            }
+            roots[i] = TreeNodeBuilder.build(
+                    new ConstantFolder().optimize(ParseService.parse(cmmText).getProgram()));
+        }
+        for (int round = 0; round < warmup; round++) {
+            for (TreeNode root : roots) {
+                for (Engine engine : Engine.values()) {
+                    run(root, engine, new StringBuilder());
+                }
+            }
+        }
+
+        Engine[] engines = Engine.values();
+        long[] totals = new long[engines.length];
+        for (int i = 0; i < programs.length; i++) {
+            long[] best = new long[engines.length];
+            String[] outputs = new String[engines.length];
+            String[] fallbacks = new String[engines.length];
+            for (Engine engine : engines) {
+                best[engine.ordinal()] = Long.MAX_VALUE;
+                for (int round = 0; round < rounds; round++) {
+                    StringBuilder output = new StringBuilder();
+                    long start = System.nanoTime();
+                    Semantic semantic = run(roots[i], engine, output);
+                    best[engine.ordinal()] = Math.min(best[engine.ordinal()], System.nanoTime() - start);
+                    outputs[engine.ordinal()] = output.toString();
+                    fallbacks[engine.ordinal()] = semantic.getFallbackReason();
+                }
+                totals[engine.ordinal()] += best[engine.ordinal()];
+            }
+            StringBuilder line = new StringBuilder(programs[i][0]).append("：语法树 ")
+                    .append(best[0] / 1000000).append(" ms");
+            for (int e = 1; e < engines.length; e++) {
+                line.append("，").append(name(engines[e])).append(" ").append(best[e] / 1000000)
+                        .append(" ms ").append(speedup(best[0], best[e]));
+                if (!outputs[0].equals(outputs[e])) {
+                    line.append("（输出不同）");
+                }
+                if (fallbacks[e] != null) {
+                    line.append("（不能编译：").append(fallbacks[e]).append("）");
+                }
+            }
+            System.out.println(line);
+        }
+        StringBuilder line = new StringBuilder("合计：语法树 ").append(totals[0] / 1000000).append(" ms");
+        for (int e = 1; e < engines.length; e++) {
+            line.append("，").append(name(engines[e])).append(" ").append(totals[e] / 1000000)
+                    .append(" ms ").append(speedup(totals[0], totals[e]));
+        }
+        System.out.println(line);
+    }
+
+    private static Semantic run(TreeNode root, Engine engine, StringBuilder output) {
+        Semantic semantic = new Semantic(root, output::append);
+        semantic.setEngine(engine);
+        semantic.run();
+        return semantic;
+    }
+
+    private static String name(Engine engine) {
+        switch (engine) {
+            case BYTECODE:
+                return "字节码";
+            case CLOSURE:
+                return "闭包";
+            case JVM:
+                return "JVM";
+            case TIERED:
+                return "分层";
+            default:
+                return "语法树";
+        }
+    }
+
+    private static String speedup(long tree, long compiled) {
+        return String.format("加速 %.1f 倍", (double) tree / Math.max(1, compiled));
+    }
+}
@@ -0,0 +1,83 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.Token;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 比较逐行扫描（scanLine）与单遍状态机两种词法分析实现
+ * 用法：LexerBenchmark [testFile 目录] [放大后的行数]
+ */
+public class LexerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        Charset charset = Charset.forName("GBK");
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        StringBuilder corpus = new StringBuilder();
+        for (File file : files) {
+            String cmmText = new String(Files.readAllBytes(file.toPath()), charset);
+            boolean same = dump(scan(cmmText, true)).equals(dump(scan(cmmText, false)));
+            System.out.println((same ? "一致  " : "不一致 ") + file.getName());
+            // 只用没有词法错误的程序放大
+            if (scan(cmmText, false).getErrorCount() == 0) {
+                corpus.append(cmmText).append("\n");
+            }
+        }
+
+        // 把语料重复到指定行数
+        int corpusLines = corpus.toString().split("\n").length;
+        StringBuilder big = new StringBuilder();
+        int count = 0;
+        while (count < lines) {
+            big.append(corpus);
+            count += corpusLines;
+        }
+        String cmmText = big.toString();
+        System.out.println("放大后：" + count + " 行，" + cmmText.length() + " 字符");
+        for (int round = 0; round < 5; round++) {
+            long lineTime = time(cmmText, true);
+            long dfaTime = time(cmmText, false);
+            System.out.println("第 " + (round + 1) + " 轮  scanLine: " + lineTime
+                    + " ms  状态机: " + dfaTime + " ms");
+        }
+    }
+
+    private static Lexer scan(String cmmText, boolean lineMode) {
+        Lexer lexer = new Lexer();
+        lexer.setLineMode(lineMode);
+        lexer.scanAll(cmmText);
+        return lexer;
+    }
+
+    private static long time(String cmmText, boolean lineMode) {
+        long start = System.nanoTime();
+        scan(cmmText, lineMode);
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * 把 token 序列和错误信息转成字符串，便于比较
+     */
+    private static String dump(Lexer lexer) {
+        StringBuilder stringBuilder = new StringBuilder(lexer.getErrorInfo());
+        for (Token token : lexer.getTokens()) {
+            stringBuilder.append(token.getRowNum()).append(",")
+                    .append(token.getColNum()).append(",")
+                    .append(token.getType()).append(",")
+                    .append(token.getContent()).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.LexerSession;
+import sample.interpreter.lexer.Token;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 比较编辑一个字符后整体重新扫描与增量词法分析会话的耗时
+ * 用法：LexerSessionBenchmark [testFile 目录] [放大后的行数]
+ */
+public class LexerSessionBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        File[] files = dir.listFiles((d, name) -> name.startsWith("test") && name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        StringBuilder corpus = new StringBuilder();
+        for (File file : files) {
+            corpus.append(new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK")))
+                    .append("\n");
+        }
+        int corpusLines = corpus.toString().split("\n").length;
+        StringBuilder big = new StringBuilder();
+        for (int count = 0; count < lines; count += corpusLines) {
+            big.append(corpus);
+        }
+        String cmmText = big.toString();
+
+        LexerSession session = new LexerSession();
+        session.reset(cmmText);
+        System.out.println("程序共 " + session.getLineCount() + " 行，" + cmmText.length() + " 字符");
+
+        // 在中间一条声明语句的行首交替插入、删除一个空格
+        int middle = cmmText.indexOf("\nint ", cmmText.length() / 2) + 1;
+        for (int round = 0; round < 5; round++) {
+            String edited = round % 2 == 0
+                    ? cmmText.substring(0, middle) + " " + cmmText.substring(middle)
+                    : cmmText;
+            long start = System.nanoTime();
+            new Lexer().scanAll(edited);
+            long fullTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            if (round % 2 == 0) {
+                session.edit(middle, 0, " ");
+            } else {
+                session.edit(middle, 1, "");
+            }
+            long editTime = System.nanoTime() - start;
+            System.out.println("第 " + (round + 1) + " 轮  整体扫描: " + fullTime / 1000 + " us  增量: "
+                    + editTime / 1000 + " us，重新扫描 " + session.getRelexedLines() + " 行");
+        }
+
+        // 插入 "/*" 改变后续各行的行首状态，需要向后扫描到注释结束为止
+        long start = System.nanoTime();
+        session.edit(middle, 0, "/*");
+        System.out.println("插入 /*：" + (System.nanoTime() - start) / 1000 + " us，重新扫描 "
+                + session.getRelexedLines() + " 行");
+        start = System.nanoTime();
+        session.edit(middle, 2, "");
+        System.out.println("删除 /*：" + (System.nanoTime() - start) / 1000 + " us，重新扫描 "
+                + session.getRelexedLines() + " 行");
+
+        Lexer lexer = new Lexer();
+        lexer.scanAll(session.getText());
+        System.out.println(same(lexer.getTokens(), session.getTokens())
+                && lexer.getErrorInfo().equals(session.getErrorInfo())
+                ? "结果与整体扫描一致" : "结果与整体扫描不一致");
+    }
+
+    private static boolean same(ArrayList<Token> expected, ArrayList<Token> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Token a = expected.get(i);
+            Token b = actual.get(i);
+            if (!a.getRowNum().equals(b.getRowNum()) || !a.getColNum().equals(b.getColNum())
+                    || a.getKind() != b.getKind() || !a.getContent().equals(b.getContent())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
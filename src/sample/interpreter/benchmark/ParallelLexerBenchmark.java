@@ -0,0 +1,99 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.ParallelLexer;
+import sample.interpreter.lexer.Token;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 分块并行词法分析在不同线程数下的耗时
+ * 用法：ParallelLexerBenchmark [testFile 目录] [放大后的字符数]
+ */
+public class ParallelLexerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 8 * 1024 * 1024;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        StringBuilder corpus = new StringBuilder();
+        for (File file : files) {
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            // 只用没有词法错误的程序放大
+            Lexer lexer = new Lexer();
+            lexer.scanAll(cmmText);
+            if (lexer.getErrorCount() == 0) {
+                corpus.append(cmmText).append("\n");
+            }
+        }
+        StringBuilder big = new StringBuilder();
+        while (big.length() < size) {
+            big.append(corpus);
+        }
+        String cmmText = big.toString();
+
+        Lexer lexer = new Lexer();
+        lexer.scanAll(cmmText);
+        System.out.println("程序 " + cmmText.length() + " 字符，" + lexer.getTokens().size()
+                + " 个 Token，CPU 核数 "
+                + Runtime.getRuntime().availableProcessors());
+
+        long single = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            new Lexer().scanAll(cmmText);
+            single = Math.min(single, System.nanoTime() - start);
+        }
+        System.out.println("Lexer.scanAll：" + single / 1000000 + " ms");
+
+        // 加速比相对于单线程的 ParallelLexer
+        long base = 0;
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelLexer parallel = new ParallelLexer(pool);
+            parallel.scanAll(cmmText);
+            boolean same = same(lexer.getTokens(), parallel.getTokens())
+                    && lexer.getErrorInfo().equals(parallel.getErrorInfo());
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                parallel.scanAll(cmmText);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            if (threads == 1) {
+                base = best;
+            }
+            System.out.println(threads + " 线程：" + best / 1000000 + " ms，加速比 "
+                    + String.format("%.2f", (double) base / best) + "，重新扫描 "
+                    + parallel.getRescannedChunks() + " 块，" + (same ? "结果一致" : "结果不一致"));
+        }
+    }
+
+    private static boolean same(ArrayList<Token> expected, ArrayList<Token> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Token a = expected.get(i);
+            Token b = actual.get(i);
+            if (!a.getRowNum().equals(b.getRowNum()) || !a.getColNum().equals(b.getColNum())
+                    || a.getKind() != b.getKind() || !a.getContent().equals(b.getContent())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.parser.ParseService;
+import sample.interpreter.util.Diagnostic.Phase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 多线程同时分析整个 testFile 目录，检查每棵语法树和错误信息都与单线程的结果相同
+ * 用法：ParseServiceStress [testFile 目录] [线程数] [轮数]
+ */
+public class ParseServiceStress {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        List<String> sources = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (File file : files) {
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            sources.add(cmmText);
+            expected.add(dump(ParseService.parse(cmmText)));
+        }
+
+        // 每轮把整个目录提交一次，所有轮次同时在线程池中运行
+        List<String> batch = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            batch.addAll(sources);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<CompletableFuture<ParseService.Result>> futures =
+                new ParseService(executor).submitAll(batch);
+        int mismatches = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            String actual = dump(futures.get(i).join());
+            if (!actual.equals(expected.get(i % sources.size()))) {
+                mismatches++;
+                if (mismatches <= 5) {
+                    System.out.println("不一致：" + files[i % sources.size()].getName());
+                }
+            }
+        }
+        long time = System.nanoTime() - start;
+        executor.shutdown();
+        System.out.println(threads + " 线程分析 " + futures.size() + " 个程序，"
+                + time / 1000000 + " ms，不一致 " + mismatches + " 个");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 语法树的文本和错误信息
+     */
+    private static String dump(ParseService.Result result) {
+        return TreeAdapter.lastOrder(result.getProgram())
+                + result.getDiagnostics().format(Phase.LEXER)
+                + result.getDiagnostics().format(Phase.PARSER);
+    }
+}
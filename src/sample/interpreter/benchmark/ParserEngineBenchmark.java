@@ -0,0 +1,106 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.AstArena;
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.parser.AbstractParser;
+import sample.interpreter.parser.Parser;
+import sample.interpreter.parser.TableParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * 比较递归下降的 Parser 与查表的 TableParser：整个 testFile 目录重复多次后的吞吐量，
+ * 以及括号、while 语句嵌套很深时能否分析
+ * 用法：ParserEngineBenchmark [testFile 目录] [重复次数] [嵌套层数]
+ */
+public class ParserEngineBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            for (File file : files) {
+                builder.append(new String(Files.readAllBytes(file.toPath()),
+                        Charset.forName("GBK"))).append("\n");
+            }
+        }
+        TokenBuffer buffer = new Lexer().scanPacked(builder.toString());
+
+        Parser parser = new Parser(buffer);
+        TableParser tableParser = new TableParser(buffer);
+        boolean same = TreeAdapter.lastOrder(parser.parse())
+                .equals(TreeAdapter.lastOrder(tableParser.parse()))
+                && parser.getErrorInfo().equals(tableParser.getErrorInfo());
+        System.out.println(files.length + " 个程序重复 " + copies + " 次：" + buffer.size()
+                + " 个 token，语法错误 " + parser.getErrorNum() + " 个，"
+                + (same ? "两种分析器结果一致" : "两种分析器结果不一致"));
+
+        long recursiveTime = Long.MAX_VALUE;
+        long tableTime = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            new Parser(buffer).parse();
+            recursiveTime = Math.min(recursiveTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            new TableParser(buffer).parse();
+            tableTime = Math.min(tableTime, System.nanoTime() - start);
+        }
+        System.out.println("递归下降 Parser：  " + recursiveTime / 1000000 + " ms，"
+                + buffer.size() * 1000L / Math.max(1, recursiveTime / 1000) + " token/ms");
+        System.out.println("查表 TableParser： " + tableTime / 1000000 + " ms，"
+                + buffer.size() * 1000L / Math.max(1, tableTime / 1000) + " token/ms，相对耗时 "
+                + String.format("%.2f", (double) tableTime / recursiveTime));
+
+        // 嵌套很深的括号和 while 语句
+        StringBuilder parens = new StringBuilder("write(");
+        StringBuilder loops = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            parens.append('(');
+            loops.append("while (a) ");
+        }
+        parens.append('1');
+        for (int i = 0; i < depth; i++) {
+            parens.append(')');
+        }
+        parens.append(");");
+        loops.append("a = 1;");
+        deep("括号", depth, parens.toString());
+        deep("while", depth, loops.toString());
+    }
+
+    private static void deep(String name, int depth, String cmmText) {
+        TokenBuffer buffer = new Lexer().scanPacked(cmmText);
+        System.out.println(name + "嵌套 " + depth + " 层：");
+        System.out.println("    递归下降 Parser：  " + tryParse(buffer, Parser::new));
+        System.out.println("    查表 TableParser： " + tryParse(buffer, TableParser::new));
+    }
+
+    private static String tryParse(TokenBuffer buffer,
+                                   Function<TokenBuffer, AbstractParser> factory) {
+        try {
+            AbstractParser parser = factory.apply(buffer);
+            Program program = parser.parse();
+            AstArena arena = new AstArena(buffer.size());
+            TreeAdapter.walk(program, arena);
+            return arena.size() + " 个结点，语法错误 " + parser.getErrorNum() + " 个";
+        } catch (StackOverflowError e) {
+            return "栈溢出";
+        }
+    }
+}
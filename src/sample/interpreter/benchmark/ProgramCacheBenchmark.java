@@ -0,0 +1,151 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.AstArena;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.cache.ProgramCache;
+import sample.interpreter.lexer.TreeNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 编译缓存的测试：没有缓存时重新编译与命中缓存时读出语法树的耗时，
+ * 读出的语法树是否与重新编译的相同，以及损坏文件的检查和超过大小上限时的淘汰
+ * 缓存放在临时目录中，结束后删除
+ * 用法：ProgramCacheBenchmark [testFile 目录] [重复次数]
+ */
+public class ProgramCacheBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        List<String> programs = new ArrayList<>();
+        for (File file : files) {
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            if (ProgramCache.compile(cmmText) == null) {
+                continue;
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < copies; i++) {
+                builder.append(cmmText).append("\n");
+            }
+            programs.add(builder.toString());
+        }
+        Path directory = Files.createTempDirectory("cmm-cache");
+        try {
+            ProgramCache cache = new ProgramCache(directory, ProgramCache.DEFAULT_MAX_BYTES);
+            boolean same = true;
+            for (String program : programs) {
+                AstArena compiled = ProgramCache.compile(program);
+                cache.put(program, compiled);
+                AstArena cached = cache.get(program);
+                same &= cached != null
+                        && text(TreeNodeBuilder.build(cached))
+                        .equals(text(TreeNodeBuilder.build(compiled)));
+            }
+            System.out.println(programs.size() + " 个程序各重复 " + copies + " 次，"
+                    + (same ? "缓存读出的语法树与重新编译的一致" : "缓存读出的语法树与重新编译的不一致"));
+
+            long compileTime = Long.MAX_VALUE;
+            long cachedTime = Long.MAX_VALUE;
+            for (int round = 0; round < 10; round++) {
+                long start = System.nanoTime();
+                for (String program : programs) {
+                    ProgramCache.compile(program);
+                }
+                compileTime = Math.min(compileTime, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (String program : programs) {
+                    cache.get(program);
+                }
+                cachedTime = Math.min(cachedTime, System.nanoTime() - start);
+            }
+            System.out.println("重新编译：  " + compileTime / 1000000 + " ms");
+            System.out.println("命中缓存：  " + cachedTime / 1000000 + " ms，加速 "
+                    + String.format("%.2f", (double) compileTime / cachedTime) + " 倍");
+
+            // 改动缓存文件中的一个字节
+            Path file = cacheFiles(directory).get(0);
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 0x5A;
+            Files.write(file, bytes);
+            long corrupted = cache.getCorrupted();
+            int found = 0;
+            for (String program : programs) {
+                if (cache.get(program) != null) {
+                    found++;
+                }
+            }
+            System.out.println("损坏一个缓存文件后：命中 " + found + " 个，发现损坏 "
+                    + (cache.getCorrupted() - corrupted) + " 个，剩余缓存文件 "
+                    + cacheFiles(directory).size() + " 个");
+
+            // 大小上限只能容纳一半的缓存文件
+            long total = 0;
+            for (Path path : cacheFiles(directory)) {
+                total += Files.size(path);
+            }
+            long limit = total / 2;
+            ProgramCache small = new ProgramCache(directory, limit);
+            for (String program : programs) {
+                small.getOrCompile(program, ProgramCache::compile);
+            }
+            total = 0;
+            for (Path path : cacheFiles(directory)) {
+                total += Files.size(path);
+            }
+            System.out.println("大小上限 " + limit + " 字节：命中 " + small.getHits() + " 个，淘汰 "
+                    + small.getEvicted() + " 个，剩余缓存文件 " + cacheFiles(directory).size()
+                    + " 个共 " + total + " 字节");
+        } finally {
+            for (Path path : cacheFiles(directory)) {
+                Files.deleteIfExists(path);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * 语法树的先序文本，包括结点类型、内容、行号和符号
+     */
+    private static String text(TreeNode root) {
+        StringBuilder builder = new StringBuilder();
+        Deque<TreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            TreeNode node = stack.pop();
+            builder.append(node.getNodeType()).append(' ').append(node.getContent()).append(' ')
+                    .append(node.getRowNum()).append(' ').append(node.getSymbol()).append('\n');
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                stack.push(node.getChildAt(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static List<Path> cacheFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+}
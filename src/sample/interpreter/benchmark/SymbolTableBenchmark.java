@@ -0,0 +1,141 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.ParseService;
+import sample.interpreter.semantic.Semantic;
+import sample.interpreter.semantic.SymbolTable;
+import sample.interpreter.semantic.SymbolTableElement;
+
+/**
+ * 符号表按名字散列、退出作用域回退到标记之后的耗时：
+ * 直接调用符号表的深层嵌套和大量变量两种情况，以及关闭变量解析时语义分析执行对应程序的耗时，
+ * 程序的结果与按槽位访问变量时比较
+ * 用法：SymbolTableBenchmark [嵌套层数] [变量个数] [循环次数]
+ */
+public class SymbolTableBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int variables = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int loops = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long found = nesting(depth, loops);
+            long time = System.nanoTime() - start;
+            if (round == 2) {
+                System.out.println("符号表 " + depth + " 层嵌套，每层声明后查找最外层和当前层的变量，重复 "
+                        + loops + " 次：" + time / 1000000 + " ms，找到 " + found + " 次");
+            }
+            start = System.nanoTime();
+            found = many(variables, loops);
+            time = System.nanoTime() - start;
+            if (round == 2) {
+                System.out.println("符号表 " + variables + " 个变量，查找 " + loops * 100L + " 次："
+                        + time / 1000000 + " ms，找到 " + found + " 次");
+            }
+        }
+
+        time("程序 " + depth + " 层嵌套", tree(nestedProgram(depth, loops)));
+        time("程序 " + variables + " 个变量", tree(manyProgram(variables, loops)));
+    }
+
+    /**
+     * 逐层进入作用域，每层声明一个同名变量和一个本层的变量，在最内层查找后逐层退出
+     */
+    private static long nesting(int depth, int loops) {
+        SymbolTable table = new SymbolTable();
+        table.add(new SymbolTableElement("v", 0, -1, "int", 1, 0));
+        long found = 0;
+        for (int loop = 0; loop < loops / depth + 1; loop++) {
+            int[] marks = new int[depth + 1];
+            for (int level = 1; level <= depth; level++) {
+                marks[level] = table.mark();
+                table.add(new SymbolTableElement("v", 0, -1, "int", 1, level));
+                table.add(new SymbolTableElement("w" + level, level, -1, "int", 1, level));
+                for (int i = 1; i <= level; i += Math.max(1, level / 8)) {
+                    found += table.getAllLevel(0, i) != null ? 1 : 0;
+                    found += table.getAllLevel(i, level) != null ? 1 : 0;
+                    found += table.getCurrentLevel(i, level) != null ? 1 : 0;
+                }
+            }
+            for (int level = depth; level >= 1; level--) {
+                table.rewind(marks[level]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 同一作用域中声明大量变量，再随机查找
+     */
+    private static long many(int variables, int loops) {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < variables; i++) {
+            table.add(new SymbolTableElement("v" + i, i, -1, "int", 1, 0));
+        }
+        long found = 0;
+        int symbol = 0;
+        for (long i = 0; i < loops * 100L; i++) {
+            symbol = (symbol + 7919) % variables;
+            found += table.getAllLevel(symbol, 3) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    /**
+     * 嵌套的 if 语句，每层声明一个变量，最内层的循环读写最外层和各层的变量
+     */
+    private static String nestedProgram(int depth, int loops) {
+        StringBuilder builder = new StringBuilder("int v = 0;\nint i = 0;\n");
+        for (int level = 1; level <= depth; level++) {
+            builder.append("if (true) {\nint w").append(level).append(" = ").append(level).append(";\n");
+        }
+        builder.append("while (i < ").append(loops).append(") {\n")
+                .append("    int t = w1 + w").append(depth).append(";\n")
+                .append("    v = v + t;\n    i = i + 1;\n}\nwrite(v);\n");
+        for (int level = 1; level <= depth; level++) {
+            builder.append("}\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 在最外层声明大量变量，循环中读写最早和最晚声明的变量
+     */
+    private static String manyProgram(int variables, int loops) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < variables; i++) {
+            builder.append("int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        builder.append("int i = 0;\nwhile (i < ").append(loops).append(") {\n")
+                .append("    int t = v0 + 1;\n")
+                .append("    v").append(variables - 1).append(" = v").append(variables - 1).append(" + t;\n")
+                .append("    i = i + 1;\n}\nwrite(v").append(variables - 1).append(");\n");
+        return builder.toString();
+    }
+
+    private static void time(String name, TreeNode root) {
+        String expected = run(root, true);
+        run(root, false);
+        long start = System.nanoTime();
+        String output = run(root, false);
+        long time = System.nanoTime() - start;
+        System.out.println(name + "，查符号表：" + time / 1000000 + " ms，输出 "
+                + output.substring(0, output.indexOf('\n'))
+                + (output.equals(expected) ? "" : "，与按槽位访问的结果不同"));
+    }
+
+    private static TreeNode tree(String cmmText) {
+        return TreeNodeBuilder.build(ParseService.parse(cmmText).getProgram());
+    }
+
+    private static String run(TreeNode root, boolean resolve) {
+        StringBuilder output = new StringBuilder();
+        Semantic semantic = new Semantic(root, output::append);
+        semantic.setResolve(resolve);
+        semantic.run();
+        return output.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.Token;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.parser.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 比较 ArrayList&lt;Token&gt; 与紧凑 TokenBuffer 在大程序上的内存占用
+ * 用法：TokenMemoryBenchmark [testFile 目录] [Token 个数]
+ */
+public class TokenMemoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int target = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        String cmmText = enlarge(dir, target);
+
+        long base = usedMemory();
+        Lexer lexer = new Lexer();
+        lexer.scanAll(cmmText);
+        ArrayList<Token> tokens = lexer.getTokens();
+        long listBytes = usedMemory() - base;
+        int count = tokens.size();
+
+        base = usedMemory();
+        TokenBuffer buffer = new Lexer().scanPacked(cmmText);
+        long packedBytes = usedMemory() - base;
+
+        // 交替计时多轮，取最短时间
+        long listParse = Long.MAX_VALUE;
+        long packedParse = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            new Parser(tokens).execute();
+            listParse = Math.min(listParse, (System.nanoTime() - start) / 1000000);
+            start = System.nanoTime();
+            new Parser(buffer).execute();
+            packedParse = Math.min(packedParse, (System.nanoTime() - start) / 1000000);
+        }
+
+        System.out.println("Token 个数：" + count + "，源程序 " + cmmText.length() + " 字符");
+        System.out.println("ArrayList<Token>：" + listBytes / 1024 + " KB，每个 Token "
+                + listBytes / count + " 字节，语法分析 " + listParse + " ms");
+        System.out.println("TokenBuffer：     " + packedBytes / 1024 + " KB，每个 Token "
+                + packedBytes / buffer.size() + " 字节（含源程序字符数组 "
+                + (16 + 2L * buffer.getSource().length) / 1024 + " KB），语法分析 "
+                + packedParse + " ms");
+    }
+
+    /**
+     * 把没有错误的测试程序重复到约 target 个 Token
+     */
+    private static String enlarge(File dir, int target) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("test") && name.endsWith(".cmm"));
+        if (files == null) {
+            throw new IOException("找不到目录：" + dir.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        StringBuilder corpus = new StringBuilder();
+        for (File file : files) {
+            corpus.append(new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK")))
+                    .append("\n");
+        }
+        Lexer lexer = new Lexer();
+        int perCopy = lexer.scanPacked(corpus.toString()).size();
+        StringBuilder big = new StringBuilder();
+        for (int count = 0; count < target; count += perCopy) {
+            big.append(corpus);
+        }
+        return big.toString();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
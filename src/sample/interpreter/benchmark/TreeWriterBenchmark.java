@@ -0,0 +1,147 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.AstArena;
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.ast.TreeWriter;
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.ParseService;
+import sample.interpreter.parser.TableParser;
+import sample.interpreter.util.ParserUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * TreeWriter 的测试：testFile 中的程序写出的文本是否与 ParserUtil.lastOrder 相同，
+ * 以及一百万个结点的语法树拼成字符串与边遍历边写出的耗时和写完后仍占用的内存
+ * 用法：TreeWriterBenchmark [testFile 目录] [语句条数] [嵌套层数]
+ */
+public class TreeWriterBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 150000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".cmm"));
+        if (files == null) {
+            System.err.println("找不到目录：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(files);
+        boolean same = true;
+        for (File file : files) {
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            Program program = ParseService.parse(cmmText).getProgram();
+            TreeNode root = TreeNodeBuilder.build(program);
+            ParserUtil parserUtil = new ParserUtil();
+            parserUtil.lastOrder(root, 0);
+            StringBuilder text = new StringBuilder();
+            TreeWriter.write(program, text);
+            AstArena arena = new AstArena();
+            TreeAdapter.walk(program, arena);
+            StringBuilder arenaText = new StringBuilder();
+            TreeWriter.write(arena, arenaText, TreeWriter.Format.TEXT);
+            same &= parserUtil.getStringBuilder().toString().equals(text.toString())
+                    && text.toString().equals(arenaText.toString());
+        }
+        System.out.println(files.length + " 个程序："
+                + (same ? "TreeWriter 与 ParserUtil.lastOrder 的文本一致" : "文本不一致"));
+
+        // 每条语句 7 个结点
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            builder.append("write(a[1] + 2 * b);\n");
+        }
+        Program program = ParseService.parse(builder.toString()).getProgram();
+        AstArena arena = new AstArena();
+        TreeAdapter.walk(program, arena);
+        System.out.println(arena.size() + " 个结点：");
+        for (TreeWriter.Format format : TreeWriter.Format.values()) {
+            System.gc();
+            long before = usedMemory();
+            long start = System.nanoTime();
+            StringBuilder string = new StringBuilder();
+            TreeWriter.write(arena, string, format);
+            long stringTime = System.nanoTime() - start;
+            System.gc();
+            long stringMemory = usedMemory() - before;
+            int length = string.length();
+            string = null;
+
+            System.gc();
+            before = usedMemory();
+            CountingWriter writer = new CountingWriter();
+            start = System.nanoTime();
+            TreeWriter.write(arena, writer, format);
+            long streamTime = System.nanoTime() - start;
+            System.gc();
+            long streamMemory = usedMemory() - before;
+            System.out.println("    " + format + "：" + length + " 个字符，拼成字符串 "
+                    + stringTime / 1000000 + " ms、约 " + stringMemory / 1024 / 1024
+                    + " MB；边遍历边写出 " + streamTime / 1000000 + " ms、约 "
+                    + Math.max(0, streamMemory) / 1024 / 1024 + " MB"
+                    + (writer.count == length ? "" : "，字符数不一致"));
+        }
+
+        // 嵌套很深的 while 语句，缩进文本的长度与层数的平方成正比，只写出 DOT
+        StringBuilder loops = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            loops.append("while (a) ");
+        }
+        loops.append("a = 1;");
+        Program deep = new TableParser(new Lexer().scanPacked(loops.toString())).parse();
+        CountingWriter writer = new CountingWriter();
+        TreeWriter.write(deep, writer, TreeWriter.Format.DOT);
+        System.out.println("while 嵌套 " + depth + " 层：DOT " + writer.count + " 个字符");
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 只统计字符个数的输出
+     */
+    private static final class CountingWriter extends Writer {
+        private long count = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) {
+            count += end - start;
+            return this;
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            count += csq.length();
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) {
+            count++;
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
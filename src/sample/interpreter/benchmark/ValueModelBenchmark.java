@@ -0,0 +1,86 @@
+package sample.interpreter.benchmark;
+
+import sample.interpreter.ast.ConstantFolder;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.parser.ParseService;
+import sample.interpreter.semantic.Semantic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * 变量按 long、double、boolean 保存后语义分析的耗时
+ * 把 testFile 中以循环为主的程序放大：while 和 for 的循环次数、冒泡排序的数组长度乘以倍数，
+ * 每个程序先预热再取多次运行的最短时间，输出只统计字符个数
+ * 用法：ValueModelBenchmark [testFile 目录] [倍数] [运行次数]
+ */
+public class ValueModelBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "testFile");
+        int scale = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        String[][] programs = {
+                {"test6_WHILE.cmm", "int a = 4;", "int a = " + 4 * scale + ";"},
+                {"test7_IF-ELSE与WHILE.cmm", "int a = 4;", "int a = " + 4 * scale + ";"},
+                {"test8_FOR.cmm", "a = 6;", "a = " + 6 * scale * scale + ";"},
+                {"test9_数组排序.cmm", null, null}
+        };
+        long total = 0;
+        for (String[] program : programs) {
+            File file = new File(dir, program[0]);
+            if (!file.isFile()) {
+                System.err.println("找不到文件：" + file.getAbsolutePath());
+                return;
+            }
+            String cmmText = new String(Files.readAllBytes(file.toPath()), Charset.forName("GBK"));
+            if (program[1] != null) {
+                cmmText = cmmText.replace(program[1], program[2]);
+            } else {
+                cmmText = sort(cmmText, 6 * scale);
+            }
+            TreeNode root = TreeNodeBuilder.build(
+                    new ConstantFolder().optimize(ParseService.parse(cmmText).getProgram()));
+            long best = Long.MAX_VALUE;
+            long length = 0;
+            for (int round = 0; round < rounds + 2; round++) {
+                long[] count = new long[1];
+                Semantic semantic = new Semantic(root, text -> count[0] += text.length());
+                long start = System.nanoTime();
+                semantic.run();
+                long time = System.nanoTime() - start;
+                // 前两次是预热
+                if (round >= 2) {
+                    best = Math.min(best, time);
+                }
+                length = count[0];
+            }
+            total += best;
+            System.out.println(program[0] + "：" + best / 1000000 + " ms，输出 " + length + " 个字符");
+        }
+        System.out.println("合计：" + total / 1000000 + " ms");
+    }
+
+    /**
+     * 把冒泡排序的数组换成 n 个随机实数
+     */
+    static String sort(String cmmText, int n) {
+        StringBuilder values = new StringBuilder("real R[" + (n + 1) + "];\n");
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            values.append("R[").append(i).append("] = ")
+                    .append(random.nextInt(2000) - 1000).append('.').append(random.nextInt(100))
+                    .append(";\n");
+        }
+        int begin = cmmText.indexOf("real R[7];");
+        int end = cmmText.indexOf("//进入冒泡排序算法");
+        return cmmText.substring(0, begin) + values + cmmText.substring(end)
+                .replace("i = 6;", "i = " + n + ";")
+                .replace("R[6]", "R[" + n + "]")
+                .replace("k<6", "k<" + n);
+    }
+}
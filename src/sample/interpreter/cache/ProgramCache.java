@@ -0,0 +1,326 @@
+package sample.interpreter.cache;
+
+import sample.interpreter.ast.AstArena;
+import sample.interpreter.ast.ConstantFolder;
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.parser.ParseService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * 编译结果的磁盘缓存
+ * 以源程序和解释器版本的 SHA-256 为键，把没有错误、已经优化的语法树（AstArena）保存为二进制文件。
+ * 命中时内存映射缓存文件直接读出语法树，不再做词法和语法分析。
+ * 文件的修改时间记录最近一次使用，目录超过大小上限时删除最久未用的文件；
+ * 读取时检查文件头、键和 CRC32，损坏的文件当作未命中并删除。
+ * 缓存出错不影响解释执行，只会退回重新编译
+ */
+public class ProgramCache {
+
+    /**
+     * 解释器版本，词法、语法分析、常量折叠或语法树格式改变时必须修改，旧的缓存随之失效
+     */
+    public static final String INTERPRETER_VERSION = "cmm-interpreter 1.0 / ast 1";
+    /**
+     * 默认的缓存目录，可以用系统属性 cmm.cache.dir 指定
+     */
+    public static final String DEFAULT_DIRECTORY = ".cmm-cache";
+    /**
+     * 默认的大小上限，可以用系统属性 cmm.cache.maxBytes 指定
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final String SUFFIX = ".cmmc";
+    /**
+     * 文件头：魔数、格式版本、键、语法树字节数、语法树的 CRC32
+     */
+    private static final int MAGIC = 0x434D4D43;
+    private static final int FORMAT_VERSION = 1;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = 4 + 4 + KEY_BYTES + 4 + 8;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong corrupted = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public ProgramCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 使用系统属性或默认值指定的目录和大小上限
+     * @return 缓存
+     */
+    public static ProgramCache openDefault() {
+        String directory = System.getProperty("cmm.cache.dir",
+                Paths.get(System.getProperty("user.home"), DEFAULT_DIRECTORY).toString());
+        long maxBytes = Long.getLong("cmm.cache.maxBytes", DEFAULT_MAX_BYTES);
+        return new ProgramCache(Paths.get(directory), maxBytes);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getCorrupted() {
+        return corrupted.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * 词法、语法分析并折叠常量，得到可以缓存的语法树
+     * @param cmmText cmm程序
+     * @return 语法树，有词法或语法错误时返回 null
+     */
+    public static AstArena compile(String cmmText) {
+        ParseService.Result result = ParseService.parse(cmmText);
+        if (result.getLexerErrorCount() != 0 || result.getParserErrorCount() != 0) {
+            return null;
+        }
+        Program program = new ConstantFolder().optimize(result.getProgram());
+        AstArena arena = new AstArena();
+        TreeAdapter.walk(program, arena);
+        return arena;
+    }
+
+    /**
+     * 查找缓存，未命中时调用 compiler 编译并写入缓存
+     * @param cmmText cmm程序
+     * @param compiler 编译函数，程序有错误时返回 null，此时不写入缓存
+     * @return 语法树，程序有错误时为 null
+     */
+    public AstArena getOrCompile(String cmmText, Function<String, AstArena> compiler) {
+        AstArena arena = get(cmmText);
+        if (arena == null) {
+            arena = compiler.apply(cmmText);
+            if (arena != null) {
+                put(cmmText, arena);
+            }
+        }
+        return arena;
+    }
+
+    /**
+     * 读取缓存
+     * @param cmmText cmm程序
+     * @return 语法树，未命中或缓存文件损坏时返回 null
+     */
+    public AstArena get(String cmmText) {
+        byte[] key = key(cmmText);
+        Path file = file(key);
+        if (!Files.isRegularFile(file)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        AstArena arena;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            arena = read(buffer, key);
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (arena == null) {
+            corrupted.incrementAndGet();
+            misses.incrementAndGet();
+            delete(file);
+            return null;
+        }
+        hits.incrementAndGet();
+        try {
+            // 修改时间即最近一次使用的时间
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // 只影响淘汰的顺序
+        }
+        return arena;
+    }
+
+    /**
+     * 写入缓存，先写临时文件再改名，其他进程不会读到写了一半的文件
+     * @param cmmText cmm程序
+     * @param arena 语法树
+     */
+    public void put(String cmmText, AstArena arena) {
+        byte[] key = key(cmmText);
+        ByteBuffer payload = ByteBuffer.allocate(arena.serializedSize());
+        arena.writeTo(payload);
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).put(key).putInt(payload.remaining())
+                .putLong(crc.getValue());
+        header.flip();
+        Path file = file(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, hex(key), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining() || payload.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {header, payload});
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            if (temp != null) {
+                delete(temp);
+            }
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * 删除最久未用的缓存文件，直到目录不超过大小上限
+     */
+    public synchronized void evict() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            return;
+        }
+        long[] sizes = new long[files.size()];
+        long[] times = new long[files.size()];
+        Integer[] order = new Integer[files.size()];
+        long total = 0;
+        for (int i = 0; i < files.size(); i++) {
+            order[i] = i;
+            try {
+                sizes[i] = Files.size(files.get(i));
+                times[i] = Files.getLastModifiedTime(files.get(i)).toMillis();
+            } catch (IOException e) {
+                // 已被其他进程删除
+                sizes[i] = 0;
+            }
+            total += sizes[i];
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            if (delete(files.get(order[i]))) {
+                total -= sizes[order[i]];
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 检查文件头、键、长度和 CRC32 后读出语法树
+     * @return 语法树，文件损坏时返回 null
+     */
+    private static AstArena read(ByteBuffer buffer, byte[] key) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION) {
+            return null;
+        }
+        byte[] storedKey = new byte[KEY_BYTES];
+        buffer.get(storedKey);
+        int length = buffer.getInt();
+        long checksum = buffer.getLong();
+        if (!Arrays.equals(storedKey, key) || length != buffer.remaining()) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if (crc.getValue() != checksum) {
+            return null;
+        }
+        try {
+            AstArena arena = AstArena.readFrom(buffer);
+            return buffer.hasRemaining() ? null : arena;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 源程序和解释器版本的 SHA-256
+     */
+    private static byte[] key(String cmmText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(INTERPRETER_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(cmmText.getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // 每个 Java 平台都必须支持 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path file(byte[] key) {
+        return directory.resolve(hex(key) + SUFFIX);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 删除文件，Windows 上仍被映射的文件可能删除失败，留待下次淘汰
+     */
+    private static boolean delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,894 @@
+package sample.interpreter.closure;
+
+import sample.interpreter.closure.ClosureProgram.Access;
+import sample.interpreter.closure.ClosureProgram.Cond;
+import sample.interpreter.closure.ClosureProgram.Failure;
+import sample.interpreter.closure.ClosureProgram.Init;
+import sample.interpreter.closure.ClosureProgram.IntExpr;
+import sample.interpreter.closure.ClosureProgram.Lookup;
+import sample.interpreter.closure.ClosureProgram.RealExpr;
+import sample.interpreter.closure.ClosureProgram.Stmt;
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.semantic.Lowering;
+import sample.interpreter.semantic.RealArithmetic;
+import sample.interpreter.semantic.Resolver;
+import sample.interpreter.semantic.StaticTypes;
+import sample.interpreter.semantic.SymbolTableElement;
+import sample.interpreter.util.DiagnosticCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sample.interpreter.closure.ClosureProgram.EMPTY;
+import static sample.interpreter.closure.ClosureProgram.FAILURE;
+import static sample.interpreter.semantic.StaticTypes.*;
+
+/**
+ * 把语法树编译为闭包树，语句的划分和每种写法的结果与 Semantic 逐条对应，
+ * 能编译的程序与 BytecodeCompiler 相同，每种写法的处理由 Lowering 决定
+ */
+public class ClosureCompiler {
+
+    private ClosureProgram program;
+    private StaticTypes types;
+    private Lowering lowering;
+    private Resolver resolver;
+
+    /**
+     * 当前编译的语句中声明的变量的最深层次，用于退出作用域时清空槽位
+     */
+    private int deepest;
+
+    /**
+     * 最近一次不能编译的原因
+     */
+    private String reason;
+
+    /**
+     * 编译整个程序
+     * @param root 没有词法和语法错误的语法树
+     * @return 闭包程序，程序中有不能编译的写法时返回 null
+     */
+    public ClosureProgram compile(TreeNode root) {
+        reason = null;
+        deepest = -1;
+        types = new StaticTypes(root);
+        lowering = new Lowering(types);
+        resolver = types.getResolver();
+        program = new ClosureProgram(frameSizes(resolver));
+        try {
+            program.setBody(statements(root, 0));
+        } catch (Unsupported e) {
+            reason = e.getMessage();
+            return null;
+        }
+        return program;
+    }
+
+    /**
+     * 编译按语法树执行到一半的循环，从下一次判断条件开始，由 ClosureProgram.execute(Host, frames)
+     * 在 Semantic 的槽位上接着执行；for 语句的初始化已经执行过，不再编译
+     * @param root 整个程序
+     * @param resolver Semantic 对整个程序做过的变量解析
+     * @param loop while 或 for 语句结点
+     * @param level 循环语句所在的语句块的层次
+     * @return 循环剩下的部分，有不能编译的写法时返回 null
+     */
+    public ClosureProgram compileLoop(TreeNode root, Resolver resolver, TreeNode loop, int level) {
+        reason = null;
+        deepest = -1;
+        this.resolver = resolver;
+        program = new ClosureProgram(frameSizes(resolver));
+        try {
+            types = new StaticTypes(resolver, root);
+            lowering = new Lowering(types);
+            program.setBody(ConstChars.FOR.equals(loop.getContent())
+                    ? forLoop(loop, level) : whileStatement(loop, level));
+        } catch (Unsupported e) {
+            reason = e.getMessage();
+            return null;
+        }
+        return program;
+    }
+
+    private static int[] frameSizes(Resolver resolver) {
+        int[] frameSizes = new int[resolver.getDepthCount()];
+        for (int depth = 0; depth < frameSizes.length; depth++) {
+            frameSizes[depth] = resolver.getFrameSize(depth);
+        }
+        return frameSizes;
+    }
+
+    /**
+     * 最近一次 compile 返回 null 的原因
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /*
+     * 语句
+     */
+
+    private Stmt statements(TreeNode root, int level) {
+        List<Stmt> list = new ArrayList<>();
+        for (int i = 0; i < root.getChildCount(); i++) {
+            TreeNode currentNode = root.getChildAt(i);
+            switch (currentNode.getContent()) {
+                case ConstChars.INT:
+                case ConstChars.REAL:
+                case ConstChars.BOOL:
+                case ConstChars.STRING:
+                    list.add(declare(currentNode));
+                    break;
+                case ConstChars.ASSIGN:
+                    list.add(guard(assign(currentNode)));
+                    break;
+                case ConstChars.FOR:
+                    list.add(forStatement(currentNode, level));
+                    break;
+                case ConstChars.IF:
+                    list.add(ifStatement(currentNode, level));
+                    break;
+                case ConstChars.WHILE:
+                    list.add(whileStatement(currentNode, level));
+                    break;
+                case ConstChars.READ:
+                    list.add(guard(read(currentNode.getChildAt(0))));
+                    break;
+                case ConstChars.WRITE:
+                    list.add(guard(write(currentNode.getChildAt(0))));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return block(list);
+    }
+
+    private static Stmt block(List<Stmt> list) {
+        switch (list.size()) {
+            case 0:
+                return () -> { };
+            case 1:
+                return list.get(0);
+            case 2:
+                Stmt first = list.get(0);
+                Stmt second = list.get(1);
+                return () -> {
+                    first.run();
+                    second.run();
+                };
+            default:
+                Stmt[] stmts = list.toArray(new Stmt[0]);
+                return () -> {
+                    for (Stmt stmt : stmts) {
+                        stmt.run();
+                    }
+                };
+        }
+    }
+
+    /**
+     * 语句中报告了错误时继续执行下一个语句
+     */
+    private static Stmt guard(Stmt stmt) {
+        return () -> {
+            try {
+                stmt.run();
+            } catch (Failure e) {
+                // 错误已经报告
+            }
+        };
+    }
+
+    /**
+     * 执行分支后清空分支中声明过变量的层次
+     */
+    private Stmt ifStatement(TreeNode root, int level) {
+        ClosureProgram p = program;
+        int outer = deepest;
+        deepest = -1;
+        Cond cond = condition(child(root, 0).getChildAt(0));
+        Stmt then = statements(child(root, 1), level + 1);
+        Stmt otherwise = root.getChildCount() == 3 ? statements(root.getChildAt(2), level + 2) : null;
+        int from = level + 1;
+        int to = deepest;
+        deepest = Math.max(outer, deepest);
+        if (otherwise == null && to < from) {
+            return () -> {
+                if (cond.test()) {
+                    then.run();
+                }
+            };
+        }
+        return () -> {
+            if (cond.test()) {
+                then.run();
+            } else if (otherwise != null) {
+                otherwise.run();
+            }
+            if (to >= from) {
+                p.clear(from, to);
+            }
+        };
+    }
+
+    /**
+     * 每次执行循环体后清空循环体中声明过变量的层次
+     */
+    private Stmt whileStatement(TreeNode root, int level) {
+        ClosureProgram p = program;
+        int outer = deepest;
+        deepest = -1;
+        Cond cond = condition(child(root, 0).getChildAt(0));
+        Stmt body = statements(child(root, 1), level + 1);
+        int from = level + 1;
+        int to = deepest;
+        deepest = Math.max(outer, deepest);
+        if (to < from) {
+            return () -> {
+                while (cond.test()) {
+                    body.run();
+                }
+            };
+        }
+        return () -> {
+            while (cond.test()) {
+                body.run();
+                p.clear(from, to);
+            }
+        };
+    }
+
+    /**
+     * 初始化只执行一次，之后的部分由 forLoop 编译
+     */
+    private Stmt forStatement(TreeNode root, int level) {
+        Stmt init = guard(assign(child(child(root, 0), 0)));
+        Stmt loop = forLoop(root, level);
+        return () -> {
+            init.run();
+            loop.run();
+        };
+    }
+
+    /**
+     * for 语句初始化之后的部分
+     */
+    private Stmt forLoop(TreeNode root, int level) {
+        ClosureProgram p = program;
+        int outer = deepest;
+        deepest = -1;
+        Cond cond = condition(child(child(root, 1), 0));
+        Stmt body = statements(child(root, 3), level + 1);
+        Stmt change = guard(assign(child(child(root, 2), 0)));
+        int from = level + 1;
+        int to = deepest;
+        deepest = Math.max(outer, deepest);
+        return () -> {
+            while (cond.test()) {
+                body.run();
+                if (to >= from) {
+                    p.clear(from, to);
+                }
+                change.run();
+            }
+        };
+    }
+
+    /**
+     * 声明语句中的变量依次放入槽位，一个声明出错时不再声明后面的变量
+     */
+    private Stmt declare(TreeNode root) {
+        String kind = root.getContent();
+        List<Stmt> list = new ArrayList<>();
+        int index = 0;
+        while (index < root.getChildCount()) {
+            TreeNode temp = root.getChildAt(index);
+            int binding = types.declare(temp, kind);
+            deepest = Math.max(deepest, resolver.getDepth(binding));
+            index++;
+            if (temp.getChildCount() == 0) {
+                Init init = null;
+                if (index < root.getChildCount()
+                        && root.getChildAt(index).getContent().equals(ConstChars.ASSIGN)) {
+                    init = initializer(kind, root.getChildAt(index).getChildAt(0));
+                    index++;
+                }
+                list.add(declaration(binding, temp.getRowNum(), init));
+            } else {
+                IntExpr size = arraySize(temp.getChildAt(0));
+                int row = root.getRowNum();
+                ClosureProgram p = program;
+                list.add(declaration(binding, temp.getRowNum(), element -> {
+                    long n = size.eval();
+                    if (n == EMPTY) {
+                        throw p.fail(DiagnosticCode.ARRAY_SIZE_NOT_INTEGER, row);
+                    }
+                    if (n < 1) {
+                        throw p.fail(DiagnosticCode.ARRAY_SIZE_NOT_POSITIVE, row);
+                    }
+                    element.allocate((int) n);
+                }));
+            }
+        }
+        return guard(block(list));
+    }
+
+    /**
+     * 当前作用域中已经声明时报错，否则新建变量、赋初值后放入它的槽位
+     */
+    private Stmt declaration(int binding, int row, Init init) {
+        ClosureProgram p = program;
+        int depth = resolver.getDepth(binding);
+        int slot = resolver.getSlot(binding);
+        String name = types.getName(binding);
+        int symbol = types.getSymbol(binding);
+        String kind = types.getKind(binding);
+        return () -> {
+            SymbolTableElement[] frame = p.frames[depth];
+            if (frame[slot] != null) {
+                throw p.fail(DiagnosticCode.REDECLARED, row, name);
+            }
+            SymbolTableElement element = new SymbolTableElement(name, symbol, -1, kind, row, depth);
+            if (init != null) {
+                init.apply(element);
+            }
+            frame[slot] = element;
+        };
+    }
+
+    /**
+     * 按 Lowering.initializer 的处理给新建的变量赋初值
+     * @return 不赋初值时为 null
+     */
+    private Init initializer(String kind, TreeNode valueNode) {
+        ClosureProgram p = program;
+        String value = valueNode.getContent();
+        switch (lowering.initializer(kind, valueNode)) {
+            case Lowering.INT_CONSTANT:
+                return element -> element.setIntValue(value);
+            case Lowering.REAL_CONSTANT: {
+                double real = parseReal(valueNode);
+                return element -> element.setRealValue(real);
+            }
+            case Lowering.REAL_TEXT: {
+                double real = parseReal(valueNode);
+                return element -> element.setRealValue(real, value);
+            }
+            case Lowering.BOOL_CONSTANT: {
+                boolean b = Lowering.boolConstant(valueNode);
+                return element -> element.setBoolValue(b);
+            }
+            case Lowering.STRING_CONSTANT:
+                return element -> element.setStringValue(value);
+            case Lowering.COPY: {
+                Access source = use(valueNode);
+                return element -> element.copyValue(source.get());
+            }
+            case Lowering.COPY_REAL: {
+                Access source = use(valueNode);
+                return element -> element.copyRealValue(source.get());
+            }
+            case Lowering.BOOL_FROM_INT: {
+                Access source = use(valueNode);
+                return element -> element.setBoolValue(source.get().getIntValue() > 0);
+            }
+            case Lowering.STRING_NAME: {
+                Access source = use(valueNode);
+                return element -> {
+                    source.get();
+                    element.setStringValue(value);
+                };
+            }
+            case Lowering.INT_ARITHMETIC: {
+                IntExpr expr = intExpression(valueNode);
+                return element -> {
+                    long result = expr.eval();
+                    if (result == EMPTY) {
+                        throw FAILURE;
+                    }
+                    element.setIntValue(result);
+                };
+            }
+            case Lowering.INT_TO_REAL: {
+                IntExpr expr = intExpression(valueNode);
+                return element -> {
+                    long result = expr.eval();
+                    if (result != EMPTY) {
+                        element.setRealValue(result);
+                    }
+                };
+            }
+            case Lowering.REAL_ARITHMETIC: {
+                RealExpr expr = realExpression(valueNode, types.classify(valueNode));
+                return element -> {
+                    double result = expr.eval();
+                    if (!p.textOnly) {
+                        element.setRealValue(result, p.text);
+                    }
+                };
+            }
+            case Lowering.COMPARISON: {
+                Cond cond = condition(valueNode);
+                return element -> element.setBoolValue(cond.test());
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 数组大小：整数常量或整数表达式
+     */
+    private IntExpr arraySize(TreeNode node) {
+        if (lowering.arraySize(node) == Lowering.INT_CONSTANT) {
+            long size = parseInt(node);
+            return () -> size;
+        }
+        return intExpression(node);
+    }
+
+    /**
+     * 先查找被赋值的变量和下标，再按 Lowering.assignment 的处理计算右半部分
+     */
+    private Stmt assign(TreeNode root) {
+        ClosureProgram p = program;
+        TreeNode node1 = child(root, 0);
+        String kind1 = types.kindOf(node1);
+        Access target = access(node1, false);
+        TreeNode node2 = child(root, 1);
+        String value = node2.getContent();
+        switch (lowering.assignment(kind1, node1, node2)) {
+            case Lowering.INT_CONSTANT:
+                return () -> target.get().setIntValue(p.index, value);
+            case Lowering.REAL_CONSTANT: {
+                double real = parseReal(node2);
+                return () -> target.get().setRealValue(p.index, real);
+            }
+            case Lowering.REAL_TEXT: {
+                double real = parseReal(node2);
+                return () -> target.get().setRealValue(p.index, real, value);
+            }
+            case Lowering.BOOL_CONSTANT: {
+                boolean b = Lowering.boolConstant(node2);
+                return () -> target.get().setBoolValue(p.index, b);
+            }
+            case Lowering.STRING_CONSTANT:
+                return () -> target.get().setStringValue(p.index, value);
+            case Lowering.COPY_REAL: {
+                Access source = use(node2);
+                return () -> {
+                    SymbolTableElement element = target.get();
+                    int index = p.index;
+                    SymbolTableElement from = source.get();
+                    element.copyRealValue(index, from, p.index);
+                };
+            }
+            case Lowering.COPY: {
+                Access source = use(node2);
+                if (ConstChars.STRING.equals(kind1)) {
+                    return () -> {
+                        SymbolTableElement element = target.get();
+                        int index = p.index;
+                        SymbolTableElement from = source.get();
+                        element.setStringValue(index, from.getStringValue(p.index));
+                    };
+                }
+                return () -> {
+                    SymbolTableElement element = target.get();
+                    int index = p.index;
+                    SymbolTableElement from = source.get();
+                    element.copyValue(index, from, p.index);
+                };
+            }
+            case Lowering.INT_ARITHMETIC: {
+                IntExpr expr = intExpression(node2);
+                return () -> {
+                    SymbolTableElement element = target.get();
+                    int index = p.index;
+                    long result = expr.eval();
+                    if (result != EMPTY) {
+                        element.setIntValue(index, result);
+                    }
+                };
+            }
+            case Lowering.INT_TO_REAL: {
+                IntExpr expr = intExpression(node2);
+                return () -> {
+                    SymbolTableElement element = target.get();
+                    int index = p.index;
+                    long result = expr.eval();
+                    if (result != EMPTY) {
+                        element.setRealValue(index, result);
+                    }
+                };
+            }
+            case Lowering.REAL_ARITHMETIC: {
+                RealExpr expr = realExpression(node2, types.classify(node2));
+                return () -> {
+                    SymbolTableElement element = target.get();
+                    int index = p.index;
+                    double result = expr.eval();
+                    if (!p.textOnly) {
+                        element.setRealValue(index, result, p.text);
+                    }
+                };
+            }
+            case Lowering.COMPARISON: {
+                Cond cond = condition(node2);
+                return () -> {
+                    SymbolTableElement element = target.get();
+                    int index = p.index;
+                    element.setBoolValue(index, cond.test());
+                };
+            }
+            default:
+                return target::get;
+        }
+    }
+
+    /**
+     * 由 Host 读入并写入变量，被读入的变量不需要已经初始化
+     */
+    private Stmt read(TreeNode root) {
+        ClosureProgram p = program;
+        types.kindOf(root);
+        Access target = access(root, false);
+        String name = root.getContent();
+        return () -> {
+            SymbolTableElement element = target.get();
+            p.host.read(element, p.index, name);
+        };
+    }
+
+    /**
+     * 按 Lowering.write 的处理输出
+     */
+    private Stmt write(TreeNode root) {
+        ClosureProgram p = program;
+        switch (lowering.write(root)) {
+            case Lowering.CONSTANT: {
+                String text = root.getContent() + "\n";
+                return () -> p.host.printConstant(text);
+            }
+            case Lowering.VARIABLE: {
+                Access source = use(root);
+                return () -> {
+                    SymbolTableElement element = source.get();
+                    p.host.write(element, p.index);
+                };
+            }
+            case Lowering.INT_ARITHMETIC: {
+                IntExpr expr = intExpression(root);
+                return () -> {
+                    long result = expr.eval();
+                    p.host.print(result == EMPTY ? "\n" : result + "\n");
+                };
+            }
+            case Lowering.REAL_ARITHMETIC: {
+                RealExpr expr = realExpression(root, types.classify(root));
+                return () -> {
+                    expr.eval();
+                    p.host.print(p.text + "\n");
+                };
+            }
+            default:
+                return () -> { };
+        }
+    }
+
+    /*
+     * 条件和表达式
+     */
+
+    /**
+     * 按 Lowering.condition 的处理计算条件，出错时为假
+     */
+    private Cond condition(TreeNode root) {
+        switch (lowering.condition(root)) {
+            case Lowering.BOOL_CONSTANT: {
+                boolean b = Lowering.boolConstant(root);
+                return () -> b;
+            }
+            case Lowering.VARIABLE: {
+                ClosureProgram p = program;
+                Access source = use(root);
+                return guard(() -> source.get().getBoolValue(p.index));
+            }
+            case Lowering.COMPARISON: {
+                RealExpr left = comparand(root.getChildAt(0));
+                RealExpr right = comparand(root.getChildAt(1));
+                // 由空值转换得到的 NaN 与任何值比较都为假
+                switch (root.getContent()) {
+                    case ConstChars.GT:
+                        return guard(() -> left.eval() > right.eval());
+                    case ConstChars.LT:
+                        return guard(() -> left.eval() < right.eval());
+                    case ConstChars.EQUAL:
+                        return guard(() -> left.eval() == right.eval());
+                    default:
+                        return guard(() -> {
+                            double a = left.eval();
+                            double b = right.eval();
+                            return a != b && !Double.isNaN(a) && !Double.isNaN(b);
+                        });
+                }
+            }
+            default:
+                return () -> false;
+        }
+    }
+
+    private static Cond guard(Cond cond) {
+        return () -> {
+            try {
+                return cond.test();
+            } catch (Failure e) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 按 Lowering.comparand 的处理把比较的对象都按浮点数计算
+     */
+    private RealExpr comparand(TreeNode node) {
+        switch (lowering.comparand(node)) {
+            case Lowering.REAL_CONSTANT: {
+                double value = parseReal(node);
+                return () -> value;
+            }
+            case Lowering.VARIABLE: {
+                if (node.getChildCount() == 0) {
+                    return loadReal(node);
+                }
+                ClosureProgram p = program;
+                Access source = use(node);
+                return () -> source.get().getRealValue(p.index);
+            }
+            case Lowering.INT_ARITHMETIC:
+                return toReal(intExpression(node));
+            default:
+                return realExpression(node, types.classify(node));
+        }
+    }
+
+    /**
+     * 整数运算，运算对象是空值或超出 int 范围时与原来一样抛出 NumberFormatException
+     */
+    private IntExpr intExpression(TreeNode node) {
+        IntExpr left = intOperand(node.getChildAt(0));
+        IntExpr right = intOperand(node.getChildAt(1));
+        switch (node.getContent()) {
+            case ConstChars.PLUS:
+                return () -> {
+                    long a = left.eval();
+                    long b = right.eval();
+                    if (a != (int) a || b != (int) b) {
+                        throw new NumberFormatException("not an integer operand");
+                    }
+                    return (int) a + (int) b;
+                };
+            case ConstChars.MINUS:
+                return () -> {
+                    long a = left.eval();
+                    long b = right.eval();
+                    if (a != (int) a || b != (int) b) {
+                        throw new NumberFormatException("not an integer operand");
+                    }
+                    return (int) a - (int) b;
+                };
+            case ConstChars.TIMES:
+                return () -> {
+                    long a = left.eval();
+                    long b = right.eval();
+                    if (a != (int) a || b != (int) b) {
+                        throw new NumberFormatException("not an integer operand");
+                    }
+                    return (int) a * (int) b;
+                };
+            default:
+                ClosureProgram p = program;
+                int row = node.getRowNum();
+                return () -> {
+                    long a = left.eval();
+                    long b = right.eval();
+                    if (a != (int) a || b != (int) b) {
+                        throw new NumberFormatException("not an integer operand");
+                    }
+                    if (b == 0) {
+                        p.fail(DiagnosticCode.DIVIDE_BY_ZERO, row);
+                        return EMPTY;
+                    }
+                    return (int) a / (int) b;
+                };
+        }
+    }
+
+    private IntExpr intOperand(TreeNode child) {
+        if ("运算符".equals(child.getNodeType())) {
+            return intExpression(child);
+        } else if ("整数".equals(child.getNodeType())) {
+            long value = parseInt(child);
+            return () -> value;
+        }
+        Access source = use(child);
+        return () -> source.get().getLongValue();
+    }
+
+    /**
+     * 实数运算，mode 为 MODE_DYNAMIC 时子表达式的结果都只能转换为浮点数则按整数运算，与原来一样抛出异常
+     */
+    private RealExpr realExpression(TreeNode node, int mode) {
+        ClosureProgram p = program;
+        boolean[] realChild = new boolean[2];
+        RealExpr[] operands = new RealExpr[2];
+        for (int i = 0; i < 2; i++) {
+            TreeNode child = node.getChildAt(i);
+            String type = child.getNodeType();
+            if ("运算符".equals(type)) {
+                int childMode = types.classify(child);
+                if (childMode == MODE_INT) {
+                    operands[i] = toReal(intExpression(child));
+                } else {
+                    operands[i] = realExpression(child, childMode);
+                    realChild[i] = true;
+                }
+            } else if ("标识符".equals(type)) {
+                operands[i] = loadReal(child);
+            } else {
+                double value = parseReal(child);
+                operands[i] = () -> value;
+            }
+        }
+        RealExpr left = operands[0];
+        RealExpr right = operands[1];
+        boolean dynamic = mode == MODE_DYNAMIC;
+        boolean leftReal = realChild[0];
+        boolean rightReal = realChild[1];
+        int operator = RealArithmetic.operator(node.getContent());
+        return () -> {
+            double a = left.eval();
+            boolean aText = leftReal && p.textOnly;
+            double b = right.eval();
+            boolean bText = rightReal && p.textOnly;
+            if (dynamic && !(leftReal && !aText) && !(rightReal && !bText)) {
+                // 子表达式的结果都只能转换为浮点数时按整数运算，原来在这里抛出异常
+                throw new NumberFormatException("not an integer operand");
+            }
+            if (Double.isNaN(a) || Double.isNaN(b)) {
+                throw new NumberFormatException("empty String");
+            }
+            float result = RealArithmetic.operate(operator, a, b);
+            String text = String.valueOf(result);
+            p.text = text;
+            p.textOnly = !Float.isFinite(result) || text.indexOf('E') >= 0;
+            return Double.parseDouble(text);
+        };
+    }
+
+    /**
+     * 整数运算的结果转换为浮点数，空值转换为 NaN
+     */
+    private static RealExpr toReal(IntExpr expr) {
+        return () -> {
+            long value = expr.eval();
+            return value == EMPTY ? Double.NaN : value;
+        };
+    }
+
+    private RealExpr loadReal(TreeNode node) {
+        Access source = use(node);
+        return () -> source.get().getRealValue();
+    }
+
+    /*
+     * 变量
+     */
+
+    /**
+     * 与 Semantic.checkID 相同：查找变量、计算下标、检查是否已经初始化
+     */
+    private Access use(TreeNode node) {
+        types.kindOf(node);
+        return access(node, true);
+    }
+
+    /**
+     * 查找变量，数组元素还要计算下标并检查范围
+     * @param initialized 是否要求已经初始化
+     */
+    private Access access(TreeNode node, boolean initialized) {
+        ClosureProgram p = program;
+        Lookup lookup = lookup(node.getBinding());
+        String name = node.getContent();
+        int row = node.getRowNum();
+        if (node.getChildCount() == 0) {
+            return () -> {
+                SymbolTableElement element = lookup.find();
+                if (element == null) {
+                    throw p.fail(DiagnosticCode.UNDECLARED, row, name);
+                }
+                if (initialized && !element.isInitialized()) {
+                    throw p.fail(DiagnosticCode.UNINITIALIZED, row, name);
+                }
+                p.index = -1;
+                return element;
+            };
+        }
+        TreeNode indexNode = node.getChildAt(0);
+        IntExpr index = index(indexNode);
+        int indexRow = indexNode.getRowNum();
+        return () -> {
+            SymbolTableElement element = lookup.find();
+            if (element == null) {
+                throw p.fail(DiagnosticCode.UNDECLARED, row, name);
+            }
+            long position = index.eval();
+            if (position == EMPTY) {
+                throw p.fail(DiagnosticCode.ARRAY_INDEX_NOT_INTEGER, indexRow);
+            }
+            if (position < 0) {
+                throw p.fail(DiagnosticCode.ARRAY_INDEX_NEGATIVE, indexRow);
+            }
+            if (position >= element.getArrayElementsNum()) {
+                throw p.fail(DiagnosticCode.ARRAY_INDEX_OUT_OF_BOUNDS, indexRow);
+            }
+            if (initialized && !element.isInitialized((int) position)) {
+                throw p.fail(DiagnosticCode.UNINITIALIZED, row, name + "@" + position);
+            }
+            p.index = (int) position;
+            return element;
+        };
+    }
+
+    /**
+     * 按 Lowering.index 的处理计算下标
+     */
+    private IntExpr index(TreeNode node) {
+        switch (lowering.index(node)) {
+            case Lowering.INT_CONSTANT: {
+                long value = parseInt(node);
+                return () -> value;
+            }
+            case Lowering.VARIABLE: {
+                Access source = access(node, true);
+                return () -> source.get().getIntValue();
+            }
+            default:
+                return intExpression(node);
+        }
+    }
+
+    /**
+     * 变量按槽位查找，槽位为空（声明没有执行）时继续查找被它遮盖的外层同名变量
+     */
+    private Lookup lookup(int binding) {
+        ClosureProgram p = program;
+        if (binding < 0) {
+            return () -> null;
+        }
+        int depth = resolver.getDepth(binding);
+        int slot = resolver.getSlot(binding);
+        if (resolver.getOuter(binding) < 0) {
+            return () -> p.frames[depth][slot];
+        }
+        List<int[]> chain = new ArrayList<>();
+        for (int outer = binding; outer >= 0; outer = resolver.getOuter(outer)) {
+            chain.add(new int[] {resolver.getDepth(outer), resolver.getSlot(outer)});
+        }
+        int[][] places = chain.toArray(new int[0][]);
+        return () -> {
+            for (int[] place : places) {
+                SymbolTableElement element = p.frames[place[0]][place[1]];
+                if (element != null) {
+                    return element;
+                }
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,156 @@
+package sample.interpreter.closure;
+
+import sample.interpreter.semantic.SymbolTableElement;
+import sample.interpreter.util.DiagnosticCode;
+import sample.interpreter.vm.Host;
+
+import java.util.Arrays;
+
+/**
+ * 编译得到的闭包树和它运行时的状态
+ * 每个语句、表达式和条件编译为一个对象，运算符、变量的层次和槽位、常量和类型都在编译时确定，
+ * 执行时只有虚方法调用，不再按结点的内容和类型分支
+ */
+public class ClosureProgram {
+
+    /**
+     * 语句
+     */
+    interface Stmt {
+        void run();
+    }
+
+    /**
+     * 整数运算或整型变量的值，超出 int 范围的变量保留 long 值，空值为 EMPTY
+     */
+    interface IntExpr {
+        long eval();
+    }
+
+    /**
+     * 浮点数值，由空值转换得到时为 NaN；实数运算还把写法放在 text 中，只能转换为浮点数时 textOnly 为 true
+     */
+    interface RealExpr {
+        double eval();
+    }
+
+    /**
+     * 条件
+     */
+    interface Cond {
+        boolean test();
+    }
+
+    /**
+     * 按槽位查找变量，没有找到时返回 null
+     */
+    interface Lookup {
+        SymbolTableElement find();
+    }
+
+    /**
+     * 找到变量并完成检查，数组元素的下标放在 index 中，不是数组元素时为 -1
+     */
+    interface Access {
+        SymbolTableElement get();
+    }
+
+    /**
+     * 声明时为新建的变量赋初值
+     */
+    interface Init {
+        void apply(SymbolTableElement element);
+    }
+
+    /**
+     * 除数为零得到的空值，整数运算的结果都在 int 范围内，不会与它混淆
+     */
+    static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * 报告语义错误后结束当前语句，没有栈信息，可以重复使用
+     */
+    static final Failure FAILURE = new Failure();
+
+    private final int[] frameSizes;
+    private Stmt body;
+
+    /*
+     * 运行时的状态
+     */
+    SymbolTableElement[][] frames;
+    Host host;
+    /**
+     * 最近一次 Access 得到的下标
+     */
+    int index;
+    /**
+     * 最近一次实数运算结果的写法和它是否只能转换为浮点数
+     */
+    String text;
+    boolean textOnly;
+
+    ClosureProgram(int[] frameSizes) {
+        this.frameSizes = frameSizes;
+    }
+
+    void setBody(Stmt body) {
+        this.body = body;
+    }
+
+    /**
+     * 从头执行程序
+     * @param host 输入输出和报错
+     */
+    public void execute(Host host) {
+        SymbolTableElement[][] frames = new SymbolTableElement[frameSizes.length][];
+        for (int depth = 0; depth < frames.length; depth++) {
+            frames[depth] = new SymbolTableElement[frameSizes[depth]];
+        }
+        execute(host, frames);
+    }
+
+    /**
+     * 在已有的槽位上执行，用于接着执行 Semantic 按语法树执行到一半的循环
+     * @param host 输入输出和报错
+     * @param frames 按层次和槽位存放的变量，执行后仍保留其中的变量
+     */
+    public void execute(Host host, SymbolTableElement[][] frames) {
+        this.host = host;
+        this.frames = frames;
+        text = null;
+        textOnly = false;
+        try {
+            body.run();
+        } finally {
+            this.host = null;
+            this.frames = null;
+        }
+    }
+
+    /**
+     * 报告语义错误
+     * @return 结束当前语句的异常
+     */
+    Failure fail(DiagnosticCode code, int line, Object... args) {
+        host.error(code, line, args);
+        return FAILURE;
+    }
+
+    /**
+     * 退出作用域，清空这些层次的槽位
+     */
+    void clear(int from, int to) {
+        for (int depth = from; depth <= to; depth++) {
+            Arrays.fill(frames[depth], null);
+        }
+    }
+
+    static final class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Failure() {
+            super(null, null, false, false);
+        }
+    }
+}
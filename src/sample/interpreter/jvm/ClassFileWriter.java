@@ -0,0 +1,547 @@
+package sample.interpreter.jvm;
+
+import sample.interpreter.semantic.StaticTypes.Unsupported;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 生成只有静态方法的类文件，只包含 JvmCompiler 用到的常量和指令，方法逐个写出，共用一个常量池。
+ * 类文件版本为 49（Java 5），由类型推导的校验器校验，不需要生成 StackMapTable；
+ * 操作数栈的高度在写出每条指令时由调用者给出的变化量累计，跳转目标处的高度记录在标号中
+ */
+final class ClassFileWriter {
+
+    /*
+     * 用到的指令
+     */
+    static final int ACONST_NULL = 1;
+    static final int ICONST_0 = 3;
+    static final int LCONST_0 = 9;
+    static final int DCONST_0 = 14;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int LDC = 18;
+    static final int LDC_W = 19;
+    static final int LDC2_W = 20;
+    static final int ILOAD = 21;
+    static final int LLOAD = 22;
+    static final int DLOAD = 24;
+    static final int ALOAD = 25;
+    static final int IALOAD = 46;
+    static final int LALOAD = 47;
+    static final int DALOAD = 49;
+    static final int AALOAD = 50;
+    static final int BALOAD = 51;
+    static final int ISTORE = 54;
+    static final int LSTORE = 55;
+    static final int DSTORE = 57;
+    static final int ASTORE = 58;
+    static final int IASTORE = 79;
+    static final int LASTORE = 80;
+    static final int DASTORE = 82;
+    static final int AASTORE = 83;
+    static final int BASTORE = 84;
+    static final int POP = 87;
+    static final int POP2 = 88;
+    static final int I2L = 133;
+    static final int L2D = 138;
+    static final int LCMP = 148;
+    static final int IFEQ = 153;
+    static final int IFNE = 154;
+    static final int IF_ICMPEQ = 159;
+    static final int GOTO = 167;
+    static final int RETURN = 177;
+    static final int GETFIELD = 180;
+    static final int INVOKEVIRTUAL = 182;
+    static final int INVOKESTATIC = 184;
+    static final int NEWARRAY = 188;
+    static final int ANEWARRAY = 189;
+    static final int ARRAYLENGTH = 190;
+    static final int ATHROW = 191;
+    static final int CHECKCAST = 192;
+    static final int IFNULL = 198;
+    static final int WIDE = 196;
+
+    /**
+     * newarray 的元素类型
+     */
+    static final int T_BOOLEAN = 4;
+    static final int T_DOUBLE = 7;
+    static final int T_LONG = 11;
+
+    /**
+     * 跳转的偏移量是有符号的 16 位整数，更长的方法不生成
+     */
+    private static final int MAX_CODE = 32767;
+
+    /**
+     * 跳转目标，记录位置、到达时的栈高度和引用它的跳转指令
+     */
+    static final class Label {
+        private int position = -1;
+        private int depth = -1;
+        private final List<Integer> references = new ArrayList<>(2);
+    }
+
+    /*
+     * 常量池
+     */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int constantCount = 1;
+
+    /*
+     * 方法体
+     */
+    private byte[] code = new byte[1024];
+    private int size;
+    private int depth;
+    private int maxStack;
+    private int maxLocals;
+    /**
+     * 异常处理：范围的起止、处理代码的标号和捕获的类
+     */
+    private final List<Object[]> handlers = new ArrayList<>();
+    /**
+     * 被跳转指令引用的标号，方法结束时填写偏移量
+     */
+    private final List<Label> labels = new ArrayList<>();
+
+    /**
+     * 已经结束的方法和其中最长的方法体
+     */
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int methodCount;
+    private int largest;
+
+    /**
+     * 分配局部变量
+     * @param words 占用的字数，long 和 double 为 2
+     * @return 编号
+     */
+    int local(int words) {
+        int local = maxLocals;
+        maxLocals += words;
+        if (maxLocals > 65535) {
+            throw new Unsupported("变量过多");
+        }
+        return local;
+    }
+
+    /**
+     * 不带操作数的指令
+     * @param delta 操作数栈高度的变化，以字为单位
+     */
+    void op(int opcode, int delta) {
+        u1(opcode);
+        stack(delta);
+    }
+
+    void push(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+            stack(1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(value);
+            stack(1);
+        } else {
+            ldc(number(3, Integer.toString(value), value, 1), 1);
+        }
+    }
+
+    void push(long value) {
+        if (value == 0 || value == 1) {
+            op(LCONST_0 + (int) value, 2);
+        } else {
+            u1(LDC2_W);
+            u2(number(5, Long.toString(value), value, 2));
+            stack(2);
+        }
+    }
+
+    void push(double value) {
+        if (Double.doubleToRawLongBits(value) == 0) {
+            op(DCONST_0, 2);
+        } else {
+            u1(LDC2_W);
+            long bits = Double.doubleToRawLongBits(value);
+            u2(number(6, Long.toString(bits), bits, 2));
+            stack(2);
+        }
+    }
+
+    void push(String value) {
+        Integer index = constants.get("8:" + value);
+        if (index == null) {
+            index = entry(8, value, utf8(value), -1);
+        }
+        ldc(index, 1);
+    }
+
+    private void ldc(int index, int delta) {
+        if (index < 256) {
+            u1(LDC);
+            u1(index);
+        } else {
+            u1(LDC_W);
+            u2(index);
+        }
+        stack(delta);
+    }
+
+    /**
+     * 读写局部变量
+     * @param opcode xLOAD 或 xSTORE
+     */
+    void local(int opcode, int local) {
+        int words = opcode == LLOAD || opcode == DLOAD || opcode == LSTORE || opcode == DSTORE ? 2 : 1;
+        if (local > 255) {
+            u1(WIDE);
+            u1(opcode);
+            u2(local);
+        } else {
+            u1(opcode);
+            u1(local);
+        }
+        stack(opcode < ISTORE ? words : -words);
+    }
+
+    void newArray(int type) {
+        u1(NEWARRAY);
+        u1(type);
+    }
+
+    void newArray(String className) {
+        u1(ANEWARRAY);
+        u2(classRef(className));
+    }
+
+    /**
+     * @param className 内部形式的类名，数组为描述符
+     */
+    void checkCast(String className) {
+        u1(CHECKCAST);
+        u2(classRef(className));
+    }
+
+    void getField(String owner, String name, String descriptor) {
+        u1(GETFIELD);
+        u2(member(9, owner, name, descriptor));
+        stack(words(descriptor.charAt(0)) - 1);
+    }
+
+    void invokeStatic(String owner, String name, String descriptor) {
+        u1(INVOKESTATIC);
+        u2(member(10, owner, name, descriptor));
+        stack(delta(descriptor));
+    }
+
+    void invokeVirtual(String owner, String name, String descriptor) {
+        u1(INVOKEVIRTUAL);
+        u2(member(10, owner, name, descriptor));
+        stack(delta(descriptor) - 1);
+    }
+
+    /**
+     * 跳转，目标处的栈高度为跳转后的高度
+     */
+    void jump(int opcode, Label label) {
+        int at = size;
+        u1(opcode);
+        u2(0);
+        if (opcode == IFEQ || opcode == IFNE || opcode == IFNULL) {
+            stack(-1);
+        } else if (opcode == IF_ICMPEQ) {
+            stack(-2);
+        }
+        label.depth = depth;
+        if (label.references.isEmpty()) {
+            labels.add(label);
+        }
+        label.references.add(at);
+    }
+
+    void place(Label label) {
+        label.position = size;
+        if (label.depth >= 0) {
+            depth = label.depth;
+        } else {
+            label.depth = depth;
+        }
+    }
+
+    /**
+     * 放置异常处理代码的标号，到达时栈上只有异常对象
+     */
+    void placeHandler(Label label) {
+        label.depth = 1;
+        place(label);
+        maxStack = Math.max(maxStack, 1);
+    }
+
+    /**
+     * 在 [start, end) 中抛出 type 类型的异常时转到 handler，内层的范围应当先加入
+     */
+    void handler(Label start, Label end, Label handler, String type) {
+        if (start.position < end.position) {
+            handlers.add(new Object[] {start.position, end.position, handler, classRef(type)});
+        }
+    }
+
+    /**
+     * 当前方法体的字节数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 已经结束的方法中最长的方法体的字节数
+     */
+    int largest() {
+        return largest;
+    }
+
+    /**
+     * 结束当前方法，之后写出的指令属于下一个方法
+     * @param method 静态方法名
+     * @param descriptor 静态方法的描述符
+     */
+    void endMethod(String method, String descriptor) {
+        if (size > MAX_CODE) {
+            throw new Unsupported("程序过长");
+        }
+        for (Label label : labels) {
+            for (int at : label.references) {
+                int offset = label.position - at;
+                code[at + 1] = (byte) (offset >> 8);
+                code[at + 2] = (byte) offset;
+            }
+        }
+        int methodName = utf8(method);
+        int methodDescriptor = utf8(descriptor);
+        int codeName = utf8("Code");
+        try {
+            DataOutputStream out = new DataOutputStream(methods);
+            // ACC_PUBLIC | ACC_STATIC
+            out.writeShort(0x0009);
+            out.writeShort(methodName);
+            out.writeShort(methodDescriptor);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + size + 8 * handlers.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(size);
+            out.write(code, 0, size);
+            out.writeShort(handlers.size());
+            for (Object[] handler : handlers) {
+                out.writeShort((Integer) handler[0]);
+                out.writeShort((Integer) handler[1]);
+                out.writeShort(((Label) handler[2]).position);
+                out.writeShort((Integer) handler[3]);
+            }
+            out.writeShort(0);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methodCount++;
+        largest = Math.max(largest, size);
+        size = 0;
+        depth = 0;
+        maxStack = 0;
+        maxLocals = 0;
+        handlers.clear();
+        labels.clear();
+    }
+
+    /**
+     * 生成类文件，包含所有已经结束的方法
+     * @param className 内部形式的类名
+     */
+    byte[] toByteArray(String className) {
+        if (constantCount > 65535) {
+            throw new Unsupported("常量过多");
+        }
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(constantCount);
+            poolOut.flush();
+            pool.writeTo(out);
+            // ACC_FINAL | ACC_SUPER
+            out.writeShort(0x0030);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            out.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * 常量
+     */
+
+    /**
+     * 整数、long 和 double 常量，long 和 double 占两项
+     * @param bits 整数值或 double 的二进制表示
+     */
+    private int number(int tag, String key, long bits, int slots) {
+        Integer index = constants.get(tag + ":" + key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.write(tag);
+            if (slots == 1) {
+                poolOut.writeInt((int) bits);
+            } else {
+                poolOut.writeLong(bits);
+            }
+            poolOut.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        index = constantCount;
+        constantCount += slots;
+        constants.put(tag + ":" + key, index);
+        return index;
+    }
+
+    private int utf8(String value) {
+        Integer index = constants.get("1:" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.write(1);
+            poolOut.writeUTF(value);
+            poolOut.flush();
+        } catch (IOException e) {
+            throw new Unsupported("常量过长");
+        }
+        index = constantCount++;
+        constants.put("1:" + value, index);
+        return index;
+    }
+
+    private int classRef(String name) {
+        Integer index = constants.get("7:" + name);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        return entry(7, name, nameIndex, -1);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        String key = owner + "." + name + descriptor;
+        Integer index = constants.get(tag + ":" + key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return entry(tag, key, ownerIndex, nameAndType);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = name + ":" + descriptor;
+        Integer index = constants.get("12:" + key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return entry(12, key, nameIndex, descriptorIndex);
+    }
+
+    /**
+     * 只引用其他常量的项，引用的常量已经写出
+     */
+    private int entry(int tag, String key, int first, int second) {
+        pool.write(tag);
+        pool.write(first >> 8);
+        pool.write(first);
+        if (second >= 0) {
+            pool.write(second >> 8);
+            pool.write(second);
+        }
+        int index = constantCount++;
+        constants.put(tag + ":" + key, index);
+        return index;
+    }
+
+    /*
+     * 代码
+     */
+
+    private void u1(int value) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    private void stack(int delta) {
+        depth += delta;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    private static int words(char type) {
+        return type == 'J' || type == 'D' ? 2 : type == 'V' ? 0 : 1;
+    }
+
+    /**
+     * 调用静态方法时栈高度的变化：弹出参数，压入返回值
+     */
+    private static int delta(String descriptor) {
+        int delta = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char type = descriptor.charAt(i);
+            delta -= words(type);
+            if (type == 'L') {
+                i = descriptor.indexOf(';', i);
+            } else if (type == '[') {
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+            }
+            i++;
+        }
+        return delta + words(descriptor.charAt(i + 1));
+    }
+}
@@ -0,0 +1,1575 @@
+package sample.interpreter.jvm;
+
+import sample.interpreter.jvm.ClassFileWriter.Label;
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.semantic.Lowering;
+import sample.interpreter.semantic.RealArithmetic;
+import sample.interpreter.semantic.Resolver;
+import sample.interpreter.semantic.StaticTypes;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static sample.interpreter.jvm.ClassFileWriter.*;
+import static sample.interpreter.semantic.StaticTypes.*;
+
+/**
+ * 把语法树编译为 JVM 字节码，每个程序生成一个类，作为隐藏类加载后由 HotSpot 的 JIT 直接编译其中的循环。
+ * 语句的划分和每种写法的结果与 Semantic 逐条对应，每种写法的处理由 Lowering 决定，此外还要求：
+ * 数组和标量的用法与声明相同、声明的初值不是数组元素。
+ * 每个变量在生成的方法中映射为几个局部变量：状态（0 没有声明，1 已经声明，2 已经初始化）、值、
+ * 整型变量对应的浮点数和数值的写法；数组映射为基本类型的值数组、每个元素是否已经赋值和写法数组。
+ * 字符串与 SymbolTableElement 相同，不是空字符串时才算已经初始化，只记录是否已经声明。
+ * Resolver 只在兄弟作用域之间复用槽位，它们之间一定执行过清空，所以每个变量单独记录状态与按槽位查找的结果相同。
+ * 遮盖外层同名变量的声明与 Semantic.find 由内向外查找的结果相同：同一个遮盖链上的变量共用最外层变量的局部变量，
+ * 其中总是保存已经声明的最内层的变量；遮盖的声明执行前把外层变量保存到自己的局部变量中，退出作用域时再恢复。
+ * 外层变量的引用只出现在内层变量的作用域之外或者它的声明之前，所以引用处不需要查找。
+ * HotSpot 不编译超过 8000 字节的方法，所以最外层的每个循环和条件语句单独生成一个方法，
+ * 其余语句按顺序合并为不超过这个长度的方法；变量在方法之间保存在 JvmRuntime 中。
+ * 运行时的语义错误由 JvmRuntime 报告后抛出 Failure，由语句的异常处理跳到下一个语句
+ */
+public class JvmCompiler {
+
+    static final String METHOD = "run";
+
+    private static final String CLASS = "sample/interpreter/jvm/CmmProgram";
+    private static final String RUNTIME = "sample/interpreter/jvm/JvmRuntime";
+    private static final String FAILURE = RUNTIME + "$Failure";
+    private static final String STRING = "java/lang/String";
+    private static final String DESCRIPTOR = "(L" + RUNTIME + ";)V";
+
+    /**
+     * 最外层的语句合并为一个方法时的最大长度，与 HotSpot 的 HugeMethodLimit 相同
+     */
+    private static final int METHOD_LIMIT = 8000;
+
+    /**
+     * 最多保留的已加载的类
+     */
+    private static final int LOADED_LIMIT = 16;
+
+    /**
+     * 最近加载的类，按类文件的内容查找。同一个程序再次运行时复用已经被 JIT 编译过的类，
+     * 否则每次运行都从解释执行生成的字节码开始；被淘汰的类没有其他引用后可以卸载
+     */
+    private static final Map<ByteBuffer, JvmProgram> LOADED =
+            new LinkedHashMap<ByteBuffer, JvmProgram>(LOADED_LIMIT, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, JvmProgram> eldest) {
+                    return size() > LOADED_LIMIT;
+                }
+            };
+
+    /*
+     * 变量的各个部分
+     */
+
+    /**
+     * 0 没有声明，1 已经声明，2 已经初始化；数组和字符串声明后为 1
+     */
+    private static final int STATE = 0;
+    /**
+     * 标量的值，整型为 long、实型为 double、布尔型为 int、字符串为 String；数组为值数组
+     */
+    private static final int VALUE = 1;
+    /**
+     * 整型标量对应的浮点数
+     */
+    private static final int REAL = 2;
+    /**
+     * 数值的写法，为 null 时按数值转换；数组为写法数组
+     */
+    private static final int TEXT = 3;
+    /**
+     * 数组每个元素是否已经赋值
+     */
+    private static final int ASSIGNED = 4;
+    /**
+     * 遮盖外层变量的声明是否已经执行，这时其他部分保存的是被遮盖的变量
+     */
+    private static final int DECLARED = 5;
+
+    /**
+     * JvmRuntime 中保存变量的数组：ints、longs、doubles 和 objects
+     */
+    private static final String[] HOMES = {"ints", "longs", "doubles", "objects"};
+
+    /**
+     * 变量在 JvmRuntime 和当前方法中的位置
+     */
+    private static final class Var {
+        private String kind;
+        private boolean array;
+        private int depth;
+        /**
+         * 遮盖链最外层的变量，引用时使用它的局部变量；不遮盖外层的同名变量时为 null
+         */
+        private Var shared;
+        /**
+         * 每个部分的描述符，变量没有这一部分时为 null
+         */
+        private final String[] types = new String[6];
+        /**
+         * 每个部分在 JvmRuntime 的数组中的下标
+         */
+        private final int[] home = new int[6];
+        /**
+         * 每个部分在当前方法中的局部变量，还没有用到时为 -1
+         */
+        private final int[] local = new int[6];
+        /**
+         * 局部变量所属的方法
+         */
+        private int method = -1;
+    }
+
+    private ClassFileWriter out;
+    private StaticTypes types;
+    private Lowering lowering;
+    private Resolver resolver;
+    private Var[] vars;
+    private List<Var> declared;
+
+    /**
+     * 当前方法中用到的变量，方法开始时读入，结束时写回
+     */
+    private List<Var> touched;
+
+    /**
+     * JvmRuntime 的每个数组中已经分配的个数
+     */
+    private int[] homes;
+
+    /**
+     * 已经结束的方法个数，也是当前方法的编号
+     */
+    private int methodCount;
+    private Label prologue;
+    private Label body;
+    private int bodyStart;
+
+    /**
+     * 当前编译的语句中声明的变量的最深层次，用于退出作用域时清空
+     */
+    private int deepest;
+
+    /**
+     * 最近一次不能编译的原因
+     */
+    private String reason;
+
+    /**
+     * 编译整个程序并加载生成的类
+     * @param root 没有词法和语法错误的语法树
+     * @return 程序，有不能编译的写法时返回 null
+     */
+    public JvmProgram compile(TreeNode root) {
+        reason = null;
+        deepest = -1;
+        types = new StaticTypes(root);
+        lowering = new Lowering(types);
+        resolver = types.getResolver();
+        vars = new Var[resolver.getBindingCount()];
+        declared = new ArrayList<>();
+        touched = new ArrayList<>();
+        homes = new int[HOMES.length];
+        methodCount = 0;
+        out = new ClassFileWriter();
+        try {
+            beginMethod();
+            statements(root, 0);
+            endMethod();
+            // 入口：分配保存变量的数组，依次调用各个方法
+            out.local(1);
+            out.local(ALOAD, 0);
+            for (int count : homes) {
+                out.push(count);
+            }
+            out.invokeVirtual(RUNTIME, "allocate", "(IIII)V");
+            for (int i = 0; i < methodCount; i++) {
+                out.local(ALOAD, 0);
+                out.invokeStatic(CLASS, METHOD + i, DESCRIPTOR);
+            }
+            out.op(RETURN, 0);
+            out.endMethod(METHOD, DESCRIPTOR);
+            return load(out.toByteArray(CLASS), out.largest());
+        } catch (Unsupported e) {
+            reason = e.getMessage();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            reason = "生成的类不能加载：" + e;
+        } finally {
+            out = null;
+        }
+        return null;
+    }
+
+    private static JvmProgram load(byte[] bytes, int codeSize)
+            throws IllegalAccessException, NoSuchMethodException {
+        ByteBuffer key = ByteBuffer.wrap(bytes);
+        synchronized (LOADED) {
+            JvmProgram program = LOADED.get(key);
+            if (program == null) {
+                program = new JvmProgram(bytes, codeSize);
+                LOADED.put(key, program);
+            }
+            return program;
+        }
+    }
+
+    /**
+     * 最近一次 compile 返回 null 的原因
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /*
+     * 方法
+     */
+
+    private void beginMethod() {
+        // 参数 JvmRuntime
+        out.local(1);
+        prologue = new Label();
+        body = new Label();
+        out.jump(GOTO, prologue);
+        out.place(body);
+        bodyStart = out.size();
+    }
+
+    /**
+     * 写回用到的变量后返回；开头跳转到最后生成的读入变量的代码，读入后再跳回方法体，
+     * 这样类型推导的校验器在方法体的每一处都能确定局部变量的类型
+     */
+    private void endMethod() {
+        int[] arrays = new int[HOMES.length];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = touched.isEmpty() ? -1 : out.local(1);
+        }
+        for (Var v : touched) {
+            for (int part = 0; part < v.local.length; part++) {
+                if (v.local[part] >= 0) {
+                    String type = v.types[part];
+                    int category = category(type);
+                    out.local(ALOAD, arrays[category]);
+                    out.push(v.home[part]);
+                    out.local(category == 0 ? ILOAD : category == 1 ? LLOAD : category == 2 ? DLOAD : ALOAD,
+                            v.local[part]);
+                    out.op(category == 0 ? IASTORE : category == 1 ? LASTORE : category == 2 ? DASTORE : AASTORE,
+                            category == 1 || category == 2 ? -4 : -3);
+                }
+            }
+        }
+        out.op(RETURN, 0);
+        out.place(prologue);
+        if (!touched.isEmpty()) {
+            for (int i = 0; i < arrays.length; i++) {
+                out.local(ALOAD, 0);
+                out.getField(RUNTIME, HOMES[i], i == 0 ? "[I" : i == 1 ? "[J" : i == 2 ? "[D" : "[Ljava/lang/Object;");
+                out.local(ASTORE, arrays[i]);
+            }
+        }
+        for (Var v : touched) {
+            for (int part = 0; part < v.local.length; part++) {
+                if (v.local[part] >= 0) {
+                    String type = v.types[part];
+                    int category = category(type);
+                    out.local(ALOAD, arrays[category]);
+                    out.push(v.home[part]);
+                    if (category == 0) {
+                        out.op(IALOAD, -1);
+                        out.local(ISTORE, v.local[part]);
+                    } else if (category == 1) {
+                        out.op(LALOAD, 0);
+                        out.local(LSTORE, v.local[part]);
+                    } else if (category == 2) {
+                        out.op(DALOAD, 0);
+                        out.local(DSTORE, v.local[part]);
+                    } else {
+                        out.op(AALOAD, -1);
+                        out.checkCast(type);
+                        out.local(ASTORE, v.local[part]);
+                    }
+                }
+            }
+        }
+        out.jump(GOTO, body);
+        out.endMethod(METHOD + methodCount, DESCRIPTOR);
+        methodCount++;
+        touched.clear();
+    }
+
+    /**
+     * 变量的一部分在当前方法中的局部变量，第一次用到时分配
+     */
+    private int slot(Var v, int part) {
+        if (v.method != methodCount) {
+            v.method = methodCount;
+            Arrays.fill(v.local, -1);
+            touched.add(v);
+        }
+        if (v.local[part] < 0) {
+            String type = v.types[part];
+            v.local[part] = out.local("J".equals(type) || "D".equals(type) ? 2 : 1);
+        }
+        return v.local[part];
+    }
+
+    /**
+     * 描述符对应的 JvmRuntime 中的数组，引用类型都保存在 objects 中
+     */
+    private static int category(String type) {
+        switch (type) {
+            case "I":
+                return 0;
+            case "J":
+                return 1;
+            case "D":
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    /*
+     * 语句
+     */
+
+    private void statements(TreeNode root, int level) {
+        for (int i = 0; i < root.getChildCount(); i++) {
+            TreeNode currentNode = root.getChildAt(i);
+            boolean compound = isCompound(currentNode);
+            if (level == 0 && out.size() > bodyStart && (compound || out.size() > METHOD_LIMIT
+                    || i > 0 && isCompound(root.getChildAt(i - 1)))) {
+                endMethod();
+                beginMethod();
+            }
+            switch (currentNode.getContent()) {
+                case ConstChars.INT:
+                case ConstChars.REAL:
+                case ConstChars.BOOL:
+                case ConstChars.STRING:
+                    guarded(() -> declare(currentNode));
+                    break;
+                case ConstChars.ASSIGN:
+                    guarded(() -> assign(currentNode));
+                    break;
+                case ConstChars.FOR:
+                    forStatement(currentNode, level);
+                    break;
+                case ConstChars.IF:
+                    ifStatement(currentNode, level);
+                    break;
+                case ConstChars.WHILE:
+                    whileStatement(currentNode, level);
+                    break;
+                case ConstChars.READ:
+                    guarded(() -> read(currentNode.getChildAt(0)));
+                    break;
+                case ConstChars.WRITE:
+                    guarded(() -> write(currentNode.getChildAt(0)));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static boolean isCompound(TreeNode node) {
+        String content = node.getContent();
+        return ConstChars.FOR.equals(content) || ConstChars.IF.equals(content) || ConstChars.WHILE.equals(content);
+    }
+
+    /**
+     * 语句中报告了错误时继续执行下一个语句
+     */
+    private void guarded(Runnable statement) {
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        Label next = new Label();
+        int before = out.size();
+        out.place(start);
+        statement.run();
+        if (out.size() == before) {
+            return;
+        }
+        out.place(end);
+        out.jump(GOTO, next);
+        out.placeHandler(handler);
+        out.op(POP, -1);
+        out.place(next);
+        out.handler(start, end, handler, FAILURE);
+    }
+
+    /**
+     * 分支之后删除分支中声明的变量
+     */
+    private void ifStatement(TreeNode root, int level) {
+        int outer = deepest;
+        deepest = -1;
+        Label otherwise = new Label();
+        condition(child(root, 0).getChildAt(0));
+        out.jump(IFEQ, otherwise);
+        statements(child(root, 1), level + 1);
+        if (root.getChildCount() == 3) {
+            Label end = new Label();
+            out.jump(GOTO, end);
+            out.place(otherwise);
+            statements(root.getChildAt(2), level + 2);
+            out.place(end);
+        } else {
+            out.place(otherwise);
+        }
+        clear(level);
+        deepest = Math.max(outer, deepest);
+    }
+
+    /**
+     * 每次执行循环体后删除循环体中声明的变量
+     */
+    private void whileStatement(TreeNode root, int level) {
+        int outer = deepest;
+        deepest = -1;
+        Label top = new Label();
+        Label end = new Label();
+        out.place(top);
+        condition(child(root, 0).getChildAt(0));
+        out.jump(IFEQ, end);
+        statements(child(root, 1), level + 1);
+        clear(level);
+        out.jump(GOTO, top);
+        out.place(end);
+        deepest = Math.max(outer, deepest);
+    }
+
+    /**
+     * 初始化和修改循环变量各自是一个有异常处理的语句
+     */
+    private void forStatement(TreeNode root, int level) {
+        int outer = deepest;
+        deepest = -1;
+        guarded(() -> assign(child(child(root, 0), 0)));
+        Label top = new Label();
+        Label end = new Label();
+        out.place(top);
+        condition(child(child(root, 1), 0));
+        out.jump(IFEQ, end);
+        statements(child(root, 3), level + 1);
+        clear(level);
+        guarded(() -> assign(child(child(root, 2), 0)));
+        out.jump(GOTO, top);
+        out.place(end);
+        deepest = Math.max(outer, deepest);
+    }
+
+    /**
+     * 删除比 level 深、在刚编译的语句中声明过变量的层次中的变量。
+     * 由内向外删除，遮盖外层变量的声明执行过时恢复被它遮盖的变量
+     */
+    private void clear(int level) {
+        if (deepest > level) {
+            for (int i = declared.size() - 1; i >= 0; i--) {
+                Var v = declared.get(i);
+                if (v.depth > level && v.depth <= deepest) {
+                    if (v.shared == null) {
+                        setState(v, 0);
+                    } else {
+                        Label skip = new Label();
+                        out.local(ILOAD, slot(v, DECLARED));
+                        out.jump(IFEQ, skip);
+                        copyParts(v, v.shared);
+                        out.push(0);
+                        out.local(ISTORE, slot(v, DECLARED));
+                        out.place(skip);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 复制同一遮盖链上两个变量的值、写法和状态
+     */
+    private void copyParts(Var from, Var to) {
+        for (int part = STATE; part <= ASSIGNED; part++) {
+            String type = from.types[part];
+            if (type != null) {
+                int category = category(type);
+                out.local(category == 0 ? ILOAD : category == 1 ? LLOAD : category == 2 ? DLOAD : ALOAD,
+                        slot(from, part));
+                out.local(category == 0 ? ISTORE : category == 1 ? LSTORE : category == 2 ? DSTORE : ASTORE,
+                        slot(to, part));
+            }
+        }
+    }
+
+    /**
+     * 已经声明时报错，否则设置状态、赋初值或者分配数组，一个声明出错时不再声明后面的变量。
+     * 遮盖外层变量时先保存外层变量，初值出错时共用的局部变量没有改变，之后的引用仍然找到外层变量
+     */
+    private void declare(TreeNode root) {
+        String kind = root.getContent();
+        int index = 0;
+        while (index < root.getChildCount()) {
+            TreeNode temp = root.getChildAt(index);
+            Var own = variable(types.declare(temp, kind), temp, kind);
+            Var v = own.shared != null ? own.shared : own;
+            deepest = Math.max(deepest, own.depth);
+            index++;
+            Label fresh = new Label();
+            out.local(ILOAD, slot(own, own.shared != null ? DECLARED : STATE));
+            out.jump(IFEQ, fresh);
+            out.local(ALOAD, 0);
+            out.push(temp.getContent());
+            out.push(temp.getRowNum());
+            out.invokeVirtual(RUNTIME, "redeclared", "(Ljava/lang/String;I)L" + FAILURE + ";");
+            out.op(ATHROW, -1);
+            out.place(fresh);
+            if (own.shared != null) {
+                copyParts(v, own);
+            }
+            if (!v.array) {
+                if (index < root.getChildCount()
+                        && root.getChildAt(index).getContent().equals(ConstChars.ASSIGN)) {
+                    initializer(kind, root.getChildAt(index).getChildAt(0), v);
+                    index++;
+                } else {
+                    unset(v);
+                }
+            } else {
+                out.local(ALOAD, 0);
+                arraySize(temp.getChildAt(0));
+                out.push(root.getRowNum());
+                out.invokeVirtual(RUNTIME, "size", "(JI)I");
+                int size = out.local(1);
+                out.local(ISTORE, size);
+                out.local(ILOAD, size);
+                if (ConstChars.INT.equals(kind)) {
+                    out.newArray(T_LONG);
+                } else if (ConstChars.REAL.equals(kind)) {
+                    out.newArray(T_DOUBLE);
+                } else if (ConstChars.BOOL.equals(kind)) {
+                    out.newArray(T_BOOLEAN);
+                } else {
+                    out.newArray(STRING);
+                }
+                out.local(ASTORE, slot(v, VALUE));
+                if (!ConstChars.STRING.equals(kind)) {
+                    out.local(ILOAD, size);
+                    out.newArray(T_BOOLEAN);
+                    out.local(ASTORE, slot(v, ASSIGNED));
+                }
+                if (hasText(kind)) {
+                    out.local(ILOAD, size);
+                    out.newArray(STRING);
+                    out.local(ASTORE, slot(v, TEXT));
+                }
+                setState(v, 1);
+            }
+            if (own.shared != null) {
+                out.push(1);
+                out.local(ISTORE, slot(own, DECLARED));
+            }
+        }
+    }
+
+    /**
+     * 按 Lowering.initializer 的处理给新声明的变量赋初值
+     */
+    private void initializer(String kind, TreeNode valueNode, Var v) {
+        String value = valueNode.getContent();
+        if ("标识符".equals(valueNode.getNodeType()) && valueNode.getChildCount() != 0) {
+            // 原来复制的是数组本身
+            throw new Unsupported("第 " + valueNode.getRowNum() + " 行的初值是数组元素");
+        }
+        switch (lowering.initializer(kind, valueNode)) {
+            case Lowering.INT_CONSTANT: {
+                long number = parseLong(valueNode);
+                storeInt(v, -1, () -> out.push(number), () -> out.push(Double.parseDouble(value)),
+                        () -> out.push(value));
+                break;
+            }
+            case Lowering.REAL_CONSTANT: {
+                double number = parseReal(valueNode);
+                storeReal(v, -1, () -> out.push(number), () -> out.op(ACONST_NULL, 1));
+                break;
+            }
+            case Lowering.REAL_TEXT: {
+                double number = parseReal(valueNode);
+                storeReal(v, -1, () -> out.push(number), () -> out.push(value));
+                break;
+            }
+            case Lowering.BOOL_CONSTANT: {
+                int b = Lowering.boolConstant(valueNode) ? 1 : 0;
+                storeBool(v, -1, () -> out.push(b));
+                break;
+            }
+            case Lowering.STRING_CONSTANT:
+                storeString(v, -1, () -> out.push(value));
+                setState(v, 1);
+                break;
+            case Lowering.COPY: {
+                Var source = use(valueNode);
+                if (source == null) {
+                    break;
+                }
+                switch (kind) {
+                    case ConstChars.INT:
+                        storeInt(v, -1, () -> out.local(LLOAD, slot(source, VALUE)),
+                                () -> out.local(DLOAD, slot(source, REAL)), () -> out.local(ALOAD, slot(source, TEXT)));
+                        break;
+                    case ConstChars.REAL:
+                        storeReal(v, -1, () -> out.local(DLOAD, slot(source, VALUE)), () -> out.local(ALOAD, slot(source, TEXT)));
+                        break;
+                    default:
+                        storeBool(v, -1, () -> out.local(ILOAD, slot(source, VALUE)));
+                        break;
+                }
+                break;
+            }
+            case Lowering.COPY_REAL: {
+                Var source = use(valueNode);
+                if (source != null) {
+                    storeReal(v, -1, () -> out.local(DLOAD, slot(source, REAL)), () -> out.op(ACONST_NULL, 1));
+                }
+                break;
+            }
+            case Lowering.BOOL_FROM_INT: {
+                Var source = use(valueNode);
+                if (source != null) {
+                    storeBool(v, -1, () -> {
+                        out.local(LLOAD, slot(source, VALUE));
+                        out.local(ALOAD, slot(source, TEXT));
+                        out.invokeStatic(RUNTIME, "positive", "(JLjava/lang/String;)Z");
+                    });
+                }
+                break;
+            }
+            case Lowering.STRING_NAME:
+                // 与原来一样保存的是变量名
+                if (use(valueNode) != null) {
+                    storeString(v, -1, () -> out.push(value));
+                    setState(v, 1);
+                }
+                break;
+            case Lowering.INT_ARITHMETIC: {
+                intExpression(valueNode);
+                int result = out.local(2);
+                out.local(LSTORE, result);
+                Label ok = new Label();
+                ifEmpty(result, IFNE, ok);
+                out.local(ALOAD, 0);
+                out.invokeVirtual(RUNTIME, "aborted", "()L" + FAILURE + ";");
+                out.op(ATHROW, -1);
+                out.place(ok);
+                storeInt(v, -1, () -> out.local(LLOAD, result), null, () -> out.op(ACONST_NULL, 1));
+                break;
+            }
+            case Lowering.INT_TO_REAL:
+            case Lowering.REAL_ARITHMETIC: {
+                Label unset = new Label();
+                Label done = new Label();
+                int mode = types.classify(valueNode);
+                if (mode == MODE_INT) {
+                    intExpression(valueNode);
+                    int result = out.local(2);
+                    out.local(LSTORE, result);
+                    ifEmpty(result, IFEQ, unset);
+                    storeReal(v, -1, () -> {
+                        out.local(LLOAD, result);
+                        out.op(L2D, 0);
+                    }, () -> out.op(ACONST_NULL, 1));
+                } else {
+                    realExpression(valueNode, mode);
+                    int result = out.local(2);
+                    out.local(DSTORE, result);
+                    jumpIfTextOnly(unset);
+                    storeReal(v, -1, () -> out.local(DLOAD, result), this::lastText);
+                }
+                out.jump(GOTO, done);
+                out.place(unset);
+                setState(v, 1);
+                out.place(done);
+                break;
+            }
+            case Lowering.COMPARISON: {
+                condition(valueNode);
+                int result = out.local(1);
+                out.local(ISTORE, result);
+                storeBool(v, -1, () -> out.local(ILOAD, result));
+                break;
+            }
+            default:
+                if (ConstChars.STRING.equals(kind)) {
+                    unset(v);
+                } else {
+                    setState(v, 1);
+                }
+                break;
+        }
+    }
+
+    /**
+     * 数组大小：整数常量或整数表达式，压入 long
+     */
+    private void arraySize(TreeNode node) {
+        if (lowering.arraySize(node) == Lowering.INT_CONSTANT) {
+            out.push((long) parseInt(node));
+        } else {
+            intExpression(node);
+        }
+    }
+
+    /**
+     * 先查找被赋值的变量和下标，再按 Lowering.assignment 的处理计算右半部分
+     */
+    private void assign(TreeNode root) {
+        TreeNode node1 = child(root, 0);
+        String kind1 = types.kindOf(node1);
+        Var target = variable(node1);
+        if (target == null) {
+            undeclared(node1);
+            return;
+        }
+        int index;
+        if (target.array) {
+            index = element(target, node1, false);
+        } else {
+            checkDeclared(target, node1);
+            index = -1;
+        }
+        TreeNode node2 = child(root, 1);
+        String value = node2.getContent();
+        int form = lowering.assignment(kind1, node1, node2);
+        switch (form) {
+            case Lowering.INT_CONSTANT: {
+                long number = parseLong(node2);
+                storeInt(target, index, () -> out.push(number), () -> out.push(Double.parseDouble(value)),
+                        () -> out.push(value));
+                break;
+            }
+            case Lowering.REAL_CONSTANT: {
+                double number = parseReal(node2);
+                storeReal(target, index, () -> out.push(number), () -> out.op(ACONST_NULL, 1));
+                break;
+            }
+            case Lowering.REAL_TEXT: {
+                double number = parseReal(node2);
+                storeReal(target, index, () -> out.push(number), () -> out.push(value));
+                break;
+            }
+            case Lowering.BOOL_CONSTANT: {
+                int b = Lowering.boolConstant(node2) ? 1 : 0;
+                storeBool(target, index, () -> out.push(b));
+                break;
+            }
+            case Lowering.STRING_CONSTANT:
+                storeString(target, index, () -> out.push(value));
+                break;
+            case Lowering.COPY:
+            case Lowering.COPY_REAL:
+                copy(target, index, kind1, node2, form == Lowering.COPY_REAL);
+                break;
+            case Lowering.INT_ARITHMETIC:
+            case Lowering.INT_TO_REAL: {
+                Label skip = new Label();
+                intExpression(node2);
+                int result = out.local(2);
+                out.local(LSTORE, result);
+                ifEmpty(result, IFEQ, skip);
+                if (form == Lowering.INT_ARITHMETIC) {
+                    storeInt(target, index, () -> out.local(LLOAD, result), null, () -> out.op(ACONST_NULL, 1));
+                } else {
+                    storeReal(target, index, () -> {
+                        out.local(LLOAD, result);
+                        out.op(L2D, 0);
+                    }, () -> out.op(ACONST_NULL, 1));
+                }
+                out.place(skip);
+                break;
+            }
+            case Lowering.REAL_ARITHMETIC: {
+                Label skip = new Label();
+                realExpression(node2, types.classify(node2));
+                int result = out.local(2);
+                out.local(DSTORE, result);
+                jumpIfTextOnly(skip);
+                storeReal(target, index, () -> out.local(DLOAD, result), this::lastText);
+                out.place(skip);
+                break;
+            }
+            case Lowering.COMPARISON: {
+                condition(node2);
+                int result = out.local(1);
+                out.local(ISTORE, result);
+                storeBool(target, index, () -> out.local(ILOAD, result));
+                break;
+            }
+            default:
+                // 其他写法不赋值
+                break;
+        }
+    }
+
+    /**
+     * 右半部分是变量，与 SymbolTableElement.copyValue 和 copyRealValue 相同地复制值和写法
+     */
+    private void copy(Var target, int index, String kind1, TreeNode node2, boolean toReal) {
+        Var source = variable(node2);
+        if (source == null) {
+            undeclared(node2);
+            return;
+        }
+        int sourceIndex;
+        if (source.array) {
+            sourceIndex = element(source, node2, true);
+        } else {
+            checkInitialized(source, node2);
+            sourceIndex = -1;
+        }
+        Runnable text = () -> {
+            out.local(ALOAD, slot(source, TEXT));
+            if (sourceIndex >= 0) {
+                out.local(ILOAD, sourceIndex);
+                out.op(AALOAD, -1);
+            }
+        };
+        if (toReal) {
+            // 整型变量保存的浮点数，数组元素由整数值转换
+            storeReal(target, index, () -> {
+                if (sourceIndex >= 0) {
+                    loadElement(source, sourceIndex);
+                    out.op(L2D, 0);
+                } else {
+                    out.local(DLOAD, slot(source, REAL));
+                }
+            }, () -> out.op(ACONST_NULL, 1));
+        } else if (ConstChars.INT.equals(kind1)) {
+            storeInt(target, index, () -> {
+                if (sourceIndex >= 0) {
+                    loadElement(source, sourceIndex);
+                } else {
+                    out.local(LLOAD, slot(source, VALUE));
+                }
+            }, sourceIndex >= 0 ? null : () -> out.local(DLOAD, slot(source, REAL)), text);
+        } else if (ConstChars.REAL.equals(kind1)) {
+            storeReal(target, index, () -> {
+                if (sourceIndex >= 0) {
+                    loadElement(source, sourceIndex);
+                } else {
+                    out.local(DLOAD, slot(source, VALUE));
+                }
+            }, text);
+        } else if (ConstChars.STRING.equals(kind1)) {
+            storeString(target, index, () -> {
+                if (sourceIndex >= 0) {
+                    loadElement(source, sourceIndex);
+                } else {
+                    out.local(ALOAD, slot(source, VALUE));
+                }
+            });
+        } else {
+            storeBool(target, index, () -> {
+                if (sourceIndex >= 0) {
+                    loadElement(source, sourceIndex);
+                } else {
+                    out.local(ILOAD, slot(source, VALUE));
+                }
+            });
+        }
+    }
+
+    /**
+     * 由 JvmRuntime 读入后按变量的类型保存，被读入的变量不需要已经初始化
+     */
+    private void read(TreeNode root) {
+        types.kindOf(root);
+        Var target = variable(root);
+        if (target == null) {
+            undeclared(root);
+            return;
+        }
+        int index;
+        if (target.array) {
+            index = element(target, root, false);
+        } else {
+            checkDeclared(target, root);
+            index = -1;
+        }
+        out.local(ALOAD, 0);
+        out.push(target.kind);
+        out.push(root.getContent());
+        if (index >= 0) {
+            out.local(ILOAD, index);
+        } else {
+            out.push(-1);
+        }
+        out.invokeVirtual(RUNTIME, "read", "(Ljava/lang/String;Ljava/lang/String;I)Ljava/lang/String;");
+        int input = out.local(1);
+        out.local(ASTORE, input);
+        Label skip = new Label();
+        out.local(ALOAD, input);
+        out.jump(IFNULL, skip);
+        switch (target.kind) {
+            case ConstChars.INT:
+                storeInt(target, index, () -> {
+                    out.local(ALOAD, input);
+                    out.invokeStatic("java/lang/Long", "parseLong", "(Ljava/lang/String;)J");
+                }, () -> {
+                    out.local(ALOAD, input);
+                    out.invokeStatic("java/lang/Double", "parseDouble", "(Ljava/lang/String;)D");
+                }, () -> out.local(ALOAD, input));
+                break;
+            case ConstChars.REAL:
+                storeReal(target, index, () -> {
+                    out.local(ALOAD, input);
+                    out.invokeStatic("java/lang/Double", "parseDouble", "(Ljava/lang/String;)D");
+                }, () -> {
+                    out.local(ALOAD, input);
+                    out.invokeStatic(RUNTIME, "realText", "(Ljava/lang/String;)Ljava/lang/String;");
+                });
+                break;
+            case ConstChars.BOOL:
+                storeBool(target, index, () -> {
+                    out.local(ALOAD, input);
+                    out.push(ConstChars.TRUE);
+                    out.invokeVirtual(STRING, "equals", "(Ljava/lang/Object;)Z");
+                });
+                break;
+            default:
+                storeString(target, index, () -> out.local(ALOAD, input));
+                break;
+        }
+        out.place(skip);
+    }
+
+    /**
+     * 按 Lowering.write 的处理由 JvmRuntime 输出
+     */
+    private void write(TreeNode root) {
+        switch (lowering.write(root)) {
+            case Lowering.CONSTANT:
+                out.local(ALOAD, 0);
+                out.push(root.getContent() + "\n");
+                out.invokeVirtual(RUNTIME, "printConstant", "(Ljava/lang/String;)V");
+                break;
+            case Lowering.VARIABLE:
+                writeVariable(root);
+                break;
+            case Lowering.INT_ARITHMETIC:
+                out.local(ALOAD, 0);
+                intExpression(root);
+                out.invokeVirtual(RUNTIME, "writeValue", "(J)V");
+                break;
+            case Lowering.REAL_ARITHMETIC:
+                realExpression(root, types.classify(root));
+                out.op(POP2, -2);
+                out.local(ALOAD, 0);
+                out.invokeVirtual(RUNTIME, "writeText", "()V");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeVariable(TreeNode root) {
+        Var source = variable(root);
+        if (source == null) {
+            undeclared(root);
+            return;
+        }
+        int index = -1;
+        if (source.array) {
+            index = element(source, root, true);
+        } else {
+            checkInitialized(source, root);
+        }
+        out.local(ALOAD, 0);
+        if (index >= 0) {
+            loadElement(source, index);
+        } else {
+            out.local(ConstChars.INT.equals(source.kind) ? LLOAD : ConstChars.REAL.equals(source.kind) ? DLOAD
+                    : ConstChars.BOOL.equals(source.kind) ? ILOAD : ALOAD, slot(source, VALUE));
+        }
+        if (hasText(source.kind)) {
+            out.local(ALOAD, slot(source, TEXT));
+            if (index >= 0) {
+                out.local(ILOAD, index);
+                out.op(AALOAD, -1);
+            }
+        }
+        switch (source.kind) {
+            case ConstChars.INT:
+                out.invokeVirtual(RUNTIME, "writeInt", "(JLjava/lang/String;)V");
+                break;
+            case ConstChars.REAL:
+                out.invokeVirtual(RUNTIME, "writeReal", "(DLjava/lang/String;)V");
+                break;
+            case ConstChars.BOOL:
+                out.invokeVirtual(RUNTIME, "writeBool", "(Z)V");
+                break;
+            default:
+                out.invokeVirtual(RUNTIME, "writeString", "(Ljava/lang/String;)V");
+                break;
+        }
+    }
+
+    /*
+     * 条件和表达式
+     */
+
+    /**
+     * 按 Lowering.condition 的处理压入 0 或 1，出错时为 0。
+     * 出错时的处理丢弃整个操作数栈，所以只在栈为空时计算条件
+     */
+    private void condition(TreeNode root) {
+        switch (lowering.condition(root)) {
+            case Lowering.BOOL_CONSTANT:
+                out.push(Lowering.boolConstant(root) ? 1 : 0);
+                break;
+            case Lowering.VARIABLE:
+                guardedCondition(() -> {
+                    Var source = variable(root);
+                    if (source == null) {
+                        undeclared(root);
+                        out.push(0);
+                    } else if (source.array) {
+                        loadElement(source, element(source, root, true));
+                    } else {
+                        checkInitialized(source, root);
+                        out.local(ILOAD, slot(source, VALUE));
+                    }
+                });
+                break;
+            case Lowering.COMPARISON: {
+                String method;
+                switch (root.getContent()) {
+                    case ConstChars.GT:
+                        method = "greater";
+                        break;
+                    case ConstChars.LT:
+                        method = "less";
+                        break;
+                    case ConstChars.EQUAL:
+                        method = "equal";
+                        break;
+                    default:
+                        method = "notEqual";
+                        break;
+                }
+                guardedCondition(() -> {
+                    comparand(root.getChildAt(0));
+                    comparand(root.getChildAt(1));
+                    out.invokeStatic(RUNTIME, method, "(DD)Z");
+                });
+                break;
+            }
+            default:
+                out.push(0);
+                break;
+        }
+    }
+
+    private void guardedCondition(Runnable condition) {
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        Label after = new Label();
+        out.place(start);
+        condition.run();
+        out.place(end);
+        out.jump(GOTO, after);
+        out.placeHandler(handler);
+        out.op(POP, -1);
+        out.push(0);
+        out.place(after);
+        out.handler(start, end, handler, FAILURE);
+    }
+
+    /**
+     * 按 Lowering.comparand 的处理把比较的对象按浮点数压入
+     */
+    private void comparand(TreeNode node) {
+        switch (lowering.comparand(node)) {
+            case Lowering.REAL_CONSTANT:
+                out.push(parseReal(node));
+                break;
+            case Lowering.VARIABLE: {
+                Var source = variable(node);
+                if (source == null) {
+                    undeclared(node);
+                    out.push(0.0);
+                } else if (source.array) {
+                    loadElement(source, element(source, node, true));
+                    if (ConstChars.INT.equals(source.kind)) {
+                        out.op(L2D, 0);
+                    }
+                } else {
+                    checkInitialized(source, node);
+                    loadReal(source);
+                }
+                break;
+            }
+            case Lowering.INT_ARITHMETIC:
+                intExpression(node);
+                out.invokeStatic(RUNTIME, "toReal", "(J)D");
+                break;
+            default:
+                realExpression(node, types.classify(node));
+                break;
+        }
+    }
+
+    /**
+     * 整数运算，压入 long，除数为零时为 JvmRuntime.EMPTY
+     */
+    private void intExpression(TreeNode node) {
+        boolean divide = ConstChars.DIVIDE.equals(node.getContent());
+        if (divide) {
+            out.local(ALOAD, 0);
+        }
+        intOperand(node.getChildAt(0));
+        intOperand(node.getChildAt(1));
+        switch (node.getContent()) {
+            case ConstChars.PLUS:
+                out.invokeStatic(RUNTIME, "add", "(JJ)J");
+                break;
+            case ConstChars.MINUS:
+                out.invokeStatic(RUNTIME, "subtract", "(JJ)J");
+                break;
+            case ConstChars.TIMES:
+                out.invokeStatic(RUNTIME, "multiply", "(JJ)J");
+                break;
+            default:
+                out.push(node.getRowNum());
+                out.invokeVirtual(RUNTIME, "divide", "(JJI)J");
+                break;
+        }
+    }
+
+    private void intOperand(TreeNode child) {
+        if ("运算符".equals(child.getNodeType())) {
+            intExpression(child);
+        } else if ("整数".equals(child.getNodeType())) {
+            out.push((long) parseInt(child));
+        } else {
+            Var source = variable(child);
+            if (source == null) {
+                undeclared(child);
+                out.push(0L);
+            } else {
+                checkInitialized(source, child);
+                out.local(LLOAD, slot(source, VALUE));
+            }
+        }
+    }
+
+    /**
+     * 实数运算，压入 double，结果的写法和是否只能转换为浮点数在 JvmRuntime 中
+     */
+    private void realExpression(TreeNode node, int mode) {
+        out.local(ALOAD, 0);
+        for (int i = 0; i < 2; i++) {
+            TreeNode child = node.getChildAt(i);
+            String type = child.getNodeType();
+            if ("运算符".equals(type)) {
+                int childMode = types.classify(child);
+                if (childMode == MODE_INT) {
+                    intExpression(child);
+                    out.invokeStatic(RUNTIME, "toReal", "(J)D");
+                    out.push(1);
+                } else {
+                    realExpression(child, childMode);
+                    out.local(ALOAD, 0);
+                    out.getField(RUNTIME, "textOnly", "Z");
+                }
+            } else {
+                if ("标识符".equals(type)) {
+                    Var source = variable(child);
+                    if (source == null) {
+                        undeclared(child);
+                        out.push(0.0);
+                    } else {
+                        checkInitialized(source, child);
+                        loadReal(source);
+                    }
+                } else {
+                    out.push(parseReal(child));
+                }
+                out.push(1);
+            }
+        }
+        out.push(RealArithmetic.operator(node.getContent()));
+        out.push(mode == MODE_DYNAMIC ? 1 : 0);
+        out.invokeVirtual(RUNTIME, "operate", "(DZDZIZ)D");
+    }
+
+    /**
+     * 按 Lowering.index 的处理计算下标，压入 long
+     */
+    private void index(TreeNode node) {
+        switch (lowering.index(node)) {
+            case Lowering.INT_CONSTANT:
+                out.push((long) parseInt(node));
+                break;
+            case Lowering.VARIABLE: {
+                Var source = variable(node);
+                if (source == null) {
+                    undeclared(node);
+                    out.push(0L);
+                } else {
+                    checkInitialized(source, node);
+                    out.local(LLOAD, slot(source, VALUE));
+                    out.local(ALOAD, slot(source, TEXT));
+                    out.invokeStatic(RUNTIME, "intValue", "(JLjava/lang/String;)I");
+                    out.op(I2L, 1);
+                }
+                break;
+            }
+            default:
+                intExpression(node);
+                break;
+        }
+    }
+
+    /*
+     * 变量
+     */
+
+    /**
+     * 声明的变量，第一次编译到它的声明时分配局部变量。
+     * 遮盖同一类型的外层变量时与它共用局部变量，自己的局部变量保存声明前的外层变量；
+     * 类型不同时引用它或者更内层的同名变量都不能编译，所以单独分配
+     */
+    private Var variable(int binding, TreeNode temp, String kind) {
+        Var v = vars[binding];
+        if (v != null) {
+            return v;
+        }
+        v = new Var();
+        v.kind = kind;
+        v.array = temp.getChildCount() != 0;
+        v.depth = resolver.getDepth(binding);
+        v.types[STATE] = "I";
+        if (v.array) {
+            v.types[VALUE] = ConstChars.INT.equals(kind) ? "[J" : ConstChars.REAL.equals(kind) ? "[D"
+                    : ConstChars.BOOL.equals(kind) ? "[Z" : "[L" + STRING + ";";
+            if (!ConstChars.STRING.equals(kind)) {
+                v.types[ASSIGNED] = "[Z";
+            }
+            if (hasText(kind)) {
+                v.types[TEXT] = "[L" + STRING + ";";
+            }
+        } else {
+            v.types[VALUE] = ConstChars.INT.equals(kind) ? "J" : ConstChars.REAL.equals(kind) ? "D"
+                    : ConstChars.BOOL.equals(kind) ? "I" : STRING;
+            if (ConstChars.INT.equals(kind)) {
+                v.types[REAL] = "D";
+            }
+            if (hasText(kind)) {
+                v.types[TEXT] = STRING;
+            }
+        }
+        int outer = resolver.getOuter(binding);
+        if (outer >= 0 && kind.equals(vars[outer].kind) && v.array == vars[outer].array) {
+            v.shared = vars[outer].shared != null ? vars[outer].shared : vars[outer];
+            v.types[DECLARED] = "I";
+        }
+        for (int part = 0; part < v.types.length; part++) {
+            if (v.types[part] != null) {
+                v.home[part] = homes[category(v.types[part])]++;
+            }
+        }
+        vars[binding] = v;
+        declared.add(v);
+        return v;
+    }
+
+    /**
+     * 标识符引用的变量
+     * @return 没有可见的声明时为 null，查找一定失败
+     */
+    private Var variable(TreeNode node) {
+        types.kindOf(node);
+        int binding = node.getBinding();
+        if (binding < 0) {
+            return null;
+        }
+        Var v = vars[binding];
+        if (v.array != (node.getChildCount() != 0)) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的变量 " + node.getContent() + " 与声明的用法不同");
+        }
+        return v.shared != null ? v.shared : v;
+    }
+
+    /**
+     * 初值中的变量：检查已经初始化
+     * @return 没有可见的声明时报错并返回 null
+     */
+    private Var use(TreeNode node) {
+        Var source = variable(node);
+        if (source == null) {
+            undeclared(node);
+        } else {
+            checkInitialized(source, node);
+        }
+        return source;
+    }
+
+    /**
+     * 数组元素：检查数组已经声明、下标在范围内，需要时检查元素已经初始化
+     * @return 保存下标的局部变量
+     */
+    private int element(Var v, TreeNode node, boolean initialized) {
+        checkDeclared(v, node);
+        TreeNode indexNode = node.getChildAt(0);
+        out.local(ALOAD, 0);
+        index(indexNode);
+        out.local(ALOAD, slot(v, VALUE));
+        out.op(ARRAYLENGTH, 0);
+        out.push(indexNode.getRowNum());
+        out.invokeVirtual(RUNTIME, "index", "(JII)I");
+        int index = out.local(1);
+        out.local(ISTORE, index);
+        if (initialized) {
+            Label ok = new Label();
+            if (ConstChars.STRING.equals(v.kind)) {
+                loadElement(v, index);
+                out.invokeStatic(RUNTIME, "filled", "(Ljava/lang/String;)Z");
+            } else {
+                out.local(ALOAD, slot(v, ASSIGNED));
+                out.local(ILOAD, index);
+                out.op(BALOAD, -1);
+            }
+            out.jump(IFNE, ok);
+            out.local(ALOAD, 0);
+            out.push(node.getContent());
+            out.local(ILOAD, index);
+            out.push(node.getRowNum());
+            out.invokeVirtual(RUNTIME, "uninitialized", "(Ljava/lang/String;II)L" + FAILURE + ";");
+            out.op(ATHROW, -1);
+            out.place(ok);
+        }
+        return index;
+    }
+
+    private void undeclared(TreeNode node) {
+        out.local(ALOAD, 0);
+        out.push(node.getContent());
+        out.push(node.getRowNum());
+        out.invokeVirtual(RUNTIME, "undeclared", "(Ljava/lang/String;I)L" + FAILURE + ";");
+        out.op(ATHROW, -1);
+    }
+
+    private void checkDeclared(Var v, TreeNode node) {
+        Label ok = new Label();
+        out.local(ILOAD, slot(v, STATE));
+        out.jump(IFNE, ok);
+        undeclared(node);
+        out.place(ok);
+    }
+
+    private void checkInitialized(Var v, TreeNode node) {
+        Label ok = new Label();
+        if (ConstChars.STRING.equals(v.kind)) {
+            Label fail = new Label();
+            out.local(ILOAD, slot(v, STATE));
+            out.jump(IFEQ, fail);
+            out.local(ALOAD, slot(v, VALUE));
+            out.invokeStatic(RUNTIME, "filled", "(Ljava/lang/String;)Z");
+            out.jump(IFNE, ok);
+            out.place(fail);
+        } else {
+            out.local(ILOAD, slot(v, STATE));
+            out.push(2);
+            out.jump(IF_ICMPEQ, ok);
+        }
+        out.local(ALOAD, 0);
+        out.local(ILOAD, slot(v, STATE));
+        out.push(node.getContent());
+        out.push(node.getRowNum());
+        out.invokeVirtual(RUNTIME, "check", "(ILjava/lang/String;I)L" + FAILURE + ";");
+        out.op(ATHROW, -1);
+        out.place(ok);
+    }
+
+    /**
+     * 标量的浮点数值，整型变量使用它保存的浮点数
+     */
+    private void loadReal(Var v) {
+        out.local(DLOAD, ConstChars.INT.equals(v.kind) ? slot(v, REAL) : slot(v, VALUE));
+    }
+
+    private void loadElement(Var v, int index) {
+        out.local(ALOAD, slot(v, VALUE));
+        out.local(ILOAD, index);
+        switch (v.kind) {
+            case ConstChars.INT:
+                out.op(LALOAD, 0);
+                break;
+            case ConstChars.REAL:
+                out.op(DALOAD, 0);
+                break;
+            case ConstChars.BOOL:
+                out.op(BALOAD, -1);
+                break;
+            default:
+                out.op(AALOAD, -1);
+                break;
+        }
+    }
+
+    /**
+     * 整型变量或数组元素赋值
+     * @param index 保存下标的局部变量，不是数组元素时为 -1
+     * @param value 压入 long
+     * @param real 压入变量对应的浮点数，为 null 时由 value 转换
+     * @param text 压入写法或 null
+     */
+    private void storeInt(Var v, int index, Runnable value, Runnable real, Runnable text) {
+        if (index < 0) {
+            value.run();
+            out.local(LSTORE, slot(v, VALUE));
+            if (real != null) {
+                real.run();
+            } else {
+                out.local(LLOAD, slot(v, VALUE));
+                out.op(L2D, 0);
+            }
+            out.local(DSTORE, slot(v, REAL));
+            text.run();
+            out.local(ASTORE, slot(v, TEXT));
+            setState(v, 2);
+        } else {
+            out.local(ALOAD, slot(v, VALUE));
+            out.local(ILOAD, index);
+            value.run();
+            out.op(LASTORE, -4);
+            storeElementText(v, index, text);
+            markAssigned(v, index);
+        }
+    }
+
+    private void storeReal(Var v, int index, Runnable value, Runnable text) {
+        if (index < 0) {
+            value.run();
+            out.local(DSTORE, slot(v, VALUE));
+            text.run();
+            out.local(ASTORE, slot(v, TEXT));
+            setState(v, 2);
+        } else {
+            out.local(ALOAD, slot(v, VALUE));
+            out.local(ILOAD, index);
+            value.run();
+            out.op(DASTORE, -4);
+            storeElementText(v, index, text);
+            markAssigned(v, index);
+        }
+    }
+
+    private void storeBool(Var v, int index, Runnable value) {
+        if (index < 0) {
+            value.run();
+            out.local(ISTORE, slot(v, VALUE));
+            setState(v, 2);
+        } else {
+            out.local(ALOAD, slot(v, VALUE));
+            out.local(ILOAD, index);
+            value.run();
+            out.op(BASTORE, -3);
+            markAssigned(v, index);
+        }
+    }
+
+    private void storeElementText(Var v, int index, Runnable text) {
+        out.local(ALOAD, slot(v, TEXT));
+        out.local(ILOAD, index);
+        text.run();
+        out.op(AASTORE, -3);
+    }
+
+    private void markAssigned(Var v, int index) {
+        out.local(ALOAD, slot(v, ASSIGNED));
+        out.local(ILOAD, index);
+        out.push(1);
+        out.op(BASTORE, -3);
+    }
+
+    /**
+     * 声明但没有初值，字符串为空字符串
+     */
+    private void unset(Var v) {
+        if (ConstChars.STRING.equals(v.kind)) {
+            storeString(v, -1, () -> out.push(""));
+        }
+        setState(v, 1);
+    }
+
+    private void storeString(Var v, int index, Runnable value) {
+        if (index < 0) {
+            value.run();
+            out.local(ASTORE, slot(v, VALUE));
+        } else {
+            out.local(ALOAD, slot(v, VALUE));
+            out.local(ILOAD, index);
+            value.run();
+            out.op(AASTORE, -3);
+        }
+    }
+
+    private void setState(Var v, int state) {
+        out.push(state);
+        out.local(ISTORE, slot(v, STATE));
+    }
+
+    /**
+     * 局部变量中的 long 是否为空值
+     * @param opcode IFEQ 在是空值时跳转，IFNE 在不是空值时跳转
+     */
+    private void ifEmpty(int local, int opcode, Label label) {
+        out.local(LLOAD, local);
+        out.push(JvmRuntime.EMPTY);
+        out.op(LCMP, -3);
+        out.jump(opcode, label);
+    }
+
+    /**
+     * 最近一次实数运算的结果只能转换为浮点数时跳转，这时不赋值
+     */
+    private void jumpIfTextOnly(Label label) {
+        out.local(ALOAD, 0);
+        out.getField(RUNTIME, "textOnly", "Z");
+        out.jump(IFNE, label);
+    }
+
+    private void lastText() {
+        out.local(ALOAD, 0);
+        out.getField(RUNTIME, "text", "Ljava/lang/String;");
+    }
+
+    /**
+     * 整型和实型保存数值的写法
+     */
+    private static boolean hasText(String kind) {
+        return ConstChars.INT.equals(kind) || ConstChars.REAL.equals(kind);
+    }
+
+    /**
+     * 整数常量按 long 赋值，与 SymbolTableElement.setIntValue 相同
+     */
+    private static long parseLong(TreeNode node) {
+        try {
+            return Long.parseLong(node.getContent());
+        } catch (NumberFormatException e) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的整数超出范围");
+        }
+    }
+}
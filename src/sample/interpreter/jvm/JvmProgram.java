@@ -0,0 +1,49 @@
+package sample.interpreter.jvm;
+
+import sample.interpreter.vm.Host;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 编译得到的类，作为隐藏类加载，不能按名字引用，程序不再使用时可以与它的代码一起卸载
+ */
+public class JvmProgram {
+
+    private final MethodHandle run;
+    private final int codeSize;
+
+    /**
+     * 加载生成的类
+     * @param bytes 类文件，类在 JvmRuntime 所在的包中
+     * @param codeSize 最长的方法体的字节数
+     */
+    JvmProgram(byte[] bytes, int codeSize) throws IllegalAccessException, NoSuchMethodException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+        run = lookup.findStatic(lookup.lookupClass(), JvmCompiler.METHOD,
+                MethodType.methodType(void.class, JvmRuntime.class));
+        this.codeSize = codeSize;
+    }
+
+    /**
+     * 从头执行程序
+     * @param host 输入输出和报错
+     */
+    public void execute(Host host) {
+        try {
+            run.invokeExact(new JvmRuntime(host));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 生成的最长的方法体的字节数，超过 HotSpot 的 HugeMethodLimit（8000）时这个方法不会被 JIT 编译
+     */
+    public int getCodeSize() {
+        return codeSize;
+    }
+}
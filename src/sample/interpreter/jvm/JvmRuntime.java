@@ -0,0 +1,310 @@
+package sample.interpreter.jvm;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.semantic.RealArithmetic;
+import sample.interpreter.semantic.Semantic;
+import sample.interpreter.util.DiagnosticCode;
+import sample.interpreter.vm.Host;
+
+/**
+ * 生成的类在运行时调用的方法，与 Semantic 和虚拟机的相应步骤结果相同。
+ * 报告语义错误的方法返回 Failure，生成的代码把它抛出，由语句的异常处理跳到下一个语句；
+ * 这些方法都很短，C2 会把它们内联到生成的方法中
+ */
+final class JvmRuntime {
+
+    /**
+     * 除数为零得到的空值，整数运算的结果都在 int 范围内，不会与它混淆
+     */
+    static final long EMPTY = Long.MIN_VALUE;
+
+    private static final Failure FAILURE = new Failure();
+
+    private final Host host;
+
+    /**
+     * 最近一次实数运算结果的写法和它是否只能转换为浮点数
+     */
+    String text;
+    boolean textOnly;
+
+    /**
+     * 程序分为几个方法时，变量在方法之间保存在这里，每个方法开始时读入用到的变量，结束时写回
+     */
+    int[] ints;
+    long[] longs;
+    double[] doubles;
+    Object[] objects;
+
+    JvmRuntime(Host host) {
+        this.host = host;
+    }
+
+    void allocate(int intCount, int longCount, int doubleCount, int objectCount) {
+        ints = new int[intCount];
+        longs = new long[longCount];
+        doubles = new double[doubleCount];
+        objects = new Object[objectCount];
+    }
+
+    /*
+     * 语义错误
+     */
+
+    Failure undeclared(String name, int line) {
+        host.error(DiagnosticCode.UNDECLARED, line, name);
+        return FAILURE;
+    }
+
+    /**
+     * 变量没有声明或者没有初始化
+     * @param state 0 表示没有声明
+     */
+    Failure check(int state, String name, int line) {
+        host.error(state == 0 ? DiagnosticCode.UNDECLARED : DiagnosticCode.UNINITIALIZED, line, name);
+        return FAILURE;
+    }
+
+    Failure uninitialized(String name, int index, int line) {
+        host.error(DiagnosticCode.UNINITIALIZED, line, name + "@" + index);
+        return FAILURE;
+    }
+
+    Failure redeclared(String name, int line) {
+        host.error(DiagnosticCode.REDECLARED, line, name);
+        return FAILURE;
+    }
+
+    /**
+     * 错误已经报告，结束当前语句
+     */
+    Failure aborted() {
+        return FAILURE;
+    }
+
+    /**
+     * 与 Semantic.forArray 相同地检查下标
+     */
+    int index(long position, int length, int line) {
+        if (position == EMPTY) {
+            throw fail(DiagnosticCode.ARRAY_INDEX_NOT_INTEGER, line);
+        }
+        if (position < 0) {
+            throw fail(DiagnosticCode.ARRAY_INDEX_NEGATIVE, line);
+        }
+        if (position >= length) {
+            throw fail(DiagnosticCode.ARRAY_INDEX_OUT_OF_BOUNDS, line);
+        }
+        return (int) position;
+    }
+
+    /**
+     * 与 Semantic.forDeclare 相同地检查数组大小
+     */
+    int size(long size, int line) {
+        if (size == EMPTY) {
+            throw fail(DiagnosticCode.ARRAY_SIZE_NOT_INTEGER, line);
+        }
+        if (size < 1) {
+            throw fail(DiagnosticCode.ARRAY_SIZE_NOT_POSITIVE, line);
+        }
+        return (int) size;
+    }
+
+    private Failure fail(DiagnosticCode code, int line) {
+        host.error(code, line);
+        return FAILURE;
+    }
+
+    /*
+     * 运算
+     */
+
+    static long add(long a, long b) {
+        checkOperands(a, b);
+        return (int) a + (int) b;
+    }
+
+    static long subtract(long a, long b) {
+        checkOperands(a, b);
+        return (int) a - (int) b;
+    }
+
+    static long multiply(long a, long b) {
+        checkOperands(a, b);
+        return (int) a * (int) b;
+    }
+
+    long divide(long a, long b, int line) {
+        checkOperands(a, b);
+        if (b == 0) {
+            host.error(DiagnosticCode.DIVIDE_BY_ZERO, line);
+            return EMPTY;
+        }
+        return (int) a / (int) b;
+    }
+
+    /**
+     * 运算对象是空值或超出 int 范围时与原来一样抛出 NumberFormatException
+     */
+    private static void checkOperands(long a, long b) {
+        if (a != (int) a || b != (int) b) {
+            throw new NumberFormatException("not an integer operand");
+        }
+    }
+
+    /**
+     * 实数运算，结果的写法放在 text 中
+     * @param aText 左边不是实数运算或者它的结果只能转换为浮点数
+     * @param bText 右边不是实数运算或者它的结果只能转换为浮点数
+     * @param dynamic 运算方式由子表达式的结果决定
+     */
+    double operate(double a, boolean aText, double b, boolean bText, int operator, boolean dynamic) {
+        if (dynamic && aText && bText) {
+            // 子表达式的结果都只能转换为浮点数时按整数运算，原来在这里抛出异常
+            throw new NumberFormatException("not an integer operand");
+        }
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            throw new NumberFormatException("empty String");
+        }
+        float result = RealArithmetic.operate(operator, a, b);
+        text = String.valueOf(result);
+        textOnly = !Float.isFinite(result) || text.indexOf('E') >= 0;
+        return Double.parseDouble(text);
+    }
+
+    /**
+     * 整数运算的结果转换为浮点数，空值转换为 NaN
+     */
+    static double toReal(long value) {
+        return value == EMPTY ? Double.NaN : value;
+    }
+
+    /*
+     * 比较，由空值转换得到的 NaN 与任何值比较都为假
+     */
+
+    static boolean greater(double a, double b) {
+        return a > b;
+    }
+
+    static boolean less(double a, double b) {
+        return a < b;
+    }
+
+    static boolean equal(double a, double b) {
+        return a == b;
+    }
+
+    static boolean notEqual(double a, double b) {
+        return a != b && !Double.isNaN(a) && !Double.isNaN(b);
+    }
+
+    /**
+     * 与 SymbolTableElement.getIntValue 相同，已经初始化的整数超出 int 范围时抛出 NumberFormatException
+     * @param text 整数的写法，为 null 时按数值转换
+     */
+    static int intValue(long value, String text) {
+        if (value != (int) value) {
+            throw new NumberFormatException("For input string: \"" + (text != null ? text : Long.toString(value)) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * 字符串变量或数组元素是否已经初始化，与 SymbolTableElement.isInitialized 相同，空字符串也算没有初始化
+     */
+    static boolean filled(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * 整型变量赋给布尔变量，与 Semantic.forDeclare 相同，大于 0 为真
+     */
+    static boolean positive(long value, String text) {
+        return intValue(value, text) > 0;
+    }
+
+    /*
+     * 输入输出
+     */
+
+    void printConstant(String text) {
+        host.printConstant(text);
+    }
+
+    /**
+     * 输出整数运算的结果，空值输出空行
+     */
+    void writeValue(long value) {
+        host.print(value == EMPTY ? "\n" : value + "\n");
+    }
+
+    /**
+     * 输出最近一次实数运算的结果
+     */
+    void writeText() {
+        host.print(text + "\n");
+    }
+
+    void writeInt(long value, String text) {
+        host.print((text != null ? text : Long.toString(value)) + "\n");
+    }
+
+    void writeReal(double value, String text) {
+        host.print((text != null ? text : Double.toString(value)) + "\n");
+    }
+
+    void writeBool(boolean value) {
+        host.print(value + "\n");
+    }
+
+    void writeString(String value) {
+        host.print(value + "\n");
+    }
+
+    /**
+     * 与 Host.read 相同地读入并检查输入
+     * @param index 数组元素的下标，不是数组元素时为 -1
+     * @return 输入不合法时提示并返回 null
+     */
+    String read(String kind, String name, int index) {
+        String value = host.readInput();
+        switch (kind) {
+            case ConstChars.INT:
+                if (Semantic.matchInteger(value)) {
+                    return value;
+                }
+                break;
+            case ConstChars.REAL:
+                if (Semantic.matchReal(value) || Semantic.matchInteger(value)) {
+                    return value;
+                }
+                break;
+            case ConstChars.BOOL:
+                if ("true".equals(value) || "false".equals(value)) {
+                    return value;
+                }
+                break;
+            default:
+                return value;
+        }
+        host.print("不能将\"" + value + "\"赋值给变量" + (index >= 0 ? name + "@" + index : name) + "\n");
+        return null;
+    }
+
+    /**
+     * 读入的实数保留写法，读入的整数按数值转换
+     */
+    static String realText(String input) {
+        return Semantic.matchReal(input) ? input : null;
+    }
+
+    static final class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Failure() {
+            super(null, null, false, false);
+        }
+    }
+}
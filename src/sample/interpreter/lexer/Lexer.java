@@ -1,24 +1,26 @@
 package sample.interpreter.lexer;
 
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.DiagnosticCode;
+import sample.interpreter.util.Diagnostics;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * CMM 词法分析
  * @author :  陶勇聪
  */
-public class Lexer {
+public class Lexer implements TokenStream {
 
     /**
-     * 错误数
-     */
-    private Integer errorCount = 0;
-    /**
-     * 错误信息
+     * 词法错误，错误信息在取用时才生成
      */
-    private String errorInfo = "";
+    private Diagnostics diagnostics = new Diagnostics();
     /**
      * 是否为注释
      */
@@ -28,22 +30,136 @@ public class Lexer {
      * 用于语法分析的 Token 集合
      */
     private ArrayList<Token> tokens = new ArrayList<>();
+    /**
+     * 本次编译的标识符池
+     */
+    private SymbolPool symbols = new SymbolPool();
+    /**
+     * 是否使用逐行扫描的旧实现（scanLine），默认使用单遍字符数组状态机
+     */
+    private boolean lineMode = false;
+    /**
+     * 状态机扫描的源程序字符数组
+     */
+    private char[] buffer;
+    /**
+     * 状态机最近生成的 Token 是否为操作数，用于判断 "-" 是运算符还是负号
+     */
+    private boolean operand;
+    /**
+     * 不为 null 时状态机把 Token 写入紧凑缓冲区，而不是生成 Token 对象
+     */
+    private TokenBuffer packed;
+    /**
+     * 状态机当前行生成、尚未取走的 Token
+     */
+    private ArrayDeque<Token> pending = new ArrayDeque<>();
+    /**
+     * 按需扫描时下一行的行首位置
+     */
+    private int cursor;
+    /**
+     * 按需扫描时下一行的行数
+     */
+    private int rowNum;
 
+    /**
+     * 行首状态：处于多行注释中
+     */
+    static final int LINE_ANNOTATION = 1;
+    /**
+     * 行首状态：上一个 Token 为操作数
+     */
+    static final int LINE_OPERAND = 2;
 
-    public Integer getErrorCount() {
-        return errorCount;
+    /**
+     * 字符分类：忽略的字符
+     */
+    private static final byte CHAR_OTHER = 0;
+    /**
+     * 字符分类：分隔符 ( ) ; { } [ ] ,
+     */
+    private static final byte CHAR_SEPARATOR = 1;
+    private static final byte CHAR_PLUS = 2;
+    private static final byte CHAR_MINUS = 3;
+    private static final byte CHAR_TIMES = 4;
+    private static final byte CHAR_DIVIDE = 5;
+    private static final byte CHAR_ASSIGN = 6;
+    private static final byte CHAR_LT = 7;
+    private static final byte CHAR_GT = 8;
+    private static final byte CHAR_LETTER = 9;
+    private static final byte CHAR_DIGIT = 10;
+    private static final byte CHAR_QUOTE = 11;
+    /**
+     * 字符分类：空白符 空格 \t \r \n
+     */
+    private static final byte CHAR_BLANK = 12;
+    /**
+     * 字符分类：不可识别符号（汉字、全角标点等）
+     */
+    private static final byte CHAR_ILLEGAL = 13;
+    /**
+     * 字符分类表，下标为字符值
+     */
+    private static final byte[] CHAR_CLASS = new byte[Character.MAX_VALUE + 1];
+    /**
+     * find 函数使用的关键字/标识符结束字符表
+     */
+    private static final boolean[] CHAR_STOP = new boolean[128];
+
+    static {
+        for (char c : "();{}[],".toCharArray()) {
+            CHAR_CLASS[c] = CHAR_SEPARATOR;
+        }
+        CHAR_CLASS['+'] = CHAR_PLUS;
+        CHAR_CLASS['-'] = CHAR_MINUS;
+        CHAR_CLASS['*'] = CHAR_TIMES;
+        CHAR_CLASS['/'] = CHAR_DIVIDE;
+        CHAR_CLASS['='] = CHAR_ASSIGN;
+        CHAR_CLASS['<'] = CHAR_LT;
+        CHAR_CLASS['>'] = CHAR_GT;
+        CHAR_CLASS['"'] = CHAR_QUOTE;
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASS[c] = CHAR_LETTER;
+            CHAR_CLASS[c - 'a' + 'A'] = CHAR_LETTER;
+        }
+        CHAR_CLASS['_'] = CHAR_LETTER;
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASS[c] = CHAR_DIGIT;
+        }
+        for (char c : " \t\r\n".toCharArray()) {
+            CHAR_CLASS[c] = CHAR_BLANK;
+        }
+        for (char c = 19968; c < 40870; c++) {
+            CHAR_CLASS[c] = CHAR_ILLEGAL;
+        }
+        for (char c : "\\~`|、?&^%$@!#；【】，。“”‘’？（）《》·".toCharArray()) {
+            CHAR_CLASS[c] = CHAR_ILLEGAL;
+        }
+        for (char c : "\n, \t{}();=+-*/[]<>".toCharArray()) {
+            CHAR_STOP[c] = true;
+        }
     }
 
-    public void setErrorCount(Integer errorCount) {
-        this.errorCount = errorCount;
+
+    public Integer getErrorCount() {
+        return diagnostics.count(Phase.LEXER);
     }
 
     public String getErrorInfo() {
-        return errorInfo;
+        return diagnostics.format(Phase.LEXER);
     }
 
-    public void setErrorInfo(String errorInfo) {
-        this.errorInfo = errorInfo;
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * 使用外部的收集器，便于与语法、语义分析共用；每次扫描开始时只清除其中的词法错误
+     * @param diagnostics 收集器
+     */
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
     }
 
     public boolean isAnnotation() {
@@ -62,6 +178,22 @@ public class Lexer {
         this.tokens = tokens;
     }
 
+    public SymbolPool getSymbols() {
+        return symbols;
+    }
+
+    public void setSymbols(SymbolPool symbols) {
+        this.symbols = symbols;
+    }
+
+    public boolean isLineMode() {
+        return lineMode;
+    }
+
+    public void setLineMode(boolean lineMode) {
+        this.lineMode = lineMode;
+    }
+
 
     /**
      * 识别是否为字母
@@ -111,18 +243,92 @@ public class Lexer {
                 && input.substring(0, 1).matches("[A-Za-z]");
     }
 
+    /**
+     * 识别 buffer[begin, end) 是否为整数，与 isInteger(String) 结果一致
+     * @param buffer 字符数组
+     * @param begin 开始位置
+     * @param end 结束位置
+     * @return bool
+     */
+    private static boolean isInteger(char[] buffer, int begin, int end) {
+        if (begin < end && buffer[begin] == '-') {
+            begin++;
+        }
+        if (begin >= end) {
+            return false;
+        }
+        for (int i = begin; i < end; i++) {
+            if (!isDigit(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 识别 buffer[begin, end) 是否为浮点数，与 isFloat(String) 结果一致
+     * @param buffer 字符数组
+     * @param begin 开始位置
+     * @param end 结束位置
+     * @return bool
+     */
+    private static boolean isFloat(char[] buffer, int begin, int end) {
+        if (begin < end && buffer[begin] == '-') {
+            begin++;
+        }
+        int i = begin;
+        // 整数部分
+        boolean allZero = true;
+        while (i < end && isDigit(buffer[i])) {
+            allZero &= buffer[i] == '0';
+            i++;
+        }
+        if (i == begin || i == end || (allZero && i - begin > 1)) {
+            return false;
+        }
+        // 一个或多个小数部分
+        while (i < end) {
+            if (buffer[i++] != '.') {
+                return false;
+            }
+            int digits = i;
+            while (i < end && isDigit(buffer[i])) {
+                i++;
+            }
+            if (i == digits) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 识别 buffer[begin, end) 是否为标识符，与 isIdentifier(String) 结果一致
+     * @param buffer 字符数组
+     * @param begin 开始位置
+     * @param end 结束位置
+     * @return bool
+     */
+    private static boolean isIdentifier(char[] buffer, int begin, int end) {
+        if (begin >= end || buffer[begin] == '_' || buffer[end - 1] == '_') {
+            return false;
+        }
+        for (int i = begin; i < end; i++) {
+            byte c = CHAR_CLASS[buffer[i]];
+            if (c != CHAR_LETTER && c != CHAR_DIGIT) {
+                return false;
+            }
+        }
+        return CHAR_CLASS[buffer[begin]] == CHAR_LETTER;
+    }
+
     /**
      * 识别是否为保留字
      * @return bool
      * @param input 要识别的字符串
      */
     private static boolean isWord(String input) {
-        return input.equals(ConstChars.IF) || input.equals(ConstChars.ELSE)
-                || input.equals(ConstChars.WHILE) || input.equals(ConstChars.READ)
-                || input.equals(ConstChars.WRITE) || input.equals(ConstChars.INT)
-                || input.equals(ConstChars.REAL) || input.equals(ConstChars.BOOL)
-                || input.equals(ConstChars.STRING) || input.equals(ConstChars.TRUE)
-                || input.equals(ConstChars.FALSE) || input.equals(ConstChars.FOR);
+        return TokenKind.keyword(input) != null;
     }
 
     /**
@@ -284,10 +490,8 @@ public class Lexer {
                             break;
                         case 3:
                             if (ch == '/') {
-                                errorCount++;
-                                errorInfo += "    ERROR:第 " + rowNum + " 行,第 " + i
-                                        + " 列：" + "运算符\"" + ConstChars.TIMES
-                                        + "\"使用错误  \n";
+                                diagnostics.report(DiagnosticCode.OPERATOR_MISUSE, rowNum, i,
+                                        ConstChars.TIMES);
                                 node.add(new TreeNode(ConstChars.ERROR + "运算符\""
                                         + ConstChars.TIMES + "\"使用错误"));
                             } else {
@@ -371,9 +575,8 @@ public class Lexer {
                                             id));
 
                                 } else {
-                                    errorCount++;
-                                    errorInfo += "    ERROR:第 " + rowNum + " 行,第 "
-                                            + (begin + 1) + " 列：" + id + "是非法标识符\n";
+                                    diagnostics.report(DiagnosticCode.ILLEGAL_IDENTIFIER, rowNum,
+                                            begin + 1, id);
                                     node.add(new TreeNode(ConstChars.ERROR + id
                                             + "是非法标识符"));
 
@@ -387,9 +590,7 @@ public class Lexer {
                                 state = 8;
                             } else {
                                 if (isLetter(ch)) {
-                                    errorCount++;
-                                    errorInfo += "    ERROR:第 " + rowNum + " 行,第 "
-                                            + i + " 列：" + "数字格式错误或者标志符错误\n";
+                                    diagnostics.report(DiagnosticCode.MALFORMED_NUMBER, rowNum, i);
                                     node.add(new TreeNode(ConstChars.ERROR
                                             + "数字格式错误或者标志符错误"));
 
@@ -403,10 +604,8 @@ public class Lexer {
 
                                             tokens.add(new Token(rowNum, begin + 1, "整数", id));
                                         } else {
-                                            errorCount++;
-                                            errorInfo += "    ERROR:第 " + rowNum
-                                                    + " 行,第 " + (begin + 1) + " 列："
-                                                    + id + "是非法实数\n";
+                                            diagnostics.report(DiagnosticCode.ILLEGAL_REAL, rowNum,
+                                                    begin + 1, id);
                                             node.add(new TreeNode(ConstChars.ERROR
                                                     + id + "是非法整数"));
                                         }
@@ -418,10 +617,8 @@ public class Lexer {
                                                     begin + 1, "实数", id));
 
                                         } else {
-                                            errorCount++;
-                                            errorInfo += "    ERROR:第 " + rowNum
-                                                    + " 行,第 " + (begin + 1) + " 列："
-                                                    + id + "是非法实数\n";
+                                            diagnostics.report(DiagnosticCode.ILLEGAL_REAL, rowNum,
+                                                    begin + 1, id);
                                             node.add(new TreeNode(ConstChars.ERROR
                                                     + id + "是非法实数"));
 
@@ -451,10 +648,8 @@ public class Lexer {
                                 state = 0;
                             } else if (i == length - 1) {
                                 String string = lineText.substring(begin);
-                                errorCount++;
-                                errorInfo += "    ERROR:第 " + rowNum + " 行,第 "
-                                        + (begin + 1) + " 列：" + "字符串 " + string
-                                        + " 缺少引号  \n";
+                                diagnostics.report(DiagnosticCode.UNTERMINATED_STRING, rowNum,
+                                        begin + 1, string);
                                 node.add(new TreeNode(ConstChars.ERROR + "字符串 "
                                         + string + " 缺少引号  \n"));
                             }
@@ -471,9 +666,7 @@ public class Lexer {
                             || ch == '’' || ch == '？' || ch == '（' || ch == '）'
                             || ch == '《' || ch == '》' || ch == '·';
                     if (b) {
-                        errorCount++;
-                        errorInfo += "    ERROR:第 " + rowNum + " 行,第 "
-                                + (i + 1) + " 列：" + "\"" + ch + "\"是不可识别符号  \n";
+                        diagnostics.report(DiagnosticCode.ILLEGAL_CHARACTER, rowNum, i + 1, ch);
                         node.add(new TreeNode(ConstChars.ERROR + "\"" + ch
                                 + "\"是不可识别符号"));
                         if (state == 0) {
@@ -502,10 +695,27 @@ public class Lexer {
      * @return 树的根节点
      */
     public void scanAll(String cmmText) {
-        setErrorInfo("");
-        setErrorCount(0);
+        diagnostics.clear(Phase.LEXER);
         setTokens(new ArrayList<>());
         setAnnotation(false);
+        symbols = new SymbolPool();
+        if (lineMode) {
+            scanLines(cmmText);
+            for (Token token : tokens) {
+                if (token.getKind() == TokenKind.IDENTIFIER) {
+                    token.setSymbol(symbols.intern(token.getContent()));
+                }
+            }
+        } else {
+            scanBuffer(cmmText.toCharArray());
+        }
+    }
+
+    /**
+     * 逐行扫描整个cmm程序（旧实现）
+     * @param cmmText cmm程序
+     */
+    private void scanLines(String cmmText) {
         StringReader stringReader = new StringReader(cmmText);
         TreeNode root = new TreeNode("PROGRAM");
         String eachLine = "";
@@ -532,4 +742,451 @@ public class Lexer {
         }
         //return root;
     }
+
+    /**
+     * 准备按需扫描 cmm 程序，之后通过 peek 和 next 逐个取得 Token，
+     * 每次只扫描一行，不保存整个 Token 集合
+     * @param cmmText cmm程序
+     * @return Token 流
+     */
+    public TokenStream stream(String cmmText) {
+        diagnostics.clear(Phase.LEXER);
+        setTokens(new ArrayList<>());
+        setAnnotation(false);
+        buffer = cmmText.toCharArray();
+        symbols = new SymbolPool();
+        operand = false;
+        packed = null;
+        pending.clear();
+        cursor = 0;
+        rowNum = 1;
+        return this;
+    }
+
+    @Override
+    public Token peek() {
+        fill();
+        return pending.peekFirst();
+    }
+
+    @Override
+    public Token next() {
+        fill();
+        return pending.pollFirst();
+    }
+
+    /**
+     * 扫描后续的行，直到得到至少一个 Token 或程序结束
+     */
+    private void fill() {
+        while (pending.isEmpty() && buffer != null && cursor < buffer.length) {
+            cursor = scanRow(cursor, rowNum++);
+        }
+    }
+
+    /**
+     * 扫描整个cmm程序，结果保存在紧凑的 Token 缓冲区中，不生成 Token 对象
+     * @param cmmText cmm程序
+     * @return Token 缓冲区
+     */
+    public TokenBuffer scanPacked(String cmmText) {
+        diagnostics.clear(Phase.LEXER);
+        setTokens(new ArrayList<>());
+        setAnnotation(false);
+        char[] source = cmmText.toCharArray();
+        // 平均每 4 个字符约一个 Token
+        symbols = new SymbolPool();
+        packed = new TokenBuffer(source, source.length / 4, symbols);
+        TokenBuffer result = packed;
+        try {
+            scanBuffer(source);
+        } finally {
+            packed = null;
+        }
+        return result;
+    }
+
+    /**
+     * 单遍扫描整个字符数组，行结束符 \n、\r 和 \r\n 与 BufferedReader.readLine 的分行方式一致
+     * @param buffer cmm程序字符数组
+     */
+    private void scanBuffer(char[] buffer) {
+        this.buffer = buffer;
+        this.operand = false;
+        pending.clear();
+        int begin = 0;
+        int rowNum = 1;
+        while (begin < buffer.length) {
+            begin = scanRow(begin, rowNum++);
+            tokens.addAll(pending);
+            pending.clear();
+        }
+    }
+
+    /**
+     * 从给定的行首状态开始扫描单独的一行，供增量词法分析使用，
+     * 错误记录到 diagnostics 中
+     * @param line 一行字符，不含行结束符
+     * @param rowNum 所在的行数
+     * @param state 行首状态，LINE_ANNOTATION 与 LINE_OPERAND 的组合
+     * @param out 保存生成的 Token
+     * @return 行尾状态，即下一行的行首状态
+     */
+    int scanLine(char[] line, int rowNum, int state, List<Token> out) {
+        return scanRange(line, 0, line.length, rowNum, state, out);
+    }
+
+    /**
+     * 从给定的行首状态开始扫描 buffer[from, to) 中的若干整行，供分块并行词法分析使用，
+     * 错误记录到 diagnostics 中
+     * @param buffer cmm程序字符数组
+     * @param from 第一行的行首位置
+     * @param to 最后一行行结束符之后的位置
+     * @param rowNum 第一行的行数
+     * @param state 行首状态，LINE_ANNOTATION 与 LINE_OPERAND 的组合
+     * @param out 保存生成的 Token
+     * @return 最后一行的行尾状态
+     */
+    int scanRange(char[] buffer, int from, int to, int rowNum, int state, List<Token> out) {
+        this.buffer = buffer;
+        isAnnotation = (state & LINE_ANNOTATION) != 0;
+        operand = (state & LINE_OPERAND) != 0;
+        packed = null;
+        pending.clear();
+        int begin = from;
+        while (begin < to) {
+            begin = scanRow(begin, rowNum++);
+            out.addAll(pending);
+            pending.clear();
+        }
+        return (isAnnotation ? LINE_ANNOTATION : 0) | (operand ? LINE_OPERAND : 0);
+    }
+
+    /**
+     * 取 buffer 中 i 处的字符，行结束符统一视为 \n，越界视为最后一行的 \n
+     * @param i 位置
+     * @return 字符
+     */
+    private char charAt(int i) {
+        if (i >= buffer.length) {
+            return '\n';
+        }
+        char ch = buffer[i];
+        return ch == '\r' ? '\n' : ch;
+    }
+
+    /**
+     * 字符分类表驱动的状态机，扫描从 start 开始的一行，状态转移与 scanLine 相同
+     * @param start 行首位置
+     * @param rowNum 所在的行数
+     * @return 下一行的行首位置
+     */
+    private int scanRow(int start, int rowNum) {
+        // switch状态值
+        int state = 0;
+        // 记录token开始位置
+        int begin = 0;
+        // 行结束符位置，遇到后才能确定
+        int lineEnd = Integer.MAX_VALUE;
+        for (int i = start; i <= lineEnd; i++) {
+            char ch = charAt(i);
+            if (ch == '\n') {
+                lineEnd = i;
+            }
+            if (isAnnotation) {
+                if (ch == '*') {
+                    state = 3;
+                } else if (ch == '/' && state == 3) {
+                    state = 0;
+                    isAnnotation = false;
+                } else {
+                    state = 0;
+                }
+                continue;
+            }
+            byte charClass = CHAR_CLASS[ch];
+            if (charClass == CHAR_ILLEGAL) {
+                error(DiagnosticCode.ILLEGAL_CHARACTER, rowNum, i - start + 1, ch);
+                continue;
+            } else if (charClass == CHAR_OTHER) {
+                continue;
+            }
+            switch (state) {
+                case 0:
+                    switch (charClass) {
+                        case CHAR_SEPARATOR:
+                            emit(separator(ch), i, 1, rowNum, i - start + 1);
+                            break;
+                        case CHAR_PLUS:
+                            state = 1;
+                            begin = i;
+                            break;
+                        case CHAR_MINUS:
+                            state = 2;
+                            begin = i;
+                            break;
+                        case CHAR_TIMES:
+                            state = 3;
+                            begin = i;
+                            break;
+                        case CHAR_DIVIDE:
+                            state = 4;
+                            begin = i;
+                            break;
+                        case CHAR_ASSIGN:
+                            state = 5;
+                            begin = i;
+                            break;
+                        case CHAR_LT:
+                            state = 6;
+                            begin = i;
+                            break;
+                        case CHAR_GT:
+                            state = 9;
+                            begin = i;
+                            break;
+                        case CHAR_LETTER:
+                            state = 7;
+                            begin = i;
+                            break;
+                        case CHAR_DIGIT:
+                            state = 8;
+                            begin = i;
+                            break;
+                        case CHAR_QUOTE:
+                            state = 10;
+                            begin = i + 1;
+                            emit(TokenKind.DQ, i, 1, rowNum, begin - start);
+                            break;
+                        default:
+                            break;
+                    }
+                    break;
+                case 1:
+                    emit(TokenKind.PLUS, begin, 1, rowNum, i - start);
+                    i--;
+                    state = 0;
+                    break;
+                case 2:
+                    if (operand) {
+                        emit(TokenKind.MINUS, begin, 1, rowNum, i - start);
+                        i--;
+                        state = 0;
+                    } else if (ch != '\n') {
+                        begin = i - 1;
+                        state = 8;
+                    }
+                    break;
+                case 3:
+                    if (ch == '/') {
+                        error(DiagnosticCode.OPERATOR_MISUSE, rowNum, i - start, ConstChars.TIMES);
+                    } else {
+                        emit(TokenKind.TIMES, begin, 1, rowNum, i - start);
+                        i--;
+                    }
+                    state = 0;
+                    break;
+                case 4:
+                    if (ch == '/') {
+                        // 单行注释，跳到行结束符
+                        while (charAt(i) != '\n') {
+                            i++;
+                        }
+                        i--;
+                        state = 0;
+                    } else if (ch == '*') {
+                        isAnnotation = true;
+                    } else {
+                        emit(TokenKind.DIVIDE, begin, 1, rowNum, i - start);
+                        i--;
+                        state = 0;
+                    }
+                    break;
+                case 5:
+                    if (ch == '=') {
+                        emit(TokenKind.EQUAL, begin, i - begin + 1, rowNum, i - start);
+                    } else {
+                        emit(TokenKind.ASSIGN, begin, 1, rowNum, i - start);
+                        i--;
+                    }
+                    state = 0;
+                    break;
+                case 6:
+                    if (ch == '>') {
+                        emit(TokenKind.NEQUAL, begin, i - begin + 1, rowNum, i - start);
+                    } else {
+                        emit(TokenKind.LT, begin, 1, rowNum, i - start);
+                        i--;
+                    }
+                    state = 0;
+                    break;
+                case 7:
+                    if (charClass != CHAR_LETTER && charClass != CHAR_DIGIT) {
+                        scanWord(begin, i, start, rowNum);
+                        i--;
+                        state = 0;
+                    }
+                    break;
+                case 8:
+                    if (charClass == CHAR_LETTER) {
+                        error(DiagnosticCode.MALFORMED_NUMBER, rowNum, i - start);
+                        i = find(begin + 1);
+                        state = 0;
+                    } else if (charClass != CHAR_DIGIT) {
+                        scanNumber(begin, i, start, rowNum);
+                        i = find(i);
+                        state = 0;
+                    }
+                    break;
+                case 9:
+                    emit(TokenKind.GT, begin, 1, rowNum, i - start);
+                    i--;
+                    state = 0;
+                    break;
+                case 10:
+                    if (ch == '"') {
+                        emit(TokenKind.STRING_LITERAL, begin, i - begin, rowNum,
+                                begin - start + 1);
+                        emit(TokenKind.DQ, i, 1, rowNum, i - start + 1);
+                        state = 0;
+                    } else if (ch == '\n') {
+                        // 与逐行扫描一致，字符串后带换行
+                        error(DiagnosticCode.UNTERMINATED_STRING, rowNum, begin - start + 1,
+                                new String(buffer, begin, i - begin) + "\n");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        // 跳过行结束符，\r\n 视为一个
+        if (lineEnd < buffer.length && buffer[lineEnd] == '\r'
+                && lineEnd + 1 < buffer.length && buffer[lineEnd + 1] == '\n') {
+            lineEnd++;
+        }
+        return lineEnd + 1;
+    }
+
+    /**
+     * 识别 buffer[begin, end) 处的关键字或标识符
+     */
+    private void scanWord(int begin, int end, int start, int rowNum) {
+        TokenKind keyword = TokenKind.keyword(buffer, begin, end - begin);
+        if (keyword != null) {
+            emit(keyword, begin, end - begin, rowNum, begin - start + 1);
+        } else if (isIdentifier(buffer, begin, end)) {
+            emit(TokenKind.IDENTIFIER, begin, end - begin, rowNum, begin - start + 1);
+        } else {
+            error(DiagnosticCode.ILLEGAL_IDENTIFIER, rowNum, begin - start + 1,
+                    new String(buffer, begin, end - begin));
+        }
+    }
+
+    /**
+     * 识别 buffer[begin, end) 处的整数或实数
+     */
+    private void scanNumber(int begin, int end, int start, int rowNum) {
+        boolean real = false;
+        for (int j = begin; j < end; j++) {
+            if (buffer[j] == '.') {
+                real = true;
+                break;
+            }
+        }
+        if (real ? isFloat(buffer, begin, end) : isInteger(buffer, begin, end)) {
+            emit(real ? TokenKind.REAL_LITERAL : TokenKind.INTEGER_LITERAL, begin,
+                    end - begin, rowNum, begin - start + 1);
+        } else {
+            error(DiagnosticCode.ILLEGAL_REAL, rowNum, begin - start + 1,
+                    new String(buffer, begin, end - begin));
+        }
+    }
+
+    /**
+     * 从 begin 开始找到关键字或标识符的结束位置，与 find(int, String) 相同
+     * @param begin 开始位置
+     * @return 结束字符的前一个位置
+     */
+    private int find(int begin) {
+        int i = begin;
+        char c = charAt(i);
+        while (c >= CHAR_STOP.length || !CHAR_STOP[c]) {
+            c = charAt(++i);
+        }
+        return i - 1;
+    }
+
+    /**
+     * 上一个 Token 之后的 "-" 是否为减号（否则为负号）
+     * @param kind 上一个 Token 的种类
+     * @return bool
+     */
+    private static boolean isOperand(TokenKind kind) {
+        return kind == TokenKind.INTEGER_LITERAL || kind == TokenKind.IDENTIFIER
+                || kind == TokenKind.REAL_LITERAL || kind == TokenKind.RPAREN
+                || kind == TokenKind.RBRACKET;
+    }
+
+    /**
+     * 分隔符对应的 Token 种类
+     * @param ch 分隔符
+     * @return Token 种类
+     */
+    private static TokenKind separator(char ch) {
+        switch (ch) {
+            case '(':
+                return TokenKind.LPAREN;
+            case ')':
+                return TokenKind.RPAREN;
+            case ';':
+                return TokenKind.SEMICOLON;
+            case '{':
+                return TokenKind.LBRACE;
+            case '}':
+                return TokenKind.RBRACE;
+            case '[':
+                return TokenKind.LBRACKET;
+            case ']':
+                return TokenKind.RBRACKET;
+            default:
+                return TokenKind.COMMA;
+        }
+    }
+
+    /**
+     * 输出状态机识别出的 Token：写入紧凑缓冲区，或生成 Token 对象，
+     * 标识符同时在标识符池中取得符号编号
+     * @param kind 种类
+     * @param offset 在源程序中的开始位置
+     * @param length 长度
+     * @param rowNum 行
+     * @param colNum 列
+     */
+    private void emit(TokenKind kind, int offset, int length, int rowNum, int colNum) {
+        operand = isOperand(kind);
+        int symbol = kind == TokenKind.IDENTIFIER ? symbols.intern(buffer, offset, length) : -1;
+        if (packed != null) {
+            packed.add(kind, offset, length, rowNum, colNum, symbol);
+        } else {
+            String content = kind.getText();
+            if (content == null) {
+                content = symbol >= 0 ? symbols.getName(symbol)
+                        : new String(buffer, offset, length);
+            }
+            Token token = new Token(rowNum, colNum, kind, content);
+            token.setSymbol(symbol);
+            pending.add(token);
+        }
+    }
+
+    /**
+     * 记录状态机发现的词法错误
+     * @param code 错误编号
+     * @param rowNum 行
+     * @param colNum 列
+     * @param args 错误信息的参数
+     */
+    private void error(DiagnosticCode code, int rowNum, int colNum, Object... args) {
+        diagnostics.report(code, rowNum, colNum, args);
+    }
 }
@@ -0,0 +1,373 @@
+package sample.interpreter.lexer;
+
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.Diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量词法分析会话
+ * 按行缓存 Token、错误信息和行首状态（是否处于多行注释中、上一个 Token 是否为操作数），
+ * 编辑后只重新扫描被修改的行，并向后扫描到行首状态与缓存一致为止
+ */
+public class LexerSession {
+
+    /**
+     * 一行的缓存
+     */
+    private static class Line {
+        /**
+         * 行内容，不含行结束符
+         */
+        private String text;
+        /**
+         * 行结束符 \n、\r、\r\n，最后一行为空串
+         */
+        private String terminator;
+        /**
+         * 行首状态
+         */
+        private int state;
+        /**
+         * 扫描时的行数，之前插入或删除行后与实际行数不同
+         */
+        private int rowNum;
+        private ArrayList<Token> tokens = new ArrayList<>();
+        private int errorCount;
+        /**
+         * 该行的词法错误，没有错误时为 null
+         */
+        private Diagnostics diagnostics;
+
+        private Line(String text, String terminator) {
+            this.text = text;
+            this.terminator = terminator;
+        }
+
+        private int length() {
+            return text.length() + terminator.length();
+        }
+    }
+
+    /**
+     * 扫描单行使用的词法分析器
+     */
+    private final Lexer lexer = new Lexer();
+    /**
+     * 各行缓存
+     */
+    private final ArrayList<Line> lines = new ArrayList<>();
+    /**
+     * 最近一次 update 的程序文本，调用 edit 后失效
+     */
+    private String text;
+    /**
+     * 最近一次编辑所在的行下标，编辑通常集中在附近，从这里开始查找编辑位置所在的行
+     */
+    private int anchorLine;
+    /**
+     * anchorLine 的行首位置
+     */
+    private int anchorPosition;
+    /**
+     * 错误数
+     */
+    private int errorCount;
+    /**
+     * 最近一次 reset、edit 或 update 重新扫描的行数
+     */
+    private int relexedLines;
+
+    public LexerSession() {
+        reset("");
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public int getRelexedLines() {
+        return relexedLines;
+    }
+
+    /**
+     * 会话的标识符池，编辑前后同名标识符的符号编号不变
+     * @return 标识符池
+     */
+    public SymbolPool getSymbols() {
+        return lexer.getSymbols();
+    }
+
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * 丢弃缓存，重新扫描整个cmm程序
+     * @param cmmText cmm程序
+     */
+    public void reset(String cmmText) {
+        lines.clear();
+        lines.addAll(split(cmmText));
+        lexer.setSymbols(new SymbolPool());
+        errorCount = 0;
+        anchorLine = 0;
+        anchorPosition = 0;
+        relexedLines = lines.size();
+        int state = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            state = scan(i, state);
+        }
+        text = cmmText;
+    }
+
+    /**
+     * 用编辑后的整个程序更新会话，与上次的文本比较出被修改的区间后增量扫描
+     * @param cmmText 编辑后的cmm程序
+     */
+    public void update(String cmmText) {
+        if (text == null) {
+            reset(cmmText);
+            return;
+        }
+        if (text.equals(cmmText)) {
+            relexedLines = 0;
+            return;
+        }
+        int limit = Math.min(text.length(), cmmText.length());
+        int prefix = 0;
+        while (prefix < limit && text.charAt(prefix) == cmmText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix && text.charAt(text.length() - 1 - suffix)
+                == cmmText.charAt(cmmText.length() - 1 - suffix)) {
+            suffix++;
+        }
+        edit(prefix, text.length() - prefix - suffix,
+                cmmText.substring(prefix, cmmText.length() - suffix));
+        text = cmmText;
+    }
+
+    /**
+     * 把 [offset, offset + length) 处的字符替换为 inserted，只重新扫描受影响的行
+     * @param offset 开始位置
+     * @param length 被替换的字符数
+     * @param inserted 插入的字符串
+     */
+    public void edit(int offset, int length, String inserted) {
+        text = null;
+        relexedLines = 0;
+        // 从上次编辑的行开始找到 offset 所在的行
+        int first = anchorLine;
+        int position = anchorPosition;
+        while (first > 0 && position > offset) {
+            first--;
+            position -= lines.get(first).length();
+        }
+        while (first < lines.size() - 1 && position + lines.get(first).length() <= offset) {
+            position += lines.get(first).length();
+            first++;
+        }
+        // 上一行以 \r 结束时，插入的 \n 会与它合成一个行结束符
+        if (first > 0 && "\r".equals(lines.get(first - 1).terminator)) {
+            first--;
+            position -= lines.get(first).length();
+        }
+        // 找到 offset + length 所在的行
+        int last = first;
+        int lastPosition = position;
+        while (last < lines.size() - 1
+                && lastPosition + lines.get(last).length() <= offset + length) {
+            lastPosition += lines.get(last).length();
+            last++;
+        }
+        Line lastLine = lines.get(last);
+        StringBuilder chunk = new StringBuilder();
+        for (int i = first; i < last; i++) {
+            chunk.append(lines.get(i).text).append(lines.get(i).terminator);
+        }
+        chunk.append(lastLine.text).append(lastLine.terminator);
+        int from = offset - position;
+        chunk.replace(from, from + length, inserted);
+        List<Line> replacement = split(chunk.toString());
+        // 原来的最后一行有行结束符时，不产生新的空行
+        if (!lastLine.terminator.isEmpty()) {
+            replacement.remove(replacement.size() - 1);
+        }
+
+        int state = lines.get(first).state;
+        for (int i = first; i <= last; i++) {
+            errorCount -= lines.get(i).errorCount;
+        }
+        lines.subList(first, last + 1).clear();
+        lines.addAll(first, replacement);
+        anchorLine = first;
+        anchorPosition = position;
+        int i = first;
+        int end = first + replacement.size();
+        // 向后扫描到行首状态不再变化为止
+        while (i < lines.size() && (i < end || lines.get(i).state != state)) {
+            errorCount -= lines.get(i).errorCount;
+            state = scan(i, state);
+            relexedLines++;
+            i++;
+        }
+    }
+
+    /**
+     * 所有 Token，行数已更新
+     * @return Token 集合
+     */
+    public ArrayList<Token> getTokens() {
+        ArrayList<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            tokens.addAll(refresh(i).tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * 按行取得 Token 的流，在流使用期间不能编辑
+     * @return Token 流
+     */
+    public TokenStream stream() {
+        return new TokenStream() {
+            private int row = 0;
+            private int index = 0;
+
+            @Override
+            public Token peek() {
+                while (row < lines.size()) {
+                    Line line = refresh(row);
+                    if (index < line.tokens.size()) {
+                        return line.tokens.get(index);
+                    }
+                    row++;
+                    index = 0;
+                }
+                return null;
+            }
+
+            @Override
+            public Token next() {
+                Token token = peek();
+                if (token != null) {
+                    index++;
+                }
+                return token;
+            }
+        };
+    }
+
+    /**
+     * 按行的顺序合并各行的词法错误
+     * @return 词法错误
+     */
+    public Diagnostics getDiagnostics() {
+        Diagnostics diagnostics = new Diagnostics();
+        if (errorCount > 0) {
+            for (int i = 0; i < lines.size(); i++) {
+                if (lines.get(i).errorCount > 0) {
+                    diagnostics.addAll(refresh(i).diagnostics);
+                }
+            }
+        }
+        return diagnostics;
+    }
+
+    /**
+     * 错误信息，与 Lexer.scanAll 的结果相同
+     * @return 错误信息
+     */
+    public String getErrorInfo() {
+        return getDiagnostics().format(Phase.LEXER);
+    }
+
+    /**
+     * 当前的程序文本
+     * @return cmm程序
+     */
+    public String getText() {
+        if (text == null) {
+            StringBuilder builder = new StringBuilder();
+            for (Line line : lines) {
+                builder.append(line.text).append(line.terminator);
+            }
+            text = builder.toString();
+        }
+        return text;
+    }
+
+    /**
+     * 从行首状态 state 开始扫描第 index 行
+     * @param index 行下标
+     * @param state 行首状态
+     * @return 行尾状态
+     */
+    private int scan(int index, int state) {
+        Line line = lines.get(index);
+        line.state = state;
+        line.rowNum = index + 1;
+        line.tokens = new ArrayList<>();
+        Diagnostics diagnostics = lexer.getDiagnostics();
+        diagnostics.clear();
+        int end = lexer.scanLine(line.text.toCharArray(), line.rowNum, state, line.tokens);
+        line.errorCount = diagnostics.count();
+        if (line.errorCount > 0) {
+            // 有错误的行保留这个收集器，之后的行换用新的
+            line.diagnostics = diagnostics;
+            lexer.setDiagnostics(new Diagnostics());
+        } else {
+            line.diagnostics = null;
+        }
+        errorCount += line.errorCount;
+        return end;
+    }
+
+    /**
+     * 行数变化后更新缓存中的行数，有错误信息的行重新扫描以更新错误信息中的行数
+     * @param index 行下标
+     * @return 该行缓存
+     */
+    private Line refresh(int index) {
+        Line line = lines.get(index);
+        if (line.rowNum != index + 1) {
+            if (line.errorCount > 0) {
+                errorCount -= line.errorCount;
+                scan(index, line.state);
+            } else {
+                for (Token token : line.tokens) {
+                    token.setRowNum(index + 1);
+                }
+                line.rowNum = index + 1;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * 按 \n、\r 和 \r\n 分行，与 BufferedReader.readLine 一致，最后一行没有行结束符
+     * @param cmmText cmm程序
+     * @return 各行
+     */
+    private static List<Line> split(String cmmText) {
+        List<Line> result = new ArrayList<>();
+        int begin = 0;
+        for (int i = 0; i < cmmText.length(); i++) {
+            char ch = cmmText.charAt(i);
+            if (ch == '\n' || ch == '\r') {
+                int end = i;
+                if (ch == '\r' && i + 1 < cmmText.length() && cmmText.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                result.add(new Line(cmmText.substring(begin, end),
+                        cmmText.substring(end, i + 1)));
+                begin = i + 1;
+            }
+        }
+        result.add(new Line(cmmText.substring(begin), ""));
+        return result;
+    }
+}
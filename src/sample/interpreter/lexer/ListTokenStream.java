@@ -0,0 +1,32 @@
+package sample.interpreter.lexer;
+
+import java.util.List;
+
+/**
+ * 把已经生成好的 Token 集合适配为 TokenStream
+ */
+public class ListTokenStream implements TokenStream {
+
+    /**
+     * Token 集合
+     */
+    private final List<Token> tokens;
+    /**
+     * 下一个 Token 的下标
+     */
+    private int index = 0;
+
+    public ListTokenStream(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public Token peek() {
+        return index < tokens.size() ? tokens.get(index) : null;
+    }
+
+    @Override
+    public Token next() {
+        return index < tokens.size() ? tokens.get(index++) : null;
+    }
+}
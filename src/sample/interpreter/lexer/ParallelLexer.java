@@ -0,0 +1,225 @@
+package sample.interpreter.lexer;
+
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.Diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 分块并行词法分析
+ * 把源程序按行切成若干块，在 ForkJoinPool 中分别按“块首处于 / 不处于多行注释中”两种行首状态预先扫描，
+ * 再按顺序拼接：根据上一块的行尾状态选用对应的结果，Token 与错误信息和 Lexer.scanAll 完全相同
+ */
+public class ParallelLexer {
+
+    /**
+     * 默认每块的最少字符数，更小的程序直接单线程扫描
+     */
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 一块按某个行首状态扫描的结果
+     */
+    private static class Result {
+        private final ArrayList<Token> tokens = new ArrayList<>();
+        private Diagnostics diagnostics;
+        /**
+         * 块内标识符的符号编号属于这个标识符池
+         */
+        private SymbolPool symbols;
+        /**
+         * 块尾状态
+         */
+        private int state;
+    }
+
+    private final ForkJoinPool pool;
+    private int minChunkSize = MIN_CHUNK_SIZE;
+
+    private Diagnostics diagnostics = new Diagnostics();
+    private ArrayList<Token> tokens = new ArrayList<>();
+    private SymbolPool symbols = new SymbolPool();
+    /**
+     * 最近一次扫描中，由于块首的上一个 Token 为操作数而重新扫描的块数
+     */
+    private int rescannedChunks;
+
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelLexer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public Integer getErrorCount() {
+        return diagnostics.count(Phase.LEXER);
+    }
+
+    public String getErrorInfo() {
+        return diagnostics.format(Phase.LEXER);
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public ArrayList<Token> getTokens() {
+        return tokens;
+    }
+
+    public SymbolPool getSymbols() {
+        return symbols;
+    }
+
+    public int getRescannedChunks() {
+        return rescannedChunks;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public void setMinChunkSize(int minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * 扫描整个cmm程序，结果与 Lexer.scanAll 相同
+     * @param cmmText cmm程序
+     */
+    public void scanAll(String cmmText) {
+        char[] buffer = cmmText.toCharArray();
+        int[] bounds = split(buffer);
+        int chunks = bounds.length - 1;
+
+        // 并行统计各块的行数，得到各块第一行的行数
+        List<ForkJoinTask<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            counts.add(pool.submit(() -> countLines(buffer, from, to)));
+        }
+        int[] rows = new int[chunks];
+        int rowNum = 1;
+        for (int i = 0; i < chunks; i++) {
+            rows[i] = rowNum;
+            rowNum += counts.get(i).join();
+        }
+
+        // 每块按两种行首注释状态预先扫描，第一块只需从初始状态扫描
+        List<ForkJoinTask<Result>> plain = new ArrayList<>();
+        List<ForkJoinTask<Result>> annotated = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            int row = rows[i];
+            plain.add(pool.submit(() -> scan(buffer, from, to, row, 0)));
+            annotated.add(i == 0 ? null
+                    : pool.submit(() -> scan(buffer, from, to, row, Lexer.LINE_ANNOTATION)));
+        }
+
+        // 按顺序拼接
+        ArrayList<Token> merged = new ArrayList<>();
+        Diagnostics merging = new Diagnostics();
+        SymbolPool mergedSymbols = new SymbolPool();
+        int state = 0;
+        rescannedChunks = 0;
+        for (int i = 0; i < chunks; i++) {
+            boolean annotation = (state & Lexer.LINE_ANNOTATION) != 0;
+            ForkJoinTask<Result> chosen = annotation ? annotated.get(i) : plain.get(i);
+            ForkJoinTask<Result> other = annotation ? plain.get(i) : annotated.get(i);
+            if (other != null) {
+                other.cancel(false);
+            }
+            Result result;
+            if ((state & Lexer.LINE_OPERAND) != 0) {
+                // 预先扫描假定块首的上一个 Token 不是操作数，假定不成立时按实际状态重新扫描
+                chosen.cancel(false);
+                result = scan(buffer, bounds[i], bounds[i + 1], rows[i], state);
+                rescannedChunks++;
+            } else {
+                result = chosen.join();
+            }
+            // 各块的标识符按块内首次出现的顺序并入总的标识符池，编号与顺序扫描相同
+            int[] mapping = new int[result.symbols.size()];
+            for (int symbol = 0; symbol < mapping.length; symbol++) {
+                mapping[symbol] = mergedSymbols.intern(result.symbols.getName(symbol));
+            }
+            for (Token token : result.tokens) {
+                if (token.getSymbol() >= 0) {
+                    token.setSymbol(mapping[token.getSymbol()]);
+                }
+            }
+            merged.addAll(result.tokens);
+            merging.addAll(result.diagnostics);
+            state = result.state;
+        }
+        tokens = merged;
+        symbols = mergedSymbols;
+        diagnostics = merging;
+    }
+
+    /**
+     * 按行切分，每块至少 minChunkSize 个字符，块数不超过并行度的 4 倍
+     * @param buffer cmm程序字符数组
+     * @return 各块的开始位置，最后一个元素为程序长度
+     */
+    private int[] split(char[] buffer) {
+        int size = Math.max(minChunkSize, buffer.length / (pool.getParallelism() * 4) + 1);
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int position = 0;
+        while (buffer.length - position > size) {
+            position += size;
+            // 移到下一行的行首，\r\n 视为一个行结束符
+            while (position < buffer.length && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            if (position < buffer.length && buffer[position] == '\r'
+                    && position + 1 < buffer.length && buffer[position + 1] == '\n') {
+                position++;
+            }
+            position++;
+            if (position >= buffer.length) {
+                break;
+            }
+            bounds.add(position);
+        }
+        bounds.add(buffer.length);
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 统计 buffer[from, to) 中的行结束符个数，\r\n 视为一个
+     */
+    private static int countLines(char[] buffer, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            char ch = buffer[i];
+            if (ch == '\n' || (ch == '\r' && (i + 1 >= buffer.length || buffer[i + 1] != '\n'))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 从给定的行首状态扫描一块
+     */
+    private static Result scan(char[] buffer, int from, int to, int rowNum, int state) {
+        Lexer lexer = new Lexer();
+        Result result = new Result();
+        result.state = lexer.scanRange(buffer, from, to, rowNum, state, result.tokens);
+        result.diagnostics = lexer.getDiagnostics();
+        result.symbols = lexer.getSymbols();
+        return result;
+    }
+}
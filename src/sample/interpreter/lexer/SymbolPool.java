@@ -0,0 +1,140 @@
+package sample.interpreter.lexer;
+
+/**
+ * 标识符池，一次编译中每个不同的标识符对应一个从 0 开始连续的符号编号
+ * 词法分析时直接在字符数组上查找，同名标识符共用一个 String
+ */
+public class SymbolPool {
+
+    /**
+     * 按符号编号保存的标识符
+     */
+    private String[] names = new String[16];
+    /**
+     * 开放定址散列表，保存符号编号加一，0 表示空位
+     */
+    private int[] slots = new int[32];
+    /**
+     * 标识符个数
+     */
+    private int size;
+
+    /**
+     * 标识符个数
+     * @return 个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 符号编号对应的标识符
+     * @param symbol 符号编号
+     * @return 标识符
+     */
+    public String getName(int symbol) {
+        return names[symbol];
+    }
+
+    /**
+     * 取得 buffer[offset, offset + length) 处标识符的符号编号，第一次出现时分配新的编号
+     * @param buffer 字符数组
+     * @param offset 开始位置
+     * @param length 长度
+     * @return 符号编号
+     */
+    public int intern(char[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[offset + i];
+        }
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int symbol = slots[slot] - 1;
+            if (symbol < 0) {
+                return add(new String(buffer, offset, length), slot);
+            }
+            if (matches(names[symbol], buffer, offset, length)) {
+                return symbol;
+            }
+        }
+    }
+
+    /**
+     * 取得标识符的符号编号，第一次出现时分配新的编号
+     * @param name 标识符
+     * @return 符号编号
+     */
+    public int intern(String name) {
+        int slot = find(name);
+        int symbol = slots[slot] - 1;
+        return symbol >= 0 ? symbol : add(name, slot);
+    }
+
+    /**
+     * 查找标识符的符号编号
+     * @param name 标识符
+     * @return 符号编号，不存在时返回 -1
+     */
+    public int lookup(String name) {
+        return slots[find(name)] - 1;
+    }
+
+    /**
+     * 找到 name 所在或应放入的位置
+     */
+    private int find(String name) {
+        int mask = slots.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (slots[slot] != 0 && !names[slots[slot] - 1].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * 在空位 slot 处加入新的标识符
+     */
+    private int add(String name, int slot) {
+        if (size == names.length) {
+            String[] grown = new String[size * 2];
+            System.arraycopy(names, 0, grown, 0, size);
+            names = grown;
+        }
+        names[size] = name;
+        slots[slot] = ++size;
+        // 装填因子超过一半时扩容
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int symbol = 0; symbol < size; symbol++) {
+            int slot = mix(names[symbol].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = symbol + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, char[] buffer, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -12,9 +12,9 @@ public class Token  {
     private String type;
 
     /**
-     * 种别码
+     * Token 种类，词法分析时确定
      */
-    private Integer typeNum;
+    private TokenKind kind;
 
     /**
      * Toke 所在行
@@ -32,15 +32,37 @@ public class Token  {
      * 标识符类型
      */
     private String identifierType;
+    /**
+     * 标识符在本次编译的标识符池中的符号编号，其他 Token 为 -1
+     */
+    private int symbol = -1;
 
     public Token(Integer rowNum, Integer colNum, String type, String content) {
         this.type = type;
         this.rowNum = rowNum;
         this.colNum = colNum;
         this.content = content;
+        this.kind = TokenKind.of(type, content);
+    }
+
+    public Token(Integer rowNum, Integer colNum, TokenKind kind, String content) {
+        this.type = kind.getType();
+        this.rowNum = rowNum;
+        this.colNum = colNum;
+        this.content = content;
+        this.kind = kind;
+    }
+
+    /**
+     * 种别码
+     * @return 种别码
+     */
+    public Integer getTypeNum() {
+        return kind.getCode();
     }
-    public Integer getTypeNum() throws IllegalAccessException {
-        return MyUtil.getTypeNum(this);
+
+    public TokenKind getKind() {
+        return kind;
     }
     public String getType() {
         return type;
@@ -48,6 +70,7 @@ public class Token  {
 
     public void setType(String type) {
         this.type = type;
+        this.kind = TokenKind.of(type, content);
     }
 
     public Integer getRowNum() {
@@ -72,6 +95,7 @@ public class Token  {
 
     public void setContent(String content) {
         this.content = content;
+        this.kind = TokenKind.of(type, content);
     }
 
     public String getIdentifierType() {
@@ -82,4 +106,12 @@ public class Token  {
         this.identifierType = identifierType;
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(int symbol) {
+        this.symbol = symbol;
+    }
+
 }
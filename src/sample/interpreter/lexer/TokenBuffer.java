@@ -0,0 +1,191 @@
+package sample.interpreter.lexer;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 紧凑的 Token 缓冲区：种别码、源程序位置、长度、行列号都保存在 int 数组中，
+ * Token 内容是源程序字符数组上的视图，需要时才生成 String
+ */
+public class TokenBuffer implements TokenStream {
+
+    /**
+     * 源程序字符数组
+     */
+    private final char[] source;
+    /**
+     * 种别码
+     */
+    private int[] kinds;
+    /**
+     * Token 在源程序中的开始位置
+     */
+    private int[] offsets;
+    /**
+     * Token 在源程序中的长度
+     */
+    private int[] lengths;
+    /**
+     * Token 所在行
+     */
+    private int[] rowNums;
+    /**
+     * Token 所在列
+     */
+    private int[] colNums;
+    /**
+     * 标识符的符号编号，其他 Token 为 -1
+     */
+    private int[] symbols;
+    /**
+     * 符号编号所属的标识符池
+     */
+    private final SymbolPool pool;
+    /**
+     * Token 个数
+     */
+    private int size = 0;
+    /**
+     * 作为 TokenStream 使用时下一个 Token 的下标
+     */
+    private int index = 0;
+
+    public TokenBuffer(char[] source) {
+        this(source, 256);
+    }
+
+    public TokenBuffer(char[] source, int capacity) {
+        this(source, capacity, new SymbolPool());
+    }
+
+    public TokenBuffer(char[] source, int capacity, SymbolPool pool) {
+        this.source = source;
+        this.pool = pool;
+        capacity = Math.max(capacity, 16);
+        kinds = new int[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        rowNums = new int[capacity];
+        colNums = new int[capacity];
+        symbols = new int[capacity];
+    }
+
+    /**
+     * 在末尾添加一个 Token
+     */
+    void add(TokenKind kind, int offset, int length, int rowNum, int colNum, int symbol) {
+        if (size == kinds.length) {
+            int capacity = size + (size >> 1);
+            kinds = Arrays.copyOf(kinds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            rowNums = Arrays.copyOf(rowNums, capacity);
+            colNums = Arrays.copyOf(colNums, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+        kinds[size] = kind.getCode();
+        offsets[size] = offset;
+        lengths[size] = length;
+        rowNums[size] = rowNum;
+        colNums[size] = colNum;
+        symbols[size] = symbol;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public char[] getSource() {
+        return source;
+    }
+
+    public int getKindCode(int i) {
+        return kinds[i];
+    }
+
+    public TokenKind getKind(int i) {
+        return TokenKind.valueOf(kinds[i]);
+    }
+
+    public String getType(int i) {
+        return getKind(i).getType();
+    }
+
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    public int getRowNum(int i) {
+        return rowNums[i];
+    }
+
+    public int getColNum(int i) {
+        return colNums[i];
+    }
+
+    public int getSymbol(int i) {
+        return symbols[i];
+    }
+
+    public SymbolPool getPool() {
+        return pool;
+    }
+
+    /**
+     * 得到 Token 内容的视图，不复制字符
+     * @param i 下标
+     * @return Token 内容
+     */
+    public CharSequence getText(int i) {
+        String text = getKind(i).getText();
+        return text != null ? text : CharBuffer.wrap(source, offsets[i], lengths[i]);
+    }
+
+    /**
+     * 得到 Token 内容的字符串，固定内容的 Token 和标识符不会生成新的 String
+     * @param i 下标
+     * @return Token 内容
+     */
+    public String getContent(int i) {
+        String text = getKind(i).getText();
+        if (text != null) {
+            return text;
+        }
+        return symbols[i] >= 0 ? pool.getName(symbols[i])
+                : new String(source, offsets[i], lengths[i]);
+    }
+
+    /**
+     * 生成第 i 个 Token 对象
+     * @param i 下标
+     * @return Token
+     */
+    public Token getToken(int i) {
+        Token token = new Token(rowNums[i], colNums[i], getKind(i), getContent(i));
+        token.setSymbol(symbols[i]);
+        return token;
+    }
+
+    /**
+     * 估算缓冲区占用的字节数（不含源程序字符数组）
+     * @return 字节数
+     */
+    public long getFootprint() {
+        return 6L * (16 + 4L * kinds.length);
+    }
+
+    @Override
+    public Token peek() {
+        return index < size ? getToken(index) : null;
+    }
+
+    @Override
+    public Token next() {
+        return index < size ? getToken(index++) : null;
+    }
+}
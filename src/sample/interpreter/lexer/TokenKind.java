@@ -0,0 +1,190 @@
+package sample.interpreter.lexer;
+
+import java.util.HashMap;
+
+/**
+ * Token 种类，code 与原来通过反射 ConstChars 字段顺序得到的种别码一致
+ */
+public enum TokenKind {
+    //运算符
+    PLUS(1, "运算符", ConstChars.PLUS),
+    MINUS(2, "运算符", ConstChars.MINUS),
+    DIVIDE(3, "运算符", ConstChars.DIVIDE),
+    TIMES(4, "运算符", ConstChars.TIMES),
+    LT(5, "运算符", ConstChars.LT),
+    GT(6, "运算符", ConstChars.GT),
+    EQUAL(7, "运算符", ConstChars.EQUAL),
+    NEQUAL(8, "运算符", ConstChars.NEQUAL),
+    ASSIGN(9, "运算符", ConstChars.ASSIGN),
+    //关键字
+    WRITE(10, "关键字", ConstChars.WRITE),
+    WHILE(11, "关键字", ConstChars.WHILE),
+    IF(12, "关键字", ConstChars.IF),
+    FOR(13, "关键字", ConstChars.FOR),
+    ELSE(14, "关键字", ConstChars.ELSE),
+    INT(15, "关键字", ConstChars.INT),
+    REAL(16, "关键字", ConstChars.REAL),
+    BOOL(17, "关键字", ConstChars.BOOL),
+    STRING(18, "关键字", ConstChars.STRING),
+    TRUE(19, "关键字", ConstChars.TRUE),
+    FALSE(20, "关键字", ConstChars.FALSE),
+    //分隔符
+    DQ(21, "分隔符", ConstChars.DQ),
+    RBRACE(22, "分隔符", ConstChars.RBRACE),
+    LBRACE(23, "分隔符", ConstChars.LBRACE),
+    RPAREN(24, "分隔符", ConstChars.RPAREN),
+    LPAREN(25, "分隔符", ConstChars.LPAREN),
+    RBRACKET(26, "分隔符", ConstChars.RBRACKET),
+    LBRACKET(27, "分隔符", ConstChars.LBRACKET),
+    COMMA(28, "分隔符", ConstChars.COMMA),
+    SEMICOLON(29, "分隔符", ConstChars.SEMICOLON),
+    READ(30, "关键字", ConstChars.READ),
+    //内容不固定的 Token
+    INTEGER_LITERAL(31, "整数", null),
+    REAL_LITERAL(32, "实数", null),
+    STRING_LITERAL(33, "字符串", null),
+    IDENTIFIER(34, "标识符", null);
+
+    /**
+     * 按种别码查找
+     */
+    private static final TokenKind[] BY_CODE = new TokenKind[35];
+
+    /**
+     * 按固定内容查找
+     */
+    private static final HashMap<String, TokenKind> BY_TEXT = new HashMap<>();
+
+    /**
+     * 关键字
+     */
+    private static final HashMap<String, TokenKind> KEYWORDS = new HashMap<>();
+
+    /**
+     * 按首字母分组的关键字，每组最多两个
+     */
+    private static final TokenKind[][] KEYWORDS_BY_FIRST = new TokenKind[128][];
+
+    static {
+        for (TokenKind kind : values()) {
+            BY_CODE[kind.code] = kind;
+            if (kind.text != null) {
+                BY_TEXT.put(kind.text, kind);
+            }
+            if ("关键字".equals(kind.type)) {
+                KEYWORDS.put(kind.text, kind);
+                char first = kind.text.charAt(0);
+                TokenKind[] group = KEYWORDS_BY_FIRST[first];
+                if (group == null) {
+                    KEYWORDS_BY_FIRST[first] = new TokenKind[]{kind};
+                } else {
+                    TokenKind[] grown = new TokenKind[group.length + 1];
+                    System.arraycopy(group, 0, grown, 0, group.length);
+                    grown[group.length] = kind;
+                    KEYWORDS_BY_FIRST[first] = grown;
+                }
+            }
+        }
+    }
+
+    /**
+     * 种别码
+     */
+    private final int code;
+    /**
+     * Token 的类型（关键字、运算符…）
+     */
+    private final String type;
+    /**
+     * 固定的内容，标识符、常量等为 null
+     */
+    private final String text;
+
+    TokenKind(int code, String type, String text) {
+        this.code = code;
+        this.type = type;
+        this.text = text;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * 根据种别码得到 Token 种类
+     * @param code 种别码
+     * @return Token 种类
+     */
+    public static TokenKind valueOf(int code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * 根据词法分析得到的类型和内容确定 Token 种类
+     * @param type 类型（关键字、运算符…）
+     * @param content 内容
+     * @return Token 种类，无法识别时返回 null
+     */
+    public static TokenKind of(String type, String content) {
+        if (type != null) {
+            switch (type) {
+                case "整数":
+                    return INTEGER_LITERAL;
+                case "实数":
+                    return REAL_LITERAL;
+                case "字符串":
+                    return STRING_LITERAL;
+                case "标识符":
+                    return IDENTIFIER;
+                default:
+                    break;
+            }
+        }
+        return content == null ? null : BY_TEXT.get(content);
+    }
+
+    /**
+     * 判断字符串是否为关键字
+     * @param input 字符串
+     * @return 关键字种类，不是关键字时返回 null
+     */
+    public static TokenKind keyword(String input) {
+        return KEYWORDS.get(input);
+    }
+
+    /**
+     * 判断 buffer[offset, offset + length) 是否为关键字，只比较首字母相同的至多两个关键字
+     * @param buffer 字符数组
+     * @param offset 开始位置
+     * @param length 长度
+     * @return 关键字种类，不是关键字时返回 null
+     */
+    public static TokenKind keyword(char[] buffer, int offset, int length) {
+        char first = buffer[offset];
+        TokenKind[] group = first < KEYWORDS_BY_FIRST.length ? KEYWORDS_BY_FIRST[first] : null;
+        if (group == null) {
+            return null;
+        }
+        for (TokenKind kind : group) {
+            String text = kind.text;
+            if (text.length() == length) {
+                int i = 1;
+                while (i < length && text.charAt(i) == buffer[offset + i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return kind;
+                }
+            }
+        }
+        return null;
+    }
+}
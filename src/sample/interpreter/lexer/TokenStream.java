@@ -0,0 +1,19 @@
+package sample.interpreter.lexer;
+
+/**
+ * 按需读取的 Token 流，语法分析只需要有限的向前看
+ */
+public interface TokenStream {
+
+    /**
+     * 查看下一个 Token，但不取出
+     * @return 下一个 Token，没有时返回 null
+     */
+    Token peek();
+
+    /**
+     * 取出下一个 Token
+     * @return 下一个 Token，没有时返回 null
+     */
+    Token next();
+}
@@ -16,6 +16,23 @@ public class TreeNode extends DefaultMutableTreeNode {
 	 * 所在行数
 	 */
 	private int rowNum;
+	/**
+	 * 标识符结点的符号编号，其他结点为 -1
+	 */
+	private int symbol = -1;
+	/**
+	 * 标识符结点绑定到的变量编号，由 Resolver 填写，-1 表示没有
+	 */
+	private int binding = -1;
+	/**
+	 * 运算符结点按执行时见到的运算对象类型改写成的特化，由 Semantic 填写和解释，0 表示还在收集类型
+	 */
+	private int specialization;
+	/**
+	 * 标识符结点最近一次查找到的变量和查找时作用域的版本，由 Semantic 填写，版本改变后作废
+	 */
+	private Object cachedElement;
+	private long cachedEpoch;
 
 	public TreeNode(String content) {
 		super(content);
@@ -38,6 +55,43 @@ public class TreeNode extends DefaultMutableTreeNode {
 		return rowNum;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
+	public void setSymbol(int symbol) {
+		this.symbol = symbol;
+	}
+
+	public int getBinding() {
+		return binding;
+	}
+
+	public void setBinding(int binding) {
+		this.binding = binding;
+	}
+
+	public int getSpecialization() {
+		return specialization;
+	}
+
+	public void setSpecialization(int specialization) {
+		this.specialization = specialization;
+	}
+
+	public Object getCachedElement() {
+		return cachedElement;
+	}
+
+	public long getCachedEpoch() {
+		return cachedEpoch;
+	}
+
+	public void setCachedElement(Object cachedElement, long cachedEpoch) {
+		this.cachedElement = cachedElement;
+		this.cachedEpoch = cachedEpoch;
+	}
+
 	public String getContent() {
 		return content;
 	}
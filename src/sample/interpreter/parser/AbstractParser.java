@@ -0,0 +1,255 @@
+package sample.interpreter.parser;
+
+import java.util.ArrayList;
+
+import sample.interpreter.ast.Node;
+import sample.interpreter.ast.NodeKind;
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.ast.TreeSink;
+import sample.interpreter.ast.Variable;
+import sample.interpreter.lexer.ListTokenStream;
+import sample.interpreter.lexer.SymbolPool;
+import sample.interpreter.lexer.Token;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.lexer.TokenKind;
+import sample.interpreter.lexer.TokenStream;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.DiagnosticCode;
+import sample.interpreter.util.Diagnostics;
+
+/**
+ * 语法分析器的公共部分：读取 token、报告语法错误、逐条语句组装程序
+ * 递归下降的 Parser 与查表的 TableParser 共用，保证两者取 token 和定位错误的方式完全相同
+ */
+public abstract class AbstractParser {
+
+    /**
+     *  词法分析得到的 token 流
+     */
+    private TokenStream tokens;
+    /**
+     * 词法分析得到的紧凑 token 缓冲区，不为 null 时直接按下标读取
+     */
+    private TokenBuffer buffer;
+    /**
+     * 已经取出的 token 个数
+     */
+    private int index = 0;
+    /**
+     * 当前 token 的种类，为 null 表示 token 已经取完
+     */
+    TokenKind currentKind = null;
+    /**
+     * 当前 token 的内容，从缓冲区读取时按需生成
+     */
+    private String currentContent = null;
+    /**
+     * 当前 token 为标识符时的符号编号
+     */
+    private int currentSymbol = -1;
+    /**
+     * 当前 token 所在行
+     */
+    int currentRow;
+    /**
+     * 当前 token 所在列
+     */
+    private int currentCol;
+    /**
+     * 是否有上一个 token
+     */
+    private boolean hasPrevious = false;
+    /**
+     * 上一个 token 所在行，出错时用于定位
+     */
+    private int previousRow;
+    /**
+     * 上一个 token 所在列
+     */
+    private int previousCol;
+    /**
+     * 语法错误，错误信息在取用时才生成
+     */
+    private Diagnostics diagnostics = new Diagnostics();
+    /**
+     * 没有符号编号的 Token（例如手工构造的 Token）使用的标识符池
+     */
+    private SymbolPool symbols;
+
+    AbstractParser(ArrayList<Token> tokens) {
+        this(new ListTokenStream(tokens));
+    }
+
+    AbstractParser(TokenStream tokens) {
+        this.tokens = tokens;
+        read();
+    }
+
+    AbstractParser(TokenBuffer buffer) {
+        this.buffer = buffer;
+        read();
+    }
+
+    public int getErrorNum() {
+        return diagnostics.count(Phase.PARSER);
+    }
+
+    public String getErrorInfo() {
+        return diagnostics.format(Phase.PARSER);
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * 使用外部的收集器，便于与词法、语义分析共用
+     * @param diagnostics 收集器
+     */
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * 语法分析主方法
+     * @return TreeNode
+     */
+    public TreeNode execute() {
+        return TreeNodeBuilder.build(parse());
+    }
+
+    /**
+     * 语法分析，把结点按原来的语法树的形状逐条语句交给 sink，例如直接填充 AstArena；
+     * 每条语句的紧凑语法树交出后即可回收，不保存整棵树
+     * @param sink 接收结点
+     */
+    public void execute(TreeSink sink) {
+        sink.enter(NodeKind.PROGRAM, "", "PROGRAM", 0, -1);
+        Node node;
+        while ((node = nextStatement()) != null) {
+            TreeAdapter.walk(node, sink);
+        }
+        sink.exit();
+    }
+
+    /**
+     * 语法分析，生成紧凑语法树
+     * @return 程序结点
+     */
+    public Program parse() {
+        // 根结点只由本次调用持有，不同线程上的 Parser 互不影响
+        Program program = new Program();
+        Node node;
+        while ((node = nextStatement()) != null) {
+            program.add(node);
+        }
+        return program;
+    }
+
+    /**
+     * 分析下一条顶层语句，调用者可以逐条处理而不必保存整棵语法树
+     * @return 语句结点，token 取完时返回 null
+     */
+    public abstract Node nextStatement();
+
+    /**
+     * 取出tokens中的下一个token
+     */
+    void nextToken() {
+        if (currentKind != null) {
+            hasPrevious = true;
+            previousRow = currentRow;
+            previousCol = currentCol;
+            index++;
+        }
+        read();
+    }
+
+    /**
+     * 读取下标为 index 的 token 作为当前 token
+     */
+    private void read() {
+        currentContent = null;
+        if (buffer != null) {
+            if (index < buffer.size()) {
+                currentKind = buffer.getKind(index);
+                currentSymbol = buffer.getSymbol(index);
+                currentRow = buffer.getRowNum(index);
+                currentCol = buffer.getColNum(index);
+            } else {
+                currentKind = null;
+            }
+            return;
+        }
+        Token token = tokens.next();
+        if (token != null) {
+            currentKind = token.getKind();
+            currentContent = token.getContent();
+            currentSymbol = token.getSymbol();
+            if (currentSymbol < 0 && currentKind == TokenKind.IDENTIFIER) {
+                if (symbols == null) {
+                    symbols = new SymbolPool();
+                }
+                currentSymbol = symbols.intern(currentContent);
+            }
+            currentRow = token.getRowNum();
+            currentCol = token.getColNum();
+        } else {
+            currentKind = null;
+        }
+    }
+
+    /**
+     * 当前 token 的内容
+     * @return 内容，token 取完时返回 null
+     */
+    String currentContent() {
+        if (currentContent == null && currentKind != null && buffer != null) {
+            currentContent = buffer.getContent(index);
+        }
+        return currentContent;
+    }
+
+    /**
+     * 由当前 token 生成标识符结点，带有符号编号
+     * @return 标识符结点
+     */
+    Variable identifierNode() {
+        return new Variable(currentContent(), currentSymbol, currentRow);
+    }
+
+    /**
+     * 当前 token 是否为 kind 种类
+     * @param kind 要比较的种类
+     * @return bool
+     */
+    boolean match(TokenKind kind) {
+        return currentKind == kind;
+    }
+
+    /**
+     * 出错处理函数
+     * @param code 错误编号
+     * @param args 出错信息的参数
+     */
+    void error(DiagnosticCode code, Object... args) {
+        int row = hasPrevious ? previousRow : currentRow;
+        int col = hasPrevious ? previousCol : currentCol;
+        if (currentKind != null && currentRow == row) {
+            diagnostics.report(code, currentRow, currentCol, args);
+        } else {
+            diagnostics.report(code, row, col, args);
+        }
+    }
+}
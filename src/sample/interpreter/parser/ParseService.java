@@ -0,0 +1,124 @@
+package sample.interpreter.parser;
+
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.Lexer;
+import sample.interpreter.lexer.SymbolPool;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.Diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 并发编译服务
+ * 在共用的线程池中同时对多个cmm程序做词法和语法分析，每个程序使用各自的 Lexer 和 Parser
+ */
+public class ParseService {
+
+    /**
+     * 一个程序的分析结果
+     */
+    public static class Result {
+        private final Program program;
+        private final SymbolPool symbols;
+        private final Diagnostics diagnostics;
+
+        private Result(Program program, SymbolPool symbols, Diagnostics diagnostics) {
+            this.program = program;
+            this.symbols = symbols;
+            this.diagnostics = diagnostics;
+        }
+
+        /**
+         * 紧凑语法树
+         * @return 程序结点
+         */
+        public Program getProgram() {
+            return program;
+        }
+
+        /**
+         * 转换为原来的 TreeNode 语法树
+         * @return 根结点
+         */
+        public TreeNode getRoot() {
+            return TreeNodeBuilder.build(program);
+        }
+
+        /**
+         * 该程序的标识符池
+         * @return 标识符池
+         */
+        public SymbolPool getSymbols() {
+            return symbols;
+        }
+
+        /**
+         * 词法和语法错误
+         * @return 错误收集器
+         */
+        public Diagnostics getDiagnostics() {
+            return diagnostics;
+        }
+
+        public int getLexerErrorCount() {
+            return diagnostics.count(Phase.LEXER);
+        }
+
+        public int getParserErrorCount() {
+            return diagnostics.count(Phase.PARSER);
+        }
+    }
+
+    private final Executor executor;
+
+    public ParseService() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParseService(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 在当前线程中分析一个程序
+     * @param cmmText cmm程序
+     * @return 分析结果
+     */
+    public static Result parse(String cmmText) {
+        Diagnostics diagnostics = new Diagnostics();
+        Lexer lexer = new Lexer();
+        lexer.setDiagnostics(diagnostics);
+        Parser parser = new Parser(lexer.stream(cmmText));
+        parser.setDiagnostics(diagnostics);
+        Program program = parser.parse();
+        return new Result(program, lexer.getSymbols(), diagnostics);
+    }
+
+    /**
+     * 提交一个程序
+     * @param cmmText cmm程序
+     * @return 分析结果
+     */
+    public CompletableFuture<Result> submit(String cmmText) {
+        return CompletableFuture.supplyAsync(() -> parse(cmmText), executor);
+    }
+
+    /**
+     * 提交多个程序，结果与输入的顺序一致
+     * @param cmmTexts cmm程序
+     * @return 各程序的分析结果
+     */
+    public List<CompletableFuture<Result>> submitAll(List<String> cmmTexts) {
+        List<CompletableFuture<Result>> futures = new ArrayList<>(cmmTexts.size());
+        for (String cmmText : cmmTexts) {
+            futures.add(submit(cmmText));
+        }
+        return futures;
+    }
+}
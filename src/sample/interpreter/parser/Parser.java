@@ -2,272 +2,183 @@ package sample.interpreter.parser;
 
 import java.util.ArrayList;
 
+import sample.interpreter.ast.Assign;
+import sample.interpreter.ast.Binary;
+import sample.interpreter.ast.Block;
+import sample.interpreter.ast.Declare;
+import sample.interpreter.ast.ErrorNode;
+import sample.interpreter.ast.For;
+import sample.interpreter.ast.If;
+import sample.interpreter.ast.Literal;
+import sample.interpreter.ast.Node;
+import sample.interpreter.ast.NodeKind;
+import sample.interpreter.ast.Read;
+import sample.interpreter.ast.Variable;
+import sample.interpreter.ast.While;
+import sample.interpreter.ast.Write;
 import sample.interpreter.lexer.ConstChars;
 import sample.interpreter.lexer.Token;
-import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.lexer.TokenKind;
+import sample.interpreter.lexer.TokenStream;
+import sample.interpreter.util.DiagnosticCode;
 
 /**
- * CMM语法分析器
+ * CMM语法分析器，递归下降实现
+ * 所有状态都属于实例，不同线程各用一个 Parser 即可同时分析
  */
-public class Parser {
-
-    /**
-     *  词法分析得到的 token 集合
-     */
-    private ArrayList<Token> tokens;
-    /**
-     * 标记当前 token 的游标
-     */
-    private int index = 0;
-    /**
-     * 当前 token
-     */
-    private Token currentToken = null;
-    /**
-     * 错误个数
-     */
-    private int errorNum = 0;
-    /**
-     * 错误信息
-     */
-    private String errorInfo = "";
-    /**
-     *  语法分析根结点
-     */
-    private static TreeNode root;
+public class Parser extends AbstractParser {
 
     public Parser(ArrayList<Token> tokens) {
-        this.tokens = tokens;
-        if (tokens.size() != 0) {
-            currentToken = tokens.get(0);
-        }
+        super(tokens);
     }
 
-    public int getErrorNum() {
-        return errorNum;
+    public Parser(TokenStream tokens) {
+        super(tokens);
     }
 
-    public void setErrorNum(int errorNum) {
-        this.errorNum = errorNum;
+    public Parser(TokenBuffer buffer) {
+        super(buffer);
     }
 
-    public String getErrorInfo() {
-        return errorInfo;
-    }
-
-    public void setErrorInfo(String errorInfo) {
-        this.errorInfo = errorInfo;
-    }
-
-    public int getIndex() {
-        return index;
-    }
-
-    public void setIndex(int index) {
-        this.index = index;
+    @Override
+    public Node nextStatement() {
+        return currentKind != null ? statement() : null;
     }
 
     /**
-     * 语法分析主方法
-     * @return TreeNode
+     * statement: if_stm | while_stm | read_stm | write_stm | assign_stm |
+     * declare_stm | for_stm;
+     * @return Node
      */
-    public TreeNode execute() {
-        root = new TreeNode("PROGRAM");
-        for (; index < tokens.size();) {
-            root.add(statement());
+    private Node statement() {
+        // 保存要返回的结点
+        Node tempNode = null;
+        switch (currentKind == null ? TokenKind.SEMICOLON : currentKind) {
+            // 赋值语句
+            case IDENTIFIER:
+                tempNode = assign_stm(false);
+                break;
+            // 声明语句
+            case INT:
+            case REAL:
+            case BOOL:
+            case STRING:
+                tempNode = declare_stm();
+                break;
+            // For循环语句
+            case FOR:
+                tempNode = for_stm();
+                break;
+            // If条件语句
+            case IF:
+                tempNode = if_stm();
+                break;
+            // While循环语句
+            case WHILE:
+                tempNode = while_stm();
+                break;
+            // read语句
+            case READ:
+                int readRow = currentRow;
+                tempNode = new Read(readRow, read_stm());
+                break;
+            // write语句
+            case WRITE:
+                int writeRow = currentRow;
+                tempNode = new Write(writeRow, write_stm());
+                break;
+            // 出错处理
+            default:
+                error(DiagnosticCode.BAD_STATEMENT_START);
+                tempNode = new ErrorNode("语句以错误的token开始");
+                nextToken();
+                break;
         }
-        return root;
+        return tempNode;
     }
 
     /**
-     * 取出tokens中的下一个token
+     * 分析大括号中的语句直到右大括号，大括号中没有语句时标记为空
+     * @param block 语句序列
      */
-    private void nextToken() {
-        index++;
-        if (index > tokens.size() - 1) {
-            currentToken = null;
-            if (index > tokens.size()) {
-                index--;
+    private void braceStatements(Block block) {
+        while (currentKind != null) {
+            if (!match(TokenKind.RBRACE)) {
+                block.add(statement());
+            } else {
+                block.setEmpty(block.getStatements().isEmpty());
+                break;
             }
-            return;
         }
-        currentToken = tokens.get(index);
-    }
-
-    /**
-     * 出错处理函数
-     * @param error 出错信息
-     */
-    private void error(String error) {
-        String line = "    ERROR:第 ";
-        Token previous = tokens.get(index - 1);
-        if (currentToken != null
-                && currentToken.getRowNum().equals(previous.getRowNum())) {
-            line += currentToken.getRowNum() + " 行,第 " + currentToken.getColNum()
-                    + " 列：";
-        } else {
-            line += previous.getRowNum() + " 行,第 " + previous.getColNum() + " 列：";
-        }
-        errorInfo += line + error;
-        errorNum++;
-    }
-
-    /**
-     * statement: if_stm | while_stm | read_stm | write_stm | assign_stm |
-     * declare_stm | for_stm;
-     * @return TreeNode
-     */
-    private TreeNode statement() {
-        // 保存要返回的结点
-        TreeNode tempNode = null;
-        // 赋值语句
-        if (currentToken != null && "标识符".equals(currentToken.getType())) {
-            tempNode = assign_stm(false);
-        }
-        // 声明语句
-        else if (currentToken != null
-                && (currentToken.getContent().equals(ConstChars.INT)
-                || currentToken.getContent().equals(ConstChars.REAL) || currentToken
-                .getContent().equals(ConstChars.BOOL))
-                || currentToken.getContent().equals(ConstChars.STRING)) {
-            tempNode = declare_stm();
-        }
-        // For循环语句
-        else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.FOR)) {
-            tempNode = for_stm();
-        }
-        // If条件语句
-        else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.IF)) {
-            tempNode = if_stm();
-        }
-        // While循环语句
-        else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.WHILE)) {
-            tempNode = while_stm();
-        }
-        // read语句
-        else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.READ)) {
-            TreeNode readNode = new TreeNode("关键字", ConstChars.READ, currentToken
-                    .getRowNum());
-            readNode.add(read_stm());
-            tempNode = readNode;
-        }
-        // write语句
-        else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.WRITE)) {
-            TreeNode writeNode = new TreeNode("关键字", ConstChars.WRITE,
-                    currentToken.getRowNum());
-            writeNode.add(write_stm());
-            tempNode = writeNode;
-        }
-        // 出错处理
-        else {
-            String error = " 语句以错误的token开始" + "\n";
-            error(error);
-            tempNode = new TreeNode(ConstChars.ERROR + "语句以错误的token开始");
-            nextToken();
-        }
-        return tempNode;
     }
 
     /**
      * for_stm :FOR LPAREN (assign_stm) SEMICOLON condition SEMICOLON assign_stm
      * RPAREN LBRACE statement RBRACE;
      *
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode for_stm() {
+    private Node for_stm() {
         // 是否有大括号,默认为true
         boolean hasBrace = true;
         // if函数返回结点的根结点
-        TreeNode forNode = new TreeNode("关键字", "for", currentToken.getRowNum());
+        For forNode = new For(currentRow);
         nextToken();
         // 匹配左括号(
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LPAREN)) {
+        if (match(TokenKind.LPAREN)) {
             nextToken();
         } else { // 报错
-            String error = " for循环语句缺少左括号\"(\"" + "\n";
-            error(error);
-            forNode.add(new TreeNode(ConstChars.ERROR + "for循环语句缺少左括号\"(\""));
+            error(DiagnosticCode.MISSING, "for循环语句", "左括号\"(\"");
+            forNode.setLparenError(new ErrorNode("for循环语句缺少左括号\"(\""));
         }
         // initialization
-        TreeNode initializationNode = new TreeNode("initialization",
-                "Initialization", currentToken.getRowNum());
-        initializationNode.add(assign_stm(true));
-        forNode.add(initializationNode);
+        int initRow = currentRow;
+        forNode.setInit(initRow, assign_stm(true));
         // 匹配分号;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+        if (match(TokenKind.SEMICOLON)) {
             nextToken();
         } else {
-            String error = " for循环语句缺少分号\";\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "for循环语句缺少分号\";\"");
+            error(DiagnosticCode.MISSING, "for循环语句", "分号\";\"");
+            return new ErrorNode("for循环语句缺少分号\";\"");
         }
         // condition
-        TreeNode conditionNode = new TreeNode("condition", "Condition",
-                currentToken.getRowNum());
-        conditionNode.add(condition());
-        forNode.add(conditionNode);
+        int conditionRow = currentRow;
+        forNode.setCondition(conditionRow, condition());
         // 匹配分号;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+        if (match(TokenKind.SEMICOLON)) {
             nextToken();
         } else {
-            String error = " for循环语句缺少分号\";\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "for循环语句缺少分号\";\"");
+            error(DiagnosticCode.MISSING, "for循环语句", "分号\";\"");
+            return new ErrorNode("for循环语句缺少分号\";\"");
         }
         // change
-        TreeNode changeNode = new TreeNode("change", "Change", currentToken
-                .getRowNum());
-        changeNode.add(assign_stm(true));
-        forNode.add(changeNode);
+        int updateRow = currentRow;
+        forNode.setUpdate(updateRow, assign_stm(true));
         // 匹配右括号)
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.RPAREN)) {
+        if (match(TokenKind.RPAREN)) {
             nextToken();
         } else { // 报错
-            String error = " if条件语句缺少右括号\")\"" + "\n";
-            error(error);
-            forNode.add(new TreeNode(ConstChars.ERROR + "if条件语句缺少右括号\")\""));
+            error(DiagnosticCode.MISSING, "if条件语句", "右括号\")\"");
+            forNode.setRparenError(new ErrorNode("if条件语句缺少右括号\")\""));
         }
         // 匹配左大括号{
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LBRACE)) {
+        if (match(TokenKind.LBRACE)) {
             nextToken();
         } else {
             hasBrace = false;
         }
         // statement
-        TreeNode statementNode = new TreeNode("statement", "Statements",
-                currentToken.getRowNum());
-        forNode.add(statementNode);
+        Block statementNode = new Block(currentRow);
+        forNode.setBody(statementNode);
         if(hasBrace) {
-            while (currentToken != null) {
-                if (!currentToken.getContent().equals(ConstChars.RBRACE)) {
-                    statementNode.add(statement());
-                } else if (statementNode.getChildCount() == 0) {
-                    forNode.remove(forNode.getChildCount() - 1);
-                    statementNode.setContent("EmptyStm");
-                    forNode.add(statementNode);
-                    break;
-                } else {
-                    break;
-                }
-            }
+            braceStatements(statementNode);
             // 匹配右大括号}
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.RBRACE)) {
+            if (match(TokenKind.RBRACE)) {
                 nextToken();
             } else { // 报错
-                String error = " if条件语句缺少右大括号\"}\"" + "\n";
-                error(error);
-                forNode.add(new TreeNode(ConstChars.ERROR + "if条件语句缺少右大括号\"}\""));
+                error(DiagnosticCode.MISSING, "if条件语句", "右大括号\"}\"");
+                forNode.setRbraceError(new ErrorNode("if条件语句缺少右大括号\"}\""));
             }
         } else {
             statementNode.add(statement());
@@ -278,108 +189,81 @@ public class Parser {
     /**
      * if_stm: IF LPAREN condition RPAREN LBRACE statement RBRACE (ELSE LBRACE
      * statement RBRACE)?;
-     * @return TreeNode
+     * @return Node
      */
-    private  TreeNode if_stm() {
+    private Node if_stm() {
         // if语句是否有大括号,默认为true
         boolean hasIfBrace = true;
         // else语句是否有大括号,默认为true
         boolean hasElseBrace = true;
         // if函数返回结点的根结点
-        TreeNode ifNode = new TreeNode("关键字", "if", currentToken.getRowNum());
+        If ifNode = new If(currentRow);
         nextToken();
         // 匹配左括号(
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LPAREN)) {
+        if (match(TokenKind.LPAREN)) {
             nextToken();
         } else { // 报错
-            String error = " if条件语句缺少左括号\"(\"" + "\n";
-            error(error);
-            ifNode.add(new TreeNode(ConstChars.ERROR + "if条件语句缺少左括号\"(\""));
+            error(DiagnosticCode.MISSING, "if条件语句", "左括号\"(\"");
+            ifNode.setLparenError(new ErrorNode("if条件语句缺少左括号\"(\""));
         }
         // condition
-        TreeNode conditionNode = new TreeNode("condition", "Condition",
-                currentToken.getRowNum());
-        ifNode.add(conditionNode);
-        conditionNode.add(condition());
+        int conditionRow = currentRow;
+        ifNode.setCondition(conditionRow, condition());
         // 匹配右括号)
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.RPAREN)) {
+        if (match(TokenKind.RPAREN)) {
             nextToken();
         } else {
             // 报错
-            String error = " if条件语句缺少右括号\")\"" + "\n";
-            error(error);
-            ifNode.add(new TreeNode(ConstChars.ERROR + "if条件语句缺少右括号\")\""));
+            error(DiagnosticCode.MISSING, "if条件语句", "右括号\")\"");
+            ifNode.setRparenError(new ErrorNode("if条件语句缺少右括号\")\""));
         }
         // 匹配左大括号{
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LBRACE)) {
+        if (match(TokenKind.LBRACE)) {
             nextToken();
         } else {
             hasIfBrace = false;
         }
         // statement
-        TreeNode statementNode = new TreeNode("statement", "Statements",
-                currentToken.getRowNum());
-        ifNode.add(statementNode);
+        Block statementNode = new Block(currentRow);
+        ifNode.setThenBlock(statementNode);
         if (hasIfBrace) {
-            while (currentToken != null) {
-                if (!currentToken.getContent().equals(ConstChars.RBRACE)) {
-                    statementNode.add(statement());
-                } else if (statementNode.getChildCount() == 0) {
-                    ifNode.remove(ifNode.getChildCount() - 1);
-                    statementNode.setContent("EmptyStm");
-                    ifNode.add(statementNode);
-                    break;
-                } else {
-                    break;
-                }
-            }
+            braceStatements(statementNode);
             // 匹配右大括号}
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.RBRACE)) {
+            if (match(TokenKind.RBRACE)) {
                 nextToken();
             } else { // 报错
-                String error = " if条件语句缺少右大括号\"}\"" + "\n";
-                error(error);
-                ifNode.add(new TreeNode(ConstChars.ERROR + "if条件语句缺少右大括号\"}\""));
+                error(DiagnosticCode.MISSING, "if条件语句", "右大括号\"}\"");
+                ifNode.setRbraceError(new ErrorNode("if条件语句缺少右大括号\"}\""));
             }
         } else {
-            if (currentToken != null) {
+            if (currentKind != null) {
                 statementNode.add(statement());
             }
         }
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.ELSE)) {
-            TreeNode elseNode = new TreeNode("关键字", ConstChars.ELSE, currentToken
-                    .getRowNum());
-            ifNode.add(elseNode);
+        if (match(TokenKind.ELSE)) {
+            Block elseNode = new Block(currentRow);
+            ifNode.setElseBlock(elseNode);
             nextToken();
             // 匹配左大括号{
-            if (currentToken.getContent().equals(ConstChars.LBRACE)) {
+            if (match(TokenKind.LBRACE)) {
                 nextToken();
             } else {
                 hasElseBrace = false;
             }
             if (hasElseBrace) {
                 // statement
-                while (currentToken != null
-                        && !currentToken.getContent().equals(ConstChars.RBRACE)) {
+                while (currentKind != null && !match(TokenKind.RBRACE)) {
                     elseNode.add(statement());
                 }
                 // 匹配右大括号}
-                if (currentToken != null
-                        && currentToken.getContent().equals(ConstChars.RBRACE)) {
+                if (match(TokenKind.RBRACE)) {
                     nextToken();
                 } else { // 报错
-                    String error = " else语句缺少右大括号\"}\"" + "\n";
-                    error(error);
-                    elseNode.add(new TreeNode(ConstChars.ERROR
-                            + "else语句缺少右大括号\"}\""));
+                    error(DiagnosticCode.MISSING, "else语句", "右大括号\"}\"");
+                    ifNode.setElseRbraceError(new ErrorNode("else语句缺少右大括号\"}\""));
                 }
             } else {
-                if (currentToken != null) {
+                if (currentKind != null) {
                     elseNode.add(statement());
                 }
             }
@@ -389,74 +273,54 @@ public class Parser {
 
     /**
      * while_stm: WHILE LPAREN condition RPAREN LBRACE statement RBRACE;
-     * @return TreeNode
+     * @return Node
      */
-    private  TreeNode while_stm() {
+    private Node while_stm() {
         // 是否有大括号,默认为true
         boolean hasBrace = true;
         // while函数返回结点的根结点
-        TreeNode whileNode = new TreeNode("关键字", ConstChars.WHILE, currentToken
-                .getRowNum());
+        While whileNode = new While(currentRow);
         nextToken();
         // 匹配左括号(
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LPAREN)) {
+        if (match(TokenKind.LPAREN)) {
             nextToken();
         } else { // 报错
-            String error = " while循环缺少左括号\"(\"" + "\n";
-            error(error);
-            whileNode.add(new TreeNode(ConstChars.ERROR + "while循环缺少左括号\"(\""));
+            error(DiagnosticCode.MISSING, "while循环", "左括号\"(\"");
+            whileNode.setLparenError(new ErrorNode("while循环缺少左括号\"(\""));
         }
         // condition
-        TreeNode conditionNode = new TreeNode("condition", "Condition",
-                currentToken.getRowNum());
-        whileNode.add(conditionNode);
-        conditionNode.add(condition());
+        int conditionRow = currentRow;
+        whileNode.setCondition(conditionRow, condition());
         // 匹配右括号)
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.RPAREN)) {
+        if (match(TokenKind.RPAREN)) {
             nextToken();
         } else { // 报错
-            String error = " while循环缺少右括号\")\"" + "\n";
-            error(error);
-            whileNode.add(new TreeNode(ConstChars.ERROR + "while循环缺少右括号\")\""));
+            error(DiagnosticCode.MISSING, "while循环", "右括号\")\"");
+            whileNode.setRparenError(new ErrorNode("while循环缺少右括号\")\""));
         }
         // 匹配左大括号{
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LBRACE)) {
+        if (match(TokenKind.LBRACE)) {
             nextToken();
         } else {
             hasBrace = false;
         }
         // statement
-        TreeNode statementNode = new TreeNode("statement", "Statements",
-                currentToken.getRowNum());
-        whileNode.add(statementNode);
+        Block statementNode = new Block(currentRow);
+        whileNode.setBody(statementNode);
         if(hasBrace) {
-            while (currentToken != null
-                    && !currentToken.getContent().equals(ConstChars.RBRACE)) {
-                if (!currentToken.getContent().equals(ConstChars.RBRACE)) {
-                    statementNode.add(statement());
-                } else if (statementNode.getChildCount() == 0) {
-                    whileNode.remove(whileNode.getChildCount() - 1);
-                    statementNode.setContent("EmptyStm");
-                    whileNode.add(statementNode);
-                    break;
-                } else {
-                    break;
-                }
+            // 空的大括号仍显示为 Statements
+            while (currentKind != null && !match(TokenKind.RBRACE)) {
+                statementNode.add(statement());
             }
             // 匹配右大括号}
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.RBRACE)) {
+            if (match(TokenKind.RBRACE)) {
                 nextToken();
             } else { // 报错
-                String error = " while循环缺少右大括号\"}\"" + "\n";
-                error(error);
-                whileNode.add(new TreeNode(ConstChars.ERROR + "while循环缺少右大括号\"}\""));
+                error(DiagnosticCode.MISSING, "while循环", "右大括号\"}\"");
+                whileNode.setRbraceError(new ErrorNode("while循环缺少右大括号\"}\""));
             }
         } else {
-            if(currentToken != null) {
+            if(currentKind != null) {
                 statementNode.add(statement());
             }
         }
@@ -465,94 +329,79 @@ public class Parser {
 
     /**
      * read_stm: READ LPAREN ID RPAREN SEMICOLON;
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode read_stm() {
+    private Node read_stm() {
         // 保存要返回的结点
-        TreeNode tempNode = null;
+        Variable tempNode = null;
         nextToken();
         // 匹配左括号(
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LPAREN)) {
+        if (match(TokenKind.LPAREN)) {
             nextToken();
         } else {
-            String error = " read语句缺少左括号\"(\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "read语句缺少左括号\"(\"");
+            error(DiagnosticCode.MISSING, "read语句", "左括号\"(\"");
+            return new ErrorNode("read语句缺少左括号\"(\"");
         }
         // 匹配标识符
-        if (currentToken != null && currentToken.getType().equals("标识符")) {
-            tempNode = new TreeNode("标识符", currentToken.getContent(),
-                    currentToken.getRowNum());
+        if (match(TokenKind.IDENTIFIER)) {
+            tempNode = identifierNode();
             nextToken();
             // 判断是否是为数组赋值
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.LBRACKET)) {
-                tempNode.add(array());
+            if (match(TokenKind.LBRACKET)) {
+                tempNode.setIndex(array());
             }
         } else {
-            String error = " read语句左括号后不是标识符" + "\n";
-            error(error);
+            error(DiagnosticCode.READ_NOT_IDENTIFIER);
             nextToken();
-            return new TreeNode(ConstChars.ERROR + "read语句左括号后不是标识符");
+            return new ErrorNode("read语句左括号后不是标识符");
         }
         // 匹配右括号)
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.RPAREN)) {
+        if (match(TokenKind.RPAREN)) {
             nextToken();
         } else {
-            String error = " read语句缺少右括号\")\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "read语句缺少右括号\")\"");
+            error(DiagnosticCode.MISSING, "read语句", "右括号\")\"");
+            return new ErrorNode("read语句缺少右括号\")\"");
         }
         // 匹配分号;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+        if (match(TokenKind.SEMICOLON)) {
             nextToken();
         } else {
-            String error = " read语句缺少分号\";\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "read语句缺少分号\";\"");
+            error(DiagnosticCode.MISSING, "read语句", "分号\";\"");
+            return new ErrorNode("read语句缺少分号\";\"");
         }
         return tempNode;
     }
 
     /**
      * write_stm: WRITE LPAREN expression RPAREN SEMICOLON;
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode write_stm() {
+    private Node write_stm() {
         // 保存要返回的结点
-        TreeNode tempNode = null;
+        Node tempNode = null;
         nextToken();
         // 匹配左括号(
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LPAREN)) {
+        if (match(TokenKind.LPAREN)) {
             nextToken();
         } else {
-            String error = " write语句缺少左括号\"(\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "write语句缺少左括号\"(\"");
+            error(DiagnosticCode.MISSING, "write语句", "左括号\"(\"");
+            return new ErrorNode("write语句缺少左括号\"(\"");
         }
         // 调用expression函数匹配表达式
         tempNode = expression();
         // 匹配右括号)
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.RPAREN)) {
+        if (match(TokenKind.RPAREN)) {
             nextToken();
         } else {
-            String error = " write语句缺少右括号\")\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "write语句缺少右括号\")\"");
+            error(DiagnosticCode.MISSING, "write语句", "右括号\")\"");
+            return new ErrorNode("write语句缺少右括号\")\"");
         }
         // 匹配分号;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+        if (match(TokenKind.SEMICOLON)) {
             nextToken();
         } else {
-            String error = " write语句缺少分号\";\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "write语句缺少分号\";\"");
+            error(DiagnosticCode.MISSING, "write语句", "分号\";\"");
+            return new ErrorNode("write语句缺少分号\";\"");
         }
         return tempNode;
     }
@@ -560,145 +409,113 @@ public class Parser {
     /**
      * assign_stm: (ID | ID array) ASSIGN expression SEMICOLON;
      * @param isFor  是否是在for循环中调用
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode assign_stm(boolean isFor) {
-        // assign函数返回结点的根结点
-        TreeNode assignNode = new TreeNode("运算符", ConstChars.ASSIGN, currentToken
-                .getRowNum());
-        TreeNode idNode = new TreeNode("标识符", currentToken.getContent(),
-                currentToken.getRowNum());
-        assignNode.add(idNode);
+    private Node assign_stm(boolean isFor) {
+        int assignRow = currentRow;
+        Variable idNode = identifierNode();
         nextToken();
         // 判断是否是为数组赋值
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LBRACKET)) {
-            idNode.add(array());
+        if (match(TokenKind.LBRACKET)) {
+            idNode.setIndex(array());
         }
         // 匹配赋值符号=
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.ASSIGN)) {
+        if (match(TokenKind.ASSIGN)) {
             nextToken();
         } else { // 报错
-            String error = " 赋值语句缺少\"=\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "赋值语句缺少\"=\"");
+            error(DiagnosticCode.MISSING, "赋值语句", "\"=\"");
+            return new ErrorNode("赋值语句缺少\"=\"");
         }
         // expression
-        assignNode.add(condition());
+        Node value = condition();
+        ErrorNode semicolonError = null;
         // 如果不是在for循环语句中调用声明语句,则匹配分号
         if (!isFor) {
             // 匹配分号;
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+            if (match(TokenKind.SEMICOLON)) {
                 nextToken();
             } else { // 报错
-                String error = " 赋值语句缺少分号\";\"" + "\n";
-                error(error);
-                assignNode.add(new TreeNode(ConstChars.ERROR + "赋值语句缺少分号\";\""));
+                error(DiagnosticCode.MISSING, "赋值语句", "分号\";\"");
+                semicolonError = new ErrorNode("赋值语句缺少分号\";\"");
             }
         }
-        return assignNode;
+        return new Assign(assignRow, idNode, value, semicolonError);
     }
 
     /**
      * declare_stm: (INT | REAL | BOOL | STRING) declare_aid(COMMA declare_aid)*
      * SEMICOLON;
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode declare_stm() {
-        TreeNode declareNode = new TreeNode("关键字", currentToken.getContent(),
-                currentToken.getRowNum());
+    private Node declare_stm() {
+        Declare declareNode = new Declare(currentContent(), currentRow);
         nextToken();
         // declare_aid
-        declareNode = declare_aid(declareNode);
-        // 处理同时声明多个变量的情况
-        String next = null;
-        while (currentToken != null) {
-            next = currentToken.getContent();
-            if (next.equals(ConstChars.COMMA)) {
-                nextToken();
-                declareNode = declare_aid(declareNode);
-            } else {
-                break;
-            }
-            if (currentToken != null) {
-                next = currentToken.getContent();
-            }
+        declare_aid(declareNode);
+        // 处理同时声明多个变量的情况，按内容判断逗号
+        while (currentKind != null && ConstChars.COMMA.equals(currentContent())) {
+            nextToken();
+            declare_aid(declareNode);
         }
         // 匹配分号;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+        if (match(TokenKind.SEMICOLON)) {
             nextToken();
         } else { // 报错
-            String error = " 声明语句缺少分号\";\"" + "\n";
-            error(error);
-            declareNode.add(new TreeNode(ConstChars.ERROR + "声明语句缺少分号\";\""));
+            error(DiagnosticCode.MISSING, "声明语句", "分号\";\"");
+            declareNode.setSemicolonError(new ErrorNode("声明语句缺少分号\";\""));
         }
         return declareNode;
     }
 
     /**
      * declare_aid: (ID|ID array)(ASSIGN expression)?;
-     * @param root            根结点
-     * @return TreeNode
+     * @param root            声明语句结点
      */
-    private TreeNode declare_aid(TreeNode root) {
-        if (currentToken != null && "标识符".equals(currentToken.getType())) {
-            TreeNode idNode = new TreeNode("标识符", currentToken.getContent(),
-                    currentToken.getRowNum());
-            root.add(idNode);
+    private void declare_aid(Declare root) {
+        Variable idNode = null;
+        ErrorNode errorNode = null;
+        if (match(TokenKind.IDENTIFIER)) {
+            idNode = identifierNode();
             nextToken();
             // 处理array的情况
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.LBRACKET)) {
-                idNode.add(array());
-            } else if (currentToken != null
-                    && !currentToken.getContent().equals(ConstChars.ASSIGN)
-                    && !currentToken.getContent().equals(ConstChars.SEMICOLON)
-                    && !currentToken.getContent().equals(ConstChars.COMMA)) {
-                String error = " 声明语句出错,标识符后出现不正确的token" + "\n";
-                error(error);
-                root
-                        .add(new TreeNode(ConstChars.ERROR
-                                + "声明语句出错,标识符后出现不正确的token"));
+            if (match(TokenKind.LBRACKET)) {
+                idNode.setIndex(array());
+            } else if (currentKind != null && !match(TokenKind.ASSIGN)
+                    && !match(TokenKind.SEMICOLON)
+                    && !match(TokenKind.COMMA)) {
+                error(DiagnosticCode.DECLARE_BAD_TOKEN);
+                errorNode = new ErrorNode("声明语句出错,标识符后出现不正确的token");
                 nextToken();
             }
         } else { // 报错
-            String error = " 声明语句中标识符出错" + "\n";
-            error(error);
-            root.add(new TreeNode(ConstChars.ERROR + "声明语句中标识符出错"));
+            error(DiagnosticCode.DECLARE_BAD_IDENTIFIER);
+            errorNode = new ErrorNode("声明语句中标识符出错");
             nextToken();
         }
         // 匹配赋值符号=
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.ASSIGN)) {
-            TreeNode assignNode = new TreeNode("分隔符", ConstChars.ASSIGN,
-                    currentToken.getRowNum());
-            root.add(assignNode);
+        Node initializer = null;
+        int assignRow = 0;
+        if (match(TokenKind.ASSIGN)) {
+            assignRow = currentRow;
             nextToken();
-            assignNode.add(condition());
+            initializer = condition();
         }
-        return root;
+        root.add(new Declare.Declarator(idNode, errorNode, initializer, assignRow));
     }
 
     /**
      * condition: expression (comparison_op expression)? | ID;
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode condition() {
+    private Node condition() {
         // 记录expression生成的结点
-        TreeNode tempNode = expression();
+        Node tempNode = expression();
         // 如果条件判断为比较表达式
-        if (currentToken != null
-                && (currentToken.getContent().equals(ConstChars.EQUAL)
-                || currentToken.getContent().equals(ConstChars.NEQUAL)
-                || currentToken.getContent().equals(ConstChars.LT) || currentToken
-                .getContent().equals(ConstChars.GT))) {
-            TreeNode comparisonNode = comparison_op();
-            comparisonNode.add(tempNode);
-            comparisonNode.add(expression());
-            return comparisonNode;
+        if (match(TokenKind.EQUAL) || match(TokenKind.NEQUAL)
+                || match(TokenKind.LT) || match(TokenKind.GT)) {
+            int row = currentRow;
+            NodeKind kind = comparison_op();
+            return new Binary(kind, row, tempNode, expression());
         }
         // 如果条件判断为bool变量
         return tempNode;
@@ -706,42 +523,36 @@ public class Parser {
 
     /**
      * expression: term (add_op term)?;
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode expression() {
+    private Node expression() {
         // 记录term生成的结点
-        TreeNode tempNode = term();
+        Node tempNode = term();
 
         // 如果下一个token为加号或减号
-        while (currentToken != null
-                && (currentToken.getContent().equals(ConstChars.PLUS) || currentToken
-                .getContent().equals(ConstChars.MINUS))) {
+        while (match(TokenKind.PLUS) || match(TokenKind.MINUS)) {
             // add_op
-            TreeNode addNode = add_op();
-            addNode.add(tempNode);
-            tempNode = addNode;
-            tempNode.add(term());
+            int row = currentRow;
+            NodeKind kind = add_op();
+            tempNode = new Binary(kind, row, tempNode, term());
         }
         return tempNode;
     }
 
     /**
      * term : factor (mul_op factor)?;
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode term() {
+    private Node term() {
         // 记录factor生成的结点
-        TreeNode tempNode = factor();
+        Node tempNode = factor();
 
         // 如果下一个token为乘号或除号
-        while (currentToken != null
-                && (currentToken.getContent().equals(ConstChars.TIMES) || currentToken
-                .getContent().equals(ConstChars.DIVIDE))) {
+        while (match(TokenKind.TIMES) || match(TokenKind.DIVIDE)) {
             // mul_op
-            TreeNode mulNode = mul_op();
-            mulNode.add(tempNode);
-            tempNode = mulNode;
-            tempNode.add(factor());
+            int row = currentRow;
+            NodeKind kind = mul_op();
+            tempNode = new Binary(kind, row, tempNode, factor());
         }
         return tempNode;
     }
@@ -750,67 +561,50 @@ public class Parser {
      * factor : TRUE | FALSE | REAL_LITERAL | INTEGER_LITERAL | ID | LPAREN
      * expression RPAREN | DQ string DQ | ID array;
      *
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode factor() {
+    private Node factor() {
         // 保存要返回的结点
-        TreeNode tempNode = null;
-        if (currentToken != null && "整数".equals(currentToken.getType())) {
-            tempNode = new TreeNode("整数", currentToken.getContent(),
-                    currentToken.getRowNum());
-            nextToken();
-        } else if (currentToken != null && "实数".equals(currentToken.getType())) {
-            tempNode = new TreeNode("实数", currentToken.getContent(),
-                    currentToken.getRowNum());
+        Node tempNode = null;
+        if (match(TokenKind.INTEGER_LITERAL)) {
+            tempNode = new Literal(NodeKind.INT_LITERAL, currentContent(), currentRow);
             nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.TRUE)) {
-            tempNode = new TreeNode("布尔值", currentToken.getContent(),
-                    currentToken.getRowNum());
+        } else if (match(TokenKind.REAL_LITERAL)) {
+            tempNode = new Literal(NodeKind.REAL_LITERAL, currentContent(), currentRow);
             nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.FALSE)) {
-            tempNode = new TreeNode("布尔值", currentToken.getContent(),
-                    currentToken.getRowNum());
+        } else if (match(TokenKind.TRUE) || match(TokenKind.FALSE)) {
+            tempNode = new Literal(NodeKind.BOOL_LITERAL, currentContent(), currentRow);
             nextToken();
-        } else if (currentToken != null && "标识符".equals(currentToken.getType())) {
-            tempNode = new TreeNode("标识符", currentToken.getContent(),
-                    currentToken.getRowNum());
+        } else if (match(TokenKind.IDENTIFIER)) {
+            Variable idNode = identifierNode();
             nextToken();
             // array
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.LBRACKET)) {
-                tempNode.add(array());
+            if (match(TokenKind.LBRACKET)) {
+                idNode.setIndex(array());
             }
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LPAREN)) { // 匹配左括号(
+            tempNode = idNode;
+        } else if (match(TokenKind.LPAREN)) { // 匹配左括号(
             nextToken();
             tempNode = expression();
             // 匹配右括号)
-            if (currentToken != null
-                    && currentToken.getContent().equals(ConstChars.RPAREN)) {
+            if (match(TokenKind.RPAREN)) {
                 nextToken();
             } else { // 报错
-                String error = " 算式因子缺少右括号\")\"" + "\n";
-                error(error);
-                return new TreeNode(ConstChars.ERROR + "算式因子缺少右括号\")\"");
+                error(DiagnosticCode.MISSING, "算式因子", "右括号\")\"");
+                return new ErrorNode("算式因子缺少右括号\")\"");
             }
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.DQ)) { // 匹配双引号
+        } else if (match(TokenKind.DQ)) { // 匹配双引号
             nextToken();
-            tempNode = new TreeNode("字符串", currentToken.getContent(),
-                    currentToken.getRowNum());
+            tempNode = new Literal(NodeKind.STRING_LITERAL, currentContent(), currentRow);
             nextToken();
             // 匹配另外一个双引号
             nextToken();
         } else { // 报错
-            String error = " 算式因子存在错误" + "\n";
-            error(error);
-            if (currentToken != null
-                    && !currentToken.getContent().equals(ConstChars.SEMICOLON)) {
+            error(DiagnosticCode.BAD_FACTOR);
+            if (currentKind != null && !match(TokenKind.SEMICOLON)) {
                 nextToken();
             }
-            return new TreeNode(ConstChars.ERROR + "算式因子存在错误");
+            return new ErrorNode("算式因子存在错误");
         }
         return tempNode;
     }
@@ -818,113 +612,68 @@ public class Parser {
     /**
      * array : LBRACKET (expression) RBRACKET;
      *
-     * @return TreeNode
+     * @return Node
      */
-    private TreeNode array() {
+    private Node array() {
         // 保存要返回的结点
-        TreeNode tempNode = null;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LBRACKET)) {
+        Node tempNode = null;
+        if (match(TokenKind.LBRACKET)) {
             nextToken();
         } else {
-            String error = " 缺少左中括号\"[\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "缺少左中括号\"[\"");
+            error(DiagnosticCode.MISSING, "", "左中括号\"[\"");
+            return new ErrorNode("缺少左中括号\"[\"");
         }
         // 调用expression函数匹配表达式
         tempNode = expression();
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.RBRACKET)) {
+        if (match(TokenKind.RBRACKET)) {
             nextToken();
         } else { // 报错
-            String error = " 缺少右中括号\"]\"" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "缺少右中括号\"]\"");
+            error(DiagnosticCode.MISSING, "", "右中括号\"]\"");
+            return new ErrorNode("缺少右中括号\"]\"");
         }
         return tempNode;
     }
 
     /**
      * add_op : PLUS | MINUS;
-     * @return TreeNode
+     * 只在当前 token 为加号或减号时调用
+     * @return 运算种类
      */
-    private TreeNode add_op() {
-        // 保存要返回的结点
-        TreeNode tempNode = null;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.PLUS)) {
-            tempNode = new TreeNode("运算符", ConstChars.PLUS, currentToken
-                    .getRowNum());
-            nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.MINUS)) {
-            tempNode = new TreeNode("运算符", ConstChars.MINUS, currentToken
-                    .getRowNum());
-            nextToken();
-        } else { // 报错
-            String error = " 加减符号出错" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "加减符号出错");
-        }
-        return tempNode;
+    private NodeKind add_op() {
+        NodeKind kind = match(TokenKind.PLUS) ? NodeKind.ADD : NodeKind.SUB;
+        nextToken();
+        return kind;
     }
 
     /**
      * mul_op : TIMES | DIVIDE;
-     * @return TreeNode
+     * 只在当前 token 为乘号或除号时调用
+     * @return 运算种类
      */
-    private TreeNode mul_op() {
-        // 保存要返回的结点
-        TreeNode tempNode = null;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.TIMES)) {
-            tempNode = new TreeNode("运算符", ConstChars.TIMES, currentToken
-                    .getRowNum());
-            nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.DIVIDE)) {
-            tempNode = new TreeNode("运算符", ConstChars.DIVIDE, currentToken
-                    .getRowNum());
-            nextToken();
-        } else { // 报错
-            String error = " 乘除符号出错" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "乘除符号出错");
-        }
-        return tempNode;
+    private NodeKind mul_op() {
+        NodeKind kind = match(TokenKind.TIMES) ? NodeKind.MUL : NodeKind.DIV;
+        nextToken();
+        return kind;
     }
 
     /**
      * comparison_op: LT | GT | EQUAL | NEQUAL;
-     * @return TreeNode
+     * 只在当前 token 为比较运算符时调用
+     * @return 运算种类
      */
-    private TreeNode comparison_op() {
-        // 保存要返回的结点
-        TreeNode tempNode = null;
-        if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.LT)) {
-            tempNode = new TreeNode("运算符", ConstChars.LT, currentToken.getRowNum());
-            nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.GT)) {
-            tempNode = new TreeNode("运算符", ConstChars.GT, currentToken.getRowNum());
-            nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.EQUAL)) {
-            tempNode = new TreeNode("运算符", ConstChars.EQUAL, currentToken
-                    .getRowNum());
-            nextToken();
-        } else if (currentToken != null
-                && currentToken.getContent().equals(ConstChars.NEQUAL)) {
-            tempNode = new TreeNode("运算符", ConstChars.NEQUAL, currentToken
-                    .getRowNum());
-            nextToken();
-        } else { // 报错
-            String error = " 比较运算符出错" + "\n";
-            error(error);
-            return new TreeNode(ConstChars.ERROR + "比较运算符出错");
+    private NodeKind comparison_op() {
+        NodeKind kind;
+        if (match(TokenKind.LT)) {
+            kind = NodeKind.LT;
+        } else if (match(TokenKind.GT)) {
+            kind = NodeKind.GT;
+        } else if (match(TokenKind.EQUAL)) {
+            kind = NodeKind.EQ;
+        } else {
+            kind = NodeKind.NE;
         }
-        return tempNode;
+        nextToken();
+        return kind;
     }
 
 }
@@ -0,0 +1,923 @@
+package sample.interpreter.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import sample.interpreter.ast.Assign;
+import sample.interpreter.ast.Binary;
+import sample.interpreter.ast.Block;
+import sample.interpreter.ast.Declare;
+import sample.interpreter.ast.ErrorNode;
+import sample.interpreter.ast.For;
+import sample.interpreter.ast.If;
+import sample.interpreter.ast.Literal;
+import sample.interpreter.ast.Node;
+import sample.interpreter.ast.NodeKind;
+import sample.interpreter.ast.Read;
+import sample.interpreter.ast.Variable;
+import sample.interpreter.ast.While;
+import sample.interpreter.ast.Write;
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.Token;
+import sample.interpreter.lexer.TokenBuffer;
+import sample.interpreter.lexer.TokenKind;
+import sample.interpreter.lexer.TokenStream;
+import sample.interpreter.util.DiagnosticCode;
+
+/**
+ * CMM语法分析器，查表的 LL(1) 实现
+ * 按当前 token 查预测分析表选择产生式，用显式的栈代替递归，嵌套再深也不会栈溢出。
+ * 文法、出错处理和生成的语法树都与递归下降的 Parser 相同：
+ * <pre>
+ * statement   : if_stm | while_stm | read_stm | write_stm | assign_stm | declare_stm | for_stm;
+ * for_stm     : FOR LPAREN assign_stm SEMICOLON condition SEMICOLON assign_stm RPAREN
+ *               (LBRACE statement* RBRACE | statement);
+ * if_stm      : IF LPAREN condition RPAREN (LBRACE statement* RBRACE | statement)
+ *               (ELSE (LBRACE statement* RBRACE | statement))?;
+ * while_stm   : WHILE LPAREN condition RPAREN (LBRACE statement* RBRACE | statement);
+ * read_stm    : READ LPAREN ID array? RPAREN SEMICOLON;
+ * write_stm   : WRITE LPAREN expression RPAREN SEMICOLON;
+ * assign_stm  : ID array? ASSIGN condition SEMICOLON;
+ * declare_stm : (INT | REAL | BOOL | STRING) declare_aid (COMMA declare_aid)* SEMICOLON;
+ * declare_aid : ID array? (ASSIGN condition)?;
+ * condition   : expression (comparison_op expression)?;
+ * expression  : term (add_op term)*;
+ * term        : factor (mul_op factor)*;
+ * factor      : TRUE | FALSE | REAL_LITERAL | INTEGER_LITERAL | ID array? | LPAREN expression RPAREN
+ *               | DQ string DQ;
+ * array       : LBRACKET expression RBRACKET;
+ * </pre>
+ */
+public class TableParser extends AbstractParser {
+
+    /**
+     * 分析表的列数：每种 token 一列，最后一列表示 token 已经取完
+     */
+    private static final int COLUMNS = TokenKind.values().length + 1;
+    private static final int EOF = COLUMNS - 1;
+
+    /*
+     * 栈中的状态：非终结符的开始状态，以及各产生式在调用非终结符之后继续执行的位置
+     */
+    private static final int ERROR = 0;
+    private static final int STATEMENT = 1;
+    private static final int ASSIGN_STM = 2;
+    private static final int FOR_ASSIGN = 3;
+    private static final int ASSIGN_VALUE = 4;
+    private static final int ASSIGN_END = 5;
+    private static final int DECLARE_STM = 6;
+    private static final int DECLARE_NEXT = 7;
+    private static final int DECLARE_AID = 8;
+    private static final int DECLARE_INIT = 9;
+    private static final int DECLARE_END = 10;
+    private static final int FOR_STM = 11;
+    private static final int FOR_INIT = 12;
+    private static final int FOR_CONDITION = 13;
+    private static final int FOR_UPDATE = 14;
+    private static final int FOR_RBRACE = 15;
+    private static final int IF_STM = 16;
+    private static final int IF_CONDITION = 17;
+    private static final int IF_RBRACE = 18;
+    private static final int IF_ELSE = 19;
+    private static final int ELSE_RBRACE = 20;
+    private static final int WHILE_STM = 21;
+    private static final int WHILE_CONDITION = 22;
+    private static final int WHILE_RBRACE = 23;
+    private static final int READ_STM = 24;
+    private static final int READ_END = 25;
+    private static final int READ_DONE = 26;
+    private static final int WRITE_STM = 27;
+    private static final int WRITE_END = 28;
+    private static final int WRITE_DONE = 29;
+    private static final int BRACE_STATEMENTS = 30;
+    private static final int BRACE_STATEMENTS_ADD = 31;
+    private static final int STATEMENTS = 32;
+    private static final int STATEMENTS_ADD = 33;
+    private static final int BLOCK_ADD = 34;
+    private static final int CONDITION = 35;
+    private static final int CONDITION_OP = 36;
+    private static final int EXPRESSION = 37;
+    private static final int EXPRESSION_OP = 38;
+    private static final int TERM = 39;
+    private static final int TERM_OP = 40;
+    private static final int FACTOR = 41;
+    private static final int FACTOR_RPAREN = 42;
+    private static final int ARRAY = 43;
+    private static final int ARRAY_END = 44;
+    private static final int SET_INDEX = 45;
+    private static final int BINARY = 46;
+    private static final int RETURN = 47;
+
+    /*
+     * factor 的产生式
+     */
+    private static final int FACTOR_INT = 1;
+    private static final int FACTOR_REAL = 2;
+    private static final int FACTOR_BOOL = 3;
+    private static final int FACTOR_ID = 4;
+    private static final int FACTOR_PAREN = 5;
+    private static final int FACTOR_STRING = 6;
+
+    /**
+     * statement 的预测分析表：当前 token 对应的语句的开始状态，没有产生式时为 ERROR
+     */
+    private static final int[] STATEMENT_TABLE = new int[COLUMNS];
+    /**
+     * factor 的预测分析表：当前 token 对应的产生式，没有产生式时为 ERROR
+     */
+    private static final int[] FACTOR_TABLE = new int[COLUMNS];
+    /**
+     * 比较、加减、乘除运算符：当前 token 对应的运算种类，为 null 时结束对应的循环
+     */
+    private static final NodeKind[] COMPARISON_OPS = new NodeKind[COLUMNS];
+    private static final NodeKind[] ADD_OPS = new NodeKind[COLUMNS];
+    private static final NodeKind[] MUL_OPS = new NodeKind[COLUMNS];
+
+    static {
+        // 各产生式的 FIRST 集
+        STATEMENT_TABLE[TokenKind.IDENTIFIER.ordinal()] = ASSIGN_STM;
+        STATEMENT_TABLE[TokenKind.INT.ordinal()] = DECLARE_STM;
+        STATEMENT_TABLE[TokenKind.REAL.ordinal()] = DECLARE_STM;
+        STATEMENT_TABLE[TokenKind.BOOL.ordinal()] = DECLARE_STM;
+        STATEMENT_TABLE[TokenKind.STRING.ordinal()] = DECLARE_STM;
+        STATEMENT_TABLE[TokenKind.FOR.ordinal()] = FOR_STM;
+        STATEMENT_TABLE[TokenKind.IF.ordinal()] = IF_STM;
+        STATEMENT_TABLE[TokenKind.WHILE.ordinal()] = WHILE_STM;
+        STATEMENT_TABLE[TokenKind.READ.ordinal()] = READ_STM;
+        STATEMENT_TABLE[TokenKind.WRITE.ordinal()] = WRITE_STM;
+
+        FACTOR_TABLE[TokenKind.INTEGER_LITERAL.ordinal()] = FACTOR_INT;
+        FACTOR_TABLE[TokenKind.REAL_LITERAL.ordinal()] = FACTOR_REAL;
+        FACTOR_TABLE[TokenKind.TRUE.ordinal()] = FACTOR_BOOL;
+        FACTOR_TABLE[TokenKind.FALSE.ordinal()] = FACTOR_BOOL;
+        FACTOR_TABLE[TokenKind.IDENTIFIER.ordinal()] = FACTOR_ID;
+        FACTOR_TABLE[TokenKind.LPAREN.ordinal()] = FACTOR_PAREN;
+        FACTOR_TABLE[TokenKind.DQ.ordinal()] = FACTOR_STRING;
+
+        COMPARISON_OPS[TokenKind.LT.ordinal()] = NodeKind.LT;
+        COMPARISON_OPS[TokenKind.GT.ordinal()] = NodeKind.GT;
+        COMPARISON_OPS[TokenKind.EQUAL.ordinal()] = NodeKind.EQ;
+        COMPARISON_OPS[TokenKind.NEQUAL.ordinal()] = NodeKind.NE;
+        ADD_OPS[TokenKind.PLUS.ordinal()] = NodeKind.ADD;
+        ADD_OPS[TokenKind.MINUS.ordinal()] = NodeKind.SUB;
+        MUL_OPS[TokenKind.TIMES.ordinal()] = NodeKind.MUL;
+        MUL_OPS[TokenKind.DIVIDE.ordinal()] = NodeKind.DIV;
+    }
+
+    /**
+     * 状态栈，每一项是状态、该状态正在构造的结点和一个整数参数（通常是行数）
+     */
+    private int[] states = new int[64];
+    private Object[] nodes = new Object[64];
+    private int[] args = new int[64];
+    private int top;
+    /**
+     * 各非终结符分析得到的结点
+     */
+    private Object[] values = new Object[64];
+    private int valueTop;
+
+    public TableParser(ArrayList<Token> tokens) {
+        super(tokens);
+    }
+
+    public TableParser(TokenStream tokens) {
+        super(tokens);
+    }
+
+    public TableParser(TokenBuffer buffer) {
+        super(buffer);
+    }
+
+    @Override
+    public Node nextStatement() {
+        if (currentKind == null) {
+            return null;
+        }
+        push(STATEMENT, null, 0);
+        run();
+        return (Node) pop();
+    }
+
+    /**
+     * 当前 token 在分析表中的列
+     */
+    private int column() {
+        return currentKind == null ? EOF : currentKind.ordinal();
+    }
+
+    /**
+     * 执行栈中的状态直到栈空
+     */
+    private void run() {
+        while (top > 0) {
+            top--;
+            int state = states[top];
+            Object node = nodes[top];
+            int arg = args[top];
+            nodes[top] = null;
+            switch (state) {
+                case STATEMENT:
+                    statement();
+                    break;
+                case ASSIGN_STM:
+                case FOR_ASSIGN:
+                    assign_stm(state == FOR_ASSIGN);
+                    break;
+                case ASSIGN_VALUE:
+                    // 匹配赋值符号=
+                    if (match(TokenKind.ASSIGN)) {
+                        nextToken();
+                        call(CONDITION, ASSIGN_END, node, arg);
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "赋值语句", "\"=\"");
+                        value(new ErrorNode("赋值语句缺少\"=\""));
+                    }
+                    break;
+                case ASSIGN_END:
+                    assignEnd((Variable) node, arg);
+                    break;
+                case DECLARE_STM:
+                    Declare declareNode = new Declare(currentContent(), currentRow);
+                    nextToken();
+                    call(DECLARE_AID, DECLARE_NEXT, declareNode, 0);
+                    break;
+                case DECLARE_NEXT:
+                    declareNext((Declare) node);
+                    break;
+                case DECLARE_AID:
+                    declare_aid();
+                    break;
+                case DECLARE_INIT:
+                    declareInit((Variable) node, null);
+                    break;
+                case DECLARE_END:
+                    Node initializer = (Node) pop();
+                    ErrorNode errorNode = (ErrorNode) pop();
+                    value(new Declare.Declarator((Variable) node, errorNode, initializer, arg));
+                    break;
+                case FOR_STM:
+                    for_stm();
+                    break;
+                case FOR_INIT:
+                    forInit((For) node, arg);
+                    break;
+                case FOR_CONDITION:
+                    forCondition((For) node, arg);
+                    break;
+                case FOR_UPDATE:
+                    forUpdate((For) node, arg);
+                    break;
+                case FOR_RBRACE:
+                    For forNode = (For) node;
+                    // 匹配右大括号}
+                    if (match(TokenKind.RBRACE)) {
+                        nextToken();
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "if条件语句", "右大括号\"}\"");
+                        forNode.setRbraceError(new ErrorNode("if条件语句缺少右大括号\"}\""));
+                    }
+                    value(forNode);
+                    break;
+                case IF_STM:
+                    if_stm();
+                    break;
+                case IF_CONDITION:
+                    ifCondition((If) node, arg);
+                    break;
+                case IF_RBRACE:
+                    // 匹配右大括号}
+                    if (match(TokenKind.RBRACE)) {
+                        nextToken();
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "if条件语句", "右大括号\"}\"");
+                        ((If) node).setRbraceError(new ErrorNode("if条件语句缺少右大括号\"}\""));
+                    }
+                    push(IF_ELSE, node, 0);
+                    break;
+                case IF_ELSE:
+                    ifElse((If) node);
+                    break;
+                case ELSE_RBRACE:
+                    // 匹配右大括号}
+                    if (match(TokenKind.RBRACE)) {
+                        nextToken();
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "else语句", "右大括号\"}\"");
+                        ((If) node).setElseRbraceError(new ErrorNode("else语句缺少右大括号\"}\""));
+                    }
+                    value(node);
+                    break;
+                case WHILE_STM:
+                    while_stm();
+                    break;
+                case WHILE_CONDITION:
+                    whileCondition((While) node, arg);
+                    break;
+                case WHILE_RBRACE:
+                    // 匹配右大括号}
+                    if (match(TokenKind.RBRACE)) {
+                        nextToken();
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "while循环", "右大括号\"}\"");
+                        ((While) node).setRbraceError(new ErrorNode("while循环缺少右大括号\"}\""));
+                    }
+                    value(node);
+                    break;
+                case READ_STM:
+                    read_stm();
+                    break;
+                case READ_END:
+                    readEnd((Variable) node);
+                    break;
+                case READ_DONE:
+                    value(new Read(arg, (Node) pop()));
+                    break;
+                case WRITE_STM:
+                    nextToken();
+                    // 匹配左括号(
+                    if (match(TokenKind.LPAREN)) {
+                        nextToken();
+                        call(EXPRESSION, WRITE_END, null, 0);
+                    } else {
+                        error(DiagnosticCode.MISSING, "write语句", "左括号\"(\"");
+                        value(new ErrorNode("write语句缺少左括号\"(\""));
+                    }
+                    break;
+                case WRITE_END:
+                    writeEnd();
+                    break;
+                case WRITE_DONE:
+                    value(new Write(arg, (Node) pop()));
+                    break;
+                case BRACE_STATEMENTS:
+                    // 大括号中没有语句时标记为空
+                    Block block = (Block) node;
+                    if (currentKind != null) {
+                        if (!match(TokenKind.RBRACE)) {
+                            call(STATEMENT, BRACE_STATEMENTS_ADD, block, 0);
+                        } else {
+                            block.setEmpty(block.getStatements().isEmpty());
+                        }
+                    }
+                    break;
+                case BRACE_STATEMENTS_ADD:
+                    ((Block) node).add((Node) pop());
+                    push(BRACE_STATEMENTS, node, 0);
+                    break;
+                case STATEMENTS:
+                    if (currentKind != null && !match(TokenKind.RBRACE)) {
+                        call(STATEMENT, STATEMENTS_ADD, node, 0);
+                    }
+                    break;
+                case STATEMENTS_ADD:
+                    ((Block) node).add((Node) pop());
+                    push(STATEMENTS, node, 0);
+                    break;
+                case BLOCK_ADD:
+                    ((Block) node).add((Node) pop());
+                    break;
+                case CONDITION:
+                    call(EXPRESSION, CONDITION_OP, null, 0);
+                    break;
+                case CONDITION_OP:
+                    // 如果条件判断为比较表达式，左边的结点留在栈中
+                    NodeKind comparison = COMPARISON_OPS[column()];
+                    if (comparison != null) {
+                        int row = currentRow;
+                        nextToken();
+                        call(EXPRESSION, BINARY, comparison, row);
+                    }
+                    break;
+                case EXPRESSION:
+                    call(TERM, EXPRESSION_OP, null, 0);
+                    break;
+                case EXPRESSION_OP:
+                    NodeKind addOp = ADD_OPS[column()];
+                    if (addOp != null) {
+                        int row = currentRow;
+                        nextToken();
+                        push(EXPRESSION_OP, null, 0);
+                        call(TERM, BINARY, addOp, row);
+                    }
+                    break;
+                case TERM:
+                    call(FACTOR, TERM_OP, null, 0);
+                    break;
+                case TERM_OP:
+                    NodeKind mulOp = MUL_OPS[column()];
+                    if (mulOp != null) {
+                        int row = currentRow;
+                        nextToken();
+                        push(TERM_OP, null, 0);
+                        call(FACTOR, BINARY, mulOp, row);
+                    }
+                    break;
+                case FACTOR:
+                    factor();
+                    break;
+                case FACTOR_RPAREN:
+                    // 匹配右括号)
+                    if (match(TokenKind.RPAREN)) {
+                        nextToken();
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "算式因子", "右括号\")\"");
+                        pop();
+                        value(new ErrorNode("算式因子缺少右括号\")\""));
+                    }
+                    break;
+                case ARRAY:
+                    if (match(TokenKind.LBRACKET)) {
+                        nextToken();
+                        call(EXPRESSION, ARRAY_END, null, 0);
+                    } else {
+                        error(DiagnosticCode.MISSING, "", "左中括号\"[\"");
+                        value(new ErrorNode("缺少左中括号\"[\""));
+                    }
+                    break;
+                case ARRAY_END:
+                    if (match(TokenKind.RBRACKET)) {
+                        nextToken();
+                    } else { // 报错
+                        error(DiagnosticCode.MISSING, "", "右中括号\"]\"");
+                        pop();
+                        value(new ErrorNode("缺少右中括号\"]\""));
+                    }
+                    break;
+                case SET_INDEX:
+                    ((Variable) node).setIndex((Node) pop());
+                    break;
+                case BINARY:
+                    Node right = (Node) pop();
+                    Node left = (Node) pop();
+                    value(new Binary((NodeKind) node, arg, left, right));
+                    break;
+                case RETURN:
+                    value(node);
+                    break;
+                default:
+                    throw new IllegalStateException("未知的分析状态：" + state);
+            }
+        }
+    }
+
+    /**
+     * statement: if_stm | while_stm | read_stm | write_stm | assign_stm |
+     * declare_stm | for_stm;
+     */
+    private void statement() {
+        int production = STATEMENT_TABLE[column()];
+        switch (production) {
+            case READ_STM:
+                call(READ_STM, READ_DONE, null, currentRow);
+                break;
+            case WRITE_STM:
+                call(WRITE_STM, WRITE_DONE, null, currentRow);
+                break;
+            case ERROR:
+                error(DiagnosticCode.BAD_STATEMENT_START);
+                value(new ErrorNode("语句以错误的token开始"));
+                nextToken();
+                break;
+            default:
+                push(production, null, 0);
+                break;
+        }
+    }
+
+    /**
+     * for_stm 到 initialization 为止
+     */
+    private void for_stm() {
+        For forNode = new For(currentRow);
+        nextToken();
+        // 匹配左括号(
+        if (match(TokenKind.LPAREN)) {
+            nextToken();
+        } else { // 报错
+            error(DiagnosticCode.MISSING, "for循环语句", "左括号\"(\"");
+            forNode.setLparenError(new ErrorNode("for循环语句缺少左括号\"(\""));
+        }
+        // initialization
+        call(FOR_ASSIGN, FOR_INIT, forNode, currentRow);
+    }
+
+    private void forInit(For forNode, int initRow) {
+        forNode.setInit(initRow, (Node) pop());
+        // 匹配分号;
+        if (match(TokenKind.SEMICOLON)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "for循环语句", "分号\";\"");
+            value(new ErrorNode("for循环语句缺少分号\";\""));
+            return;
+        }
+        // condition
+        call(CONDITION, FOR_CONDITION, forNode, currentRow);
+    }
+
+    private void forCondition(For forNode, int conditionRow) {
+        forNode.setCondition(conditionRow, (Node) pop());
+        // 匹配分号;
+        if (match(TokenKind.SEMICOLON)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "for循环语句", "分号\";\"");
+            value(new ErrorNode("for循环语句缺少分号\";\""));
+            return;
+        }
+        // change
+        call(FOR_ASSIGN, FOR_UPDATE, forNode, currentRow);
+    }
+
+    private void forUpdate(For forNode, int updateRow) {
+        forNode.setUpdate(updateRow, (Node) pop());
+        // 匹配右括号)
+        if (match(TokenKind.RPAREN)) {
+            nextToken();
+        } else { // 报错
+            error(DiagnosticCode.MISSING, "if条件语句", "右括号\")\"");
+            forNode.setRparenError(new ErrorNode("if条件语句缺少右括号\")\""));
+        }
+        // 匹配左大括号{
+        boolean hasBrace = match(TokenKind.LBRACE);
+        if (hasBrace) {
+            nextToken();
+        }
+        // statement
+        Block statementNode = new Block(currentRow);
+        forNode.setBody(statementNode);
+        if (hasBrace) {
+            push(FOR_RBRACE, forNode, 0);
+            push(BRACE_STATEMENTS, statementNode, 0);
+        } else {
+            push(RETURN, forNode, 0);
+            call(STATEMENT, BLOCK_ADD, statementNode, 0);
+        }
+    }
+
+    /**
+     * if_stm 到 condition 为止
+     */
+    private void if_stm() {
+        If ifNode = new If(currentRow);
+        nextToken();
+        // 匹配左括号(
+        if (match(TokenKind.LPAREN)) {
+            nextToken();
+        } else { // 报错
+            error(DiagnosticCode.MISSING, "if条件语句", "左括号\"(\"");
+            ifNode.setLparenError(new ErrorNode("if条件语句缺少左括号\"(\""));
+        }
+        // condition
+        call(CONDITION, IF_CONDITION, ifNode, currentRow);
+    }
+
+    private void ifCondition(If ifNode, int conditionRow) {
+        ifNode.setCondition(conditionRow, (Node) pop());
+        // 匹配右括号)
+        if (match(TokenKind.RPAREN)) {
+            nextToken();
+        } else {
+            // 报错
+            error(DiagnosticCode.MISSING, "if条件语句", "右括号\")\"");
+            ifNode.setRparenError(new ErrorNode("if条件语句缺少右括号\")\""));
+        }
+        // 匹配左大括号{
+        boolean hasIfBrace = match(TokenKind.LBRACE);
+        if (hasIfBrace) {
+            nextToken();
+        }
+        // statement
+        Block statementNode = new Block(currentRow);
+        ifNode.setThenBlock(statementNode);
+        if (hasIfBrace) {
+            push(IF_RBRACE, ifNode, 0);
+            push(BRACE_STATEMENTS, statementNode, 0);
+        } else {
+            push(IF_ELSE, ifNode, 0);
+            if (currentKind != null) {
+                call(STATEMENT, BLOCK_ADD, statementNode, 0);
+            }
+        }
+    }
+
+    private void ifElse(If ifNode) {
+        if (!match(TokenKind.ELSE)) {
+            value(ifNode);
+            return;
+        }
+        Block elseNode = new Block(currentRow);
+        ifNode.setElseBlock(elseNode);
+        nextToken();
+        // 匹配左大括号{
+        if (match(TokenKind.LBRACE)) {
+            nextToken();
+            push(ELSE_RBRACE, ifNode, 0);
+            push(STATEMENTS, elseNode, 0);
+        } else {
+            push(RETURN, ifNode, 0);
+            if (currentKind != null) {
+                call(STATEMENT, BLOCK_ADD, elseNode, 0);
+            }
+        }
+    }
+
+    /**
+     * while_stm 到 condition 为止
+     */
+    private void while_stm() {
+        While whileNode = new While(currentRow);
+        nextToken();
+        // 匹配左括号(
+        if (match(TokenKind.LPAREN)) {
+            nextToken();
+        } else { // 报错
+            error(DiagnosticCode.MISSING, "while循环", "左括号\"(\"");
+            whileNode.setLparenError(new ErrorNode("while循环缺少左括号\"(\""));
+        }
+        // condition
+        call(CONDITION, WHILE_CONDITION, whileNode, currentRow);
+    }
+
+    private void whileCondition(While whileNode, int conditionRow) {
+        whileNode.setCondition(conditionRow, (Node) pop());
+        // 匹配右括号)
+        if (match(TokenKind.RPAREN)) {
+            nextToken();
+        } else { // 报错
+            error(DiagnosticCode.MISSING, "while循环", "右括号\")\"");
+            whileNode.setRparenError(new ErrorNode("while循环缺少右括号\")\""));
+        }
+        // 匹配左大括号{
+        boolean hasBrace = match(TokenKind.LBRACE);
+        if (hasBrace) {
+            nextToken();
+        }
+        // statement，空的大括号仍显示为 Statements
+        Block statementNode = new Block(currentRow);
+        whileNode.setBody(statementNode);
+        if (hasBrace) {
+            push(WHILE_RBRACE, whileNode, 0);
+            push(STATEMENTS, statementNode, 0);
+        } else {
+            push(RETURN, whileNode, 0);
+            if (currentKind != null) {
+                call(STATEMENT, BLOCK_ADD, statementNode, 0);
+            }
+        }
+    }
+
+    /**
+     * read_stm 到标识符为止
+     */
+    private void read_stm() {
+        nextToken();
+        // 匹配左括号(
+        if (match(TokenKind.LPAREN)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "read语句", "左括号\"(\"");
+            value(new ErrorNode("read语句缺少左括号\"(\""));
+            return;
+        }
+        // 匹配标识符
+        if (match(TokenKind.IDENTIFIER)) {
+            Variable idNode = identifierNode();
+            nextToken();
+            push(READ_END, idNode, 0);
+            // 判断是否是为数组赋值
+            if (match(TokenKind.LBRACKET)) {
+                call(ARRAY, SET_INDEX, idNode, 0);
+            }
+        } else {
+            error(DiagnosticCode.READ_NOT_IDENTIFIER);
+            nextToken();
+            value(new ErrorNode("read语句左括号后不是标识符"));
+        }
+    }
+
+    private void readEnd(Variable idNode) {
+        // 匹配右括号)
+        if (match(TokenKind.RPAREN)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "read语句", "右括号\")\"");
+            value(new ErrorNode("read语句缺少右括号\")\""));
+            return;
+        }
+        // 匹配分号;
+        if (match(TokenKind.SEMICOLON)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "read语句", "分号\";\"");
+            value(new ErrorNode("read语句缺少分号\";\""));
+            return;
+        }
+        value(idNode);
+    }
+
+    private void writeEnd() {
+        Node tempNode = (Node) pop();
+        // 匹配右括号)
+        if (match(TokenKind.RPAREN)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "write语句", "右括号\")\"");
+            value(new ErrorNode("write语句缺少右括号\")\""));
+            return;
+        }
+        // 匹配分号;
+        if (match(TokenKind.SEMICOLON)) {
+            nextToken();
+        } else {
+            error(DiagnosticCode.MISSING, "write语句", "分号\";\"");
+            value(new ErrorNode("write语句缺少分号\";\""));
+            return;
+        }
+        value(tempNode);
+    }
+
+    /**
+     * assign_stm 到赋值符号之前
+     * @param isFor 是否是在for循环中调用
+     */
+    private void assign_stm(boolean isFor) {
+        // 参数的最低位记录是否在for循环中，其余为赋值语句所在行
+        int arg = currentRow << 1 | (isFor ? 1 : 0);
+        Variable idNode = identifierNode();
+        nextToken();
+        push(ASSIGN_VALUE, idNode, arg);
+        // 判断是否是为数组赋值
+        if (match(TokenKind.LBRACKET)) {
+            call(ARRAY, SET_INDEX, idNode, 0);
+        }
+    }
+
+    private void assignEnd(Variable idNode, int arg) {
+        Node value = (Node) pop();
+        ErrorNode semicolonError = null;
+        // 如果不是在for循环语句中调用声明语句,则匹配分号
+        if ((arg & 1) == 0) {
+            // 匹配分号;
+            if (match(TokenKind.SEMICOLON)) {
+                nextToken();
+            } else { // 报错
+                error(DiagnosticCode.MISSING, "赋值语句", "分号\";\"");
+                semicolonError = new ErrorNode("赋值语句缺少分号\";\"");
+            }
+        }
+        value(new Assign(arg >> 1, idNode, value, semicolonError));
+    }
+
+    /**
+     * 把一个 declare_aid 加入声明语句，再处理逗号或分号
+     */
+    private void declareNext(Declare declareNode) {
+        declareNode.add((Declare.Declarator) pop());
+        // 处理同时声明多个变量的情况，按内容判断逗号
+        if (currentKind != null && ConstChars.COMMA.equals(currentContent())) {
+            nextToken();
+            call(DECLARE_AID, DECLARE_NEXT, declareNode, 0);
+            return;
+        }
+        // 匹配分号;
+        if (match(TokenKind.SEMICOLON)) {
+            nextToken();
+        } else { // 报错
+            error(DiagnosticCode.MISSING, "声明语句", "分号\";\"");
+            declareNode.setSemicolonError(new ErrorNode("声明语句缺少分号\";\""));
+        }
+        value(declareNode);
+    }
+
+    /**
+     * declare_aid: (ID|ID array)(ASSIGN expression)?;
+     */
+    private void declare_aid() {
+        Variable idNode = null;
+        ErrorNode errorNode = null;
+        if (match(TokenKind.IDENTIFIER)) {
+            idNode = identifierNode();
+            nextToken();
+            // 处理array的情况
+            if (match(TokenKind.LBRACKET)) {
+                push(DECLARE_INIT, idNode, 0);
+                call(ARRAY, SET_INDEX, idNode, 0);
+                return;
+            } else if (currentKind != null && !match(TokenKind.ASSIGN)
+                    && !match(TokenKind.SEMICOLON)
+                    && !match(TokenKind.COMMA)) {
+                error(DiagnosticCode.DECLARE_BAD_TOKEN);
+                errorNode = new ErrorNode("声明语句出错,标识符后出现不正确的token");
+                nextToken();
+            }
+        } else { // 报错
+            error(DiagnosticCode.DECLARE_BAD_IDENTIFIER);
+            errorNode = new ErrorNode("声明语句中标识符出错");
+            nextToken();
+        }
+        declareInit(idNode, errorNode);
+    }
+
+    private void declareInit(Variable idNode, ErrorNode errorNode) {
+        // 匹配赋值符号=
+        if (match(TokenKind.ASSIGN)) {
+            int assignRow = currentRow;
+            nextToken();
+            // 错误结点留在栈中，初值分析完后一起取出
+            value(errorNode);
+            call(CONDITION, DECLARE_END, idNode, assignRow);
+        } else {
+            value(new Declare.Declarator(idNode, errorNode, null, 0));
+        }
+    }
+
+    /**
+     * factor : TRUE | FALSE | REAL_LITERAL | INTEGER_LITERAL | ID | LPAREN
+     * expression RPAREN | DQ string DQ | ID array;
+     */
+    private void factor() {
+        switch (FACTOR_TABLE[column()]) {
+            case FACTOR_INT:
+                value(new Literal(NodeKind.INT_LITERAL, currentContent(), currentRow));
+                nextToken();
+                break;
+            case FACTOR_REAL:
+                value(new Literal(NodeKind.REAL_LITERAL, currentContent(), currentRow));
+                nextToken();
+                break;
+            case FACTOR_BOOL:
+                value(new Literal(NodeKind.BOOL_LITERAL, currentContent(), currentRow));
+                nextToken();
+                break;
+            case FACTOR_ID:
+                Variable idNode = identifierNode();
+                nextToken();
+                push(RETURN, idNode, 0);
+                // array
+                if (match(TokenKind.LBRACKET)) {
+                    call(ARRAY, SET_INDEX, idNode, 0);
+                }
+                break;
+            case FACTOR_PAREN:
+                nextToken();
+                call(EXPRESSION, FACTOR_RPAREN, null, 0);
+                break;
+            case FACTOR_STRING:
+                nextToken();
+                value(new Literal(NodeKind.STRING_LITERAL, currentContent(), currentRow));
+                nextToken();
+                // 匹配另外一个双引号
+                nextToken();
+                break;
+            default: // 报错
+                error(DiagnosticCode.BAD_FACTOR);
+                if (currentKind != null && !match(TokenKind.SEMICOLON)) {
+                    nextToken();
+                }
+                value(new ErrorNode("算式因子存在错误"));
+                break;
+        }
+    }
+
+    /**
+     * 调用非终结符：先压入返回后继续执行的状态，再压入非终结符的开始状态
+     * @param target 非终结符的开始状态
+     * @param next 返回后继续执行的状态
+     * @param node 返回后继续构造的结点
+     * @param arg 返回后使用的整数参数
+     */
+    private void call(int target, int next, Object node, int arg) {
+        push(next, node, arg);
+        push(target, null, 0);
+    }
+
+    private void push(int state, Object node, int arg) {
+        if (top == states.length) {
+            states = Arrays.copyOf(states, top * 2);
+            nodes = Arrays.copyOf(nodes, top * 2);
+            args = Arrays.copyOf(args, top * 2);
+        }
+        states[top] = state;
+        nodes[top] = node;
+        args[top] = arg;
+        top++;
+    }
+
+    /**
+     * 非终结符分析完成，结点压入结果栈
+     */
+    private void value(Object node) {
+        if (valueTop == values.length) {
+            values = Arrays.copyOf(values, valueTop * 2);
+        }
+        values[valueTop++] = node;
+    }
+
+    private Object pop() {
+        Object node = values[--valueTop];
+        values[valueTop] = null;
+        return node;
+    }
+}
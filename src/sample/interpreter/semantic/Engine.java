@@ -0,0 +1,27 @@
+package sample.interpreter.semantic;
+
+/**
+ * 语义分析的执行引擎
+ */
+public enum Engine {
+    /**
+     * 遍历语法树执行
+     */
+    TREE,
+    /**
+     * 编译为字节码后由虚拟机执行，不能编译的程序按语法树执行
+     */
+    BYTECODE,
+    /**
+     * 编译为预先绑定好变量槽位和运算符的闭包树后执行，不能编译的程序按语法树执行
+     */
+    CLOSURE,
+    /**
+     * 编译为 JVM 字节码，作为隐藏类加载后由 JIT 编译执行，不能编译的程序按语法树执行
+     */
+    JVM,
+    /**
+     * 遍历语法树执行，回边数达到阈值的循环编译为闭包后接着执行，变量解析失败时只按语法树执行
+     */
+    TIERED
+}
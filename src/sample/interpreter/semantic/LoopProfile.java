@@ -0,0 +1,182 @@
+package sample.interpreter.semantic;
+
+import sample.interpreter.closure.ClosureProgram;
+import sample.interpreter.lexer.TreeNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分层执行时每个循环的计数。按语法树执行完一次循环体是一条回边，一个循环累计的回边数达到阈值后，
+ * 循环剩下的部分编译为闭包，在 Semantic 的槽位上从下一次判断条件开始接着执行，之后再进入这个循环时直接按闭包执行。
+ * 计数在运行结束后可以查看，用于调整阈值
+ */
+public class LoopProfile {
+
+    /**
+     * 默认的阈值：编译一个循环只需要遍历一次它的语法树，比按语法树执行一千次循环体快得多
+     */
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private final int threshold;
+    private final Map<TreeNode, Loop> loops = new IdentityHashMap<>();
+    /**
+     * 按第一次进入的顺序
+     */
+    private final List<Loop> order = new ArrayList<>();
+
+    /**
+     * @param threshold 编译前按语法树执行的回边数，为 0 时第一次进入就编译
+     */
+    public LoopProfile(int threshold) {
+        this.threshold = Math.max(0, threshold);
+    }
+
+    /**
+     * 进入循环语句
+     * @param node while 或 for 语句结点
+     * @return 这个循环的计数
+     */
+    Loop enter(TreeNode node) {
+        Loop loop = loops.get(node);
+        if (loop == null) {
+            loop = new Loop(node, threshold);
+            loops.put(node, loop);
+            order.add(loop);
+        }
+        loop.entries++;
+        return loop;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public List<Loop> getLoops() {
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * 每个循环一行
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Loop loop : order) {
+            builder.append(loop).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 一个循环语句的计数和编译结果
+     */
+    public static final class Loop {
+        private final TreeNode node;
+        private final int threshold;
+        private long entries;
+        private long backEdges;
+        private long promotions;
+        private ClosureProgram program;
+        private String reason;
+
+        private Loop(TreeNode node, int threshold) {
+            this.node = node;
+            this.threshold = threshold;
+        }
+
+        /**
+         * 按语法树执行完一次循环体
+         * @return 是否应当改为按闭包执行
+         */
+        boolean backEdge() {
+            return ++backEdges >= threshold && reason == null;
+        }
+
+        /**
+         * 进入循环时是否应当直接按闭包执行
+         */
+        boolean isHot() {
+            return backEdges >= threshold && reason == null;
+        }
+
+        TreeNode getNode() {
+            return node;
+        }
+
+        ClosureProgram getProgram() {
+            return program;
+        }
+
+        void compiled(ClosureProgram program) {
+            this.program = program;
+        }
+
+        /**
+         * 不能编译，之后一直按语法树执行
+         */
+        void failed(String reason) {
+            this.reason = reason;
+        }
+
+        void promoted() {
+            promotions++;
+        }
+
+        public int getRow() {
+            return node.getRowNum();
+        }
+
+        /**
+         * while 或 for
+         */
+        public String getKind() {
+            return node.getContent();
+        }
+
+        /**
+         * 进入循环语句的次数
+         */
+        public long getEntries() {
+            return entries;
+        }
+
+        /**
+         * 按语法树执行的回边数，改为按闭包执行后不再增加
+         */
+        public long getBackEdges() {
+            return backEdges;
+        }
+
+        /**
+         * 改为按闭包执行的次数，包括执行到一半时改为闭包和之后进入循环时直接按闭包执行
+         */
+        public long getPromotions() {
+            return promotions;
+        }
+
+        public boolean isCompiled() {
+            return program != null;
+        }
+
+        /**
+         * 不能编译的原因，没有尝试编译或者编译成功时为 null
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            String result = "第 " + getRow() + " 行的 " + getKind() + " 循环：进入 " + entries
+                    + " 次，按语法树执行回边 " + backEdges + " 次";
+            if (program != null) {
+                return result + "，按闭包执行 " + promotions + " 次";
+            }
+            return reason != null ? result + "，不能编译：" + reason : result;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package sample.interpreter.semantic;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.TreeNode;
+
+import static sample.interpreter.semantic.StaticTypes.*;
+
+/**
+ * 编译执行的前端：按 StaticTypes 的类型决定每种写法编译为哪一种处理，与 Semantic 执行时的判断相同。
+ * 类型不匹配和不能编译的写法在这里抛出 Unsupported，各个编译器只按返回的处理生成自己的代码
+ */
+public class Lowering {
+
+    /**
+     * 不赋值、不输出或者条件为假
+     */
+    public static final int NONE = 0;
+    /**
+     * 整数常量，保留写法
+     */
+    public static final int INT_CONSTANT = 1;
+    /**
+     * 整数常量按浮点数保存，没有写法；比较的对象中的常量也是这种处理
+     */
+    public static final int REAL_CONSTANT = 2;
+    /**
+     * 实数常量，保留写法
+     */
+    public static final int REAL_TEXT = 3;
+    /**
+     * 布尔常量或者整数常量是否大于 0，值由 boolConstant 计算
+     */
+    public static final int BOOL_CONSTANT = 4;
+    public static final int STRING_CONSTANT = 5;
+    /**
+     * 输出常量的写法
+     */
+    public static final int CONSTANT = 6;
+    /**
+     * 读取变量的值
+     */
+    public static final int VARIABLE = 7;
+    /**
+     * 复制同一类型的变量的值和写法
+     */
+    public static final int COPY = 8;
+    /**
+     * 整型变量复制到实型变量，只复制浮点数
+     */
+    public static final int COPY_REAL = 9;
+    /**
+     * 整型变量的值是否大于 0
+     */
+    public static final int BOOL_FROM_INT = 10;
+    /**
+     * 字符串变量的初值是另一个字符串变量时，与原来一样保存的是变量名
+     */
+    public static final int STRING_NAME = 11;
+    public static final int INT_ARITHMETIC = 12;
+    /**
+     * 整数运算的结果保存到实型变量
+     */
+    public static final int INT_TO_REAL = 13;
+    /**
+     * 实数运算，计算方式由 StaticTypes.classify 给出
+     */
+    public static final int REAL_ARITHMETIC = 14;
+    public static final int COMPARISON = 15;
+
+    private final StaticTypes types;
+
+    public Lowering(StaticTypes types) {
+        this.types = types;
+    }
+
+    public StaticTypes getTypes() {
+        return types;
+    }
+
+    /**
+     * 声明时的初值，判断的顺序与 Semantic.forDeclare 相同：先看写法是否为整数、实数、布尔常量，再看结点类型
+     * @param kind 声明的类型
+     * @param valueNode 赋值号的右半部分
+     */
+    public int initializer(String kind, TreeNode valueNode) {
+        String value = valueNode.getContent();
+        String type = valueNode.getNodeType();
+        boolean bool = "true".equals(value) || "false".equals(value);
+        boolean arithmetic = isArithmetic(value);
+        switch (kind) {
+            case ConstChars.INT:
+                if (Semantic.matchInteger(value)) {
+                    return INT_CONSTANT;
+                } else if (Semantic.matchReal(value) || bool || "字符串".equals(type)) {
+                    throw mismatch(valueNode);
+                } else if ("标识符".equals(type)) {
+                    types.requireKind(valueNode, ConstChars.INT);
+                    return COPY;
+                } else if (arithmetic) {
+                    if (types.classify(valueNode) != MODE_INT) {
+                        throw mismatch(valueNode);
+                    }
+                    return INT_ARITHMETIC;
+                }
+                return NONE;
+            case ConstChars.REAL:
+                if (Semantic.matchInteger(value)) {
+                    return REAL_CONSTANT;
+                } else if (Semantic.matchReal(value)) {
+                    return REAL_TEXT;
+                } else if (bool || "字符串".equals(type)) {
+                    throw mismatch(valueNode);
+                } else if ("标识符".equals(type)) {
+                    return ConstChars.INT.equals(types.requireNumber(valueNode)) ? COPY_REAL : COPY;
+                } else if (arithmetic) {
+                    return types.classify(valueNode) == MODE_INT ? INT_TO_REAL : REAL_ARITHMETIC;
+                }
+                return NONE;
+            case ConstChars.STRING:
+                if (Semantic.matchInteger(value) || Semantic.matchReal(value) || bool || arithmetic) {
+                    throw mismatch(valueNode);
+                } else if ("字符串".equals(type)) {
+                    return STRING_CONSTANT;
+                } else if ("标识符".equals(type)) {
+                    types.requireKind(valueNode, ConstChars.STRING);
+                    return STRING_NAME;
+                }
+                return NONE;
+            default:
+                if (Semantic.matchInteger(value)) {
+                    return BOOL_CONSTANT;
+                } else if (Semantic.matchReal(value) || "字符串".equals(type)) {
+                    throw mismatch(valueNode);
+                } else if (bool) {
+                    return BOOL_CONSTANT;
+                } else if ("标识符".equals(type)) {
+                    String source = types.kindOf(valueNode);
+                    if (ConstChars.INT.equals(source)) {
+                        return BOOL_FROM_INT;
+                    } else if (source == null || ConstChars.BOOL.equals(source)) {
+                        return COPY;
+                    }
+                    throw mismatch(valueNode);
+                } else if (isComparison(value)) {
+                    return COMPARISON;
+                }
+                return NONE;
+        }
+    }
+
+    /**
+     * 数组大小：整数常量或整数表达式，与 Semantic.forDeclare 相同地检查
+     * @return INT_CONSTANT 或 INT_ARITHMETIC
+     */
+    public int arraySize(TreeNode node) {
+        if (Semantic.matchInteger(node.getContent())) {
+            return INT_CONSTANT;
+        } else if (isArithmetic(node.getContent()) && types.classify(node) == MODE_INT) {
+            return INT_ARITHMETIC;
+        }
+        throw new Unsupported("第 " + node.getRowNum() + " 行的数组大小");
+    }
+
+    /**
+     * 与 Semantic.forAssign 相同地决定右半部分怎样赋给变量，常量保留写法。
+     * 被赋值的变量没有可见的声明时查找一定失败，按右半部分自己的类型处理
+     * @param kind1 被赋值的变量的类型
+     */
+    public int assignment(String kind1, TreeNode node1, TreeNode node2) {
+        String value = node2.getContent();
+        switch (node2.getNodeType()) {
+            case "整数":
+                if (kind1 == null || ConstChars.INT.equals(kind1)) {
+                    return INT_CONSTANT;
+                } else if (ConstChars.REAL.equals(kind1)) {
+                    return REAL_CONSTANT;
+                } else if (ConstChars.BOOL.equals(kind1)) {
+                    return BOOL_CONSTANT;
+                }
+                throw mismatch(node1);
+            case "实数":
+                if (kind1 == null || ConstChars.REAL.equals(kind1)) {
+                    return REAL_TEXT;
+                }
+                throw mismatch(node1);
+            case "字符串":
+                if (kind1 == null || ConstChars.STRING.equals(kind1)) {
+                    return STRING_CONSTANT;
+                }
+                throw mismatch(node1);
+            case "布尔值":
+                if (kind1 == null || ConstChars.BOOL.equals(kind1)) {
+                    return BOOL_CONSTANT;
+                }
+                throw mismatch(node1);
+            case "标识符":
+                // 与 SymbolTableElement.copyValue 和 copyRealValue 相同
+                String kind2 = types.kindOf(node2);
+                if (ConstChars.REAL.equals(kind1) && ConstChars.INT.equals(kind2)) {
+                    return COPY_REAL;
+                } else if (kind1 == null || kind2 == null || kind1.equals(kind2)) {
+                    return COPY;
+                }
+                throw mismatch(node2);
+            default:
+                break;
+        }
+        if (isArithmetic(value)) {
+            int mode = types.classify(node2);
+            if (mode == MODE_INT && (kind1 == null || ConstChars.INT.equals(kind1))) {
+                return INT_ARITHMETIC;
+            } else if (mode == MODE_INT && ConstChars.REAL.equals(kind1)) {
+                return INT_TO_REAL;
+            } else if (mode != MODE_INT && (kind1 == null || ConstChars.REAL.equals(kind1))) {
+                return REAL_ARITHMETIC;
+            }
+            throw mismatch(node2);
+        } else if (isComparison(value)) {
+            if (kind1 != null && !ConstChars.BOOL.equals(kind1)) {
+                throw mismatch(node2);
+            }
+            return COMPARISON;
+        }
+        // 其他写法不赋值
+        return NONE;
+    }
+
+    /**
+     * 与 Semantic.forWrite 相同
+     * @return CONSTANT、VARIABLE、INT_ARITHMETIC、REAL_ARITHMETIC 或者不输出时为 NONE
+     */
+    public int write(TreeNode root) {
+        String type = root.getNodeType();
+        String content = root.getContent();
+        if ("整数".equals(type) || "实数".equals(type) || "字符串".equals(type)) {
+            return CONSTANT;
+        } else if ("标识符".equals(type)) {
+            types.kindOf(root);
+            return VARIABLE;
+        } else if (isArithmetic(content)) {
+            return types.classify(root) == MODE_INT ? INT_ARITHMETIC : REAL_ARITHMETIC;
+        }
+        return NONE;
+    }
+
+    /**
+     * 与 Semantic.forCondition 相同，其他写法不计算，条件为假
+     * @return BOOL_CONSTANT、VARIABLE、COMPARISON 或者 NONE
+     */
+    public int condition(TreeNode root) {
+        String content = root.getContent();
+        if (content.equals(ConstChars.TRUE) || content.equals(ConstChars.FALSE)) {
+            return BOOL_CONSTANT;
+        } else if ("标识符".equals(root.getNodeType())) {
+            types.requireKind(root, ConstChars.BOOL);
+            return VARIABLE;
+        } else if (isComparison(content)) {
+            if (root.getChildCount() != 2) {
+                throw new Unsupported("第 " + root.getRowNum() + " 行的比较");
+            }
+            return COMPARISON;
+        }
+        return NONE;
+    }
+
+    /**
+     * 与 Semantic.comparand 相同，比较的对象都按浮点数
+     * @return REAL_CONSTANT、VARIABLE、INT_ARITHMETIC 或 REAL_ARITHMETIC
+     */
+    public int comparand(TreeNode node) {
+        String type = node.getNodeType();
+        if ("整数".equals(type) || "实数".equals(type)) {
+            return REAL_CONSTANT;
+        } else if ("标识符".equals(type)) {
+            types.requireNumber(node);
+            return VARIABLE;
+        } else if (isArithmetic(node.getContent())) {
+            return types.classify(node) == MODE_INT ? INT_ARITHMETIC : REAL_ARITHMETIC;
+        }
+        throw new Unsupported("第 " + node.getRowNum() + " 行的比较对象");
+    }
+
+    /**
+     * 与 Semantic.forArray 相同地决定下标的计算
+     * @return INT_CONSTANT、VARIABLE 或 INT_ARITHMETIC
+     */
+    public int index(TreeNode node) {
+        String type = node.getNodeType();
+        if ("整数".equals(type)) {
+            return INT_CONSTANT;
+        } else if ("标识符".equals(type) && node.getChildCount() == 0) {
+            types.requireKind(node, ConstChars.INT);
+            return VARIABLE;
+        } else if (isArithmetic(node.getContent()) && types.classify(node) == MODE_INT) {
+            return INT_ARITHMETIC;
+        }
+        throw new Unsupported("第 " + node.getRowNum() + " 行的数组下标");
+    }
+
+    /**
+     * BOOL_CONSTANT 的值：整数常量是否大于 0，或者布尔常量本身
+     */
+    public static boolean boolConstant(TreeNode node) {
+        String value = node.getContent();
+        return Semantic.matchInteger(value) ? parseInt(node) > 0 : ConstChars.TRUE.equals(value);
+    }
+}
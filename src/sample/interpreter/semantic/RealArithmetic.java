@@ -0,0 +1,120 @@
+package sample.interpreter.semantic;
+
+import sample.interpreter.lexer.ConstChars;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 实数运算：按精确的十进制计算后舍入为 float，除法保留三位小数并四舍五入。
+ * Semantic、常量折叠和各个编译执行的引擎都按这里计算，结果的写法由调用者按 float 的 toString 得到
+ */
+public final class RealArithmetic {
+
+    /**
+     * 运算符，与 vm.Opcode 的 ADD、SUB、MUL、DIV 相同
+     */
+    public static final int ADD = 0;
+    public static final int SUB = 1;
+    public static final int MUL = 2;
+    public static final int DIV = 3;
+
+    /**
+     * 除法结果保留的小数位数
+     */
+    private static final int DIVIDE_SCALE = 3;
+
+    private RealArithmetic() {
+    }
+
+    /**
+     * 算术运算符结点的内容对应的运算符
+     */
+    public static int operator(String content) {
+        switch (content) {
+            case ConstChars.PLUS:
+                return ADD;
+            case ConstChars.MINUS:
+                return SUB;
+            case ConstChars.TIMES:
+                return MUL;
+            default:
+                return DIV;
+        }
+    }
+
+    /**
+     * 和、差、积能不构造 BigDecimal 地得到时直接返回，其他情况按 BigDecimal 计算
+     * @throws NumberFormatException 运算对象不是有限数
+     * @throws ArithmeticException 除数为零
+     */
+    public static float operate(int operator, double a, double b) {
+        float result = exactFloat(operator, a, b);
+        if (!Float.isNaN(result)) {
+            return result;
+        }
+        BigDecimal bd1 = new BigDecimal(a);
+        BigDecimal bd2 = new BigDecimal(b);
+        switch (operator) {
+            case ADD:
+                return bd1.add(bd2).floatValue();
+            case SUB:
+                return bd1.subtract(bd2).floatValue();
+            case MUL:
+                return bd1.multiply(bd2).floatValue();
+            default:
+                return bd1.divide(bd2, DIVIDE_SCALE, RoundingMode.HALF_UP).floatValue();
+        }
+    }
+
+    /**
+     * 不构造 BigDecimal 地求两个双精度数的精确和、差、积舍入到 float 的结果，与 BigDecimal 的 floatValue 相同。
+     * 双精度的结果与精确值之间没有别的双精度数，而相邻两个 float 的中点都是双精度数，
+     * 所以只有双精度的结果正好落在中点上且有舍入误差时，两次舍入才会与直接舍入到 float 不同
+     *
+     * @return 这种情况、除法、溢出、积很小和运算对象不是有限数时返回 NaN，由调用者改用 BigDecimal
+     */
+    private static float exactFloat(int operator, double a, double b) {
+        if (!Double.isFinite(a) || !Double.isFinite(b)) {
+            return Float.NaN;
+        }
+        double result;
+        double error;
+        switch (operator) {
+            case ADD:
+            case SUB: {
+                double addend = operator == SUB ? -b : b;
+                result = a + addend;
+                if (result == 0) {
+                    // 和为零时精确值也是零，BigDecimal 没有负零
+                    return 0.0f;
+                }
+                double virtual = result - a;
+                error = (a - (result - virtual)) + (addend - virtual);
+                break;
+            }
+            case MUL:
+                if (a == 0 || b == 0) {
+                    return 0.0f;
+                }
+                result = a * b;
+                if (Math.abs(result) < 0x1p-900) {
+                    // 积的舍入误差可能不能用双精度数表示
+                    return Float.NaN;
+                }
+                error = Math.fma(a, b, -result);
+                break;
+            default:
+                return Float.NaN;
+        }
+        float rounded = (float) result;
+        if (Float.isInfinite(rounded)) {
+            return Float.NaN;
+        }
+        if (error != 0 && rounded != result
+                && result == ((double) rounded + Math.nextAfter(rounded, result)) / 2) {
+            return Float.NaN;
+        }
+        return rounded;
+    }
+}
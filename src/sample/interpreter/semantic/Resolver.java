@@ -0,0 +1,247 @@
+package sample.interpreter.semantic;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.TreeNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 变量解析，在语义分析执行之前遍历一次语法树
+ * 为每个声明的变量分配 (层次, 槽位)，并把每个标识符结点绑定到它在运行时引用的变量。
+ * 层次就是语义分析中的作用域 level，同一时刻每一层只有一个作用域，槽位只需在层内编号，
+ * 运行时按 frames[层次][槽位] 直接取得变量，不再按名字查找符号表。
+ * 同一作用域中重复声明的变量共用一个槽位，运行时由槽位是否为空判断是否已经声明；
+ * 声明因出错没有执行时沿外层的同名变量继续查找，与符号表由内向外逐层查找的结果相同
+ */
+public class Resolver {
+
+    /**
+     * 每个变量的层次、槽位和被它遮盖的外层同名变量，没有时为 -1
+     */
+    private int[] depths = new int[16];
+    private int[] slots = new int[16];
+    private int[] outers = new int[16];
+    private int[] symbols = new int[16];
+    private int count = 0;
+
+    /**
+     * 每一层需要的槽位个数
+     */
+    private int[] frameSizes = new int[8];
+    /**
+     * 每一层当前作用域中已经分配的槽位个数
+     */
+    private int[] nextSlots = new int[8];
+
+    /**
+     * 符号编号到当前可见的最内层变量
+     */
+    private final Map<Integer, Integer> visible = new HashMap<>();
+    /**
+     * 打开的作用域中新声明的变量，退出作用域时恢复被遮盖的变量
+     */
+    private final List<List<Integer>> scopes = new ArrayList<>();
+    /**
+     * 解析整个程序，结果写在标识符结点中
+     * @param root 没有词法和语法错误的语法树
+     * @return 能够按槽位执行时返回 true，否则语义分析应当使用符号表
+     */
+    public boolean resolve(TreeNode root) {
+        open(0);
+        statements(root, 0);
+        return true;
+    }
+
+    /**
+     * 变量个数
+     */
+    public int getBindingCount() {
+        return count;
+    }
+
+    public int getDepth(int binding) {
+        return depths[binding];
+    }
+
+    public int getSlot(int binding) {
+        return slots[binding];
+    }
+
+    /**
+     * 被变量遮盖的外层同名变量
+     * @param binding 变量编号
+     * @return 外层变量编号，没有时为 -1
+     */
+    public int getOuter(int binding) {
+        return outers[binding];
+    }
+
+    /**
+     * 层数，即最深的作用域加一
+     */
+    public int getDepthCount() {
+        int depth = frameSizes.length;
+        while (depth > 1 && frameSizes[depth - 1] == 0) {
+            depth--;
+        }
+        return depth;
+    }
+
+    public int getFrameSize(int depth) {
+        return depth < frameSizes.length ? frameSizes[depth] : 0;
+    }
+
+    /**
+     * 分配运行时按层次和槽位存放变量的数组
+     * @return 各层的槽位，初始全部为空
+     */
+    SymbolTableElement[][] newFrames() {
+        SymbolTableElement[][] frames = new SymbolTableElement[getDepthCount()][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new SymbolTableElement[frameSizes[i]];
+        }
+        return frames;
+    }
+
+    /**
+     * 与 Semantic.statement 相同地遍历语句
+     */
+    private void statements(TreeNode root, int level) {
+        for (int i = 0; i < root.getChildCount(); i++) {
+            TreeNode currentNode = root.getChildAt(i);
+            switch (currentNode.getContent()) {
+                case ConstChars.INT:
+                case ConstChars.REAL:
+                case ConstChars.BOOL:
+                case ConstChars.STRING:
+                    declare(currentNode, level);
+                    break;
+                case ConstChars.ASSIGN:
+                    uses(currentNode);
+                    break;
+                case ConstChars.FOR:
+                    // Initialization、Condition、Statements、Change，循环体中声明的变量在 Change 之前已经删除
+                    uses(currentNode.getChildAt(0));
+                    uses(currentNode.getChildAt(1));
+                    block(currentNode.getChildAt(3), level + 1);
+                    uses(currentNode.getChildAt(2));
+                    break;
+                case ConstChars.IF:
+                    uses(currentNode.getChildAt(0));
+                    block(currentNode.getChildAt(1), level + 1);
+                    if (currentNode.getChildCount() == 3) {
+                        // else 分支比 if 分支深一层
+                        block(currentNode.getChildAt(2), level + 2);
+                    }
+                    break;
+                case ConstChars.WHILE:
+                    uses(currentNode.getChildAt(0));
+                    block(currentNode.getChildAt(1), level + 1);
+                    break;
+                case ConstChars.READ:
+                case ConstChars.WRITE:
+                    uses(currentNode.getChildAt(0));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void block(TreeNode root, int level) {
+        open(level);
+        statements(root, level);
+        close(level);
+    }
+
+    /**
+     * 与 Semantic.forDeclare 相同地划分变量和初值
+     */
+    private void declare(TreeNode root, int level) {
+        int index = 0;
+        while (index < root.getChildCount()) {
+            TreeNode temp = root.getChildAt(index);
+            index++;
+            if (temp.getChildCount() == 0) {
+                if (index < root.getChildCount()
+                        && root.getChildAt(index).getContent().equals(ConstChars.ASSIGN)) {
+                    // 初值在变量加入符号表之前计算
+                    uses(root.getChildAt(index));
+                    index++;
+                }
+            } else {
+                uses(temp.getChildAt(0));
+            }
+            bind(temp, level);
+        }
+    }
+
+    /**
+     * 声明变量，同一作用域中的同名变量共用槽位
+     */
+    private void bind(TreeNode temp, int level) {
+        int symbol = temp.getSymbol();
+        if (symbol < 0) {
+            // 没有符号编号的元素在符号表中查不到
+            return;
+        }
+        Integer current = visible.get(symbol);
+        if (current != null && depths[current] == level) {
+            temp.setBinding(current);
+            return;
+        }
+        if (count == depths.length) {
+            depths = Arrays.copyOf(depths, count * 2);
+            slots = Arrays.copyOf(slots, count * 2);
+            outers = Arrays.copyOf(outers, count * 2);
+            symbols = Arrays.copyOf(symbols, count * 2);
+        }
+        int binding = count++;
+        depths[binding] = level;
+        slots[binding] = nextSlots[level]++;
+        outers[binding] = current == null ? -1 : current;
+        symbols[binding] = symbol;
+        frameSizes[level] = Math.max(frameSizes[level], nextSlots[level]);
+        visible.put(symbol, binding);
+        scopes.get(scopes.size() - 1).add(binding);
+        temp.setBinding(binding);
+    }
+
+    /**
+     * 把子树中的标识符绑定到当前可见的变量
+     */
+    private void uses(TreeNode root) {
+        if ("标识符".equals(root.getNodeType())) {
+            Integer binding = visible.get(root.getSymbol());
+            root.setBinding(binding == null ? -1 : binding);
+        }
+        for (int i = 0; i < root.getChildCount(); i++) {
+            uses(root.getChildAt(i));
+        }
+    }
+
+    private void open(int level) {
+        if (level >= frameSizes.length) {
+            frameSizes = Arrays.copyOf(frameSizes, level * 2);
+            nextSlots = Arrays.copyOf(nextSlots, level * 2);
+        }
+        nextSlots[level] = 0;
+        scopes.add(new ArrayList<>());
+    }
+
+    private void close(int level) {
+        List<Integer> declared = scopes.remove(scopes.size() - 1);
+        for (int binding : declared) {
+            if (outers[binding] < 0) {
+                visible.remove(symbols[binding]);
+            } else {
+                visible.put(symbols[binding], outers[binding]);
+            }
+        }
+        nextSlots[level] = 0;
+    }
+}
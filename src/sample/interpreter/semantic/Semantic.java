@@ -1,11 +1,24 @@
 package sample.interpreter.semantic;
 
 
+import sample.interpreter.closure.ClosureCompiler;
+import sample.interpreter.closure.ClosureProgram;
+import sample.interpreter.jvm.JvmCompiler;
+import sample.interpreter.jvm.JvmProgram;
 import sample.interpreter.lexer.ConstChars;
 import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.util.Diagnostic.Phase;
+import sample.interpreter.util.DiagnosticCode;
+import sample.interpreter.util.Diagnostics;
+import sample.interpreter.vm.BytecodeCompiler;
+import sample.interpreter.vm.BytecodeProgram;
+import sample.interpreter.vm.Host;
+import sample.interpreter.vm.VirtualMachine;
 import sample.view.RootLayoutController;
 
-import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * CMM语义分析器
@@ -13,31 +26,120 @@ import java.math.BigDecimal;
  * @author Administrator
  */
 public class Semantic extends Thread {
+    /**
+     * 表达式和运算对象的值的类型：出错、没有值（布尔型或字符串）、空值（除数为零或未赋值的数组）、
+     * 写法不合法的实数常量、整数、实数、只能转换为浮点数的写法（科学计数法、无穷大或超出 int 范围的整数）
+     */
+    private static final int VALUE_ERROR = -1;
+    private static final int VALUE_NONE = 0;
+    private static final int VALUE_EMPTY = 1;
+    private static final int VALUE_INVALID = 2;
+    private static final int VALUE_INT = 3;
+    private static final int VALUE_REAL = 4;
+    private static final int VALUE_TEXT = 5;
+    /**
+     * 运算符结点的特化，保存在 TreeNode.specialization 中：低 3 位是状态，
+     * 还在收集类型时其余位依次是最近见到的类型、连续见到它的次数和已经去优化的次数。
+     * 连续 SPECIALIZE_AFTER 次两边的类型相同后结点改写为对应的特化，特化只检查两边的类型，
+     * 检查失败时用已经算出的运算对象按通用的方式算完这一次并退回收集类型，退回 MAX_DEOPTIMIZATIONS 次后不再特化
+     */
+    private static final int SPEC_UNINITIALIZED = 0;
+    private static final int SPEC_INT = 1;
+    private static final int SPEC_REAL = 2;
+    private static final int SPEC_MIXED = 3;
+    private static final int SPEC_GENERIC = 4;
+    private static final int SPEC_STATE = 7;
+    private static final int SPEC_TYPE_SHIFT = 3;
+    private static final int SPEC_COUNT_SHIFT = 5;
+    private static final int SPEC_DEOPT_SHIFT = 7;
+    private static final int SPECIALIZE_AFTER = 3;
+    private static final int MAX_DEOPTIMIZATIONS = 3;
+
     public String output = "";
     /**
-     * 语义分析时的符号表
+     * 语义分析时的符号表，变量解析失败或关闭时使用
      */
     private SymbolTable table = new SymbolTable();
     /**
-     * 语法分析得到的抽象语法树
+     * 变量解析的结果，为 null 时按名字查找符号表
      */
-    private TreeNode root;
+    private Resolver resolver;
+    /**
+     * 按层次和槽位存放的变量，与符号表二选一
+     */
+    private SymbolTableElement[][] frames;
+    /**
+     * 作用域的版本，只在声明变量、退出作用域删除了变量时改变，标识符结点缓存的查找结果在版本改变后作废。
+     * 版本号在所有 Semantic 之间递增，同一棵语法树被再次执行时不会用到上一次运行的缓存
+     */
+    private static final AtomicLong EPOCHS = new AtomicLong();
+    private long scopeEpoch;
+    /**
+     * 最近一次运行中标识符查找命中和未命中缓存的次数
+     */
+    private long lookupHits;
+    private long lookupMisses;
     /**
-     * 语义分析错误信息
+     * 是否先做变量解析
      */
-    private String errorInfo = "";
+    private boolean resolve = true;
     /**
-     * 语义分析错误个数
+     * 选择的执行引擎和最近一次运行实际使用的引擎
      */
-    private int errorNum = 0;
+    private Engine engine = Engine.TREE;
+    private Engine executedEngine;
+    /**
+     * 选择的引擎不能执行程序时的原因
+     */
+    private String fallbackReason;
+    /**
+     * 分层执行时循环编译为闭包前按语法树执行的回边数，和最近一次分层执行的循环计数
+     */
+    private int tierThreshold = LoopProfile.DEFAULT_THRESHOLD;
+    private LoopProfile loopProfile;
+    /**
+     * 语法分析得到的抽象语法树
+     */
+    private TreeNode root;
+    /**
+     * 语义分析错误，错误信息在取用时才生成
+     */
+    private Diagnostics diagnostics = new Diagnostics();
     /**
      * 语义分析标识符作用域
      */
     private int level = 0;
     /**
-     * 用户输入
+     * 用户输入，还没有被 read 语句读取的行按输入的顺序排队
+     */
+    private final ArrayDeque<String> userInput = new ArrayDeque<>();
+    /**
+     * 输入已经结束，没有排队的输入时 read 语句停止执行程序
      */
-    private String userInput;
+    private boolean inputEnded;
+    /**
+     * 程序的输出，write 语句和分析结果都写到这里
+     */
+    private Consumer<String> printer;
+
+    /**
+     * 最近一次表达式或比较运算的结果，数值以 int、double 和 boolean 保存，
+     * 实数的写法只在 write 时使用
+     */
+    private int intResult;
+    private double realResult;
+    private String textResult;
+    private boolean boolResult;
+    /**
+     * 最近一次计算的运算对象
+     */
+    private int operandInt;
+    private double operandReal;
+    private boolean operandIsReal;
+    /**
+     * 最近一次 checkID 成功时数组元素的下标，不是数组元素时为 -1
+     */
+    private int checkedIndex = -1;
 
     private RootLayoutController controller;
 
@@ -48,37 +150,80 @@ public class Semantic extends Thread {
     public Semantic(TreeNode root, RootLayoutController controller){
         this.root = root;
         this.controller = controller;
+        this.printer = text -> controller.resultContent.appendText(text);
+    }
+
+    public Semantic(TreeNode root, Consumer<String> printer) {
+        this.root = root;
+        this.printer = printer;
     }
 
     /**
      * 识别正确的整数：排除多个零的情况
+     * 与正则表达式 ^-?\d+$ 且非 ^-?0{1,}\d+$ 相同，逐个字符判断
      *
      * @param input 要识别的字符串
      * @return 布尔值
      */
-    private static boolean matchInteger(String input) {
-        return input.matches("^-?\\d+$") && !input.matches("^-?0{1,}\\d+$");
+    public static boolean matchInteger(String input) {
+        int start = input.startsWith("-") ? 1 : 0;
+        int end = digits(input, start);
+        return end > start && end == input.length()
+                && (input.charAt(start) != '0' || end - start == 1);
     }
 
     /**
      * 识别正确的浮点数：排除00.000的情况
+     * 与正则表达式 ^(-?\d+)(\.\d+)+$ 且非 ^(-?0{2,}+)(\.\d+)+$ 相同，逐个字符判断
      *
      * @param input 要识别的字符串
      * @return 布尔值
      */
-    private static boolean matchReal(String input) {
-        return input.matches("^(-?\\d+)(\\.\\d+)+$")
-                && !input.matches("^(-?0{2,}+)(\\.\\d+)+$");
+    public static boolean matchReal(String input) {
+        int start = input.startsWith("-") ? 1 : 0;
+        int end = digits(input, start);
+        if (end == start || end == input.length()) {
+            return false;
+        }
+        boolean zeros = end - start > 1;
+        for (int i = start; i < end && zeros; i++) {
+            zeros = input.charAt(i) == '0';
+        }
+        int index = end;
+        while (index < input.length()) {
+            if (input.charAt(index) != '.') {
+                return false;
+            }
+            int next = digits(input, index + 1);
+            if (next == index + 1) {
+                return false;
+            }
+            index = next;
+        }
+        return !zeros;
+    }
+
+    /**
+     * 从 start 开始的连续数字的结束位置
+     */
+    private static int digits(String input, int start) {
+        int index = start;
+        while (index < input.length() && input.charAt(index) >= '0' && input.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
     }
 
     public String getOutput() {
         return output;
     }
 
-    private void error(String error, int line) {
-        errorNum++;
-        String s = ConstChars.ERROR + "第 " + line + " 行：" + error + "\n";
-        errorInfo += s;
+    private void print(String text) {
+        printer.accept(text);
+    }
+
+    private void error(DiagnosticCode code, int line, Object... args) {
+        diagnostics.report(code, line, 0, args);
     }
 
     /**
@@ -87,8 +232,16 @@ public class Semantic extends Thread {
      * @param userInput 输入的内容
      */
     public synchronized void setUserInput(String userInput) {
-        this.userInput = userInput;
-        notify();
+        this.userInput.add(userInput);
+        notifyAll();
+    }
+
+    /**
+     * 输入已经结束，例如命令行的标准输入读到了末尾
+     */
+    public synchronized void endInput() {
+        inputEnded = true;
+        notifyAll();
     }
 
     /**
@@ -97,17 +250,17 @@ public class Semantic extends Thread {
      * @return 返回用户输入内容的字符串形式
      */
     private synchronized String readInput() {
-        String result ;
         try {
-            while (userInput == null) {
+            while (userInput.isEmpty() && !inputEnded) {
                 wait();
             }
         } catch (InterruptedException ie) {
             ie.printStackTrace();
         }
-        result = userInput;
-        userInput = null;
-        return result;
+        if (userInput.isEmpty()) {
+            throw new EndOfInput();
+        }
+        return userInput.poll();
     }
 
     /**
@@ -116,20 +269,85 @@ public class Semantic extends Thread {
     @Override
     public void run() {
         table.removeAll();
-        statement(root);
+        scopeEpoch = EPOCHS.incrementAndGet();
+        lookupHits = 0;
+        lookupMisses = 0;
+        resolver = null;
+        executedEngine = Engine.TREE;
+        fallbackReason = null;
+        loopProfile = null;
+        try {
+            execute();
+        } catch (EndOfInput e) {
+            print("输入已经结束，程序停止执行\n");
+        }
         //output = output + "\n";
-        controller.resultContent.appendText("**********语义分析结果**********\n");
+        print("**********语义分析结果**********\n");
         //output = output + "**********语义分析结果**********\n";
+        int errorNum = getErrorNum();
         if (errorNum != 0) {
             //output = output + errorInfo;
-            controller.resultContent.appendText(errorInfo+"\n");
+            print(getErrorInfo()+"\n");
             //output = output + "该程序中共有" + errorNum + "个语义错误！\n";
-            controller.resultContent.appendText("该程序中共有" + errorNum + "个语义错误！\n");
+            print("该程序中共有" + errorNum + "个语义错误！\n");
             //output = output + "程序进行语义分析时发现错误，请修改！";
-            controller.resultContent.appendText("程序进行语义分析时发现错误，请修改！");
+            print("程序进行语义分析时发现错误，请修改！");
         } else {
             //output = output + "该程序中共有" + errorNum + "个语义错误！\n";
-            controller.resultContent.appendText("该程序中共有" + errorNum + "个语义错误！\n");
+            print("该程序中共有" + errorNum + "个语义错误！\n");
+        }
+    }
+
+    /**
+     * 按选择的引擎执行程序，不能编译时按语法树执行
+     */
+    private void execute() {
+        if (engine == Engine.BYTECODE) {
+            BytecodeCompiler compiler = new BytecodeCompiler();
+            BytecodeProgram program = compiler.compile(root);
+            if (program != null) {
+                executedEngine = Engine.BYTECODE;
+                new VirtualMachine(program, host()).execute();
+            } else {
+                fallbackReason = compiler.getReason();
+            }
+        } else if (engine == Engine.CLOSURE) {
+            ClosureCompiler compiler = new ClosureCompiler();
+            ClosureProgram program = compiler.compile(root);
+            if (program != null) {
+                executedEngine = Engine.CLOSURE;
+                program.execute(host());
+            } else {
+                fallbackReason = compiler.getReason();
+            }
+        } else if (engine == Engine.JVM) {
+            JvmCompiler compiler = new JvmCompiler();
+            JvmProgram program = compiler.compile(root);
+            if (program != null) {
+                executedEngine = Engine.JVM;
+                program.execute(host());
+            } else {
+                fallbackReason = compiler.getReason();
+            }
+        }
+        if (executedEngine == Engine.TREE) {
+            if (resolve) {
+                Resolver temp = new Resolver();
+                if (temp.resolve(root)) {
+                    resolver = temp;
+                    frames = temp.newFrames();
+                    scopeEpoch = EPOCHS.incrementAndGet();
+                }
+            }
+            if (engine == Engine.TIERED) {
+                if (resolver != null) {
+                    executedEngine = Engine.TIERED;
+                    loopProfile = new LoopProfile(tierThreshold);
+                } else {
+                    fallbackReason = "变量解析失败或关闭";
+                }
+            }
+            statement(root);
         }
     }
 
@@ -152,30 +370,36 @@ public class Semantic extends Thread {
                 case ConstChars.ASSIGN:
                     forAssign(currentNode);
                     break;
-                case ConstChars.FOR:
+                case ConstChars.FOR: {
                     // 进入for循环语句，改变作用域
+                    int mark = mark();
                     level++;
                     forFor(currentNode);
                     // 退出for循环语句，改变作用域并更新符号表
                     level--;
-                    table.update(level);
+                    rewind(mark);
                     break;
-                case ConstChars.IF:
+                }
+                case ConstChars.IF: {
                     // 进入if语句，改变作用域
+                    int mark = mark();
                     level++;
                     forIf(currentNode);
                     // 退出if语句，改变作用域并更新符号表
                     level--;
-                    table.update(level);
+                    rewind(mark);
                     break;
-                case ConstChars.WHILE:
+                }
+                case ConstChars.WHILE: {
                     // 进入while语句，改变作用域
+                    int mark = mark();
                     level++;
                     forWhile(currentNode);
                     // 退出while语句，改变作用域并更新符号表
                     level--;
-                    table.update(level);
+                    rewind(mark);
                     break;
+                }
                 case ConstChars.READ:
                     forRead(currentNode.getChildAt(0));
                     break;
@@ -202,11 +426,12 @@ public class Semantic extends Thread {
             // 变量名
             String name = temp.getContent();
             // 判断变量是否已经被声明
-            if (table.getCurrentLevel(name, level) == null) {
+            if (lookupCurrent(temp) == null) {
                 // 声明普通变量
                 if (temp.getChildCount() == 0) {
                     SymbolTableElement element = new SymbolTableElement(temp
-                            .getContent(), content, temp.getRowNum(), level);
+                            .getContent(), temp.getSymbol(), -1, content,
+                            temp.getRowNum(), level);
                     index++;
                     // 判断变量是否在声明时被初始化
                     if (index < root.getChildCount()
@@ -221,44 +446,30 @@ public class Semantic extends Thread {
                             case ConstChars.INT:
                                 if (matchInteger(value)) {
                                     element.setIntValue(value);
-                                    element.setRealValue(String.valueOf(Double
-                                            .parseDouble(value)));
                                 } else if (matchReal(value)) {
-                                    String error = "不能将浮点数赋值给整型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点数", "整型变量");
                                 } else if ("true".equals(value)
                                         || "false".equals(value)) {
-                                    String error = "不能将" + value + "赋值给整型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), value, "整型变量");
                                 } else if ("字符串".equals(valueNode.getNodeType())) {
-                                    String error = "不能将字符串赋值给整型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "字符串", "整型变量");
                                 } else if ("标识符".equals(valueNode.getNodeType())) {
                                     if (checkID(valueNode, level)) {
-                                        switch (table.getAllLevel(
-                                                valueNode.getContent(), level)
-                                                .getKind()) {
+                                        SymbolTableElement source = lookup(valueNode);
+                                        switch (source.getKind()) {
                                             case ConstChars.INT:
-                                                element.setIntValue(table.getAllLevel(
-                                                        valueNode.getContent(), level)
-                                                        .getIntValue());
-                                                element.setRealValue(table.getAllLevel(
-                                                        valueNode.getContent(), level)
-                                                        .getRealValue());
+                                                element.copyValue(source);
                                                 break;
                                             case ConstChars.REAL: {
-                                                String error = "不能将浮点型变量赋值给整型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点型变量", "整型变量");
                                                 break;
                                             }
                                             case ConstChars.BOOL: {
-                                                String error = "不能将布尔型变量赋值给整型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "布尔型变量", "整型变量");
                                                 break;
                                             }
                                             case ConstChars.STRING: {
-                                                String error = "不能将字符串变量赋值给整型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "字符串变量", "整型变量");
                                                 break;
                                             }
                                             default:
@@ -272,20 +483,12 @@ public class Semantic extends Thread {
                                         || value.equals(ConstChars.MINUS)
                                         || value.equals(ConstChars.TIMES)
                                         || value.equals(ConstChars.DIVIDE)) {
-                                    String result = forExpression(valueNode);
-                                    if (result != null) {
-                                        if (matchInteger(result)) {
-                                            element.setIntValue(result);
-                                            element.setRealValue(String
-                                                    .valueOf(Double
-                                                            .parseDouble(result)));
-                                        } else if (matchReal(result)) {
-                                            String error = "不能将浮点数赋值给整型变量";
-                                            error(error, valueNode.getRowNum());
-                                            return;
-                                        } else {
-                                            return;
-                                        }
+                                    int result = forExpression(valueNode);
+                                    if (result == VALUE_INT) {
+                                        element.setIntValue(intResult);
+                                    } else if (result == VALUE_REAL) {
+                                        error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点数", "整型变量");
+                                        return;
                                     } else {
                                         return;
                                     }
@@ -294,36 +497,30 @@ public class Semantic extends Thread {
                             // 声明real型变量
                             case ConstChars.REAL:
                                 if (matchInteger(value)) {
-                                    element.setRealValue(String.valueOf(Double
-                                            .parseDouble(value)));
+                                    element.setRealValue(Double.parseDouble(value));
                                 } else if (matchReal(value)) {
-                                    element.setRealValue(value);
+                                    element.setRealValue(Double.parseDouble(value), value);
                                 } else if ("true".equals(value)
                                         || "false".equals(value)) {
-                                    String error = "不能将" + value + "赋值给浮点型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), value, "浮点型变量");
                                 } else if ("字符串".equals(valueNode.getNodeType())) {
-                                    String error = "不能将字符串给浮点型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.CONVERT_MISMATCH, valueNode.getRowNum(), "字符串", "浮点型变量");
                                 } else if ("标识符".equals(valueNode.getNodeType())) {
                                     if (checkID(valueNode, level)) {
-                                        switch (table.getAllLevel(
-                                                valueNode.getContent(), level)
-                                                .getKind()) {
+                                        SymbolTableElement source = lookup(valueNode);
+                                        switch (source.getKind()) {
                                             case ConstChars.INT:
+                                                element.copyRealValue(source);
+                                                break;
                                             case ConstChars.REAL:
-                                                element.setRealValue(table.getAllLevel(
-                                                        valueNode.getContent(), level)
-                                                        .getRealValue());
+                                                element.copyValue(source);
                                                 break;
                                             case ConstChars.BOOL: {
-                                                String error = "不能将布尔型变量赋值给浮点型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "布尔型变量", "浮点型变量");
                                                 break;
                                             }
                                             case ConstChars.STRING: {
-                                                String error = "不能将字符串变量赋值给浮点型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "字符串变量", "浮点型变量");
                                                 break;
                                             }
                                             default:
@@ -336,16 +533,12 @@ public class Semantic extends Thread {
                                         || value.equals(ConstChars.MINUS)
                                         || value.equals(ConstChars.TIMES)
                                         || value.equals(ConstChars.DIVIDE)) {
-                                    String result = forExpression(valueNode);
-                                    if (result != null) {
-                                        if (matchInteger(result)) {
-                                            element.setRealValue(String
-                                                    .valueOf(Double
-                                                            .parseDouble(result)));
-                                        } else if (matchReal(result)) {
-                                            element.setRealValue(result);
-                                        }
-                                    } else {
+                                    int result = forExpression(valueNode);
+                                    if (result == VALUE_INT) {
+                                        element.setRealValue(intResult);
+                                    } else if (result == VALUE_REAL) {
+                                        element.setRealValue(realResult, textResult);
+                                    } else if (result == VALUE_ERROR) {
                                         return;
                                     }
                                 }
@@ -353,35 +546,28 @@ public class Semantic extends Thread {
                             // 声明string型变量
                             case ConstChars.STRING:
                                 if (matchInteger(value)) {
-                                    String error = "不能将整数赋值给字符串型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "整数", "字符串型变量");
                                 } else if (matchReal(value)) {
-                                    String error = "不能将浮点数赋值给字符串型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点数", "字符串型变量");
                                 } else if ("true".equals(value)
                                         || "false".equals(value)) {
-                                    String error = "不能将" + value + "赋值给字符串型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), value, "字符串型变量");
                                 } else if ("字符串".equals(valueNode.getNodeType())) {
                                     element.setStringValue(value);
                                 } else if ("标识符".equals(valueNode.getNodeType())) {
                                     if (checkID(valueNode, level)) {
-                                        switch (table.getAllLevel(
-                                                valueNode.getContent(), level)
+                                        switch (lookup(valueNode)
                                                 .getKind()) {
                                             case ConstChars.INT: {
-                                                String error = "不能将整数赋值给字符串型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "整数", "字符串型变量");
                                                 break;
                                             }
                                             case ConstChars.REAL: {
-                                                String error = "不能将浮点数赋值给字符串型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点数", "字符串型变量");
                                                 break;
                                             }
                                             case ConstChars.BOOL: {
-                                                String error = "不能将布尔型变量赋值给字符串型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "布尔型变量", "字符串型变量");
                                                 break;
                                             }
                                             case ConstChars.STRING:
@@ -397,61 +583,38 @@ public class Semantic extends Thread {
                                         || value.equals(ConstChars.MINUS)
                                         || value.equals(ConstChars.TIMES)
                                         || value.equals(ConstChars.DIVIDE)) {
-                                    String error = "不能将算术表达式赋值给字符串型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "算术表达式", "字符串型变量");
                                 }
                                 break;
                             default:  // 声明bool型变量
                                 if (matchInteger(value)) {
                                     // 如果是0或负数则记为false,其他记为true
                                     int i = Integer.parseInt(value);
-                                    if (i <= 0) {
-                                        element.setStringValue("false");
-                                    } else {
-                                        element.setStringValue("true");
-                                    }
+                                    element.setBoolValue(i > 0);
                                 } else if (matchReal(value)) {
-                                    String error = "不能将浮点数赋值给布尔型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点数", "布尔型变量");
                                 } else if ("true".equals(value)
                                         || "false".equals(value)) {
-                                    element.setStringValue(value);
+                                    element.setBoolValue("true".equals(value));
                                 } else if ("字符串".equals(valueNode.getNodeType())) {
-                                    String error = "不能将字符串给布尔型变量";
-                                    error(error, valueNode.getRowNum());
+                                    error(DiagnosticCode.CONVERT_MISMATCH, valueNode.getRowNum(), "字符串", "布尔型变量");
                                 } else if ("标识符".equals(valueNode.getNodeType())) {
                                     if (checkID(valueNode, level)) {
-                                        switch (table.getAllLevel(
-                                                valueNode.getContent(), level)
-                                                .getKind()) {
+                                        SymbolTableElement source = lookup(valueNode);
+                                        switch (source.getKind()) {
                                             case ConstChars.INT:
-                                                int i = Integer.parseInt(table
-                                                        .getAllLevel(
-                                                                valueNode.getContent(),
-                                                                level).getIntValue());
-                                                if (i <= 0) {
-                                                    element.setStringValue("false");
-                                                } else {
-                                                    element.setStringValue("true");
-                                                }
+                                                int i = source.getIntValue();
+                                                element.setBoolValue(i > 0);
                                                 break;
                                             case ConstChars.REAL: {
-                                                String error = "不能将浮点型变量赋值给布尔型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "浮点型变量", "布尔型变量");
                                                 break;
                                             }
                                             case ConstChars.BOOL:
-                                                element
-                                                        .setStringValue(table
-                                                                .getAllLevel(
-                                                                        valueNode
-                                                                                .getContent(),
-                                                                        level)
-                                                                .getStringValue());
+                                                element.copyValue(source);
                                                 break;
                                             case ConstChars.STRING: {
-                                                String error = "不能将字符串变量赋值给布尔型变量";
-                                                error(error, valueNode.getRowNum());
+                                                error(DiagnosticCode.ASSIGN_MISMATCH, valueNode.getRowNum(), "字符串变量", "布尔型变量");
                                                 break;
                                             }
                                             default:
@@ -464,46 +627,37 @@ public class Semantic extends Thread {
                                         || value.equals(ConstChars.NEQUAL)
                                         || value.equals(ConstChars.LT)
                                         || value.equals(ConstChars.GT)) {
-                                    boolean result = forCondition(valueNode);
-                                    if (result) {
-                                        element.setStringValue("true");
-                                    } else {
-                                        element.setStringValue("false");
-                                    }
+                                    element.setBoolValue(forCondition(valueNode));
                                 }
                                 break;
                         }
                         index++;
                     }
-                    table.add(element);
+                    declare(temp, element);
                 } else { // 声明数组
                     SymbolTableElement element = new SymbolTableElement(temp
-                            .getContent(), content, temp.getRowNum(), level);
+                            .getContent(), temp.getSymbol(), -1, content,
+                            temp.getRowNum(), level);
                     String sizeValue = temp.getChildAt(0).getContent();
                     if (matchInteger(sizeValue)) {
                         int i = Integer.parseInt(sizeValue);
                         if (i < 1) {
-                            String error = "数组大小必须大于零";
-                            error(error, root.getRowNum());
+                            error(DiagnosticCode.ARRAY_SIZE_NOT_POSITIVE, root.getRowNum());
                             return;
                         }
                     } else if ("标识符".equals(temp.getChildAt(0).getNodeType())) {
                         if (checkID(root, level)) {
-                            SymbolTableElement tempElement = table.getAllLevel(
-                                    root.getContent(), level);
+                            SymbolTableElement tempElement = lookup(root);
                             if (tempElement.getKind().equals(ConstChars.INT)) {
-                                int i = Integer.parseInt(tempElement
-                                        .getIntValue());
+                                int i = tempElement.getIntValue();
                                 if (i < 1) {
-                                    String error = "数组大小必须大于零";
-                                    error(error, root.getRowNum());
+                                    error(DiagnosticCode.ARRAY_SIZE_NOT_POSITIVE, root.getRowNum());
                                     return;
                                 } else {
-                                    sizeValue = tempElement.getIntValue();
+                                    sizeValue = tempElement.getIntText();
                                 }
                             } else {
-                                String error = "类型不匹配,数组大小必须为整数类型";
-                                error(error, root.getRowNum());
+                                error(DiagnosticCode.ARRAY_SIZE_NOT_INTEGER, root.getRowNum());
                                 return;
                             }
                         } else {
@@ -513,37 +667,27 @@ public class Semantic extends Thread {
                             || sizeValue.equals(ConstChars.MINUS)
                             || sizeValue.equals(ConstChars.TIMES)
                             || sizeValue.equals(ConstChars.DIVIDE)) {
-                        sizeValue = forExpression(temp.getChildAt(0));
-                        if (sizeValue != null) {
-                            if (matchInteger(sizeValue)) {
-                                int i = Integer.parseInt(sizeValue);
-                                if (i < 1) {
-                                    String error = "数组大小必须大于零";
-                                    error(error, root.getRowNum());
-                                    return;
-                                }
-                            } else {
-                                String error = "类型不匹配,数组大小必须为整数类型";
-                                error(error, root.getRowNum());
+                        int result = forExpression(temp.getChildAt(0));
+                        if (result == VALUE_INT) {
+                            if (intResult < 1) {
+                                error(DiagnosticCode.ARRAY_SIZE_NOT_POSITIVE, root.getRowNum());
                                 return;
                             }
+                            sizeValue = String.valueOf(intResult);
+                        } else if (result != VALUE_ERROR) {
+                            error(DiagnosticCode.ARRAY_SIZE_NOT_INTEGER, root.getRowNum());
+                            return;
                         } else {
                             return;
                         }
                     }
-                    element.setArrayElementsNum(Integer.parseInt(sizeValue));
-                    table.add(element);
+                    // 数组的元素存放在一个基本类型数组中
+                    element.allocate(Integer.parseInt(sizeValue));
                     index++;
-                    for (int j = 0; j < Integer.parseInt(sizeValue); j++) {
-                        String s = temp.getContent() + "@" + j;
-                        SymbolTableElement ste = new SymbolTableElement(s,
-                                content, temp.getRowNum(), level);
-                        table.add(ste);
-                    }
+                    declare(temp, element);
                 }
             } else { // 报错
-                String error = "变量" + name + "已被声明,请重命名该变量";
-                error(error, temp.getRowNum());
+                error(DiagnosticCode.REDECLARED, temp.getRowNum(), name);
                 return;
             }
         }
@@ -559,68 +703,43 @@ public class Semantic extends Thread {
         TreeNode node1 = root.getChildAt(0);
         // 赋值语句左半部分标识符
         String node1Value = node1.getContent();
-        if (table.getAllLevel(node1Value, level) != null) {
+        // 数组元素下标，不是数组元素时为 -1
+        int node1Index = -1;
+        // 被赋值的变量，计算右半部分不会声明或删除变量
+        SymbolTableElement target = lookup(node1);
+        if (target != null) {
             if (node1.getChildCount() != 0) {
-                String s = forArray(node1.getChildAt(0), table.getAllLevel(
-                        node1Value, level).getArrayElementsNum());
-                if (s != null) {
-                    node1Value += "@" + s;
-                } else {
+                node1Index = forArray(node1.getChildAt(0), target.getArrayElementsNum());
+                if (node1Index < 0) {
                     return;
                 }
             }
         } else {
-            String error = "变量" + node1Value + "在使用前未声明";
-            error(error, node1.getRowNum());
+            error(DiagnosticCode.UNDECLARED, node1.getRowNum(), node1Value);
             return;
         }
         // 赋值语句左半部分标识符类型
-        String node1Kind = table.getAllLevel(node1Value, level).getKind();
+        String node1Kind = target.getKind();
         // 赋值语句右半部分
         TreeNode node2 = root.getChildAt(1);
         String node2Kind = node2.getNodeType();
         String node2Value = node2.getContent();
-        // 赋值语句右半部分的值
-        String value = "";
+        // 右半部分是变量时为该变量，是常量或表达式时为 null，值分别在 node2Value 和计算结果中
+        SymbolTableElement source = null;
+        int sourceIndex = -1;
         if ("整数".equals(node2Kind)) {
-            value = node2Value;
             node2Kind = "int";
         } else if ("实数".equals(node2Kind)) {
-            value = node2Value;
             node2Kind = "real";
         } else if ("字符串".equals(node2Kind)) {
-            value = node2Value;
             node2Kind = "string";
         } else if ("布尔值".equals(node2Kind)) {
-            value = node2Value;
             node2Kind = "bool";
         } else if ("标识符".equals(node2Kind)) {
             if (checkID(node2, level)) {
-                if (node2.getChildCount() != 0) {
-                    String s = forArray(node2.getChildAt(0), table.getAllLevel(
-                            node2Value, level).getArrayElementsNum());
-                    if (s != null) {
-                        node2Value += "@" + s;
-                    } else {
-                        return;
-                    }
-                }
-                SymbolTableElement temp = table.getAllLevel(node2Value, level);
-                switch (temp.getKind()) {
-                    case ConstChars.INT:
-                        value = temp.getIntValue();
-                        break;
-                    case ConstChars.REAL:
-                        value = temp.getRealValue();
-                        break;
-                    case ConstChars.BOOL:
-                    case ConstChars.STRING:
-                        value = temp.getStringValue();
-                        break;
-                    default:
-                        break;
-                }
-                node2Kind = table.getAllLevel(node2Value, level).getKind();
+                sourceIndex = checkedIndex;
+                source = lookup(node2);
+                node2Kind = source.getKind();
             } else {
                 return;
             }
@@ -628,46 +747,45 @@ public class Semantic extends Thread {
                 || node2Value.equals(ConstChars.MINUS)
                 || node2Value.equals(ConstChars.TIMES)
                 || node2Value.equals(ConstChars.DIVIDE)) {
-            String result = forExpression(node2);
-            if (result != null) {
-                if (matchInteger(result)) {
-                    node2Kind = "int";
-                } else if (matchReal(result)) {
-                    node2Kind = "real";
-                }
-                value = result;
-            } else {
+            int result = forExpression(node2);
+            if (result == VALUE_ERROR) {
                 return;
+            } else if (result == VALUE_INT) {
+                node2Kind = "int";
+            } else if (result == VALUE_REAL) {
+                node2Kind = "real";
             }
         } else if (node2Value.equals(ConstChars.EQUAL)
                 || node2Value.equals(ConstChars.NEQUAL)
                 || node2Value.equals(ConstChars.LT)
                 || node2Value.equals(ConstChars.GT)) {
-            boolean result = forCondition(node2);
+            boolResult = forCondition(node2);
             node2Kind = "bool";
-            value = String.valueOf(result);
         }
+        // 常量保留写法，变量连同写法一起复制，表达式的结果按数值保存
+        boolean constant = source == null && node2.getChildCount() == 0;
         switch (node1Kind) {
             case ConstChars.INT:
                 switch (node2Kind) {
                     case ConstChars.INT:
-                        table.getAllLevel(node1Value, level).setIntValue(value);
-                        table.getAllLevel(node1Value, level).setRealValue(
-                                String.valueOf(Double.parseDouble(value)));
+                        if (source != null) {
+                            target.copyValue(node1Index, source, sourceIndex);
+                        } else if (constant) {
+                            target.setIntValue(node1Index, node2Value);
+                        } else {
+                            target.setIntValue(node1Index, intResult);
+                        }
                         break;
                     case ConstChars.REAL: {
-                        String error = "不能将浮点数赋值给整型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "浮点数", "整型变量");
                         return;
                     }
                     case ConstChars.BOOL: {
-                        String error = "不能将布尔值赋值给整型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "布尔值", "整型变量");
                         return;
                     }
                     case ConstChars.STRING: {
-                        String error = "不能将字符串给整型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.CONVERT_MISMATCH, node1.getRowNum(), "字符串", "整型变量");
                         return;
                     }
                     default:
@@ -677,20 +795,29 @@ public class Semantic extends Thread {
             case ConstChars.REAL:
                 switch (node2Kind) {
                     case ConstChars.INT:
-                        table.getAllLevel(node1Value, level).setRealValue(
-                                String.valueOf(Double.parseDouble(value)));
+                        if (source != null) {
+                            target.copyRealValue(node1Index, source, sourceIndex);
+                        } else if (constant) {
+                            target.setRealValue(node1Index, Double.parseDouble(node2Value));
+                        } else {
+                            target.setRealValue(node1Index, intResult);
+                        }
                         break;
                     case ConstChars.REAL:
-                        table.getAllLevel(node1Value, level).setRealValue(value);
+                        if (source != null) {
+                            target.copyValue(node1Index, source, sourceIndex);
+                        } else if (constant) {
+                            target.setRealValue(node1Index, Double.parseDouble(node2Value), node2Value);
+                        } else {
+                            target.setRealValue(node1Index, realResult, textResult);
+                        }
                         break;
                     case ConstChars.BOOL: {
-                        String error = "不能将布尔值赋值给浮点型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "布尔值", "浮点型变量");
                         return;
                     }
                     case ConstChars.STRING: {
-                        String error = "不能将字符串给浮点型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.CONVERT_MISMATCH, node1.getRowNum(), "字符串", "浮点型变量");
                         return;
                     }
                     default:
@@ -701,23 +828,23 @@ public class Semantic extends Thread {
                 switch (node2Kind) {
                     case ConstChars.INT:
                         int i = Integer.parseInt(node2Value);
-                        if (i <= 0) {
-                            table.getAllLevel(node1Value, level).setStringValue("false");
-                        } else {
-                            table.getAllLevel(node1Value, level).setStringValue("true");
-                        }
+                        target.setBoolValue(node1Index, i > 0);
                         break;
                     case ConstChars.REAL: {
-                        String error = "不能将浮点数赋值给布尔型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "浮点数", "布尔型变量");
                         return;
                     }
                     case ConstChars.BOOL:
-                        table.getAllLevel(node1Value, level).setStringValue(value);
+                        if (source != null) {
+                            target.copyValue(node1Index, source, sourceIndex);
+                        } else if (constant) {
+                            target.setBoolValue(node1Index, "true".equals(node2Value));
+                        } else {
+                            target.setBoolValue(node1Index, boolResult);
+                        }
                         break;
                     case ConstChars.STRING: {
-                        String error = "不能将字符串赋值给布尔型变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "字符串", "布尔型变量");
                         return;
 
                     }
@@ -728,22 +855,19 @@ public class Semantic extends Thread {
             case ConstChars.STRING:
                 switch (node2Kind) {
                     case ConstChars.INT: {
-                        String error = "不能将整数赋值给字符串变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "整数", "字符串变量");
                         return;
                     }
                     case ConstChars.REAL: {
-                        String error = "不能将浮点数赋值给字符串变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "浮点数", "字符串变量");
                         return;
                     }
                     case ConstChars.BOOL: {
-                        String error = "不能将布尔变量赋值给字符串变量";
-                        error(error, node1.getRowNum());
+                        error(DiagnosticCode.ASSIGN_MISMATCH, node1.getRowNum(), "布尔变量", "字符串变量");
                         return;
                     }
                     case ConstChars.STRING:
-                        table.getAllLevel(node1Value, level).setStringValue(value);
+                        target.setStringValue(node1Index, source != null ? source.getStringValue(sourceIndex) : node2Value);
                         break;
                     default:
                         break;
@@ -753,7 +877,6 @@ public class Semantic extends Thread {
                 break;
         }
     }
-
     /**
      * 分析for语句
      *
@@ -768,16 +891,24 @@ public class Semantic extends Thread {
         TreeNode changeNode = root.getChildAt(2);
         // 根结点Statements
         TreeNode statementNode = root.getChildAt(3);
+        LoopProfile.Loop loop = loopProfile == null ? null : loopProfile.enter(root);
         // for循环语句初始化
         forAssign(initializationNode.getChildAt(0));
+        if (loop != null && loop.isHot() && tierUp(loop)) {
+            return;
+        }
+        int mark = mark();
         // 条件为真
         while (forCondition(conditionNode.getChildAt(0))) {
             statement(statementNode);
             level--;
-            table.update(level);
+            rewind(mark);
             level++;
             // for循环执行一次后改变循环条件中的变量
             forAssign(changeNode.getChildAt(0));
+            if (loop != null && loop.backEdge() && tierUp(loop)) {
+                return;
+            }
         }
     }
 
@@ -798,10 +929,11 @@ public class Semantic extends Thread {
         } else if (count == 3) {
             // 条件为假且有else语句
             TreeNode elseNode = root.getChildAt(2);
+            int mark = mark();
             level++;
             statement(elseNode);
             level--;
-            table.update(level);
+            rewind(mark);
         }
     }
 
@@ -815,12 +947,49 @@ public class Semantic extends Thread {
         TreeNode conditionNode = root.getChildAt(0);
         // 根结点Statements
         TreeNode statementNode = root.getChildAt(1);
+        LoopProfile.Loop loop = loopProfile == null ? null : loopProfile.enter(root);
+        if (loop != null && loop.isHot() && tierUp(loop)) {
+            return;
+        }
+        int mark = mark();
         while (forCondition(conditionNode.getChildAt(0))) {
             statement(statementNode);
             level--;
-            table.update(level);
+            rewind(mark);
             level++;
+            if (loop != null && loop.backEdge() && tierUp(loop)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 循环剩下的部分改为按闭包执行，闭包直接使用 frames 中的变量，从下一次判断条件开始接着执行。
+     * 只在变量解析成功时调用，此时循环体内声明的变量都已经在 rewind 时清除
+     *
+     * @param loop 循环的计数，第一次调用时编译
+     * @return 是否已经按闭包执行完循环，不能编译时返回 false，由调用者继续按语法树执行
+     */
+    private boolean tierUp(LoopProfile.Loop loop) {
+        ClosureProgram program = loop.getProgram();
+        if (program == null) {
+            ClosureCompiler compiler = new ClosureCompiler();
+            // 循环语句所在的语句列表的层次，level 在进入循环语句前已经加一
+            program = compiler.compileLoop(this.root, resolver, loop.getNode(), level - 1);
+            if (program == null) {
+                loop.failed(compiler.getReason());
+                return false;
+            }
+            loop.compiled(program);
+        }
+        loop.promoted();
+        try {
+            program.execute(host(), frames);
+        } finally {
+            // 闭包直接声明和清除 frames 中的变量
+            scopeEpoch = EPOCHS.incrementAndGet();
         }
+        return true;
     }
 
     /**
@@ -831,15 +1000,17 @@ public class Semantic extends Thread {
     private void forRead(TreeNode root) {
         // 要读取的变量的名字
         String idName = root.getContent();
+        // 数组元素下标，不是数组元素时为 -1
+        int idIndex = -1;
         // 查找变量
-        SymbolTableElement element = table.getAllLevel(idName, level);
+        SymbolTableElement element = lookup(root);
         // 判断变量是否已经声明
         if (element != null) {
             if (root.getChildCount() != 0) {
-                String s = forArray(root.getChildAt(0), element
+                idIndex = forArray(root.getChildAt(0), element
                         .getArrayElementsNum());
-                if (s != null) {
-                    idName += "@" + s;
+                if (idIndex >= 0) {
+                    idName += "@" + idIndex;
                 } else {
                     return;
                 }
@@ -848,52 +1019,48 @@ public class Semantic extends Thread {
             switch (element.getKind()) {
                 case ConstChars.INT:
                     if (matchInteger(value)) {
-                        table.getAllLevel(idName, level).setIntValue(value);
-                        table.getAllLevel(idName, level).setRealValue(
-                                String.valueOf(Double.parseDouble(value)));
+                        element.setIntValue(idIndex, value);
                     } else { // 报错
                         String error = "不能将\"" + value + "\"赋值给变量" + idName;
                         //error(error, valueNode.getRowNum());
-                        controller.resultContent.appendText(error+"\n");
+                        print(error + "\n");
                     }
                     break;
                 case ConstChars.REAL:
                     if (matchReal(value)) {
-                        table.getAllLevel(idName, level).setRealValue(value);
+                        element.setRealValue(idIndex, Double.parseDouble(value), value);
                     } else if (matchInteger(value)) {
-                        table.getAllLevel(idName, level).setRealValue(
-                                String.valueOf(Double.parseDouble(value)));
+                        element.setRealValue(idIndex, Double.parseDouble(value));
                     } else { // 报错
                         String error = "不能将\"" + value + "\"赋值给变量" + idName;
-                        controller.resultContent.appendText(error+"\n");
+                        print(error + "\n");
 
                     }
                     break;
                 case ConstChars.BOOL:
                     if ("true".equals(value)) {
-                        table.getAllLevel(idName, level).setStringValue("true");
+                        element.setBoolValue(idIndex, true);
                     } else if ("false".equals(value)) {
-                        table.getAllLevel(idName, level).setStringValue("false");
+                        element.setBoolValue(idIndex, false);
                     } else { // 报错
                         String error = "不能将\"" + value + "\"赋值给变量" + idName;
-                        controller.resultContent.appendText(error+"\n");
+                        print(error + "\n");
 
                     }
                     break;
                 case ConstChars.STRING:
-                    table.getAllLevel(idName, level).setStringValue(value);
+                    element.setStringValue(idIndex, value);
                     break;
                 default:
                     break;
             }
         } else { // 报错
-            String error = "变量" + idName + "在使用前未声明";
-            error(error, root.getRowNum());
+            error(DiagnosticCode.UNDECLARED, root.getRowNum(), idName);
         }
     }
 
     /**
-     * 分析write语句
+     * 分析write语句，只在这里把数值转换为文本
      *
      * @param root 语法树中write语句结点
      */
@@ -904,34 +1071,26 @@ public class Semantic extends Thread {
         String kind = root.getNodeType();
         if ("整数".equals(kind) || "实数".equals(kind)) {
             output = output + content + "\n";
-            controller.resultContent.appendText(content+"\n");
+            print(content + "\n");
         } else if ("字符串".equals(kind)) {
             output = output + content + "\n";
-            controller.resultContent.appendText(content+"\n");
+            print(content + "\n");
         } else if ("标识符".equals(kind)) {
             if (checkID(root, level)) {
-                if (root.getChildCount() != 0) {
-                    String s = forArray(root.getChildAt(0), table.getAllLevel(
-                            content, level).getArrayElementsNum());
-                    if (s != null) {
-                        content += "@" + s;
-                    } else {
-                        return;
-                    }
-                }
-                SymbolTableElement temp = table.getAllLevel(content, level);
+                int arrayIndex = checkedIndex;
+                SymbolTableElement temp = lookup(root);
                 switch (temp.getKind()) {
                     case ConstChars.INT:
-                        //output = output + content + "\n";
-                        controller.resultContent.appendText(temp.getIntValue()+"\n");
+                        print(temp.getIntText(arrayIndex) + "\n");
                         break;
                     case ConstChars.REAL:
-                        //output = output + content + "\n";
-                        controller.resultContent.appendText(temp.getRealValue()+"\n");
+                        print(temp.getRealText(arrayIndex) + "\n");
+                        break;
+                    case ConstChars.BOOL:
+                        print(temp.getBoolValue(arrayIndex) + "\n");
                         break;
                     default:
-                        controller.resultContent.appendText(temp.getStringValue()+"\n");
-                        //output = output + content + "\n";
+                        print(temp.getStringValue(arrayIndex) + "\n");
                         break;
                 }
             }
@@ -939,11 +1098,19 @@ public class Semantic extends Thread {
                 || content.equals(ConstChars.MINUS)
                 || content.equals(ConstChars.TIMES)
                 || content.equals(ConstChars.DIVIDE)) {
-            String value = forExpression(root);
-            if (value != null) {
-                //output = output + value + "\n";
-                controller.resultContent.appendText(value +"\n");
-
+            switch (forExpression(root)) {
+                case VALUE_INT:
+                    print(intResult + "\n");
+                    break;
+                case VALUE_REAL:
+                case VALUE_TEXT:
+                    print(textResult + "\n");
+                    break;
+                case VALUE_EMPTY:
+                    print("\n");
+                    break;
+                default:
+                    break;
             }
         }
     }
@@ -963,21 +1130,13 @@ public class Semantic extends Thread {
             return false;
         } else if ("标识符".equals(root.getNodeType())) {
             if (checkID(root, level)) {
-                if (root.getChildCount() != 0) {
-                    String s = forArray(root.getChildAt(0), table.getAllLevel(
-                            content, level).getArrayElementsNum());
-                    if (s != null) {
-                        content += "@" + s;
-                    } else {
-                        return false;
-                    }
-                }
-                SymbolTableElement temp = table.getAllLevel(content, level);
+                int arrayIndex = checkedIndex;
+                SymbolTableElement temp = lookup(root);
                 if (temp.getKind().equals(ConstChars.BOOL)) {
-                    return temp.getStringValue().equals(ConstChars.TRUE);
+                    return temp.getBoolValue(arrayIndex);
                 } else { // 报错
-                    String error = "不能将变量" + content + "作为判断条件";
-                    error(error, root.getRowNum());
+                    error(DiagnosticCode.BAD_CONDITION, root.getRowNum(),
+                            arrayIndex < 0 ? content : content + "@" + arrayIndex);
                 }
             } else {
                 return false;
@@ -985,50 +1144,27 @@ public class Semantic extends Thread {
         } else if (content.equals(ConstChars.EQUAL)
                 || content.equals(ConstChars.NEQUAL)
                 || content.equals(ConstChars.LT) || content.equals(ConstChars.GT)) {
-            // 存放两个待比较对象的值
-            String[] results = new String[2];
+            // 两个待比较对象的类型和值
+            int kind1 = VALUE_NONE;
+            int kind2 = VALUE_NONE;
+            double element1 = 0;
+            double element2 = 0;
             for (int i = 0; i < root.getChildCount(); i++) {
-                String kind = root.getChildAt(i).getNodeType();
-                String tempContent = root.getChildAt(i).getContent();
-                if ("整数".equals(kind) || "实数".equals(kind)) {
-                    results[i] = tempContent;
-                } else if ("标识符".equals(kind)) {
-                    if (checkID(root.getChildAt(i), level)) {
-                        if (root.getChildAt(i).getChildCount() != 0) {
-                            String s = forArray(root.getChildAt(i)
-                                    .getChildAt(0), table.getAllLevel(
-                                    tempContent, level).getArrayElementsNum());
-                            if (s != null) {
-                                tempContent += "@" + s;
-                            } else {
-                                return false;
-                            }
-                        }
-                        SymbolTableElement temp = table.getAllLevel(
-                                tempContent, level);
-                        if (temp.getKind().equals(ConstChars.INT)) {
-                            results[i] = temp.getIntValue();
-                        } else {
-                            results[i] = temp.getRealValue();
-                        }
-                    } else {
-                        return false;
-                    }
-                } else if (tempContent.equals(ConstChars.PLUS)
-                        || tempContent.equals(ConstChars.MINUS)
-                        || tempContent.equals(ConstChars.TIMES)
-                        || tempContent.equals(ConstChars.DIVIDE)) {
-                    String result = forExpression(root.getChildAt(i));
-                    if (result != null) {
-                        results[i] = result;
-                    } else {
-                        return false;
-                    }
+                int kind = comparand(root.getChildAt(i));
+                if (kind == VALUE_ERROR) {
+                    return false;
+                }
+                if (i == 0) {
+                    kind1 = kind;
+                    element1 = operandReal;
+                } else {
+                    kind2 = kind;
+                    element2 = operandReal;
                 }
             }
-            if (!"".equals(results[0]) && !"".equals(results[1])) {
-                double element1 = Double.parseDouble(results[0]);
-                double element2 = Double.parseDouble(results[1]);
+            if (kind1 != VALUE_EMPTY && kind2 != VALUE_EMPTY) {
+                element1 = realOperand(kind1, element1);
+                element2 = realOperand(kind2, element2);
                 switch (content) {
                     case ConstChars.GT:
                         return element1 > element2;
@@ -1046,101 +1182,315 @@ public class Semantic extends Thread {
     }
 
     /**
-     * 分析表达式
+     * 计算比较运算的一个对象，数值放在 operandReal 中
+     *
+     * @param node 运算对象结点
+     * @return 值的类型，出错时为 VALUE_ERROR
+     */
+    private int comparand(TreeNode node) {
+        String kind = node.getNodeType();
+        String content = node.getContent();
+        if ("整数".equals(kind) || "实数".equals(kind)) {
+            return literal(content);
+        } else if ("标识符".equals(kind)) {
+            if (checkID(node, level)) {
+                int arrayIndex = checkedIndex;
+                SymbolTableElement temp = lookup(node);
+                if (temp.getKind().equals(ConstChars.INT)
+                        || temp.getKind().equals(ConstChars.REAL)) {
+                    operandReal = temp.getRealValue(arrayIndex);
+                    return VALUE_REAL;
+                }
+                // 布尔型和字符串变量没有数值，不做比较
+                return VALUE_EMPTY;
+            }
+            return VALUE_ERROR;
+        } else if (content.equals(ConstChars.PLUS)
+                || content.equals(ConstChars.MINUS)
+                || content.equals(ConstChars.TIMES)
+                || content.equals(ConstChars.DIVIDE)) {
+            int result = forExpression(node);
+            operandReal = result == VALUE_INT ? intResult : realResult;
+            return result;
+        }
+        return VALUE_NONE;
+    }
+
+    /**
+     * 数值常量按浮点数解析，写法不合法时与 Double.parseDouble 一样在使用时才报错
+     */
+    private int literal(String content) {
+        try {
+            operandReal = Double.parseDouble(content);
+            return VALUE_REAL;
+        } catch (NumberFormatException e) {
+            return VALUE_INVALID;
+        }
+    }
+
+    /**
+     * 分析表达式，结果放在 intResult、realResult 和 textResult 中
      *
      * @param root 根结点
-     * @return 返回计算结果
+     * @return 结果的类型：VALUE_INT、VALUE_REAL、VALUE_TEXT（科学计数法、无穷大等不能作为实数常量的写法）、
+     * VALUE_EMPTY（除数为零），出错时为 VALUE_ERROR
      */
-    private String forExpression(TreeNode root) {
-        boolean isInt = true;
-        // + -
-        String content = root.getContent();
-        // 存放两个运算对象的值
-        String[] results = new String[2];
+    private int forExpression(TreeNode root) {
+        int specialization = root.getSpecialization();
+        int state = specialization & SPEC_STATE;
+        if (state == SPEC_INT || state == SPEC_REAL || state == SPEC_MIXED) {
+            return specialized(root, state, specialization);
+        }
+        // 两个运算对象的类型和值
+        int kind1 = VALUE_NONE;
+        int kind2 = VALUE_NONE;
+        boolean isReal1 = false;
+        boolean isReal2 = false;
+        int int1 = 0;
+        int int2 = 0;
+        double real1 = 0;
+        double real2 = 0;
         for (int i = 0; i < root.getChildCount(); i++) {
-            TreeNode tempNode = root.getChildAt(i);
-            String kind = tempNode.getNodeType();
-            String tempContent = tempNode.getContent();
-            if ("整数".equals(kind)) {
-                results[i] = tempContent;
-            } else if ("实数".equals(kind)) {
-                results[i] = tempContent;
-                isInt = false;
-            } else if ("标识符".equals(kind)) {
-                if (checkID(tempNode, level)) {
-                    if (tempNode.getChildCount() != 0) {
-                        String s = forArray(tempNode.getChildAt(0), table
-                                .getAllLevel(tempContent, level)
-                                .getArrayElementsNum());
-                        if (s != null) {
-                            tempContent += "@" + s;
-                        } else {
-                            return null;
-                        }
-                    }
-                    SymbolTableElement temp = table.getAllLevel(tempNode
-                            .getContent(), level);
-                    if (temp.getKind().equals(ConstChars.INT)) {
-                        results[i] = temp.getIntValue();
-                    } else if (temp.getKind().equals(ConstChars.REAL)) {
-                        results[i] = temp.getRealValue();
-                        isInt = false;
-                    }
-                } else {
-                    return null;
-                }
-            } else if (tempContent.equals(ConstChars.PLUS)
-                    || tempContent.equals(ConstChars.MINUS)
-                    || tempContent.equals(ConstChars.TIMES)
-                    || tempContent.equals(ConstChars.DIVIDE)) {
-                String result = forExpression(root.getChildAt(i));
-                if (result != null) {
-                    results[i] = result;
-                    if (matchReal(result)) {
-                        isInt = false;
-                    }
-                } else {
-                    return null;
-                }
+            int kind = operand(root.getChildAt(i));
+            if (kind == VALUE_ERROR) {
+                return VALUE_ERROR;
+            }
+            if (i == 0) {
+                kind1 = kind;
+                isReal1 = operandIsReal;
+                int1 = operandInt;
+                real1 = operandReal;
+            } else {
+                kind2 = kind;
+                isReal2 |= operandIsReal;
+                int2 = operandInt;
+                real2 = operandReal;
             }
         }
-        if (isInt) {
-            int e1 = Integer.parseInt(results[0]);
-            int e2 = Integer.parseInt(results[1]);
+        if (state == SPEC_UNINITIALIZED && root.getChildCount() == 2) {
+            root.setSpecialization(profile(specialization, operandTypes(kind1, isReal1, kind2, isReal2)));
+        }
+        return arithmetic(root.getContent(), root.getRowNum(), !isReal1 && !isReal2,
+                kind1, int1, real1, kind2, int2, real2);
+    }
+
+    /**
+     * 按特化计算两个运算对象的表达式，运算对象仍按通用的方式计算，保证报错和副作用与没有特化时相同
+     */
+    private int specialized(TreeNode root, int state, int specialization) {
+        int kind1 = operand(root.getChildAt(0));
+        if (kind1 == VALUE_ERROR) {
+            return VALUE_ERROR;
+        }
+        boolean isReal1 = operandIsReal;
+        int int1 = operandInt;
+        double real1 = operandReal;
+        int kind2 = operand(root.getChildAt(1));
+        if (kind2 == VALUE_ERROR) {
+            return VALUE_ERROR;
+        }
+        String content = root.getContent();
+        if (operandTypes(kind1, isReal1, kind2, operandIsReal) != state) {
+            // 去优化：退回收集类型，这一次按通用的方式算完
+            int deoptimizations = (specialization >>> SPEC_DEOPT_SHIFT) + 1;
+            root.setSpecialization(deoptimizations >= MAX_DEOPTIMIZATIONS
+                    ? SPEC_GENERIC : deoptimizations << SPEC_DEOPT_SHIFT);
+            return arithmetic(content, root.getRowNum(), !isReal1 && !operandIsReal,
+                    kind1, int1, real1, kind2, operandInt, operandReal);
+        }
+        if (state == SPEC_INT) {
             switch (content) {
                 case ConstChars.PLUS:
-                    return String.valueOf(e1 + e2);
+                    intResult = int1 + operandInt;
+                    return VALUE_INT;
                 case ConstChars.MINUS:
-                    return String.valueOf(e1 - e2);
+                    intResult = int1 - operandInt;
+                    return VALUE_INT;
                 case ConstChars.TIMES:
-                    return String.valueOf(e1 * e2);
+                    intResult = int1 * operandInt;
+                    return VALUE_INT;
                 default:
-                    if (e2 == 0) {
-                        String error = "除数不能为零";
-                        error(error, root.getRowNum());
-                        return "";
-                    }else{
-                        return String.valueOf(e1 / e2);
+                    if (operandInt == 0) {
+                        error(DiagnosticCode.DIVIDE_BY_ZERO, root.getRowNum());
+                        return VALUE_EMPTY;
                     }
-
+                    intResult = int1 / operandInt;
+                    return VALUE_INT;
             }
-        } else {
-            double e1 = Double.parseDouble(results[0]);
-            double e2 = Double.parseDouble(results[1]);
-            BigDecimal bd1 = new BigDecimal(e1);
-            BigDecimal bd2 = new BigDecimal(e2);
+        }
+        return realArithmetic(content, real1, operandReal);
+    }
+
+    /**
+     * 两个运算对象的类型，与特化的状态对应：SPEC_INT、SPEC_REAL、SPEC_MIXED，
+     * 有一边是空值、只能转换为浮点数的写法等其他类型时为 SPEC_UNINITIALIZED
+     */
+    private static int operandTypes(int kind1, boolean isReal1, int kind2, boolean isReal2) {
+        int type1 = operandType(kind1, isReal1);
+        int type2 = operandType(kind2, isReal2);
+        if (type1 == SPEC_UNINITIALIZED || type2 == SPEC_UNINITIALIZED) {
+            return SPEC_UNINITIALIZED;
+        }
+        return type1 == type2 ? type1 : SPEC_MIXED;
+    }
+
+    private static int operandType(int kind, boolean isReal) {
+        if (kind == VALUE_INT && !isReal) {
+            return SPEC_INT;
+        } else if (kind == VALUE_REAL && isReal) {
+            return SPEC_REAL;
+        }
+        return SPEC_UNINITIALIZED;
+    }
+
+    /**
+     * 记录一次通用计算见到的类型，连续 SPECIALIZE_AFTER 次相同时改写为对应的特化
+     */
+    private static int profile(int specialization, int type) {
+        int deoptimizations = specialization >>> SPEC_DEOPT_SHIFT << SPEC_DEOPT_SHIFT;
+        if (type == SPEC_UNINITIALIZED) {
+            return deoptimizations;
+        }
+        int count = 1;
+        if ((specialization >> SPEC_TYPE_SHIFT & 3) == type) {
+            count += specialization >> SPEC_COUNT_SHIFT & 3;
+        }
+        if (count >= SPECIALIZE_AFTER) {
+            return deoptimizations | type;
+        }
+        return deoptimizations | type << SPEC_TYPE_SHIFT | count << SPEC_COUNT_SHIFT;
+    }
+
+    /**
+     * 通用的算术运算：运算对象都不是实数时按 int 计算，否则由 RealArithmetic 计算
+     */
+    private int arithmetic(String content, int line, boolean isInt,
+                           int kind1, int int1, double real1, int kind2, int int2, double real2) {
+        if (isInt) {
+            int e1 = intOperand(kind1, int1);
+            int e2 = intOperand(kind2, int2);
             switch (content) {
                 case ConstChars.PLUS:
-                    return String.valueOf(bd1.add(bd2).floatValue());
+                    intResult = e1 + e2;
+                    return VALUE_INT;
                 case ConstChars.MINUS:
-                    return String.valueOf(bd1.subtract(bd2).floatValue());
+                    intResult = e1 - e2;
+                    return VALUE_INT;
                 case ConstChars.TIMES:
-                    return String.valueOf(bd1.multiply(bd2).floatValue());
+                    intResult = e1 * e2;
+                    return VALUE_INT;
                 default:
-                    return String.valueOf(bd1.divide(bd2, 3,
-                            BigDecimal.ROUND_HALF_UP).floatValue());
+                    if (e2 == 0) {
+                        error(DiagnosticCode.DIVIDE_BY_ZERO, line);
+                        return VALUE_EMPTY;
+                    }else{
+                        intResult = e1 / e2;
+                        return VALUE_INT;
+                    }
+
+            }
+        }
+        return realArithmetic(content, realOperand(kind1, real1), realOperand(kind2, real2));
+    }
+
+    private int realArithmetic(String content, double e1, double e2) {
+        return roundReal(RealArithmetic.operate(RealArithmetic.operator(content), e1, e2));
+    }
+
+    /**
+     * 计算算术运算的一个对象，数值放在 operandInt 和 operandReal 中，是否为实数放在 operandIsReal 中
+     *
+     * @param node 运算对象结点
+     * @return 值的类型，出错时为 VALUE_ERROR
+     */
+    private int operand(TreeNode node) {
+        String kind = node.getNodeType();
+        String content = node.getContent();
+        operandIsReal = false;
+        if ("整数".equals(kind)) {
+            int result = literal(content);
+            if (result == VALUE_REAL) {
+                try {
+                    operandInt = Integer.parseInt(content);
+                    return VALUE_INT;
+                } catch (NumberFormatException e) {
+                    // 超出 int 范围，只能参与实数运算
+                    return VALUE_TEXT;
+                }
             }
+            return result;
+        } else if ("实数".equals(kind)) {
+            operandIsReal = true;
+            return literal(content);
+        } else if ("标识符".equals(kind)) {
+            if (checkID(node, level)) {
+                // 与原来一样读取数组本身而不是数组元素
+                SymbolTableElement temp = lookup(node);
+                if (temp.getKind().equals(ConstChars.INT)) {
+                    if (!temp.isInitialized()) {
+                        return VALUE_EMPTY;
+                    }
+                    operandReal = temp.getRealValue();
+                    long value = temp.getLongValue();
+                    if (value != (int) value) {
+                        return VALUE_TEXT;
+                    }
+                    operandInt = (int) value;
+                    return VALUE_INT;
+                } else if (temp.getKind().equals(ConstChars.REAL)) {
+                    operandIsReal = true;
+                    operandReal = temp.getRealValue();
+                    return temp.isInitialized() ? VALUE_REAL : VALUE_EMPTY;
+                }
+                return VALUE_NONE;
+            }
+            return VALUE_ERROR;
+        } else if (content.equals(ConstChars.PLUS)
+                || content.equals(ConstChars.MINUS)
+                || content.equals(ConstChars.TIMES)
+                || content.equals(ConstChars.DIVIDE)) {
+            int result = forExpression(node);
+            operandIsReal = result == VALUE_REAL;
+            operandInt = intResult;
+            operandReal = result == VALUE_INT ? intResult : realResult;
+            return result;
         }
+        return VALUE_NONE;
+    }
+
+    /**
+     * 整数运算的运算对象，与原来的 Integer.parseInt 一样不是整数时抛出 NumberFormatException
+     */
+    private static int intOperand(int kind, int value) {
+        if (kind != VALUE_INT) {
+            throw new NumberFormatException("not an integer operand");
+        }
+        return value;
+    }
+
+    /**
+     * 实数运算的运算对象，与原来的 Double.parseDouble 一样没有值时抛出 NullPointerException，
+     * 值为空或写法不合法时抛出 NumberFormatException
+     */
+    private static double realOperand(int kind, double value) {
+        if (kind == VALUE_NONE) {
+            throw new NullPointerException();
+        } else if (kind == VALUE_EMPTY || kind == VALUE_INVALID) {
+            throw new NumberFormatException("empty String");
+        }
+        return value;
+    }
+
+    /**
+     * 实数运算的结果按 float 的十进制写法舍入，这一写法就是 write 输出的文本
+     */
+    private int roundReal(float value) {
+        textResult = String.valueOf(value);
+        realResult = Double.parseDouble(textResult);
+        if (Float.isFinite(value) && textResult.indexOf('E') < 0) {
+            return VALUE_REAL;
+        }
+        return VALUE_TEXT;
     }
 
     /**
@@ -1148,81 +1498,70 @@ public class Semantic extends Thread {
      *
      * @param root      根结点
      * @param arraySize 数组大小
-     * @return 出错返回null
+     * @return 数组下标，出错返回 -1
      */
-    private String forArray(TreeNode root, int arraySize) {
+    private int forArray(TreeNode root, int arraySize) {
         if ("整数".equals(root.getNodeType())) {
             int i = Integer.parseInt(root.getContent());
             if (i > -1 && i < arraySize) {
-                return root.getContent();
+                return i;
             } else if (i < 0) {
-                String error = "数组下标不能为负数";
-                error(error, root.getRowNum());
-                return null;
+                error(DiagnosticCode.ARRAY_INDEX_NEGATIVE, root.getRowNum());
+                return -1;
             } else {
-                String error = "数组下标越界";
-                error(error, root.getRowNum());
-                return null;
+                error(DiagnosticCode.ARRAY_INDEX_OUT_OF_BOUNDS, root.getRowNum());
+                return -1;
             }
         } else if ("标识符".equals(root.getNodeType())) {
             // 检查标识符
             if (checkID(root, level)) {
-                SymbolTableElement temp = table.getAllLevel(root.getContent(),
-                        level);
+                SymbolTableElement temp = lookup(root);
                 if (temp.getKind().equals(ConstChars.INT)) {
-                    int i = Integer.parseInt(temp.getIntValue());
+                    int i = temp.getIntValue();
                     if (i > -1 && i < arraySize) {
-                        return temp.getIntValue();
+                        return i;
                     } else if (i < 0) {
-                        String error = "数组下标不能为负数";
-                        error(error, root.getRowNum());
-                        return null;
+                        error(DiagnosticCode.ARRAY_INDEX_NEGATIVE, root.getRowNum());
+                        return -1;
                     } else {
-                        String error = "数组下标越界";
-                        error(error, root.getRowNum());
-                        return null;
+                        error(DiagnosticCode.ARRAY_INDEX_OUT_OF_BOUNDS, root.getRowNum());
+                        return -1;
                     }
                 } else {
-                    String error = "类型不匹配,数组索引号必须为整数类型";
-                    error(error, root.getRowNum());
-                    return null;
+                    error(DiagnosticCode.ARRAY_INDEX_NOT_INTEGER, root.getRowNum());
+                    return -1;
                 }
             } else {
-                return null;
+                return -1;
             }
         } else if (root.getContent().equals(ConstChars.PLUS)
                 || root.getContent().equals(ConstChars.MINUS)
                 || root.getContent().equals(ConstChars.TIMES)
                 || root.getContent().equals(ConstChars.DIVIDE)) {
-            String result = forExpression(root);
-            if (result != null) {
-                if (matchInteger(result)) {
-                    int i = Integer.parseInt(result);
-                    if (i > -1 && i < arraySize) {
-                        return result;
-                    } else if (i < 0) {
-                        String error = "数组下标不能为负数";
-                        error(error, root.getRowNum());
-                        return null;
-                    } else {
-                        String error = "数组下标越界";
-                        error(error, root.getRowNum());
-                        return null;
-                    }
+            int result = forExpression(root);
+            if (result == VALUE_INT) {
+                int i = intResult;
+                if (i > -1 && i < arraySize) {
+                    return i;
+                } else if (i < 0) {
+                    error(DiagnosticCode.ARRAY_INDEX_NEGATIVE, root.getRowNum());
+                    return -1;
                 } else {
-                    String error = "类型不匹配,数组索引号必须为整数类型";
-                    error(error, root.getRowNum());
-                    return null;
+                    error(DiagnosticCode.ARRAY_INDEX_OUT_OF_BOUNDS, root.getRowNum());
+                    return -1;
                 }
+            } else if (result != VALUE_ERROR) {
+                error(DiagnosticCode.ARRAY_INDEX_NOT_INTEGER, root.getRowNum());
+                return -1;
             } else {
-                return null;
+                return -1;
             }
         }
-        return null;
+        return -1;
     }
 
     /**
-     * 检查字符串是否声明和初始化
+     * 检查字符串是否声明和初始化，成功时数组元素的下标放在 checkedIndex 中
      *
      * @param root  字符串结点
      * @param level 字符串作用域
@@ -1231,48 +1570,273 @@ public class Semantic extends Thread {
     private boolean checkID(TreeNode root, int level) {
         // 标识符名字
         String idName = root.getContent();
+        // 数组元素下标，不是数组元素时为 -1
+        int idIndex = -1;
         // 标识符未声明
-        if (table.getAllLevel(idName, level) == null) {
-            String error = "变量" + idName + "在使用前未声明";
-            error(error, root.getRowNum());
+        SymbolTableElement temp = lookup(root);
+        if (temp == null) {
+            error(DiagnosticCode.UNDECLARED, root.getRowNum(), idName);
             return false;
         } else {
             if (root.getChildCount() != 0) {
-                String tempString = forArray(root.getChildAt(0), table
-                        .getAllLevel(idName, level).getArrayElementsNum());
-                if (tempString != null) {
-                    idName += "@" + tempString;
+                idIndex = forArray(root.getChildAt(0), temp.getArrayElementsNum());
+                if (idIndex >= 0) {
+                    idName += "@" + idIndex;
                 } else {
                     return false;
                 }
             }
-            SymbolTableElement temp = table.getAllLevel(idName, level);
             // 变量未初始化
-            if ("".equals(temp.getIntValue()) && "".equals(temp.getRealValue())
-                    && "".equals(temp.getStringValue())) {
-                String error = "变量" + idName + "在使用前未初始化";
-                error(error, root.getRowNum());
+            if (!temp.isInitialized(idIndex)) {
+                error(DiagnosticCode.UNINITIALIZED, root.getRowNum(), idName);
                 return false;
             } else {
+                checkedIndex = idIndex;
                 return true;
             }
         }
     }
 
-    public String getErrorInfo() {
-        return errorInfo;
+    /**
+     * 查找标识符引用的变量或数组，与符号表的 getAllLevel 相同，数组元素再按下标访问
+     *
+     * @param node 标识符结点
+     * @return 变量，不存在时返回 null
+     */
+    private SymbolTableElement lookup(TreeNode node) {
+        if (node.getCachedEpoch() == scopeEpoch) {
+            lookupHits++;
+            return (SymbolTableElement) node.getCachedElement();
+        }
+        lookupMisses++;
+        SymbolTableElement element = find(node);
+        node.setCachedElement(element, scopeEpoch);
+        return element;
+    }
+
+    /**
+     * 不经过缓存查找标识符引用的变量。作用域的版本不变时符号表和槽位中的变量都不变，
+     * 符号表中也没有比当前作用域更深的变量，所以查找的结果只取决于结点本身
+     */
+    private SymbolTableElement find(TreeNode node) {
+        if (resolver == null) {
+            return table.getAllLevel(node.getSymbol(), level);
+        }
+        // 由内向外：本身的槽位为空说明声明没有执行，继续找被它遮盖的变量
+        int binding = node.getBinding();
+        while (binding >= 0) {
+            SymbolTableElement element = frames[resolver.getDepth(binding)][resolver.getSlot(binding)];
+            if (element != null) {
+                return element;
+            }
+            binding = resolver.getOuter(binding);
+        }
+        return null;
+    }
+
+    /**
+     * 在当前作用域中查找正在声明的变量，与符号表的 getCurrentLevel 相同
+     *
+     * @param node 声明的标识符结点
+     * @return 已经声明的同名变量，不存在时返回 null
+     */
+    private SymbolTableElement lookupCurrent(TreeNode node) {
+        if (resolver == null) {
+            return table.getCurrentLevel(node.getSymbol(), level);
+        }
+        int binding = node.getBinding();
+        return binding < 0 ? null : frames[resolver.getDepth(binding)][resolver.getSlot(binding)];
+    }
+
+    /**
+     * 声明变量，数组连同它的元素只占一个位置
+     *
+     * @param node    声明的标识符结点
+     * @param element 变量或数组
+     */
+    private void declare(TreeNode node, SymbolTableElement element) {
+        scopeEpoch = EPOCHS.incrementAndGet();
+        if (resolver == null) {
+            table.add(element);
+            return;
+        }
+        int binding = node.getBinding();
+        if (binding >= 0) {
+            frames[resolver.getDepth(binding)][resolver.getSlot(binding)] = element;
+        }
+    }
+
+    /**
+     * 进入作用域时记下符号表的位置
+     *
+     * @return 退出作用域时传给 rewind 的标记
+     */
+    private int mark() {
+        return table.mark();
+    }
+
+    /**
+     * 退出作用域，符号表回退到进入时的标记；按槽位访问时清空比当前作用域更深的层次。
+     * 确实删除了变量时才改变作用域的版本，循环体中没有声明时缓存的查找结果一直有效
+     *
+     * @param mark 进入作用域时 mark 的返回值
+     */
+    private void rewind(int mark) {
+        if (resolver == null) {
+            if (table.size() > mark) {
+                table.rewind(mark);
+                scopeEpoch = EPOCHS.incrementAndGet();
+            }
+            return;
+        }
+        boolean removed = false;
+        for (int i = level + 1; i < frames.length; i++) {
+            SymbolTableElement[] frame = frames[i];
+            for (int slot = 0; slot < frame.length; slot++) {
+                if (frame[slot] != null) {
+                    frame[slot] = null;
+                    removed = true;
+                }
+            }
+        }
+        if (removed) {
+            scopeEpoch = EPOCHS.incrementAndGet();
+        }
+    }
+
+    /**
+     * 是否先做变量解析，按槽位访问变量；关闭时按名字查找符号表
+     *
+     * @param resolve 默认为 true
+     */
+    public void setResolve(boolean resolve) {
+        this.resolve = resolve;
+    }
+
+    /**
+     * 选择执行引擎，字节码不能编译的程序仍按语法树执行
+     *
+     * @param engine 默认为 Engine.TREE
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * 分层执行时循环编译为闭包前按语法树执行的回边数，为 0 时进入循环就编译
+     *
+     * @param tierThreshold 默认为 LoopProfile.DEFAULT_THRESHOLD
+     */
+    public void setTierThreshold(int tierThreshold) {
+        this.tierThreshold = tierThreshold;
+    }
+
+    public int getTierThreshold() {
+        return tierThreshold;
     }
 
-    public void setErrorInfo(String errorInfo) {
-        this.errorInfo = errorInfo;
+    /**
+     * 最近一次分层执行的循环计数，没有分层执行时为 null
+     */
+    public LoopProfile getLoopProfile() {
+        return loopProfile;
+    }
+
+    /**
+     * 最近一次运行实际使用的引擎
+     */
+    public Engine getExecutedEngine() {
+        return executedEngine;
+    }
+
+    /**
+     * 最近一次运行没有使用选择的引擎时的原因：程序不能编译或者变量解析失败，否则为 null
+     */
+    public String getFallbackReason() {
+        return fallbackReason;
+    }
+
+    /**
+     * 虚拟机的输入输出和报错，与按语法树执行时相同
+     */
+    private Host host() {
+        return new Host() {
+            @Override
+            public void print(String text) {
+                Semantic.this.print(text);
+            }
+
+            @Override
+            public void printConstant(String text) {
+                output = output + text;
+                Semantic.this.print(text);
+            }
+
+            @Override
+            public String readInput() {
+                return Semantic.this.readInput();
+            }
+
+            @Override
+            public void error(DiagnosticCode code, int line, Object... args) {
+                Semantic.this.error(code, line, args);
+            }
+        };
+    }
+
+    /**
+     * 最近一次运行中标识符查找命中缓存的次数
+     */
+    public long getLookupHits() {
+        return lookupHits;
+    }
+
+    /**
+     * 最近一次运行中标识符查找没有命中缓存、重新查找符号表或槽位的次数
+     */
+    public long getLookupMisses() {
+        return lookupMisses;
+    }
+
+    /**
+     * 最近一次运行是否使用了变量解析的结果
+     */
+    public boolean isResolved() {
+        return resolver != null;
+    }
+
+    public String getErrorInfo() {
+        return diagnostics.format(Phase.SEMANTIC);
     }
 
     public int getErrorNum() {
-        return errorNum;
+        return diagnostics.count(Phase.SEMANTIC);
     }
 
-    public void setErrorNum(int errorNum) {
-        this.errorNum = errorNum;
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * 使用外部的收集器，便于与词法、语法分析共用
+     * @param diagnostics 收集器
+     */
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
     }
 
+    /**
+     * 输入已经结束时 read 语句抛出，停止执行程序，各个引擎都不捕获它
+     */
+    private static final class EndOfInput extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        EndOfInput() {
+            super(null, null, false, false);
+        }
+    }
 }
@@ -0,0 +1,284 @@
+package sample.interpreter.semantic;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.TreeNode;
+
+/**
+ * 编译执行时使用的静态类型：按变量解析的结果记录每个变量声明的类型，
+ * 在编译时决定每个标识符的类型和每个表达式的计算方式，与 Semantic 执行时的判断相同。
+ * Semantic 对类型不匹配的写法报错或者抛出异常，同一个名字在不同时刻可能是不同类型的变量，
+ * 这些写法抛出 Unsupported，由 Semantic 按语法树执行
+ */
+public class StaticTypes {
+
+    /**
+     * 表达式的计算方式：整数运算、静态的实数运算、由子表达式的结果决定的实数运算
+     */
+    public static final int MODE_INT = 0;
+    public static final int MODE_REAL = 1;
+    public static final int MODE_DYNAMIC = 2;
+
+    private final Resolver resolver;
+    /**
+     * 每个变量声明的类型、是否为数组、名字和符号编号，在编译到它的声明时填写
+     */
+    private final String[] kinds;
+    private final boolean[] arrays;
+    private final String[] names;
+    private final int[] symbols;
+
+    /**
+     * 对整个程序做变量解析
+     * @param root 没有词法和语法错误的语法树
+     */
+    public StaticTypes(TreeNode root) {
+        this(resolve(root));
+    }
+
+    /**
+     * 使用已经做过的变量解析，先记录程序中所有的声明，用于只编译程序中的一部分，例如分层执行时的循环
+     * @param resolver 对 root 做过的变量解析
+     * @param root 整个程序
+     */
+    public StaticTypes(Resolver resolver, TreeNode root) {
+        this(resolver);
+        declarations(root);
+    }
+
+    private StaticTypes(Resolver resolver) {
+        this.resolver = resolver;
+        int count = resolver.getBindingCount();
+        kinds = new String[count];
+        arrays = new boolean[count];
+        names = new String[count];
+        symbols = new int[count];
+    }
+
+    private static Resolver resolve(TreeNode root) {
+        Resolver resolver = new Resolver();
+        resolver.resolve(root);
+        return resolver;
+    }
+
+    /**
+     * 与 Resolver 相同地遍历语句，记录每个声明；不能编译的声明留到编译它时再报告
+     */
+    private void declarations(TreeNode root) {
+        for (int i = 0; i < root.getChildCount(); i++) {
+            TreeNode currentNode = root.getChildAt(i);
+            String content = currentNode.getContent();
+            switch (content) {
+                case ConstChars.INT:
+                case ConstChars.REAL:
+                case ConstChars.BOOL:
+                case ConstChars.STRING:
+                    int index = 0;
+                    while (index < currentNode.getChildCount()) {
+                        TreeNode temp = currentNode.getChildAt(index);
+                        index++;
+                        if (temp.getChildCount() == 0 && index < currentNode.getChildCount()
+                                && currentNode.getChildAt(index).getContent().equals(ConstChars.ASSIGN)) {
+                            index++;
+                        }
+                        if ("标识符".equals(temp.getNodeType()) && temp.getBinding() >= 0) {
+                            declare(temp, content);
+                        }
+                    }
+                    break;
+                case ConstChars.FOR:
+                    declarations(currentNode.getChildAt(3));
+                    break;
+                case ConstChars.IF:
+                    declarations(currentNode.getChildAt(1));
+                    if (currentNode.getChildCount() == 3) {
+                        declarations(currentNode.getChildAt(2));
+                    }
+                    break;
+                case ConstChars.WHILE:
+                    declarations(currentNode.getChildAt(1));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public Resolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * 记录声明语句中的一个变量，同一个变量编号重复声明时类型必须相同
+     * @param temp 声明的变量结点
+     * @param kind 声明的类型
+     * @return 变量编号
+     */
+    public int declare(TreeNode temp, String kind) {
+        if (!"标识符".equals(temp.getNodeType()) || temp.getBinding() < 0) {
+            throw new Unsupported("第 " + temp.getRowNum() + " 行的声明");
+        }
+        int binding = temp.getBinding();
+        boolean array = temp.getChildCount() != 0;
+        if (kinds[binding] == null) {
+            kinds[binding] = kind;
+            arrays[binding] = array;
+            names[binding] = temp.getContent();
+            symbols[binding] = temp.getSymbol();
+        } else if (!kinds[binding].equals(kind) || arrays[binding] != array) {
+            throw new Unsupported("变量 " + temp.getContent() + " 重复声明为不同的类型");
+        }
+        return binding;
+    }
+
+    /**
+     * 标识符引用的变量的类型，声明没有执行时会找到外层的同名变量，要求它们的类型相同
+     * @return 没有可见的声明时为 null，查找一定失败，之后的代码不会执行，按任意类型编译
+     */
+    public String kindOf(TreeNode node) {
+        int binding = node.getBinding();
+        if (binding < 0) {
+            return null;
+        }
+        if (kinds[binding] == null) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的变量 " + node.getContent() + " 没有声明");
+        }
+        for (int outer = resolver.getOuter(binding); outer >= 0; outer = resolver.getOuter(outer)) {
+            if (!kinds[binding].equals(kinds[outer]) || arrays[binding] != arrays[outer]) {
+                throw new Unsupported("变量 " + node.getContent() + " 遮盖了不同类型的同名变量");
+            }
+        }
+        return kinds[binding];
+    }
+
+    public void requireKind(TreeNode node, String kind) {
+        String actual = kindOf(node);
+        if (actual != null && !actual.equals(kind)) {
+            throw mismatch(node);
+        }
+    }
+
+    /**
+     * 要求是整型或实型变量
+     */
+    public String requireNumber(TreeNode node) {
+        String kind = kindOf(node);
+        if (kind != null && !ConstChars.INT.equals(kind) && !ConstChars.REAL.equals(kind)) {
+            throw mismatch(node);
+        }
+        return kind;
+    }
+
+    /**
+     * 与 Semantic.forExpression 相同地决定运算方式：运算对象中有实数常量或实型变量时是实数运算；
+     * 否则子表达式的结果是实数时为实数运算，都是只能转换为浮点数的写法时为整数运算
+     */
+    public int classify(TreeNode node) {
+        if (node.getChildCount() != 2) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的表达式");
+        }
+        boolean realLeaf = false;
+        boolean realChild = false;
+        for (int i = 0; i < 2; i++) {
+            TreeNode child = node.getChildAt(i);
+            String type = child.getNodeType();
+            if (isArithmetic(child.getContent()) && "运算符".equals(type)) {
+                realChild |= classify(child) != MODE_INT;
+            } else if ("实数".equals(type)) {
+                realLeaf = true;
+            } else if ("标识符".equals(type)) {
+                if (child.getChildCount() != 0) {
+                    // 原来读取的是数组本身，一定抛出异常
+                    throw new Unsupported("第 " + child.getRowNum() + " 行的表达式中的数组元素");
+                }
+                realLeaf |= ConstChars.REAL.equals(requireNumber(child));
+            } else if (!"整数".equals(type)) {
+                throw new Unsupported("第 " + child.getRowNum() + " 行的运算对象");
+            }
+        }
+        return realLeaf ? MODE_REAL : realChild ? MODE_DYNAMIC : MODE_INT;
+    }
+
+    /*
+     * 编译结果中的变量表
+     */
+
+    public int getBindingCount() {
+        return kinds.length;
+    }
+
+    public String getKind(int binding) {
+        return kinds[binding];
+    }
+
+    public String getName(int binding) {
+        return names[binding];
+    }
+
+    public int getSymbol(int binding) {
+        return symbols[binding];
+    }
+
+    public String[] getKinds() {
+        return kinds;
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    public int[] getSymbols() {
+        return symbols;
+    }
+
+    /*
+     * 写法
+     */
+
+    public static boolean isArithmetic(String content) {
+        return content.equals(ConstChars.PLUS) || content.equals(ConstChars.MINUS)
+                || content.equals(ConstChars.TIMES) || content.equals(ConstChars.DIVIDE);
+    }
+
+    public static boolean isComparison(String content) {
+        return content.equals(ConstChars.EQUAL) || content.equals(ConstChars.NEQUAL)
+                || content.equals(ConstChars.LT) || content.equals(ConstChars.GT);
+    }
+
+    public static Unsupported mismatch(TreeNode node) {
+        return new Unsupported("第 " + node.getRowNum() + " 行的类型不匹配");
+    }
+
+    public static int parseInt(TreeNode node) {
+        try {
+            return Integer.parseInt(node.getContent());
+        } catch (NumberFormatException e) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的整数超出范围");
+        }
+    }
+
+    public static double parseReal(TreeNode node) {
+        try {
+            return Double.parseDouble(node.getContent());
+        } catch (NumberFormatException e) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的实数写法不合法");
+        }
+    }
+
+    public static TreeNode child(TreeNode node, int index) {
+        if (index >= node.getChildCount()) {
+            throw new Unsupported("第 " + node.getRowNum() + " 行的语句不完整");
+        }
+        return node.getChildAt(index);
+    }
+
+    /**
+     * 不能编译的写法，消息是原因
+     */
+    public static class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public Unsupported(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package sample.interpreter.semantic;
 
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 符号表类
+ * 元素按加入的顺序放在一个栈中，进入作用域时记下栈的大小，退出时回退到这个位置；
+ * 同名的元素由内向外连成一条遮盖链，散列表只保存链头，查找不再扫描整个符号表。
+ * 退出作用域时总是先删除更深的作用域中的元素，所以栈中的元素按作用域从浅到深排列，
+ * 遮盖链上的元素按作用域从深到浅排列
  * @author Administrator
  */
 public class SymbolTable {
 	/**
-	 * 存放SymbolTableElement
+	 * 存放SymbolTableElement,按加入的顺序
 	 */
-	private Vector<SymbolTableElement> symbolTable = new Vector<>();
+	private SymbolTableElement[] symbolTable = new SymbolTableElement[16];
+	/**
+	 * 元素个数
+	 */
+	private int size;
+	/**
+	 * 名字到最内层的同名元素
+	 */
+	private Map<String, SymbolTableElement> names = new HashMap<>();
+	/**
+	 * 符号编号到最内层的同名元素,符号编号从 0 开始连续,直接按编号存放
+	 */
+	private SymbolTableElement[] symbols = new SymbolTableElement[16];
 
 	/**
 	 * 根据索引查找SymbolTableElement对象
@@ -18,7 +36,10 @@ public class SymbolTable {
 	 * @return 返回SymbolTableElement对象
 	 */
 	public SymbolTableElement get(int index) {
-		return symbolTable.get(index);
+		if (index >= size) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return symbolTable[index];
 	}
 
 	/**
@@ -28,16 +49,20 @@ public class SymbolTable {
 	 * @return 如果存在,则返回SymbolTableElement对象;否则返回null
 	 */
 	public SymbolTableElement getAllLevel(String name, int level) {
-		while (level > -1) {
-			for (SymbolTableElement element : symbolTable) {
-				if (element.getName().equals(name)
-						&& element.getLevel() == level) {
-					return element;
-				}
-			}
-			level--;
+		return visible(names.get(name), level);
+	}
+
+	/**
+	 * 根据符号编号对所有作用域查找,只比较整数
+	 * @param symbol 标识符的符号编号
+	 * @param level SymbolTableElement作用域
+	 * @return 如果存在,则返回SymbolTableElement对象;否则返回null
+	 */
+	public SymbolTableElement getAllLevel(int symbol, int level) {
+		if (symbol < 0 || symbol >= symbols.length) {
+			return null;
 		}
-		return null;
+		return visible(symbols[symbol], level);
 	}
 
 	/**
@@ -47,71 +72,97 @@ public class SymbolTable {
 	 * @return 如果存在,则返回SymbolTableElement对象;否则返回null
 	 */
 	public SymbolTableElement getCurrentLevel(String name, int level) {
-		for (SymbolTableElement element : symbolTable) {
-			if (element.getName().equals(name) && element.getLevel() == level) {
-				return element;
-			}
-		}
-		return null;
+		return current(names.get(name), level);
 	}
 
 	/**
-	 * 向symbolTable中添加SymbolTableElement对象,放在末尾
-	 * @param element 要添加的元素
-	 * @return 如果添加成功则返回true,否则返回false
+	 * 根据符号编号对当前作用域查找,只比较整数
+	 * @param symbol 标识符的符号编号
+	 * @param level SymbolTableElement作用域
+	 * @return 如果存在,则返回SymbolTableElement对象;否则返回null
 	 */
-	public boolean add(SymbolTableElement element) {
-		return symbolTable.add(element);
+	public SymbolTableElement getCurrentLevel(int symbol, int level) {
+		if (symbol < 0 || symbol >= symbols.length) {
+			return null;
+		}
+		return current(symbols[symbol], level);
 	}
 
 	/**
-	 * 在symbolTable中指定的索引处添加SymbolTableElement对象
-	 * 
-	 * @param index 制定的索引
+	 * 向symbolTable中添加SymbolTableElement对象,放在末尾,并遮盖外层的同名元素
 	 * @param element 要添加的元素
+	 * @return 如果添加成功则返回true,否则返回false
 	 */
-	public void add(int index, SymbolTableElement element) {
-		symbolTable.add(index, element);
+	public boolean add(SymbolTableElement element) {
+		if (size == symbolTable.length) {
+			symbolTable = Arrays.copyOf(symbolTable, size * 2);
+		}
+		symbolTable[size++] = element;
+		element.setShadowed(names.put(element.getName(), element));
+		int symbol = element.getSymbol();
+		if (symbol >= 0) {
+			if (symbol >= symbols.length) {
+				symbols = Arrays.copyOf(symbols, Math.max(symbols.length * 2, symbol + 1));
+			}
+			symbols[symbol] = element;
+		}
+		return true;
 	}
 
 	/**
-	 * 从symbolTable中移除指定索引处的元素
-	 * @param index 指定的索引
+	 * 从symbolTable中移除指定名字和作用域的元素
+	 *
+	 * @param name 指定的名字
+	 * @param level 指定的作用域
 	 */
-	public void remove(int index) {
-		symbolTable.remove(index);
+	public void remove(String name, int level) {
+		remove(getCurrentLevel(name, level));
 	}
 
 	/**
-	 * 从symbolTable中移除指定名字和作用域的元素
-	 * 
-	 * @param name 指定的名字
+	 * 从symbolTable中移除指定符号编号和作用域的元素
+	 *
+	 * @param symbol 指定的符号编号
 	 * @param level 指定的作用域
 	 */
-	public void remove(String name, int level) {
-		for (int i = 0; i < size(); i++) {
-			if (get(i).getName().equals(name) && get(i).getLevel() == level) {
-				remove(i);
-				return;
-			}
-		}
+	public void remove(int symbol, int level) {
+		remove(getCurrentLevel(symbol, level));
 	}
 
 	/**
 	 * 清空symbolTable中的元素,将其大小设为0
 	 */
 	public void removeAll() {
-		symbolTable.clear();
+		Arrays.fill(symbolTable, 0, size, null);
+		size = 0;
+		names.clear();
+		Arrays.fill(symbols, null);
+	}
+
+	/**
+	 * 进入作用域时记下符号表的位置
+	 * @return 传给 rewind 的标记
+	 */
+	public int mark() {
+		return size;
+	}
+
+	/**
+	 * 退出作用域,删除标记之后加入的元素,恢复被它们遮盖的元素
+	 * @param mark 进入作用域时 mark 的返回值
+	 */
+	public void rewind(int mark) {
+		while (size > mark) {
+			pop();
+		}
 	}
 
 	/**
 	 * 当level减小时更新符号表,去除无用的元素
 	 */
 	public void update(int level) {
-		for (int i = 0; i < size(); i++) {
-			if (get(i).getLevel() > level) {
-				remove(i);
-			}
+		while (size > 0 && symbolTable[size - 1].getLevel() > level) {
+			pop();
 		}
 	}
 
@@ -121,7 +172,12 @@ public class SymbolTable {
 	 * @return 如果包含则返回true,否则返回false
 	 */
 	public boolean contains(SymbolTableElement element) {
-		return symbolTable.contains(element);
+		for (SymbolTableElement e = names.get(element.getName()); e != null; e = e.getShadowed()) {
+			if (e.equals(element)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -129,7 +185,7 @@ public class SymbolTable {
 	 * @return 如果为空则返回true,否则返回false
 	 */
 	public boolean isEmpty() {
-		return symbolTable.isEmpty();
+		return size == 0;
 	}
 
 	/**
@@ -137,6 +193,72 @@ public class SymbolTable {
 	 * @return 返回对象中元素的个数
 	 */
 	public int size() {
-		return symbolTable.size();
+		return size;
+	}
+
+	/**
+	 * 遮盖链上作用域不超过 level 的第一个元素,即由内向外逐层查找的结果
+	 */
+	private SymbolTableElement visible(SymbolTableElement element, int level) {
+		while (element != null && element.getLevel() > level) {
+			element = element.getShadowed();
+		}
+		return element;
+	}
+
+	/**
+	 * 遮盖链上作用域正好是 level 的元素
+	 */
+	private SymbolTableElement current(SymbolTableElement element, int level) {
+		element = visible(element, level);
+		return element != null && element.getLevel() == level ? element : null;
+	}
+
+	/**
+	 * 删除最后加入的元素,它一定是遮盖链的链头
+	 */
+	private void pop() {
+		SymbolTableElement element = symbolTable[--size];
+		symbolTable[size] = null;
+		relink(element, element.getShadowed());
+	}
+
+	/**
+	 * 从栈和遮盖链中删除任意位置的元素
+	 */
+	private void remove(SymbolTableElement element) {
+		if (element == null) {
+			return;
+		}
+		for (int i = size - 1; i >= 0; i--) {
+			if (symbolTable[i] == element) {
+				System.arraycopy(symbolTable, i + 1, symbolTable, i, size - i - 1);
+				symbolTable[--size] = null;
+				break;
+			}
+		}
+		SymbolTableElement head = names.get(element.getName());
+		if (head == element) {
+			relink(element, element.getShadowed());
+			return;
+		}
+		while (head.getShadowed() != element) {
+			head = head.getShadowed();
+		}
+		head.setShadowed(element.getShadowed());
+	}
+
+	/**
+	 * 把链头从 element 换成被它遮盖的元素
+	 */
+	private void relink(SymbolTableElement element, SymbolTableElement shadowed) {
+		if (shadowed == null) {
+			names.remove(element.getName());
+		} else {
+			names.put(element.getName(), shadowed);
+		}
+		if (element.getSymbol() >= 0) {
+			symbols[element.getSymbol()] = shadowed;
+		}
 	}
 }
@@ -1,8 +1,14 @@
 package sample.interpreter.semantic;
 
+import sample.interpreter.lexer.ConstChars;
+
 public class SymbolTableElement {
 	/* 元素名字 */
 	private String name;
+	/* 元素名字的符号编号,-1表示没有 */
+	private int symbol = -1;
+	/* 数组元素的下标,不是数组元素时为-1 */
+	private int index = -1;
 	/* 元素类型 */
 	private String kind;
 	/* 元素所在行号 */
@@ -10,25 +16,46 @@ public class SymbolTableElement {
 	/* 元素作用域 */
 	private int level;
 	/* 元素的整形数值 */
-	private String intValue;
-	/* 元素的浮点型数值 */
-	private String realValue;
+	private long intValue;
+	/* 元素的浮点型数值,整型元素同时保存对应的浮点数 */
+	private double realValue;
+	/* 元素的布尔值 */
+	private boolean boolValue;
 	/* 元素的字符串值 */
 	private String stringValue;
+	/* 数值的原始写法,例如常量 1.50 和读入的 007,写出时原样输出;为 null 时按数值转换 */
+	private String text;
+	/* 数值或布尔值是否已经赋值 */
+	private boolean assigned;
 	/* 表明元素是否为数组,0表示不是,否则表示数组的大小 */
 	private int arrayElementsNum;
+	/* 数组元素的值,按数组类型只分配其中一个;整型数组的浮点数值由整数值转换 */
+	private long[] intValues;
+	private double[] realValues;
+	private boolean[] boolValues;
+	private String[] stringValues;
+	/* 数值和布尔数组中每个元素是否已经赋值,每个元素一位;字符串数组以空字符串表示没有初始化 */
+	private long[] assignedBits;
+	/* 数组元素数值的原始写法,只在写法与按数值转换的结果不同时分配 */
+	private String[] texts;
+	/* 符号表中被这个元素遮盖的外层同名元素 */
+	private SymbolTableElement shadowed;
 
 	public SymbolTableElement(String name,String kind,int lineNum,int level) {
 		this.name = name;
 		this.kind = kind;
 		this.lineNum = lineNum;
 		this.level = level;
-		this.intValue = "";
-		this.realValue = "";
 		this.stringValue = "";
 		this.arrayElementsNum = 0;
 	}
 
+	public SymbolTableElement(String name,int symbol,int index,String kind,int lineNum,int level) {
+		this(name, kind, lineNum, level);
+		this.symbol = symbol;
+		this.index = index;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -37,6 +64,22 @@ public class SymbolTableElement {
 		this.name = name;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
+	public void setSymbol(int symbol) {
+		this.symbol = symbol;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
 	public String getKind() {
 		return kind;
 	}
@@ -61,20 +104,117 @@ public class SymbolTableElement {
 		this.level = level;
 	}
 
-	public String getIntValue() {
+	/**
+	 * 整数值,与原来的 Integer.parseInt 一样没有赋值或超出 int 范围时抛出 NumberFormatException
+	 * @return 整数值
+	 */
+	public int getIntValue() {
+		if (!assigned || intValue != (int) intValue) {
+			throw new NumberFormatException("For input string: \"" + (assigned ? getIntText() : "") + "\"");
+		}
+		return (int) intValue;
+	}
+
+	/**
+	 * 整数值,不检查是否超出 int 范围
+	 * @return 整数值
+	 */
+	public long getLongValue() {
 		return intValue;
 	}
 
-	public void setIntValue(String intValue) {
+	/**
+	 * 计算得到的整数值
+	 * @param intValue 整数值
+	 */
+	public void setIntValue(long intValue) {
 		this.intValue = intValue;
+		this.realValue = intValue;
+		this.text = null;
+		this.assigned = true;
+	}
+
+	/**
+	 * 常量或输入的整数,保留原始写法
+	 * @param text 整数的写法
+	 */
+	public void setIntValue(String text) {
+		this.intValue = Long.parseLong(text);
+		this.realValue = Double.parseDouble(text);
+		this.text = text;
+		this.assigned = true;
 	}
 
-	public String getRealValue() {
+	/**
+	 * 整数值的写法
+	 * @return 字符串
+	 */
+	public String getIntText() {
+		return text != null ? text : Long.toString(intValue);
+	}
+
+	public double getRealValue() {
 		return realValue;
 	}
 
-	public void setRealValue(String realValue) {
+	/**
+	 * 计算或转换得到的浮点数值
+	 * @param realValue 浮点数值
+	 */
+	public void setRealValue(double realValue) {
+		this.realValue = realValue;
+		this.text = null;
+		this.assigned = true;
+	}
+
+	/**
+	 * 浮点数值和它的写法
+	 * @param realValue 浮点数值
+	 * @param text 写法,为 null 时按数值转换
+	 */
+	public void setRealValue(double realValue, String text) {
 		this.realValue = realValue;
+		this.text = text;
+		this.assigned = true;
+	}
+
+	/**
+	 * 浮点数值的写法
+	 * @return 字符串
+	 */
+	public String getRealText() {
+		return text != null ? text : Double.toString(realValue);
+	}
+
+	/**
+	 * 复制同类型变量的值,包括写法和是否已经赋值
+	 * @param source 被复制的变量
+	 */
+	public void copyValue(SymbolTableElement source) {
+		this.intValue = source.intValue;
+		this.realValue = source.realValue;
+		this.boolValue = source.boolValue;
+		this.text = source.text;
+		this.assigned = source.assigned;
+	}
+
+	/**
+	 * 把整型变量的值转换为浮点数,不保留整数的写法
+	 * @param source 整型变量
+	 */
+	public void copyRealValue(SymbolTableElement source) {
+		this.realValue = source.realValue;
+		this.text = null;
+		this.assigned = source.assigned;
+	}
+
+	public boolean getBoolValue() {
+		return boolValue;
+	}
+
+	public void setBoolValue(boolean boolValue) {
+		this.boolValue = boolValue;
+		this.assigned = true;
 	}
 
 	public String getStringValue() {
@@ -85,6 +225,14 @@ public class SymbolTableElement {
 		this.stringValue = stringValue;
 	}
 
+	/**
+	 * 是否已经初始化,空字符串也算没有初始化
+	 * @return bool
+	 */
+	public boolean isInitialized() {
+		return assigned || !stringValue.isEmpty();
+	}
+
 	public int getArrayElementsNum() {
 		return arrayElementsNum;
 	}
@@ -93,6 +241,224 @@ public class SymbolTableElement {
 		this.arrayElementsNum = arrayElementsNum;
 	}
 	
+	/**
+	 * 分配数组元素的存储,每种类型一个基本类型数组,不为每个元素建立符号表元素
+	 * @param size 数组大小
+	 */
+	public void allocate(int size) {
+		this.arrayElementsNum = size;
+		switch (kind) {
+			case ConstChars.INT:
+				intValues = new long[size];
+				break;
+			case ConstChars.REAL:
+				realValues = new double[size];
+				break;
+			case ConstChars.BOOL:
+				boolValues = new boolean[size];
+				break;
+			default:
+				stringValues = new String[size];
+				return;
+		}
+		assignedBits = new long[(size + 63) >>> 6];
+	}
+
+	/*
+	 * 以下方法按下标访问数组元素,下标为 -1 时访问变量本身
+	 */
+
+	public boolean isInitialized(int index) {
+		if (index < 0) {
+			return isInitialized();
+		}
+		if (stringValues != null) {
+			return stringValues[index] != null && !stringValues[index].isEmpty();
+		}
+		return (assignedBits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public int getIntValue(int index) {
+		if (index < 0) {
+			return getIntValue();
+		}
+		long value = intValues[index];
+		if (!isInitialized(index) || value != (int) value) {
+			throw new NumberFormatException("For input string: \""
+					+ (isInitialized(index) ? getIntText(index) : "") + "\"");
+		}
+		return (int) value;
+	}
+
+	public long getLongValue(int index) {
+		return index < 0 ? intValue : intValues[index];
+	}
+
+	public void setIntValue(int index, long intValue) {
+		if (index < 0) {
+			setIntValue(intValue);
+			return;
+		}
+		intValues[index] = intValue;
+		setText(index, null);
+		assign(index);
+	}
+
+	public void setIntValue(int index, String text) {
+		if (index < 0) {
+			setIntValue(text);
+			return;
+		}
+		long value = Long.parseLong(text);
+		intValues[index] = value;
+		setText(index, text.equals(Long.toString(value)) ? null : text);
+		assign(index);
+	}
+
+	public String getIntText(int index) {
+		if (index < 0) {
+			return getIntText();
+		}
+		String text = textAt(index);
+		return text != null ? text : Long.toString(intValues[index]);
+	}
+
+	public double getRealValue(int index) {
+		if (index < 0) {
+			return realValue;
+		} else if (intValues != null) {
+			return intValues[index];
+		} else if (realValues != null) {
+			return realValues[index];
+		}
+		return 0;
+	}
+
+	public void setRealValue(int index, double realValue) {
+		setRealValue(index, realValue, null);
+	}
+
+	public void setRealValue(int index, double realValue, String text) {
+		if (index < 0) {
+			setRealValue(realValue, text);
+			return;
+		}
+		realValues[index] = realValue;
+		setText(index, text == null || text.equals(Double.toString(realValue)) ? null : text);
+		assign(index);
+	}
+
+	public String getRealText(int index) {
+		if (index < 0) {
+			return getRealText();
+		}
+		String text = textAt(index);
+		return text != null ? text : Double.toString(realValues[index]);
+	}
+
+	public boolean getBoolValue(int index) {
+		return index < 0 ? boolValue : boolValues[index];
+	}
+
+	public void setBoolValue(int index, boolean boolValue) {
+		if (index < 0) {
+			setBoolValue(boolValue);
+			return;
+		}
+		boolValues[index] = boolValue;
+		assign(index);
+	}
+
+	public String getStringValue(int index) {
+		if (index < 0) {
+			return stringValue;
+		}
+		return stringValues == null || stringValues[index] == null ? "" : stringValues[index];
+	}
+
+	public void setStringValue(int index, String stringValue) {
+		if (index < 0) {
+			setStringValue(stringValue);
+		} else {
+			stringValues[index] = stringValue;
+		}
+	}
+
+	/**
+	 * 复制同类型的已经初始化的变量或数组元素的值,包括写法
+	 * @param index 被赋值的数组元素下标,-1 表示变量本身
+	 * @param source 被复制的变量或数组
+	 * @param sourceIndex 被复制的数组元素下标,-1 表示变量本身
+	 */
+	public void copyValue(int index, SymbolTableElement source, int sourceIndex) {
+		if (index < 0 && sourceIndex < 0) {
+			copyValue(source);
+			return;
+		}
+		switch (kind) {
+			case ConstChars.INT:
+				if (index < 0) {
+					intValue = source.getLongValue(sourceIndex);
+					realValue = intValue;
+					text = source.textAt(sourceIndex);
+					assigned = true;
+				} else {
+					intValues[index] = source.getLongValue(sourceIndex);
+					setText(index, source.textAt(sourceIndex));
+					assign(index);
+				}
+				break;
+			case ConstChars.REAL:
+				setRealValue(index, source.getRealValue(sourceIndex), source.textAt(sourceIndex));
+				break;
+			default:
+				setBoolValue(index, source.getBoolValue(sourceIndex));
+				break;
+		}
+	}
+
+	/**
+	 * 把已经初始化的整型变量或数组元素的值转换为浮点数,不保留整数的写法
+	 */
+	public void copyRealValue(int index, SymbolTableElement source, int sourceIndex) {
+		if (index < 0 && sourceIndex < 0) {
+			copyRealValue(source);
+		} else {
+			setRealValue(index, source.getRealValue(sourceIndex));
+		}
+	}
+
+	/**
+	 * 数值的原始写法,没有时为 null
+	 */
+	private String textAt(int index) {
+		if (index < 0) {
+			return text;
+		}
+		return texts == null ? null : texts[index];
+	}
+
+	private void setText(int index, String text) {
+		if (text != null && texts == null) {
+			texts = new String[arrayElementsNum];
+		}
+		if (texts != null) {
+			texts[index] = text;
+		}
+	}
+
+	private void assign(int index) {
+		assignedBits[index >>> 6] |= 1L << index;
+	}
+
+	SymbolTableElement getShadowed() {
+		return shadowed;
+	}
+
+	void setShadowed(SymbolTableElement shadowed) {
+		this.shadowed = shadowed;
+	}
+
 	@Override
 	public String toString() {
 		return name + "_" + kind + "_" + level + "_" + arrayElementsNum;
@@ -0,0 +1,86 @@
+package sample.interpreter.util;
+
+import sample.interpreter.lexer.ConstChars;
+
+/**
+ * 一条诊断信息：所属阶段、行、列、编号和参数，文本在显示时才生成
+ */
+public class Diagnostic {
+
+    /**
+     * 编译阶段，各阶段错误信息的显示格式不同
+     */
+    public enum Phase {
+        LEXER,
+        PARSER,
+        SEMANTIC;
+
+        /**
+         * 按该阶段原有的格式生成一条错误信息
+         */
+        void format(StringBuilder builder, int line, int column, String message) {
+            if (this == SEMANTIC) {
+                builder.append(ConstChars.ERROR).append("第 ").append(line).append(" 行：")
+                        .append(message).append("\n");
+            } else {
+                builder.append("    ERROR:第 ").append(line).append(" 行,第 ").append(column)
+                        .append(" 列：").append(message);
+            }
+        }
+    }
+
+    private final DiagnosticCode code;
+    private final int line;
+    private final int column;
+    private final Object[] args;
+
+    public Diagnostic(DiagnosticCode code, int line, int column, Object... args) {
+        this.code = code;
+        this.line = line;
+        this.column = column;
+        this.args = args;
+    }
+
+    public Phase getPhase() {
+        return code.getPhase();
+    }
+
+    public DiagnosticCode getCode() {
+        return code;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public Object[] getArgs() {
+        return args.clone();
+    }
+
+    /**
+     * 诊断信息文本，不含行列号
+     * @return 文本
+     */
+    public String getMessage() {
+        return code.format(args);
+    }
+
+    /**
+     * 按所属阶段原有的格式追加到 builder
+     * @param builder 输出
+     */
+    public void format(StringBuilder builder) {
+        code.getPhase().format(builder, line, column, getMessage());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        format(builder);
+        return builder.toString();
+    }
+}
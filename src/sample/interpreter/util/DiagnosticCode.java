@@ -0,0 +1,80 @@
+package sample.interpreter.util;
+
+import sample.interpreter.util.Diagnostic.Phase;
+
+/**
+ * 诊断信息的编号和文本模板，模板中的 {0}、{1} 在显示时才替换为参数
+ */
+public enum DiagnosticCode {
+
+    /* 词法分析 */
+    ILLEGAL_CHARACTER(Phase.LEXER, "\"{0}\"是不可识别符号  \n"),
+    OPERATOR_MISUSE(Phase.LEXER, "运算符\"{0}\"使用错误  \n"),
+    MALFORMED_NUMBER(Phase.LEXER, "数字格式错误或者标志符错误\n"),
+    UNTERMINATED_STRING(Phase.LEXER, "字符串 {0} 缺少引号  \n"),
+    ILLEGAL_IDENTIFIER(Phase.LEXER, "{0}是非法标识符\n"),
+    ILLEGAL_REAL(Phase.LEXER, "{0}是非法实数\n"),
+
+    /* 语法分析 */
+    MISSING(Phase.PARSER, " {0}缺少{1}\n"),
+    BAD_STATEMENT_START(Phase.PARSER, " 语句以错误的token开始\n"),
+    READ_NOT_IDENTIFIER(Phase.PARSER, " read语句左括号后不是标识符\n"),
+    DECLARE_BAD_TOKEN(Phase.PARSER, " 声明语句出错,标识符后出现不正确的token\n"),
+    DECLARE_BAD_IDENTIFIER(Phase.PARSER, " 声明语句中标识符出错\n"),
+    BAD_FACTOR(Phase.PARSER, " 算式因子存在错误\n"),
+    BAD_OPERATOR(Phase.PARSER, " {0}出错\n"),
+
+    /* 语义分析 */
+    UNDECLARED(Phase.SEMANTIC, "变量{0}在使用前未声明"),
+    UNINITIALIZED(Phase.SEMANTIC, "变量{0}在使用前未初始化"),
+    REDECLARED(Phase.SEMANTIC, "变量{0}已被声明,请重命名该变量"),
+    ASSIGN_MISMATCH(Phase.SEMANTIC, "不能将{0}赋值给{1}"),
+    CONVERT_MISMATCH(Phase.SEMANTIC, "不能将{0}给{1}"),
+    BAD_CONDITION(Phase.SEMANTIC, "不能将变量{0}作为判断条件"),
+    ARRAY_SIZE_NOT_POSITIVE(Phase.SEMANTIC, "数组大小必须大于零"),
+    ARRAY_SIZE_NOT_INTEGER(Phase.SEMANTIC, "类型不匹配,数组大小必须为整数类型"),
+    ARRAY_INDEX_NEGATIVE(Phase.SEMANTIC, "数组下标不能为负数"),
+    ARRAY_INDEX_OUT_OF_BOUNDS(Phase.SEMANTIC, "数组下标越界"),
+    ARRAY_INDEX_NOT_INTEGER(Phase.SEMANTIC, "类型不匹配,数组索引号必须为整数类型"),
+    DIVIDE_BY_ZERO(Phase.SEMANTIC, "除数不能为零");
+
+    private final Phase phase;
+    private final String template;
+
+    DiagnosticCode(Phase phase, String template) {
+        this.phase = phase;
+        this.template = template;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * 用参数替换模板中的 {0}、{1}
+     * @param args 参数
+     * @return 诊断信息文本
+     */
+    public String format(Object[] args) {
+        if (args.length == 0) {
+            return template;
+        }
+        StringBuilder builder = new StringBuilder(template.length() + 16);
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == '{' && i + 2 < template.length() && template.charAt(i + 2) == '}') {
+                builder.append(args[template.charAt(i + 1) - '0']);
+                i += 3;
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package sample.interpreter.util;
+
+import sample.interpreter.util.Diagnostic.Phase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 词法、语法和语义分析共用的诊断信息收集器
+ * 只保存结构化的记录，超过上限的记录只计数；错误信息文本在显示时才按各阶段原有的格式生成
+ */
+public class Diagnostics {
+
+    /**
+     * 默认最多保存的记录数
+     */
+    public static final int DEFAULT_LIMIT = 1000;
+
+    private final ArrayList<Diagnostic> records = new ArrayList<>();
+    /**
+     * 最多保存的记录数
+     */
+    private int limit;
+    /**
+     * 各阶段报告的错误数，包括超过上限未保存的
+     */
+    private final int[] counts = new int[Phase.values().length];
+    /**
+     * 各阶段超过上限未保存的错误数
+     */
+    private final int[] overflows = new int[Phase.values().length];
+
+    public Diagnostics() {
+        this(DEFAULT_LIMIT);
+    }
+
+    public Diagnostics(int limit) {
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 报告一条诊断信息
+     * @param code 编号
+     * @param line 行
+     * @param column 列，语义分析为 0
+     * @param args 文本模板的参数
+     */
+    public void report(DiagnosticCode code, int line, int column, Object... args) {
+        add(new Diagnostic(code, line, column, args));
+    }
+
+    /**
+     * 加入一条诊断信息，超过上限时只计数
+     * @param diagnostic 诊断信息
+     */
+    public void add(Diagnostic diagnostic) {
+        int phase = diagnostic.getPhase().ordinal();
+        counts[phase]++;
+        if (records.size() < limit) {
+            records.add(diagnostic);
+        } else {
+            overflows[phase]++;
+        }
+    }
+
+    /**
+     * 按顺序加入另一个收集器的全部记录
+     * @param other 另一个收集器
+     */
+    public void addAll(Diagnostics other) {
+        for (Diagnostic diagnostic : other.records) {
+            add(diagnostic);
+        }
+        for (int phase = 0; phase < counts.length; phase++) {
+            counts[phase] += other.overflows[phase];
+            overflows[phase] += other.overflows[phase];
+        }
+    }
+
+    /**
+     * 清除某个阶段的全部记录
+     * @param phase 阶段
+     */
+    public void clear(Phase phase) {
+        records.removeIf(diagnostic -> diagnostic.getPhase() == phase);
+        counts[phase.ordinal()] = 0;
+        overflows[phase.ordinal()] = 0;
+    }
+
+    /**
+     * 清除全部记录
+     */
+    public void clear() {
+        records.clear();
+        for (int phase = 0; phase < counts.length; phase++) {
+            counts[phase] = 0;
+            overflows[phase] = 0;
+        }
+    }
+
+    /**
+     * 错误总数，包括超过上限未保存的
+     * @return 错误数
+     */
+    public int count() {
+        int count = 0;
+        for (int phaseCount : counts) {
+            count += phaseCount;
+        }
+        return count;
+    }
+
+    /**
+     * 某个阶段的错误数，包括超过上限未保存的
+     * @param phase 阶段
+     * @return 错误数
+     */
+    public int count(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    /**
+     * 某个阶段超过上限未保存的错误数
+     * @param phase 阶段
+     * @return 错误数
+     */
+    public int getOverflow(Phase phase) {
+        return overflows[phase.ordinal()];
+    }
+
+    /**
+     * 保存的全部记录
+     * @return 只读的记录列表
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * 按该阶段原有的格式生成错误信息，超过上限时在末尾说明未显示的个数
+     * @param phase 阶段
+     * @return 错误信息
+     */
+    public String format(Phase phase) {
+        StringBuilder builder = new StringBuilder();
+        for (Diagnostic diagnostic : records) {
+            if (diagnostic.getPhase() == phase) {
+                diagnostic.format(builder);
+            }
+        }
+        int overflow = overflows[phase.ordinal()];
+        if (overflow > 0) {
+            builder.append("    ……另有 ").append(overflow).append(" 个错误未显示\n");
+        }
+        return builder.toString();
+    }
+}
@@ -2,6 +2,9 @@ package sample.interpreter.util;
 
 import sample.interpreter.lexer.TreeNode;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
 /**
  * @author :  TobaisTao
  */
@@ -16,16 +19,39 @@ public class ParserUtil {
 
     public StringBuilder stringBuilder = new StringBuilder("");
 
-    public   void lastOrder(TreeNode root, int depth){
-        String str = "";
-        for (int i = 0; i < depth; i++ ){
-            str= str + "    ";
-        }
-        //System.out.println(str + root.getContent());
-        stringBuilder.append(str).append(root.getContent()).append("\n");
-        int childrenCount = root.getChildCount();
-        for (int i = 0; i < childrenCount; i++){
-            lastOrder(root.getChildAt(i), depth+1);
+    /**
+     * 缓存的缩进，更深的缩进分段追加
+     */
+    private static final char[] SPACES = new char[256];
+
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    /**
+     * 每个结点一行，每层缩进四个空格；用显式的栈代替递归，嵌套再深也不会栈溢出
+     * @param root 根结点
+     * @param depth 根结点的层数
+     */
+    public void lastOrder(TreeNode root, int depth) {
+        ArrayDeque<TreeNode> nodes = new ArrayDeque<>();
+        int[] depths = new int[64];
+        nodes.push(root);
+        depths[0] = depth;
+        while (!nodes.isEmpty()) {
+            TreeNode node = nodes.pop();
+            int level = depths[nodes.size()];
+            for (int length = level * 4; length > 0; length -= SPACES.length) {
+                stringBuilder.append(SPACES, 0, Math.min(length, SPACES.length));
+            }
+            stringBuilder.append(node.getContent()).append("\n");
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                if (nodes.size() == depths.length) {
+                    depths = Arrays.copyOf(depths, depths.length * 2);
+                }
+                depths[nodes.size()] = level + 1;
+                nodes.push(node.getChildAt(i));
+            }
         }
     }
 }
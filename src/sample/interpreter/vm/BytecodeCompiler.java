@@ -0,0 +1,802 @@
+package sample.interpreter.vm;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.lexer.TreeNode;
+import sample.interpreter.semantic.Lowering;
+import sample.interpreter.semantic.Resolver;
+import sample.interpreter.semantic.StaticTypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static sample.interpreter.semantic.StaticTypes.*;
+import static sample.interpreter.vm.Opcode.*;
+
+/**
+ * 把语法树编译为字节码，语句的划分和每种写法的结果与 Semantic 逐条对应
+ * 变量按 Resolver 的结果编号，每个标识符的类型由 StaticTypes 在编译时确定，每种写法的处理由 Lowering 决定；
+ * 运行时才能发现的错误（未声明、未初始化、下标越界、除数为零等）由虚拟机照原样报告。
+ * StaticTypes 不能确定类型的程序不编译，compile 返回 null，由 Semantic 按语法树执行
+ */
+public class BytecodeCompiler {
+
+    private int[] code;
+    private int size;
+    private List<Object> constants;
+    private Map<Object, Integer> constantIndex;
+
+    /**
+     * 标号的地址和引用标号的位置
+     */
+    private int[] labels;
+    private int labelCount;
+    private List<int[]> patches;
+
+    /**
+     * 出错时恢复栈高度的代码，放在程序末尾
+     */
+    private List<int[]> stubs;
+
+    private StaticTypes types;
+    private Lowering lowering;
+
+    /**
+     * 编译到当前位置时各个栈的高度和最大高度
+     */
+    private int ints;
+    private int reals;
+    private int refs;
+    private int maxInts;
+    private int maxReals;
+    private int maxRefs;
+
+    /**
+     * 当前编译的语句中声明的变量的最深层次，用于退出作用域时清空槽位
+     */
+    private int deepest;
+
+    /**
+     * 最近一次不能编译的原因
+     */
+    private String reason;
+
+    /**
+     * 编译整个程序
+     * @param root 没有词法和语法错误的语法树
+     * @return 字节码程序，程序中有不能编译的写法时返回 null
+     */
+    public BytecodeProgram compile(TreeNode root) {
+        code = new int[256];
+        size = 0;
+        constants = new ArrayList<>();
+        constantIndex = new HashMap<>();
+        labels = new int[16];
+        labelCount = 0;
+        patches = new ArrayList<>();
+        stubs = new ArrayList<>();
+        ints = reals = refs = 0;
+        maxInts = maxReals = maxRefs = 0;
+        deepest = -1;
+        reason = null;
+
+        types = new StaticTypes(root);
+        lowering = new Lowering(types);
+        try {
+            statements(root, 0);
+        } catch (Unsupported e) {
+            reason = e.getMessage();
+            return null;
+        }
+        emit(HALT);
+        for (int[] stub : stubs) {
+            place(stub[0]);
+            emit(RESET, stub[1], stub[2], stub[3]);
+            if (stub[4] != 0) {
+                emit(ICONST, 0);
+            }
+            emit(JUMP);
+            reference(stub[5]);
+        }
+        for (int[] patch : patches) {
+            code[patch[0]] = labels[patch[1]];
+        }
+
+        Resolver resolver = types.getResolver();
+        int count = types.getBindingCount();
+        int[] depths = new int[count];
+        int[] slots = new int[count];
+        int[] outers = new int[count];
+        for (int binding = 0; binding < count; binding++) {
+            depths[binding] = resolver.getDepth(binding);
+            slots[binding] = resolver.getSlot(binding);
+            outers[binding] = resolver.getOuter(binding);
+        }
+        int[] frameSizes = new int[resolver.getDepthCount()];
+        for (int depth = 0; depth < frameSizes.length; depth++) {
+            frameSizes[depth] = resolver.getFrameSize(depth);
+        }
+        return new BytecodeProgram(Arrays.copyOf(code, size), constants.toArray(), depths, slots,
+                outers, types.getNames(), types.getSymbols(), types.getKinds(), frameSizes,
+                maxInts, maxReals, maxRefs);
+    }
+
+    /**
+     * 最近一次 compile 返回 null 的原因
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /*
+     * 语句
+     */
+
+    private void statements(TreeNode root, int level) {
+        for (int i = 0; i < root.getChildCount(); i++) {
+            TreeNode currentNode = root.getChildAt(i);
+            switch (currentNode.getContent()) {
+                case ConstChars.INT:
+                case ConstChars.REAL:
+                case ConstChars.BOOL:
+                case ConstChars.STRING:
+                    declare(currentNode);
+                    break;
+                case ConstChars.ASSIGN:
+                    assignStatement(currentNode);
+                    break;
+                case ConstChars.FOR:
+                    forStatement(currentNode, level);
+                    break;
+                case ConstChars.IF:
+                    ifStatement(currentNode, level);
+                    break;
+                case ConstChars.WHILE:
+                    whileStatement(currentNode, level);
+                    break;
+                case ConstChars.READ:
+                    read(currentNode.getChildAt(0));
+                    break;
+                case ConstChars.WRITE:
+                    write(currentNode.getChildAt(0));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 与 Semantic.forIf 相同，if 分支比外层深一层，else 分支深两层
+     */
+    private void ifStatement(TreeNode root, int level) {
+        int outer = deepest;
+        deepest = -1;
+        int otherwise = newLabel();
+        condition(child(root, 0).getChildAt(0));
+        jump(JUMP_FALSE, otherwise);
+        statements(child(root, 1), level + 1);
+        if (root.getChildCount() == 3) {
+            int end = newLabel();
+            jump(JUMP, end);
+            place(otherwise);
+            statements(root.getChildAt(2), level + 2);
+            place(end);
+        } else {
+            place(otherwise);
+        }
+        clear(level);
+        deepest = Math.max(outer, deepest);
+    }
+
+    /**
+     * 与 Semantic.forWhile 相同，每次循环后删除循环体中声明的变量
+     */
+    private void whileStatement(TreeNode root, int level) {
+        int outer = deepest;
+        deepest = -1;
+        int top = newLabel();
+        int end = newLabel();
+        place(top);
+        condition(child(root, 0).getChildAt(0));
+        jump(JUMP_FALSE, end);
+        statements(child(root, 1), level + 1);
+        clear(level);
+        jump(JUMP, top);
+        place(end);
+        deepest = Math.max(outer, deepest);
+    }
+
+    /**
+     * 与 Semantic.forFor 相同：初始化、条件、循环体、删除循环体中的变量、修改循环变量
+     */
+    private void forStatement(TreeNode root, int level) {
+        int outer = deepest;
+        deepest = -1;
+        assignStatement(child(child(root, 0), 0));
+        int top = newLabel();
+        int end = newLabel();
+        place(top);
+        condition(child(child(root, 1), 0));
+        jump(JUMP_FALSE, end);
+        statements(child(root, 3), level + 1);
+        clear(level);
+        assignStatement(child(child(root, 2), 0));
+        jump(JUMP, top);
+        place(end);
+        deepest = Math.max(outer, deepest);
+    }
+
+    /**
+     * 清空比 level 深、在刚编译的语句中声明过变量的层次
+     */
+    private void clear(int level) {
+        if (deepest > level) {
+            emit(CLEAR, level + 1, deepest);
+        }
+    }
+
+    /**
+     * 与 Semantic.forDeclare 相同，一个声明出错时不再声明后面的变量
+     */
+    private void declare(TreeNode root) {
+        String kind = root.getContent();
+        int end = newLabel();
+        int abort = handler(end, false);
+        int index = 0;
+        while (index < root.getChildCount()) {
+            TreeNode temp = root.getChildAt(index);
+            int binding = types.declare(temp, kind);
+            boolean array = temp.getChildCount() != 0;
+            deepest = Math.max(deepest, types.getResolver().getDepth(binding));
+            emit(NEW, binding, temp.getRowNum());
+            reference(abort);
+            refs(1);
+            index++;
+            if (!array) {
+                if (index < root.getChildCount()
+                        && root.getChildAt(index).getContent().equals(ConstChars.ASSIGN)) {
+                    initializer(kind, root.getChildAt(index).getChildAt(0), abort);
+                    index++;
+                }
+            } else {
+                arraySize(temp.getChildAt(0), abort);
+                emit(ALLOC, root.getRowNum());
+                reference(abort);
+                ints(-1);
+            }
+            emit(BIND, binding);
+            refs(-1);
+        }
+        place(end);
+    }
+
+    /**
+     * 声明时的初值，按 Lowering.initializer 的处理写入新建的变量
+     */
+    private void initializer(String kind, TreeNode valueNode, int abort) {
+        String value = valueNode.getContent();
+        switch (lowering.initializer(kind, valueNode)) {
+            case Lowering.INT_CONSTANT:
+                emit(SET_INT_CONST, KEEP, constant(value));
+                break;
+            case Lowering.REAL_CONSTANT:
+                emit(SET_REAL_CONST, KEEP, constant(parseReal(valueNode)));
+                break;
+            case Lowering.REAL_TEXT:
+                emit(SET_REAL_TEXT, KEEP, realText(valueNode));
+                break;
+            case Lowering.BOOL_CONSTANT:
+                emit(SET_BOOL_CONST, KEEP, Lowering.boolConstant(valueNode) ? 1 : 0);
+                break;
+            case Lowering.STRING_CONSTANT:
+                emit(SET_STRING_CONST, KEEP, constant(value));
+                break;
+            case Lowering.COPY:
+                copyBase(use(valueNode, abort), COPY_VALUE);
+                break;
+            case Lowering.COPY_REAL:
+                copyBase(use(valueNode, abort), COPY_REAL_VALUE);
+                break;
+            case Lowering.BOOL_FROM_INT:
+                copyBase(use(valueNode, abort), BOOL_FROM_INT);
+                break;
+            case Lowering.STRING_NAME:
+                copyBase(use(valueNode, abort), DISCARD);
+                emit(SET_STRING_CONST, KEEP, constant(value));
+                break;
+            case Lowering.INT_ARITHMETIC:
+                expression(valueNode, abort);
+                emit(SET_INT, KEEP);
+                reference(abort);
+                ints(-1);
+                break;
+            case Lowering.INT_TO_REAL:
+            case Lowering.REAL_ARITHMETIC:
+                int done = newLabel();
+                if (expression(valueNode, abort) == MODE_INT) {
+                    emit(SET_REAL_FROM_INT, KEEP);
+                    ints(-1);
+                } else {
+                    emit(SET_REAL, KEEP);
+                    reals(-1);
+                }
+                reference(done);
+                place(done);
+                break;
+            case Lowering.COMPARISON:
+                condition(valueNode);
+                emit(SET_BOOL, KEEP);
+                ints(-1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 声明时复制变量的值，弹出被复制的变量
+     */
+    private void copyBase(int flags, int mode) {
+        emit(COPY_BASE, (flags & ELEMENT) != 0 ? SOURCE_ELEMENT : 0, mode);
+        popElement(flags);
+        refs(-1);
+    }
+
+    /**
+     * 数组大小压入整数栈
+     */
+    private void arraySize(TreeNode node, int abort) {
+        if (lowering.arraySize(node) == Lowering.INT_CONSTANT) {
+            emit(ICONST, parseInt(node));
+            ints(1);
+        } else {
+            expression(node, abort);
+        }
+    }
+
+    private void assignStatement(TreeNode root) {
+        int next = newLabel();
+        assign(root, handler(next, false), next);
+        place(next);
+    }
+
+    /**
+     * 先查找被赋值的变量和下标，再按 Lowering.assignment 的处理计算右半部分
+     */
+    private void assign(TreeNode root, int fail, int next) {
+        TreeNode node1 = child(root, 0);
+        String kind1 = types.kindOf(node1);
+        emit(REF, constant(node1.getContent()), node1.getBinding(), node1.getRowNum());
+        reference(fail);
+        refs(1);
+        int flags = 0;
+        if (node1.getChildCount() != 0) {
+            index(node1.getChildAt(0), fail);
+            flags = ELEMENT;
+        }
+        TreeNode node2 = child(root, 1);
+        String value = node2.getContent();
+        int form = lowering.assignment(kind1, node1, node2);
+        switch (form) {
+            case Lowering.INT_CONSTANT:
+                emit(SET_INT_CONST, flags, constant(value));
+                break;
+            case Lowering.REAL_CONSTANT:
+                emit(SET_REAL_CONST, flags, constant(parseReal(node2)));
+                break;
+            case Lowering.REAL_TEXT:
+                emit(SET_REAL_TEXT, flags, realText(node2));
+                break;
+            case Lowering.BOOL_CONSTANT:
+                emit(SET_BOOL_CONST, flags, Lowering.boolConstant(node2) ? 1 : 0);
+                break;
+            case Lowering.STRING_CONSTANT:
+                emit(SET_STRING_CONST, flags, constant(value));
+                break;
+            case Lowering.COPY:
+            case Lowering.COPY_REAL:
+                int sourceFlags = use(node2, fail);
+                int copyFlags = flags | ((sourceFlags & ELEMENT) != 0 ? SOURCE_ELEMENT : 0);
+                if (form == Lowering.COPY_REAL) {
+                    emit(COPY_REAL, copyFlags);
+                } else {
+                    emit(ConstChars.STRING.equals(kind1) ? COPY_STRING : COPY, copyFlags);
+                }
+                popElement(sourceFlags);
+                refs(-1);
+                break;
+            case Lowering.INT_ARITHMETIC:
+                expression(node2, fail);
+                emit(SET_INT, flags);
+                reference(next);
+                ints(-1);
+                break;
+            case Lowering.INT_TO_REAL:
+                expression(node2, fail);
+                emit(SET_REAL_FROM_INT, flags);
+                reference(next);
+                ints(-1);
+                break;
+            case Lowering.REAL_ARITHMETIC:
+                expression(node2, fail);
+                emit(SET_REAL, flags);
+                reference(next);
+                reals(-1);
+                break;
+            case Lowering.COMPARISON:
+                condition(node2);
+                emit(SET_BOOL, flags);
+                ints(-1);
+                break;
+            default:
+                refs(-1);
+                popElement(flags);
+                emit(RESET, ints, reals, refs);
+                return;
+        }
+        stored(flags);
+    }
+
+    /**
+     * 与 Semantic.forRead 相同，被读入的变量不需要已经初始化
+     */
+    private void read(TreeNode root) {
+        int next = newLabel();
+        int fail = handler(next, false);
+        types.kindOf(root);
+        emit(REF, constant(root.getContent()), root.getBinding(), root.getRowNum());
+        reference(fail);
+        refs(1);
+        int flags = 0;
+        if (root.getChildCount() != 0) {
+            index(root.getChildAt(0), fail);
+            flags = ELEMENT;
+        }
+        emit(READ, flags, constant(root.getContent()));
+        stored(flags);
+        place(next);
+    }
+
+    /**
+     * 按 Lowering.write 的处理输出
+     */
+    private void write(TreeNode root) {
+        int next = newLabel();
+        int fail = handler(next, false);
+        switch (lowering.write(root)) {
+            case Lowering.CONSTANT:
+                emit(WRITE_CONST, constant(root.getContent() + "\n"));
+                break;
+            case Lowering.VARIABLE:
+                int flags = use(root, fail);
+                emit(WRITE_VAR, flags);
+                popElement(flags);
+                refs(-1);
+                break;
+            case Lowering.INT_ARITHMETIC:
+                expression(root, fail);
+                emit(WRITE_INT);
+                ints(-1);
+                break;
+            case Lowering.REAL_ARITHMETIC:
+                expression(root, fail);
+                emit(WRITE_REAL);
+                reals(-1);
+                break;
+            default:
+                break;
+        }
+        place(next);
+    }
+
+    /*
+     * 条件和表达式
+     */
+
+    /**
+     * 按 Lowering.condition 的处理计算条件，结果 0 或 1 压入整数栈，出错时为 0
+     */
+    private void condition(TreeNode root) {
+        int after = newLabel();
+        int fail = handler(after, true);
+        String content = root.getContent();
+        switch (lowering.condition(root)) {
+            case Lowering.BOOL_CONSTANT:
+                emit(ICONST, Lowering.boolConstant(root) ? 1 : 0);
+                ints(1);
+                break;
+            case Lowering.VARIABLE:
+                int flags = use(root, fail);
+                emit(GET_BOOL, flags);
+                popElement(flags);
+                refs(-1);
+                ints(1);
+                break;
+            case Lowering.COMPARISON:
+                comparand(root.getChildAt(0), fail);
+                comparand(root.getChildAt(1), fail);
+                int operator;
+                switch (content) {
+                    case ConstChars.GT:
+                        operator = GT;
+                        break;
+                    case ConstChars.LT:
+                        operator = LT;
+                        break;
+                    case ConstChars.EQUAL:
+                        operator = EQ;
+                        break;
+                    default:
+                        operator = NE;
+                        break;
+                }
+                emit(CMP, operator);
+                reals(-2);
+                ints(1);
+                break;
+            default:
+                emit(ICONST, 0);
+                ints(1);
+                break;
+        }
+        place(after);
+    }
+
+    /**
+     * 按 Lowering.comparand 的处理把比较的对象按浮点数压入实数栈
+     */
+    private void comparand(TreeNode node, int fail) {
+        switch (lowering.comparand(node)) {
+            case Lowering.REAL_CONSTANT:
+                emit(RCONST, constant(parseReal(node)));
+                reals(1);
+                break;
+            case Lowering.VARIABLE:
+                if (node.getChildCount() == 0) {
+                    emit(LOAD_REAL, constant(node.getContent()), node.getBinding(), node.getRowNum());
+                    reference(fail);
+                } else {
+                    int flags = use(node, fail);
+                    emit(GET_REAL, flags);
+                    popElement(flags);
+                    refs(-1);
+                }
+                reals(1);
+                break;
+            case Lowering.INT_ARITHMETIC:
+                expression(node, fail);
+                emit(I2R);
+                ints(-1);
+                reals(1);
+                break;
+            default:
+                expression(node, fail);
+                break;
+        }
+    }
+
+    /**
+     * 计算算术表达式，整数运算的结果在整数栈上，实数运算的结果在实数栈上
+     * @return MODE_INT 或实数运算
+     */
+    private int expression(TreeNode node, int fail) {
+        int mode = types.classify(node);
+        emitExpression(node, mode, fail);
+        return mode;
+    }
+
+    private void emitExpression(TreeNode node, int mode, int fail) {
+        int flags = mode == MODE_DYNAMIC ? DYNAMIC : 0;
+        for (int i = 0; i < 2; i++) {
+            TreeNode child = node.getChildAt(i);
+            String type = child.getNodeType();
+            if ("运算符".equals(type)) {
+                int childMode = types.classify(child);
+                emitExpression(child, childMode, fail);
+                if (mode != MODE_INT && childMode == MODE_INT) {
+                    emit(I2R);
+                    ints(-1);
+                    reals(1);
+                } else if (mode != MODE_INT) {
+                    flags |= i == 0 ? LEFT_REAL : RIGHT_REAL;
+                }
+            } else if (mode == MODE_INT) {
+                if ("整数".equals(type)) {
+                    emit(ICONST, parseInt(child));
+                } else {
+                    emit(LOAD_INT, constant(child.getContent()), child.getBinding(), child.getRowNum());
+                    reference(fail);
+                }
+                ints(1);
+            } else {
+                if ("标识符".equals(type)) {
+                    emit(LOAD_REAL, constant(child.getContent()), child.getBinding(), child.getRowNum());
+                    reference(fail);
+                } else {
+                    emit(RCONST, constant(parseReal(child)));
+                }
+                reals(1);
+            }
+        }
+        int operator;
+        switch (node.getContent()) {
+            case ConstChars.PLUS:
+                operator = ADD;
+                break;
+            case ConstChars.MINUS:
+                operator = SUB;
+                break;
+            case ConstChars.TIMES:
+                operator = MUL;
+                break;
+            default:
+                operator = DIV;
+                break;
+        }
+        if (mode == MODE_INT) {
+            if (operator == DIV) {
+                emit(IDIV, node.getRowNum());
+            } else {
+                emit(IADD + operator);
+            }
+            ints(-1);
+        } else {
+            emit(ROP, operator, flags);
+            reals(-1);
+        }
+    }
+
+    /**
+     * 与 Semantic.checkID 相同：查找变量、计算下标、检查是否已经初始化，变量留在变量栈上
+     * @return 数组元素时为 ELEMENT，下标留在整数栈上
+     */
+    private int use(TreeNode node, int fail) {
+        types.kindOf(node);
+        int name = constant(node.getContent());
+        emit(REF, name, node.getBinding(), node.getRowNum());
+        reference(fail);
+        refs(1);
+        if (node.getChildCount() != 0) {
+            index(node.getChildAt(0), fail);
+            emit(CHECK_ELEMENT, name, node.getRowNum());
+            reference(fail);
+            return ELEMENT;
+        }
+        emit(CHECK, name, node.getRowNum());
+        reference(fail);
+        return 0;
+    }
+
+    /**
+     * 按 Lowering.index 的处理计算下标并检查范围，下标留在整数栈上
+     */
+    private void index(TreeNode node, int fail) {
+        switch (lowering.index(node)) {
+            case Lowering.INT_CONSTANT:
+                emit(ICONST, parseInt(node));
+                ints(1);
+                break;
+            case Lowering.VARIABLE:
+                emit(LOAD_INDEX, constant(node.getContent()), node.getBinding(), node.getRowNum());
+                reference(fail);
+                ints(1);
+                break;
+            default:
+                expression(node, fail);
+                break;
+        }
+        emit(INDEX, node.getRowNum());
+        reference(fail);
+    }
+
+    /**
+     * 实数常量的数值和写法，在常量池中相邻
+     */
+    private int realText(TreeNode node) {
+        double value = parseReal(node);
+        constants.add(value);
+        constants.add(node.getContent());
+        return constants.size() - 2;
+    }
+
+    /*
+     * 栈的高度
+     */
+
+    private void ints(int delta) {
+        ints += delta;
+        maxInts = Math.max(maxInts, ints);
+    }
+
+    private void reals(int delta) {
+        reals += delta;
+        maxReals = Math.max(maxReals, reals);
+    }
+
+    private void refs(int delta) {
+        refs += delta;
+        maxRefs = Math.max(maxRefs, refs);
+    }
+
+    /**
+     * 弹出数组元素的下标
+     */
+    private void popElement(int flags) {
+        if ((flags & ELEMENT) != 0) {
+            ints(-1);
+        }
+    }
+
+    /**
+     * 赋值指令弹出下标和没有保留的变量
+     */
+    private void stored(int flags) {
+        popElement(flags);
+        if ((flags & KEEP) == 0) {
+            refs(-1);
+        }
+    }
+
+    /*
+     * 指令、常量和标号
+     */
+
+    private void emit(int... words) {
+        if (size + words.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+        }
+        System.arraycopy(words, 0, code, size, words.length);
+        size += words.length;
+    }
+
+    private int constant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private int newLabel() {
+        if (labelCount == labels.length) {
+            labels = Arrays.copyOf(labels, labelCount * 2);
+        }
+        labels[labelCount] = -1;
+        return labelCount++;
+    }
+
+    private void place(int label) {
+        labels[label] = size;
+    }
+
+    /**
+     * 以标号作为刚写出的指令的最后一个操作数
+     */
+    private void reference(int label) {
+        patches.add(new int[] {size, label});
+        emit(0);
+    }
+
+    private void jump(int op, int label) {
+        emit(op);
+        reference(label);
+        if (op == JUMP_FALSE) {
+            ints(-1);
+        }
+    }
+
+    /**
+     * 出错时的处理：恢复到当前的栈高度，条件出错时结果为假，再跳转到 continuation
+     * @return 处理代码的标号
+     */
+    private int handler(int continuation, boolean pushFalse) {
+        int label = newLabel();
+        stubs.add(new int[] {label, ints, reals, refs, pushFalse ? 1 : 0, continuation});
+        return label;
+    }
+}
@@ -0,0 +1,92 @@
+package sample.interpreter.vm;
+
+/**
+ * 编译得到的字节码程序：指令流、常量池、变量表和各个栈需要的大小
+ * 变量按 Resolver 分配的 (层次, 槽位) 存放，被遮盖的外层同名变量用于声明没有执行时继续查找
+ */
+public class BytecodeProgram {
+
+    final int[] code;
+    final Object[] constants;
+
+    /**
+     * 每个变量的层次、槽位、被它遮盖的外层变量（没有时为 -1）、名字、符号编号和类型
+     */
+    final int[] depths;
+    final int[] slots;
+    final int[] outers;
+    final String[] names;
+    final int[] symbols;
+    final String[] kinds;
+
+    /**
+     * 每一层的槽位个数
+     */
+    final int[] frameSizes;
+
+    /**
+     * 整数栈、实数栈和变量栈的最大高度
+     */
+    final int maxInts;
+    final int maxReals;
+    final int maxRefs;
+
+    BytecodeProgram(int[] code, Object[] constants, int[] depths, int[] slots, int[] outers,
+                    String[] names, int[] symbols, String[] kinds, int[] frameSizes,
+                    int maxInts, int maxReals, int maxRefs) {
+        this.code = code;
+        this.constants = constants;
+        this.depths = depths;
+        this.slots = slots;
+        this.outers = outers;
+        this.names = names;
+        this.symbols = symbols;
+        this.kinds = kinds;
+        this.frameSizes = frameSizes;
+        this.maxInts = maxInts;
+        this.maxReals = maxReals;
+        this.maxRefs = maxRefs;
+    }
+
+    /**
+     * 指令个数
+     */
+    public int getInstructionCount() {
+        int count = 0;
+        for (int pc = 0; pc < code.length; pc += 1 + Opcode.OPERANDS[code[pc]]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 指令流的长度，以 int 计
+     */
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    /**
+     * 反汇编，每行一条指令，常量池中的常量附在后面
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int pc = 0; pc < code.length; ) {
+            int op = code[pc];
+            builder.append(pc).append(": ").append(Opcode.NAMES[op]);
+            for (int i = 1; i <= Opcode.OPERANDS[op]; i++) {
+                builder.append(' ').append(code[pc + i]);
+            }
+            if (op == Opcode.RCONST || op == Opcode.WRITE_CONST) {
+                builder.append("  ; ").append(constants[code[pc + 1]]);
+            } else if (op == Opcode.SET_INT_CONST || op == Opcode.SET_STRING_CONST
+                    || op == Opcode.SET_REAL_CONST || op == Opcode.SET_REAL_TEXT) {
+                builder.append("  ; ").append(constants[code[pc + 2]]);
+            }
+            builder.append('\n');
+            pc += 1 + Opcode.OPERANDS[op];
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package sample.interpreter.vm;
+
+import sample.interpreter.lexer.ConstChars;
+import sample.interpreter.semantic.Semantic;
+import sample.interpreter.semantic.SymbolTableElement;
+import sample.interpreter.util.DiagnosticCode;
+
+/**
+ * 执行引擎的输入输出和报错，由 Semantic 提供，与语法树解释执行时相同
+ */
+public interface Host {
+
+    /**
+     * 输出 write 语句的结果或读入出错的提示
+     * @param text 文本
+     */
+    void print(String text);
+
+    /**
+     * 输出 write 语句中的常量，原来的实现同时把它记录在 output 中
+     * @param text 常量的写法加换行
+     */
+    void printConstant(String text);
+
+    /**
+     * 等待并读取用户输入
+     * @return 输入的内容
+     */
+    String readInput();
+
+    /**
+     * 报告语义错误
+     * @param code 错误代码
+     * @param line 行号
+     * @param args 错误信息的参数
+     */
+    void error(DiagnosticCode code, int line, Object... args);
+
+    /**
+     * 与 Semantic.forWrite 相同，按变量的类型输出变量或数组元素
+     * @param element 变量
+     * @param index 数组元素的下标，不是数组元素时为 -1
+     */
+    default void write(SymbolTableElement element, int index) {
+        switch (element.getKind()) {
+            case ConstChars.INT:
+                print(element.getIntText(index) + "\n");
+                break;
+            case ConstChars.REAL:
+                print(element.getRealText(index) + "\n");
+                break;
+            case ConstChars.BOOL:
+                print(element.getBoolValue(index) + "\n");
+                break;
+            default:
+                print(element.getStringValue(index) + "\n");
+                break;
+        }
+    }
+
+    /**
+     * 与 Semantic.forRead 相同，输入不合法时提示但不计为语义错误
+     * @param element 变量
+     * @param index 数组元素的下标，不是数组元素时为 -1
+     * @param name 变量名，用于提示
+     */
+    default void read(SymbolTableElement element, int index, String name) {
+        String idName = index >= 0 ? name + "@" + index : name;
+        String value = readInput();
+        switch (element.getKind()) {
+            case ConstChars.INT:
+                if (Semantic.matchInteger(value)) {
+                    element.setIntValue(index, value);
+                    return;
+                }
+                break;
+            case ConstChars.REAL:
+                if (Semantic.matchReal(value)) {
+                    element.setRealValue(index, Double.parseDouble(value), value);
+                    return;
+                } else if (Semantic.matchInteger(value)) {
+                    element.setRealValue(index, Double.parseDouble(value));
+                    return;
+                }
+                break;
+            case ConstChars.BOOL:
+                if ("true".equals(value)) {
+                    element.setBoolValue(index, true);
+                    return;
+                } else if ("false".equals(value)) {
+                    element.setBoolValue(index, false);
+                    return;
+                }
+                break;
+            default:
+                element.setStringValue(index, value);
+                return;
+        }
+        print("不能将\"" + value + "\"赋值给变量" + idName + "\n");
+    }
+}
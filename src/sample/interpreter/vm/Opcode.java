@@ -0,0 +1,157 @@
+package sample.interpreter.vm;
+
+/**
+ * 字节码指令，每条指令是一个操作码加上固定个数的 int 操作数
+ * 操作数中 name 是常量池中变量名的下标，binding 是变量编号，row 是报错的行号，
+ * fail 是出错时跳转的位置，那里先恢复各个栈的高度再继续执行；
+ * flags 中 ELEMENT 表示数组下标在整数栈上，KEEP 表示赋值后把变量留在变量栈上（声明时使用）
+ */
+public final class Opcode {
+
+    /* 常量：ICONST value；RCONST constant */
+    public static final int ICONST = 0;
+    public static final int RCONST = 1;
+
+    /* 变量：标识符检查与取值 */
+    /** LOAD_INT name binding row fail：检查已声明和已初始化，整数值压入整数栈 */
+    public static final int LOAD_INT = 2;
+    /** LOAD_REAL name binding row fail：检查后把整型或实型变量的浮点数值压入实数栈 */
+    public static final int LOAD_REAL = 3;
+    /** LOAD_INDEX name binding row fail：用作数组下标的整型变量，超出 int 范围时抛出 NumberFormatException */
+    public static final int LOAD_INDEX = 4;
+    /** REF name binding row fail：查找变量压入变量栈，没有声明时报错 */
+    public static final int REF = 5;
+    /** INDEX row fail：检查整数栈顶的下标是否在变量栈顶的数组范围内 */
+    public static final int INDEX = 6;
+    /** CHECK name row fail：变量栈顶的变量是否已经初始化 */
+    public static final int CHECK = 7;
+    /** CHECK_ELEMENT name row fail：变量栈顶的数组在整数栈顶下标处的元素是否已经初始化 */
+    public static final int CHECK_ELEMENT = 8;
+    /** GET_REAL flags：弹出变量，把整型或实型的值压入实数栈 */
+    public static final int GET_REAL = 9;
+    /** GET_BOOL flags：弹出布尔变量，值压入整数栈 */
+    public static final int GET_BOOL = 10;
+
+    /* 赋值：目标变量在变量栈上，数组元素的下标在整数栈上 */
+    /** SET_INT_CONST flags constant：整数常量，保留写法 */
+    public static final int SET_INT_CONST = 11;
+    /** SET_INT flags skip：整数表达式的值，值为空时不赋值，跳转到 skip */
+    public static final int SET_INT = 12;
+    /** SET_REAL_CONST flags constant：整数常量转换的浮点数 */
+    public static final int SET_REAL_CONST = 13;
+    /** SET_REAL_TEXT flags constant：实数常量，常量池中依次是数值和写法 */
+    public static final int SET_REAL_TEXT = 14;
+    /** SET_REAL_FROM_INT flags skip：整数表达式的值转换为浮点数 */
+    public static final int SET_REAL_FROM_INT = 15;
+    /** SET_REAL flags skip：实数表达式的值和写法，只能转换为浮点数的写法不赋值 */
+    public static final int SET_REAL = 16;
+    /** SET_BOOL_CONST flags value */
+    public static final int SET_BOOL_CONST = 17;
+    /** SET_BOOL flags：弹出条件的值 */
+    public static final int SET_BOOL = 18;
+    /** SET_STRING_CONST flags constant */
+    public static final int SET_STRING_CONST = 19;
+    /** COPY flags：复制同类型变量的值，flags 中 SOURCE_ELEMENT 表示被复制的是数组元素 */
+    public static final int COPY = 20;
+    /** COPY_REAL flags：整型变量的值转换为浮点数 */
+    public static final int COPY_REAL = 21;
+    /** COPY_STRING flags */
+    public static final int COPY_STRING = 22;
+    /** COPY_BASE flags mode：声明时的初值是变量，与原来一样复制数组本身而不是数组元素 */
+    public static final int COPY_BASE = 23;
+
+    /* 声明 */
+    /** NEW binding row fail：当前作用域中已经声明时报错，否则新建变量压入变量栈 */
+    public static final int NEW = 24;
+    /** ALLOC row fail：弹出数组大小，为变量栈顶的数组分配元素 */
+    public static final int ALLOC = 25;
+    /** BIND binding：弹出变量放入它的槽位 */
+    public static final int BIND = 26;
+
+    /* 运算 */
+    public static final int IADD = 27;
+    public static final int ISUB = 28;
+    public static final int IMUL = 29;
+    /** IDIV row：除数为零时报错，结果为空值 */
+    public static final int IDIV = 30;
+    /** ROP operator flags：实数运算，按 float 舍入 */
+    public static final int ROP = 31;
+    /** I2R：整数栈顶转换为浮点数压入实数栈 */
+    public static final int I2R = 32;
+    /** CMP operator：比较实数栈顶的两个值，结果压入整数栈 */
+    public static final int CMP = 33;
+
+    /* 输入输出 */
+    /** WRITE_CONST constant */
+    public static final int WRITE_CONST = 34;
+    public static final int WRITE_INT = 35;
+    public static final int WRITE_REAL = 36;
+    /** WRITE_VAR flags */
+    public static final int WRITE_VAR = 37;
+    /** READ flags name */
+    public static final int READ = 38;
+
+    /* 控制 */
+    /** JUMP target */
+    public static final int JUMP = 39;
+    /** JUMP_FALSE target：弹出整数栈顶，为 0 时跳转 */
+    public static final int JUMP_FALSE = 40;
+    /** CLEAR from to：退出作用域，清空这些层次的槽位 */
+    public static final int CLEAR = 41;
+    /** RESET ints reals refs：出错后恢复各个栈的高度 */
+    public static final int RESET = 42;
+    public static final int HALT = 43;
+
+    /* flags */
+    public static final int ELEMENT = 1;
+    public static final int KEEP = 2;
+    public static final int SOURCE_ELEMENT = 4;
+
+    /* ROP 的 flags：运算对象中有实数常量或实型变量时为静态的实数运算，否则由子表达式的结果决定 */
+    public static final int DYNAMIC = 1;
+    public static final int LEFT_REAL = 2;
+    public static final int RIGHT_REAL = 4;
+
+    /* COPY_BASE 的 mode */
+    public static final int COPY_VALUE = 0;
+    public static final int COPY_REAL_VALUE = 1;
+    public static final int BOOL_FROM_INT = 2;
+    public static final int DISCARD = 3;
+
+    /* ROP 和 CMP 的运算符 */
+    public static final int ADD = 0;
+    public static final int SUB = 1;
+    public static final int MUL = 2;
+    public static final int DIV = 3;
+    public static final int GT = 0;
+    public static final int LT = 1;
+    public static final int EQ = 2;
+    public static final int NE = 3;
+
+    /**
+     * 指令名，用于反汇编
+     */
+    static final String[] NAMES = {
+            "ICONST", "RCONST", "LOAD_INT", "LOAD_REAL", "LOAD_INDEX", "REF", "INDEX", "CHECK",
+            "CHECK_ELEMENT", "GET_REAL", "GET_BOOL", "SET_INT_CONST", "SET_INT", "SET_REAL_CONST",
+            "SET_REAL_TEXT", "SET_REAL_FROM_INT", "SET_REAL", "SET_BOOL_CONST", "SET_BOOL",
+            "SET_STRING_CONST", "COPY", "COPY_REAL", "COPY_STRING", "COPY_BASE", "NEW", "ALLOC", "BIND",
+            "IADD", "ISUB", "IMUL", "IDIV", "ROP", "I2R", "CMP", "WRITE_CONST", "WRITE_INT",
+            "WRITE_REAL", "WRITE_VAR", "READ", "JUMP", "JUMP_FALSE", "CLEAR", "RESET", "HALT"
+    };
+
+    /**
+     * 每条指令的操作数个数
+     */
+    static final int[] OPERANDS = {
+            1, 1, 4, 4, 4, 4, 2, 3,
+            3, 1, 1, 2, 2, 2,
+            2, 2, 2, 2, 1,
+            2, 1, 1, 1, 2, 3, 2, 1,
+            0, 0, 0, 1, 2, 0, 1, 1, 0,
+            0, 1, 2, 1, 1, 2, 3, 0
+    };
+
+    private Opcode() {
+    }
+}
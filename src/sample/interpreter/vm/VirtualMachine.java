@@ -0,0 +1,492 @@
+package sample.interpreter.vm;
+
+import sample.interpreter.semantic.RealArithmetic;
+import sample.interpreter.semantic.SymbolTableElement;
+import sample.interpreter.util.DiagnosticCode;
+
+import java.util.Arrays;
+
+import static sample.interpreter.vm.Opcode.*;
+
+/**
+ * 执行字节码的栈式虚拟机
+ * 整数、浮点数和变量各用一个栈，整数和浮点数不装箱；每个值附带一个标记，
+ * 记录 Semantic 中表达式结果的空值和只能转换为浮点数的写法，出错和抛出的异常与按语法树执行时相同
+ */
+public class VirtualMachine {
+
+    /**
+     * 整数栈的标记：除数为零得到的空值，超出 int 范围的整型变量
+     */
+    private static final byte EMPTY = 1;
+    private static final byte WIDE = 2;
+    /**
+     * 实数栈的标记：只能转换为浮点数的写法，由空值转换得到
+     */
+    private static final byte TEXT = 1;
+    private static final byte POISON = 2;
+
+    private final BytecodeProgram program;
+    private final Host host;
+
+    /**
+     * 按层次和槽位存放的变量
+     */
+    private SymbolTableElement[][] frames;
+
+    public VirtualMachine(BytecodeProgram program, Host host) {
+        this.program = program;
+        this.host = host;
+    }
+
+    /**
+     * 从头执行程序
+     */
+    public void execute() {
+        final int[] code = program.code;
+        final Object[] constants = program.constants;
+        final String[] names = program.names;
+        frames = new SymbolTableElement[program.frameSizes.length][];
+        for (int depth = 0; depth < frames.length; depth++) {
+            frames[depth] = new SymbolTableElement[program.frameSizes[depth]];
+        }
+        final long[] ints = new long[program.maxInts + 1];
+        final byte[] intMarks = new byte[program.maxInts + 1];
+        final double[] reals = new double[program.maxReals + 1];
+        final byte[] realMarks = new byte[program.maxReals + 1];
+        final SymbolTableElement[] refs = new SymbolTableElement[program.maxRefs + 1];
+        int isp = 0;
+        int rsp = 0;
+        int fsp = 0;
+        // 最近一次实数运算结果的写法
+        String text = null;
+        int pc = 0;
+        while (true) {
+            int flags;
+            int index;
+            SymbolTableElement element;
+            switch (code[pc]) {
+                case ICONST:
+                    ints[isp] = code[pc + 1];
+                    intMarks[isp++] = 0;
+                    pc += 2;
+                    break;
+                case RCONST:
+                    reals[rsp] = (Double) constants[code[pc + 1]];
+                    realMarks[rsp++] = 0;
+                    pc += 2;
+                    break;
+                case LOAD_INT:
+                    element = checked(code, pc, constants);
+                    if (element == null) {
+                        pc = code[pc + 4];
+                        break;
+                    }
+                    long value = element.getLongValue();
+                    ints[isp] = value;
+                    intMarks[isp++] = value == (int) value ? 0 : WIDE;
+                    pc += 5;
+                    break;
+                case LOAD_REAL:
+                    element = checked(code, pc, constants);
+                    if (element == null) {
+                        pc = code[pc + 4];
+                        break;
+                    }
+                    reals[rsp] = element.getRealValue();
+                    realMarks[rsp++] = 0;
+                    pc += 5;
+                    break;
+                case LOAD_INDEX:
+                    element = checked(code, pc, constants);
+                    if (element == null) {
+                        pc = code[pc + 4];
+                        break;
+                    }
+                    ints[isp] = element.getIntValue();
+                    intMarks[isp++] = 0;
+                    pc += 5;
+                    break;
+                case REF:
+                    element = lookup(code[pc + 2]);
+                    if (element == null) {
+                        host.error(DiagnosticCode.UNDECLARED, code[pc + 3], constants[code[pc + 1]]);
+                        pc = code[pc + 4];
+                        break;
+                    }
+                    refs[fsp++] = element;
+                    pc += 5;
+                    break;
+                case INDEX:
+                    if (intMarks[isp - 1] == EMPTY) {
+                        host.error(DiagnosticCode.ARRAY_INDEX_NOT_INTEGER, code[pc + 1]);
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    long position = ints[isp - 1];
+                    if (position < 0) {
+                        host.error(DiagnosticCode.ARRAY_INDEX_NEGATIVE, code[pc + 1]);
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    if (position >= refs[fsp - 1].getArrayElementsNum()) {
+                        host.error(DiagnosticCode.ARRAY_INDEX_OUT_OF_BOUNDS, code[pc + 1]);
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    pc += 3;
+                    break;
+                case CHECK:
+                    if (!refs[fsp - 1].isInitialized()) {
+                        host.error(DiagnosticCode.UNINITIALIZED, code[pc + 2], constants[code[pc + 1]]);
+                        pc = code[pc + 3];
+                        break;
+                    }
+                    pc += 4;
+                    break;
+                case CHECK_ELEMENT:
+                    index = (int) ints[isp - 1];
+                    if (!refs[fsp - 1].isInitialized(index)) {
+                        host.error(DiagnosticCode.UNINITIALIZED, code[pc + 2],
+                                constants[code[pc + 1]] + "@" + index);
+                        pc = code[pc + 3];
+                        break;
+                    }
+                    pc += 4;
+                    break;
+                case GET_REAL:
+                    index = (code[pc + 1] & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    reals[rsp] = refs[--fsp].getRealValue(index);
+                    realMarks[rsp++] = 0;
+                    pc += 2;
+                    break;
+                case GET_BOOL:
+                    index = (code[pc + 1] & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    ints[isp] = refs[--fsp].getBoolValue(index) ? 1 : 0;
+                    intMarks[isp++] = 0;
+                    pc += 2;
+                    break;
+
+                case SET_INT_CONST:
+                    flags = code[pc + 1];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    element.setIntValue(index, (String) constants[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case SET_INT:
+                    flags = code[pc + 1];
+                    value = ints[--isp];
+                    byte mark = intMarks[isp];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    if (mark == EMPTY) {
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    element.setIntValue(index, value);
+                    pc += 3;
+                    break;
+                case SET_REAL_CONST:
+                    flags = code[pc + 1];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    element.setRealValue(index, (Double) constants[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case SET_REAL_TEXT:
+                    flags = code[pc + 1];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    element.setRealValue(index, (Double) constants[code[pc + 2]],
+                            (String) constants[code[pc + 2] + 1]);
+                    pc += 3;
+                    break;
+                case SET_REAL_FROM_INT:
+                    flags = code[pc + 1];
+                    value = ints[--isp];
+                    mark = intMarks[isp];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    if (mark == EMPTY) {
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    element.setRealValue(index, (double) value);
+                    pc += 3;
+                    break;
+                case SET_REAL:
+                    flags = code[pc + 1];
+                    double real = reals[--rsp];
+                    mark = realMarks[rsp];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    if (mark == TEXT) {
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    element.setRealValue(index, real, text);
+                    pc += 3;
+                    break;
+                case SET_BOOL_CONST:
+                    flags = code[pc + 1];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    element.setBoolValue(index, code[pc + 2] != 0);
+                    pc += 3;
+                    break;
+                case SET_BOOL:
+                    flags = code[pc + 1];
+                    value = ints[--isp];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    element.setBoolValue(index, value != 0);
+                    pc += 2;
+                    break;
+                case SET_STRING_CONST:
+                    flags = code[pc + 1];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = (flags & KEEP) != 0 ? refs[fsp - 1] : refs[--fsp];
+                    element.setStringValue(index, (String) constants[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case COPY:
+                case COPY_REAL:
+                case COPY_STRING:
+                    flags = code[pc + 1];
+                    int sourceIndex = (flags & SOURCE_ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    SymbolTableElement source = refs[--fsp];
+                    index = (flags & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    element = refs[--fsp];
+                    if (code[pc] == COPY) {
+                        element.copyValue(index, source, sourceIndex);
+                    } else if (code[pc] == COPY_REAL) {
+                        element.copyRealValue(index, source, sourceIndex);
+                    } else {
+                        element.setStringValue(index, source.getStringValue(sourceIndex));
+                    }
+                    pc += 2;
+                    break;
+                case COPY_BASE:
+                    if ((code[pc + 1] & SOURCE_ELEMENT) != 0) {
+                        isp--;
+                    }
+                    source = refs[--fsp];
+                    element = refs[fsp - 1];
+                    switch (code[pc + 2]) {
+                        case COPY_VALUE:
+                            element.copyValue(source);
+                            break;
+                        case COPY_REAL_VALUE:
+                            element.copyRealValue(source);
+                            break;
+                        case BOOL_FROM_INT:
+                            element.setBoolValue(source.getIntValue() > 0);
+                            break;
+                        default:
+                            break;
+                    }
+                    pc += 3;
+                    break;
+
+                case NEW:
+                    int binding = code[pc + 1];
+                    if (frames[program.depths[binding]][program.slots[binding]] != null) {
+                        host.error(DiagnosticCode.REDECLARED, code[pc + 2], names[binding]);
+                        pc = code[pc + 3];
+                        break;
+                    }
+                    refs[fsp++] = new SymbolTableElement(names[binding], program.symbols[binding], -1,
+                            program.kinds[binding], code[pc + 2], program.depths[binding]);
+                    pc += 4;
+                    break;
+                case ALLOC:
+                    value = ints[--isp];
+                    if (intMarks[isp] == EMPTY) {
+                        host.error(DiagnosticCode.ARRAY_SIZE_NOT_INTEGER, code[pc + 1]);
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    if (value < 1) {
+                        host.error(DiagnosticCode.ARRAY_SIZE_NOT_POSITIVE, code[pc + 1]);
+                        pc = code[pc + 2];
+                        break;
+                    }
+                    refs[fsp - 1].allocate((int) value);
+                    pc += 3;
+                    break;
+                case BIND:
+                    binding = code[pc + 1];
+                    frames[program.depths[binding]][program.slots[binding]] = refs[--fsp];
+                    pc += 2;
+                    break;
+
+                case IADD:
+                case ISUB:
+                case IMUL:
+                case IDIV:
+                    isp--;
+                    if ((intMarks[isp] | intMarks[isp - 1]) != 0) {
+                        throw new NumberFormatException("not an integer operand");
+                    }
+                    int left = (int) ints[isp - 1];
+                    int right = (int) ints[isp];
+                    switch (code[pc]) {
+                        case IADD:
+                            ints[isp - 1] = left + right;
+                            pc += 1;
+                            break;
+                        case ISUB:
+                            ints[isp - 1] = left - right;
+                            pc += 1;
+                            break;
+                        case IMUL:
+                            ints[isp - 1] = left * right;
+                            pc += 1;
+                            break;
+                        default:
+                            if (right == 0) {
+                                host.error(DiagnosticCode.DIVIDE_BY_ZERO, code[pc + 1]);
+                                ints[isp - 1] = 0;
+                                intMarks[isp - 1] = EMPTY;
+                            } else {
+                                ints[isp - 1] = left / right;
+                            }
+                            pc += 2;
+                            break;
+                    }
+                    break;
+                case ROP:
+                    rsp--;
+                    byte leftMark = realMarks[rsp - 1];
+                    byte rightMark = realMarks[rsp];
+                    flags = code[pc + 2];
+                    if ((flags & DYNAMIC) != 0
+                            && !((flags & LEFT_REAL) != 0 && leftMark != TEXT)
+                            && !((flags & RIGHT_REAL) != 0 && rightMark != TEXT)) {
+                        // 子表达式的结果都只能转换为浮点数时按整数运算，原来在这里抛出异常
+                        throw new NumberFormatException("not an integer operand");
+                    }
+                    if (leftMark == POISON || rightMark == POISON) {
+                        throw new NumberFormatException("empty String");
+                    }
+                    float result = RealArithmetic.operate(code[pc + 1], reals[rsp - 1], reals[rsp]);
+                    text = String.valueOf(result);
+                    reals[rsp - 1] = Double.parseDouble(text);
+                    realMarks[rsp - 1] = Float.isFinite(result) && text.indexOf('E') < 0 ? 0 : TEXT;
+                    pc += 3;
+                    break;
+                case I2R:
+                    reals[rsp] = ints[--isp];
+                    realMarks[rsp++] = intMarks[isp] == EMPTY ? POISON : 0;
+                    pc += 1;
+                    break;
+                case CMP:
+                    rsp -= 2;
+                    boolean condition;
+                    if (realMarks[rsp] == POISON || realMarks[rsp + 1] == POISON) {
+                        condition = false;
+                    } else {
+                        double a = reals[rsp];
+                        double b = reals[rsp + 1];
+                        switch (code[pc + 1]) {
+                            case GT:
+                                condition = a > b;
+                                break;
+                            case LT:
+                                condition = a < b;
+                                break;
+                            case EQ:
+                                condition = a == b;
+                                break;
+                            default:
+                                condition = a != b;
+                                break;
+                        }
+                    }
+                    ints[isp] = condition ? 1 : 0;
+                    intMarks[isp++] = 0;
+                    pc += 2;
+                    break;
+
+                case WRITE_CONST:
+                    host.printConstant((String) constants[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case WRITE_INT:
+                    isp--;
+                    host.print(intMarks[isp] == EMPTY ? "\n" : (int) ints[isp] + "\n");
+                    pc += 1;
+                    break;
+                case WRITE_REAL:
+                    rsp--;
+                    host.print(text + "\n");
+                    pc += 1;
+                    break;
+                case WRITE_VAR:
+                    index = (code[pc + 1] & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    host.write(refs[--fsp], index);
+                    pc += 2;
+                    break;
+                case READ:
+                    index = (code[pc + 1] & ELEMENT) != 0 ? (int) ints[--isp] : -1;
+                    host.read(refs[--fsp], index, (String) constants[code[pc + 2]]);
+                    pc += 3;
+                    break;
+
+                case JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case JUMP_FALSE:
+                    pc = ints[--isp] == 0 ? code[pc + 1] : pc + 2;
+                    break;
+                case CLEAR:
+                    for (int depth = code[pc + 1]; depth <= code[pc + 2]; depth++) {
+                        Arrays.fill(frames[depth], null);
+                    }
+                    pc += 3;
+                    break;
+                case RESET:
+                    isp = code[pc + 1];
+                    rsp = code[pc + 2];
+                    fsp = code[pc + 3];
+                    pc += 4;
+                    break;
+                case HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("未知的指令 " + code[pc] + "，位置 " + pc);
+            }
+        }
+    }
+
+    /**
+     * 变量按槽位查找，槽位为空（声明没有执行）时继续查找被它遮盖的外层同名变量
+     */
+    private SymbolTableElement lookup(int binding) {
+        while (binding >= 0) {
+            SymbolTableElement element = frames[program.depths[binding]][program.slots[binding]];
+            if (element != null) {
+                return element;
+            }
+            binding = program.outers[binding];
+        }
+        return null;
+    }
+
+    /**
+     * LOAD 指令：查找变量并检查是否已经初始化，出错时报错并返回 null
+     */
+    private SymbolTableElement checked(int[] code, int pc, Object[] constants) {
+        SymbolTableElement element = lookup(code[pc + 2]);
+        if (element == null) {
+            host.error(DiagnosticCode.UNDECLARED, code[pc + 3], constants[code[pc + 1]]);
+            return null;
+        }
+        if (!element.isInitialized()) {
+            host.error(DiagnosticCode.UNINITIALIZED, code[pc + 3], constants[code[pc + 1]]);
+            return null;
+        }
+        return element;
+    }
+}
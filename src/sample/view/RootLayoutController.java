@@ -8,12 +8,17 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import sample.MainApp;
-import sample.interpreter.lexer.Lexer;
+import sample.interpreter.ast.ConstantFolder;
+import sample.interpreter.ast.Program;
+import sample.interpreter.ast.TreeAdapter;
+import sample.interpreter.ast.TreeNodeBuilder;
+import sample.interpreter.lexer.LexerSession;
 import sample.interpreter.lexer.Token;
 import sample.interpreter.lexer.TreeNode;
 import sample.interpreter.parser.Parser;
+import sample.interpreter.semantic.Engine;
 import sample.interpreter.semantic.Semantic;
-import sample.interpreter.util.ParserUtil;
+import sample.interpreter.util.Diagnostics;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,7 +45,10 @@ public class RootLayoutController {
     private String oldInput = "";
     private String currentInput = "";
 
-    private Lexer lexer;
+    /**
+     * 增量词法分析会话，编辑后只重新扫描修改过的行
+     */
+    private LexerSession lexerSession = new LexerSession();
     private Parser parser;
     private Semantic semantic;
 
@@ -102,20 +110,19 @@ public class RootLayoutController {
     }
 
     @FXML
-    private void handleLexer() throws IllegalAccessException {
+    private void handleLexer() {
         Integer errorCount;
         String content = cmmContent.getText();
         String str;
 
 
-        lexer = new Lexer();
-        lexer.scanAll(content);
+        lexerSession.update(content);
         ArrayList<Token> tokens;
-        errorCount = lexer.getErrorCount();
-        tokens = lexer.getTokens();
+        errorCount = lexerSession.getErrorCount();
+        tokens = lexerSession.getTokens();
 
         if (errorCount > 0){
-            str = ("发生了" + errorCount + "个错误！\n") + lexer.getErrorInfo();
+            str = ("发生了" + errorCount + "个错误！\n") + lexerSession.getErrorInfo();
         }else{
             StringBuilder stringBuilder = new StringBuilder();
             for(Token token : tokens){
@@ -139,27 +146,20 @@ public class RootLayoutController {
         String content = cmmContent.getText();
         String str;
 
-        lexer = new Lexer();
-        lexer.scanAll(content);
-        ArrayList<Token> tokens;
-        errorCount = lexer.getErrorCount();
-        tokens = lexer.getTokens();
+        lexerSession.update(content);
+        errorCount = lexerSession.getErrorCount();
         if (errorCount!= 0) {
             resultContent.clear();
             resultContent.setText("词法分析出现错误！请先修改程序再进行语法分析！");
         }else{
-            parser = new Parser(tokens);
+            parser = new Parser(lexerSession.stream());
             parser.setIndex(0);
-            parser.setErrorInfo("");
-            parser.setErrorNum(0);
-            TreeNode root = parser.execute();
+            Program program = parser.parse();
             if (parser.getErrorNum()!=0){
                 resultContent.clear();
                 resultContent.setText(parser.getErrorInfo());
             }else{
-                ParserUtil parserUtil = new ParserUtil();
-                parserUtil.lastOrder(root, 0);
-                str = parserUtil.getStringBuilder().toString();
+                str = TreeAdapter.lastOrder(program);
                 resultContent.clear();
                 resultContent.setText(str);
             }
@@ -169,7 +169,43 @@ public class RootLayoutController {
     }
 
     @FXML
-    private void handleOutput() throws IllegalAccessException {
+    private void handleOutput() {
+        run(Engine.TREE);
+    }
+
+    /**
+     * 编译为字节码后运行，不能编译的程序仍按语法树执行
+     */
+    @FXML
+    private void handleBytecode() {
+        run(Engine.BYTECODE);
+    }
+
+    /**
+     * 编译为闭包树后运行，不能编译的程序仍按语法树执行
+     */
+    @FXML
+    private void handleClosure() {
+        run(Engine.CLOSURE);
+    }
+
+    /**
+     * 编译为 JVM 类后运行，不能编译的程序仍按语法树执行
+     */
+    @FXML
+    private void handleJvm() {
+        run(Engine.JVM);
+    }
+
+    /**
+     * 遍历语法树运行，执行次数多的循环编译为闭包后接着运行
+     */
+    @FXML
+    private void handleTiered() {
+        run(Engine.TIERED);
+    }
+
+    private void run(Engine engine) {
         oldInput = "";
         currentInput = "";
 
@@ -177,19 +213,23 @@ public class RootLayoutController {
         resultContent.clear();
 
 
-        ArrayList<Token> tokens;
-        lexer = new Lexer();
-        lexer.scanAll(content);
-        tokens = lexer.getTokens();
-        parser = new Parser(tokens);
-        TreeNode node = parser.execute();
+        lexerSession.update(content);
+        // 语法和语义分析共用一个错误收集器
+        Diagnostics diagnostics = new Diagnostics();
+        parser = new Parser(lexerSession.stream());
+        parser.setDiagnostics(diagnostics);
+        Program program = parser.parse();
 
-        if (lexer.getErrorCount() != 0) {
+        if (lexerSession.getErrorCount() != 0) {
             handleLexer();
-        } else if (parser.getErrorNum() != 0 || node == null) {
+        } else if (parser.getErrorNum() != 0) {
             handleParser();
         } else {
+            // 语义分析前折叠常量、删除死分支
+            TreeNode node = TreeNodeBuilder.build(new ConstantFolder().optimize(program));
             semantic = new Semantic(node, this);
+            semantic.setDiagnostics(diagnostics);
+            semantic.setEngine(engine);
             semantic.start();
             //String output ;
             //while(!"BLOCKED".equals(semantic.getState())){